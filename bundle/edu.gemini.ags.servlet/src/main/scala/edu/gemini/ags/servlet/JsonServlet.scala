@@ -45,7 +45,7 @@ final class JsonServlet(magTable: MagnitudeTable) extends HttpServlet with AgsRe
         agsReq     <- \/.fromEither(Parse.decodeEither[AgsRequest](json))
         obsContext <- agsReq.toContext
         strategy   <- AgsRegistrar.currentStrategy(obsContext) \/> "Could not determine AGS strategy."
-      } yield Task.delay(strategy.select(obsContext, magTable)(executionContext)).flatMap(fut => toTask(fut))
+      } yield Task.delay(AgsResultCache.instance.select(obsContext, magTable, strategy)(executionContext)).flatMap(fut => toTask(fut))
 
     val result = task.leftMap(msg => (SC_BAD_REQUEST, msg))
                      .flatMap(_.unsafePerformSyncAttempt.leftMap(e => (SC_INTERNAL_SERVER_ERROR, e.getMessage)))
@@ -8,7 +8,7 @@ import javax.servlet.http.HttpServletResponse.{SC_BAD_GATEWAY, SC_BAD_REQUEST, S
 import javax.servlet.http.{HttpServlet, HttpServletRequest, HttpServletResponse}
 
 import edu.gemini.ags.api.AgsMagnitude.MagnitudeTable
-import edu.gemini.ags.api.{AgsRegistrar, AgsStrategy}
+import edu.gemini.ags.api.{AgsRegistrar, AgsResultCache, AgsStrategy}
 import edu.gemini.pot.sp.SPComponentType
 import edu.gemini.spModel.obs.context.ObsContext
 
@@ -98,7 +98,7 @@ class AgsServlet(magTable: MagnitudeTable) extends HttpServlet {
     def estimate(ctx: ObsContext, s: AgsStrategy): Either[Response, AgsStrategy.Estimate] = {
       import scala.concurrent.duration._
       Try {
-        Await.result(s.estimate(ctx, magTable)(executionContext), 2.minutes)
+        Await.result(AgsResultCache.instance.estimate(ctx, magTable, s)(executionContext), 2.minutes)
       } match {
         case Success(e)               => Right(e)
         case Failure(io: IOException) => Left(failure(SC_BAD_GATEWAY, io))
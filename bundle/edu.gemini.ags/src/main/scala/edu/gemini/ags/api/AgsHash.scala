@@ -8,6 +8,9 @@ import edu.gemini.spModel.gemini.flamingos2.Flamingos2
 import edu.gemini.spModel.gemini.gmos.{InstGmosNorth, InstGmosSouth}
 import edu.gemini.spModel.obs.context.ObsContext
 
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets.UTF_8
+import java.security.MessageDigest
 import java.time.Instant
 
 import scala.collection.mutable.ListBuffer
@@ -33,19 +36,52 @@ object AgsHash {
   /** Calculates the AGS hash for this context, calculating the base position
     * corresponding to the given time.
     */
-  def hash(ctx: ObsContext, when: Instant): Int = {
+  def hash(ctx: ObsContext, when: Instant): Int =
+    M3.orderedHash(inputs(ctx, when))
 
-    val buf = ListBuffer.empty[Int]
+  /** A 128-bit digest, wide enough to tell inputs apart without comparing
+    * them.
+    */
+  final case class Digest(hi: Long, lo: Long)
+
+  /** Calculates a digest of the same inputs as `hash`.  Unlike the `Int`
+    * hash, two contexts with the same digest can be taken to have the same
+    * inputs, so it may be used to key stored AGS results.
+    */
+  def digest(ctx: ObsContext, when: Instant): Digest =
+    digestOf(inputs(ctx, when))
+
+  /** Calculates the digest of a sequence of values, each identified by its
+    * string form (or name, for enums).
+    */
+  def digestOf(values: Seq[Any]): Digest = {
+    val md = MessageDigest.getInstance("SHA-1")
+    values.foreach { v =>
+      val s = v match {
+        case e: java.lang.Enum[_] => s"${e.getDeclaringClass.getName}.${e.name}"
+        case _                    => String.valueOf(v)
+      }
+      md.update(s.getBytes(UTF_8))
+      md.update(0.toByte)
+    }
+    val b = ByteBuffer.wrap(md.digest)
+    Digest(b.getLong, b.getLong)
+  }
+
+  // The inputs to the AGS lookup for this context.
+  private def inputs(ctx: ObsContext, when: Instant): List[Any] = {
+
+    val buf = ListBuffer.empty[Any]
 
     // AGS Strategy
     val strategyKey = AgsRegistrar.currentStrategy(ctx).map(_.key)
     strategyKey.foreach { s =>
-      M3.stringHash(s.id) +=: buf
+      s.id +=: buf
     }
 
     // Conditions
     Option(ctx.getConditions).foreach { c =>
-      c.cc.## +=: c.iq.## +=: c.sb.## +=: buf
+      c.cc +=: c.iq +=: c.sb +=: buf
     }
 
     // Asterism
@@ -53,8 +89,8 @@ object AgsHash {
       val time = Some(new java.lang.Long(when.toEpochMilli)).asGeminiOpt
       val asterism = t.getAsterism
 
-      def toData(coord: GemOption[java.lang.Double]): Int =
-        coord.asScalaOpt.map(_.doubleValue).##
+      def toData(coord: GemOption[java.lang.Double]): Option[Double] =
+        coord.asScalaOpt.map(_.doubleValue)
 
       asterism.allSpTargets.map { sp =>
         val ra  = toData(sp.getRaDegrees(time))
@@ -72,24 +108,24 @@ object AgsHash {
     }
 
     // Offset Positions, which are returned in a Set.  Order is not important
-    // for the purpose of AGS calculations.
-    M3.unorderedHash(ctx.getSciencePositions.asScala.map { o =>
+    // for the purpose of AGS calculations, so they are sorted.
+    ctx.getSciencePositions.asScala.toList.map { o =>
       (o.p.arcsec, o.q.arcsec)
-    }) +=: buf
+    }.sorted +=: buf
 
     // Position Angle
     Option(ctx.getPositionAngle).foreach { a =>
-      a.toDegrees.## +=: buf
+      a.toDegrees +=: buf
     }
 
     // Position Angle Constraint
     Option(ctx.getPosAngleConstraint).foreach { pac =>
-      pac.## +=: buf
+      pac +=: buf
     }
 
     // IssPort
     Option(ctx.getIssPort).foreach { iss =>
-      iss.## +=: buf
+      iss +=: buf
     }
 
     import AgsStrategyKey._
@@ -98,13 +134,13 @@ object AgsHash {
     // on the science area and probe arm position and hence, vignetting.
     Option(ctx.getInstrument).foreach {
       case i: Flamingos2 if strategyKey.contains(Flamingos2OiwfsKey)   =>
-        i.getFpu.## +=: i.getLyotWheel.getPlateScale.## +=: buf
+        i.getFpu +=: i.getLyotWheel.getPlateScale +=: buf
 
       case i: InstGmosNorth if strategyKey.contains(GmosNorthOiwfsKey) =>
-        i.getFPUnit.## +=: i.getFPUnitMode.## +=: buf
+        i.getFPUnit +=: i.getFPUnitMode +=: buf
 
       case i: InstGmosSouth if strategyKey.contains(GmosSouthOiwfsKey) =>
-        i.getFPUnit.## +=: i.getFPUnitMode.## +=: buf
+        i.getFPUnit +=: i.getFPUnitMode +=: buf
 
       case _                                                           =>
     }
@@ -115,18 +151,18 @@ object AgsHash {
     strategyKey.foreach {
       case Pwfs1NorthKey | Pwfs1SouthKey =>
         Option(ctx.getInstrument).foreach {
-          _.pwfs1VignettingClearance(ctx).getMagnitude.## +=: buf
+          _.pwfs1VignettingClearance(ctx).getMagnitude +=: buf
         }
 
       case Pwfs2NorthKey | Pwfs2SouthKey =>
         Option(ctx.getInstrument).foreach {
-          _.pwfs2VignettingClearance(ctx).getMagnitude.## +=: buf
+          _.pwfs2VignettingClearance(ctx).getMagnitude +=: buf
         }
 
       case Ngs2Key                       =>
         // GeMS works differently depending upon whether GSAOI or F2 is in use.
         Option(ctx.getInstrument).map(_.getPhaseIResourceName).foreach { n =>
-          M3.stringHash(n) +=: buf
+          n +=: buf
         }
 
       case _                             =>
@@ -135,11 +171,11 @@ object AgsHash {
     // Altair mode, which impacts not only the strategy but also the
     // magnitude limits.
     ctx.getAOComponent.asScalaOpt.foreach {
-      case a: InstAltair => a.getMode.## +=: buf
+      case a: InstAltair => a.getMode +=: buf
       case _             =>
     }
 
-    M3.orderedHash(buf)
+    buf.toList
   }
 
   private implicit class AngleOps(a: edu.gemini.skycalc.Angle) {
@@ -0,0 +1,272 @@
+package edu.gemini.ags.api
+
+import java.io._
+import java.nio.file.{Files, Path, Paths, StandardCopyOption}
+import java.time.Instant
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import java.util.logging.{Level, Logger}
+
+import edu.gemini.ags.api.AgsHash.Digest
+import edu.gemini.ags.api.AgsMagnitude.MagnitudeTable
+import edu.gemini.shared.util.immutable.ScalaConverters._
+import edu.gemini.spModel.obs.context.ObsContext
+
+import scala.concurrent.{ExecutionContext, Future}
+import scala.util.Success
+
+/**
+ * Results of AGS estimations, selections and analyses, keyed by the
+ * [[AgsHash]] digest of the context at the start of a time bucket.
+ *
+ * The AGS digest covers the inputs of a guide star search, so two contexts
+ * with the same digest in the same time bucket get the same estimate and
+ * selection. The digest is 128 bits wide so that the results of distinct
+ * observations are not confused. The time bucket only limits how far apart in
+ * time the base positions used for the digest may be. An analysis also
+ * depends on the guide stars already assigned in the context, including their
+ * magnitudes, which are added to its key.
+ *
+ * The least recently used results are dropped once the cache holds more than
+ * `maxEntries`. Estimates, which are what the AGS servlet computes in bulk,
+ * are also written to a log in `dir`, if given, and read back when the cache
+ * is first used. Results are assumed to be calculated with the one magnitude
+ * table of the running application.
+ *
+ * @param maxEntries   maximum number of results kept in memory
+ * @param bucketMillis duration of the time buckets
+ * @param dir          directory for the persistent estimates, if any
+ */
+final class AgsResultCache(maxEntries: Int, bucketMillis: Long, dir: Option[Path]) {
+  import AgsResultCache._
+
+  private val entries = new java.util.LinkedHashMap[Key, AnyRef](16, 0.75f, true) {
+    override def removeEldestEntry(e: java.util.Map.Entry[Key, AnyRef]): Boolean =
+      size > maxEntries
+  }
+
+  private var loaded = false
+  private var logged = 0
+
+  private val hits   = new AtomicLong()
+  private val misses = new AtomicLong()
+
+  private def logFile: Option[Path] =
+    dir.map(_.resolve(EstimateLog))
+
+  /** Gets the key of a result of the given kind for the strategy in the context. */
+  private[api] def key(kind: Kind, ctx: ObsContext, strategy: AgsStrategy): Key = {
+    val when   = ctx.getSchedulingBlockStart.asScalaOpt.map(_.longValue).getOrElse(System.currentTimeMillis)
+    val bucket = Math.floorDiv(when, bucketMillis)
+    val start  = Instant.ofEpochMilli(bucket * bucketMillis)
+    val extra  = kind match {
+      case Analysis => guideStarDigest(ctx, start)
+      case _        => NoDigest
+    }
+    Key(kind, strategy.key.id, AgsHash.digest(ctx, start), bucket, extra)
+  }
+
+  private def get[A](k: Key): Option[A] =
+    entries.synchronized {
+      load()
+      Option(entries.get(k)).map(_.asInstanceOf[A])
+    }
+
+  private def put(k: Key, a: AnyRef): Unit =
+    entries.synchronized {
+      load()
+      entries.put(k, a)
+    }
+
+  private def cached[A <: AnyRef](k: Key)(compute: => Future[A])(implicit ec: ExecutionContext): Future[A] =
+    get[A](k) match {
+      case Some(a) =>
+        hits.incrementAndGet()
+        Future.successful(a)
+      case None    =>
+        misses.incrementAndGet()
+        compute.andThen { case Success(a) =>
+          put(k, a)
+          if (k.kind == Estimate) append(k, a.asInstanceOf[AgsStrategy.Estimate])
+        }
+    }
+
+  /** Gets the estimate of the strategy for the context, estimating it only if not already known. */
+  def estimate(ctx: ObsContext, mt: MagnitudeTable, strategy: AgsStrategy)(ec: ExecutionContext): Future[AgsStrategy.Estimate] =
+    cached(key(Estimate, ctx, strategy))(strategy.estimate(ctx, mt)(ec))(ec)
+
+  /** Gets the selection of the strategy for the context, running it only if not already known. */
+  def select(ctx: ObsContext, mt: MagnitudeTable, strategy: AgsStrategy)(ec: ExecutionContext): Future[Option[AgsStrategy.Selection]] =
+    cached(key(Selection, ctx, strategy))(strategy.select(ctx, mt)(ec))(ec)
+
+  /** Gets the analysis of the strategy for the context, analyzing it only if not already known. */
+  def analyze(ctx: ObsContext, mt: MagnitudeTable, strategy: AgsStrategy): List[AgsAnalysis] = {
+    val k = key(Analysis, ctx, strategy)
+    get[List[AgsAnalysis]](k) match {
+      case Some(as) =>
+        hits.incrementAndGet()
+        as
+      case None     =>
+        misses.incrementAndGet()
+        val as = strategy.analyze(ctx, mt)
+        put(k, as)
+        as
+    }
+  }
+
+  /** Drops all results, including the persistent estimates. */
+  def clear(): Unit =
+    entries.synchronized {
+      loaded = true
+      entries.clear()
+      logged = 0
+      logFile.foreach(Files.deleteIfExists)
+    }
+
+  def size: Int =
+    entries.synchronized {
+      load()
+      entries.size
+    }
+
+  def hitCount: Long  = hits.get
+  def missCount: Long = misses.get
+
+  /** Gets a one line summary of the cache statistics, for logging. */
+  def statistics: String = {
+    val h = hitCount
+    val m = missCount
+    f"AgsResultCache: $size%d results, $h%d hits, $m%d misses (${if (h + m == 0) 0.0 else 100.0 * h / (h + m)}%.1f%% hit rate)"
+  }
+
+  // == Persistent estimates ==
+
+  // Reads the estimates logged by previous runs, later ones replacing earlier ones. Called with the lock held.
+  private def load(): Unit =
+    if (!loaded) {
+      loaded = true
+      logFile.filter(Files.isRegularFile(_)).foreach { f =>
+        var damaged = false
+        try {
+          val in = new DataInputStream(new BufferedInputStream(Files.newInputStream(f)))
+          try {
+            if (in.readInt() != Magic) throw new IOException("Not an AGS estimate log")
+            while (in.available() > 0) {
+              val k = Key(Estimate, in.readUTF(), Digest(in.readLong(), in.readLong()), in.readLong(), NoDigest)
+              entries.put(k, AgsStrategy.Estimate(in.readDouble()))
+              logged += 1
+            }
+          } finally {
+            in.close()
+          }
+        } catch {
+          case ex: IOException =>
+            Log.log(Level.WARNING, s"Could not read all AGS estimates from $f", ex)
+            damaged = true
+        }
+        // Rewrite a log in an old format or with a damaged tail, so that new
+        // estimates are not appended after it, and drop the estimates that no
+        // longer fit in memory.
+        if (damaged || logged > 2 * maxEntries) compact(f)
+      }
+    }
+
+  private def writeHeader(out: DataOutputStream): Unit =
+    out.writeInt(Magic)
+
+  private def writeEstimate(out: DataOutputStream, k: Key, e: AgsStrategy.Estimate): Unit = {
+    out.writeUTF(k.strategy)
+    out.writeLong(k.digest.hi)
+    out.writeLong(k.digest.lo)
+    out.writeLong(k.bucket)
+    out.writeDouble(e.probability)
+  }
+
+  // Rewrites the log with the estimates in memory. Called with the lock held.
+  private def compact(f: Path): Unit =
+    try {
+      val tmp = Files.createTempFile(f.getParent, EstimateLog, ".tmp")
+      val out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))
+      logged = 0
+      try {
+        writeHeader(out)
+        val it = entries.entrySet.iterator
+        while (it.hasNext) {
+          val e = it.next()
+          if (e.getKey.kind == Estimate) {
+            writeEstimate(out, e.getKey, e.getValue.asInstanceOf[AgsStrategy.Estimate])
+            logged += 1
+          }
+        }
+      } finally {
+        out.close()
+      }
+      Files.move(tmp, f, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+    } catch {
+      case ex: IOException =>
+        Log.log(Level.WARNING, s"Could not compact AGS estimates in $f", ex)
+    }
+
+  private def append(k: Key, e: AgsStrategy.Estimate): Unit =
+    logFile.foreach { f =>
+      entries.synchronized {
+        try {
+          Files.createDirectories(f.getParent)
+          val isNew = !Files.exists(f)
+          val out   = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f.toFile, true)))
+          try {
+            if (isNew) writeHeader(out)
+            writeEstimate(out, k, e)
+            logged += 1
+          } finally {
+            out.close()
+          }
+          if (logged > 2 * maxEntries) compact(f)
+        } catch {
+          case ex: IOException =>
+            Log.log(Level.WARNING, s"Could not store AGS estimate in $f", ex)
+        }
+      }
+    }
+}
+
+object AgsResultCache {
+  private val Log = Logger.getLogger(classOf[AgsResultCache].getName)
+
+  private val EstimateLog = "estimates.bin"
+  private val Magic       = 0x41475332 // "AGS2", estimates keyed by 128-bit digests
+
+  private[api] sealed trait Kind
+  private[api] case object Estimate  extends Kind
+  private[api] case object Selection extends Kind
+  private[api] case object Analysis  extends Kind
+
+  private[api] final case class Key(kind: Kind, strategy: String, digest: Digest, bucket: Long, extra: Digest)
+
+  private val NoDigest = Digest(0L, 0L)
+
+  // Digest of the guide stars assigned in the primary guide group: their
+  // positions and magnitudes, which the analysis checks against the limits.
+  private def guideStarDigest(ctx: ObsContext, when: Instant): Digest = {
+    val time = Some(new java.lang.Long(when.toEpochMilli)).asGeminiOpt
+    AgsHash.digestOf(ctx.getTargets.getPrimaryGuideGroup.getAll.asScalaList.map { gpt =>
+      val star = gpt.getPrimary.asScalaOpt.map { t =>
+        (t.getRaDegrees(time).asScalaOpt.map(_.doubleValue), t.getDecDegrees(time).asScalaOpt.map(_.doubleValue), t.getMagnitudes.map(_.toString).sorted)
+      }
+      s"${gpt.getGuider.getKey} $star"
+    }.sorted)
+  }
+
+  /**
+   * The cache shared by all AGS entry points of the application. Its size and
+   * time buckets are set with the `edu.gemini.ags.cache.maxEntries` and
+   * `edu.gemini.ags.cache.bucketMinutes` properties. Estimates are kept in
+   * the directory given by the `edu.gemini.ags.cache.dir` property, if set.
+   */
+  lazy val instance: AgsResultCache = {
+    val max    = Integer.getInteger("edu.gemini.ags.cache.maxEntries", 10000).intValue
+    val bucket = TimeUnit.MINUTES.toMillis(java.lang.Long.getLong("edu.gemini.ags.cache.bucketMinutes", 60L))
+    val dir    = Option(System.getProperty("edu.gemini.ags.cache.dir")).filter(_.nonEmpty).map(Paths.get(_))
+    new AgsResultCache(max, bucket, dir)
+  }
+}
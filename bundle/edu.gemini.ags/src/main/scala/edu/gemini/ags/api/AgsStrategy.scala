@@ -69,6 +69,15 @@ trait AgsStrategy {
     }.asGeminiOpt
 
 
+  /**
+   * Returns the patrol field geometry of the guide probe in the given context,
+   * if the strategy validates its guide stars against the patrol field alone.
+   * The geometry doesn't depend on the position angle of the context, so it
+   * can be used to check candidates at any number of position angles.
+   */
+  def patrolFieldGeometry(ctx: ObsContext, guideProbe: GuideProbe): Option[PatrolFieldGeometry] =
+    None
+
   def guideProbes: List[GuideProbe]
 
   /**
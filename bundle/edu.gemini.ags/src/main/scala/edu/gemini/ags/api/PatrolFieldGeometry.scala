@@ -0,0 +1,116 @@
+package edu.gemini.ags.api
+
+import java.awt.geom.{AffineTransform, Area}
+
+import edu.gemini.skycalc.CoordinateDiff
+import edu.gemini.spModel.core.{Angle, SiderealTarget}
+import edu.gemini.spModel.guide.{GuideProbe, PatrolField}
+import edu.gemini.spModel.obs.context.ObsContext
+import edu.gemini.spModel.target.SPTarget
+import edu.gemini.shared.util.immutable.ScalaConverters._
+
+import scala.collection.JavaConverters._
+
+/**
+ * The patrol field of a guide probe in an observation context, combined with the science offsets of the context
+ * but not yet rotated to its position angle.
+ *
+ * Validating a guide star with the probe itself transforms the patrol field to the position angle of the context
+ * on every call, so trying many candidates at many position angles means creating a context and transforming the
+ * shapes for each combination. Here the shapes are prepared once and each candidate is located once, relative to
+ * the base position. Testing it at a position angle then only rotates that one point the opposite way.
+ *
+ * @param blocked  area in which candidates are never valid
+ * @param usable   areas in any of which candidates are valid, unless blocked
+ */
+final class PatrolFieldGeometry private (ctx: ObsContext, blocked: Area, usable: List[Area]) {
+  import PatrolFieldGeometry.Location
+
+  private val base = ctx.getBaseCoordinates.asScalaOpt
+  private val when = ctx.getSchedulingBlockStart
+
+  /**
+   * Locates a target in the coordinate system of the patrol field at position angle zero, or None if either its
+   * coordinates or those of the base position are unknown.
+   */
+  def locate(target: SiderealTarget): Option[Location] =
+    for {
+      b <- base
+      c <- new SPTarget(target).getSkycalcCoordinates(when).asScalaOpt
+    } yield {
+      val offset = new CoordinateDiff(b, c).getOffset
+      Location(-offset.p.toArcsecs.getMagnitude, -offset.q.toArcsecs.getMagnitude)
+    }
+
+  private def contains(l: Location, cos: Double, sin: Double): Boolean = {
+    val x = l.p * cos - l.q * sin
+    val y = l.p * sin + l.q * cos
+    !blocked.contains(x, y) && usable.exists(_.contains(x, y))
+  }
+
+  /** Determines whether a located target is reachable at the given position angle. */
+  def contains(l: Location, angle: Angle): Boolean =
+    contains(l, math.cos(angle.toRadians), math.sin(angle.toRadians))
+
+  /** Determines whether the target is reachable at the given position angle. */
+  def reachable(target: SiderealTarget, angle: Angle): Boolean =
+    locate(target).exists(contains(_, angle))
+
+  /**
+   * Tests all the targets at all the angles, locating each target once.
+   *
+   * @return for each angle, whether any of the targets is reachable at it
+   */
+  def anyReachable(targets: List[SiderealTarget], angles: List[Angle]): List[Boolean] = {
+    val locations = targets.flatMap(locate)
+    angles.map { a =>
+      val cos = math.cos(a.toRadians)
+      val sin = math.sin(a.toRadians)
+      locations.exists(contains(_, cos, sin))
+    }
+  }
+}
+
+object PatrolFieldGeometry {
+
+  /** Position of a target relative to the base position, in arcsecs, as the patrol field checks expect it. */
+  final case class Location(p: Double, q: Double)
+
+  private def offsets(ctx: ObsContext): List[AffineTransform] =
+    ctx.getSciencePositions.asScala.toList.map { o =>
+      AffineTransform.getTranslateInstance(-o.p.toArcsecs.getMagnitude, -o.q.toArcsecs.getMagnitude)
+    }
+
+  // Union of the area moved to each of the offsets, or the area itself without offsets.
+  private def union(area: Area, ts: List[AffineTransform]): Area =
+    if (ts.isEmpty) area
+    else ts.map(area.createTransformedArea).reduce { (a, b) => a.add(b); a }
+
+  /**
+   * The geometry used by `GuideProbeUtil.validate`, which is how most guide probes validate guide stars: a
+   * candidate is valid if it isn't blocked at any offset and is in the safe area or the area of the patrol field
+   * at every offset.
+   */
+  def apply(ctx: ObsContext, pf: PatrolField): PatrolFieldGeometry = {
+    val sciencePositions = ctx.getSciencePositions
+    new PatrolFieldGeometry(
+      ctx,
+      union(pf.getBlockedArea, offsets(ctx)),
+      List(pf.safeOffsetIntersection(sciencePositions), pf.offsetIntersection(sciencePositions))
+    )
+  }
+
+  /**
+   * The geometry used by `PatrolField.validator`: a candidate is valid if it is in the area of the patrol field at
+   * every offset.
+   */
+  def usableArea(ctx: ObsContext, pf: PatrolField): PatrolFieldGeometry =
+    new PatrolFieldGeometry(ctx, new Area, List(pf.offsetIntersection(ctx.getSciencePositions)))
+
+  /**
+   * The geometry of a guide probe that validates guide stars against its corrected patrol field, or None if the
+   * probe can't be used in the context.
+   */
+  def forProbe(ctx: ObsContext, probe: GuideProbe): Option[PatrolFieldGeometry] =
+    probe.getCorrectedPatrolField(ctx).asScalaOpt.map(apply(ctx, _))
+}
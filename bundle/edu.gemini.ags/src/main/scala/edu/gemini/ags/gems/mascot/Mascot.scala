@@ -1,5 +1,7 @@
 package edu.gemini.ags.gems.mascot
 
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.atomic.AtomicBoolean
 import java.util.logging.Logger
 
 import edu.gemini.ags.gems.mascot.util.AllPairsAndTriples
@@ -11,7 +13,8 @@ import edu.gemini.shared.util.immutable.ScalaConverters._
 import edu.gemini.spModel.core.{BandsList, MagnitudeBand, RBandsList, SiderealTarget}
 import edu.gemini.spModel.target.SPTarget
 
-import scala.annotation.tailrec
+import scala.concurrent.{Await, ExecutionContext, Future}
+import scala.concurrent.duration.Duration
 import scalaz._
 import Scalaz._
 
@@ -75,10 +78,9 @@ object Mascot {
     }
   }
 
-  case class AsterismSearchStage(stars: List[Strehl], count: Int, continue: Boolean)
-
   /**
    * Finds the best asterisms for the given list of stars.
+   * The asterisms are computed in parallel but reported to `progress` in order, on the calling thread.
    * @param starList unfiltered list of stars from a catalog query
    * @param factor multiply strehl min, max and average by this value (depends on instrument filter: See REL-426)
    * @param progress a function(strehl, count, total) called for each asterism as it is calculated
@@ -107,37 +109,64 @@ object Mascot {
 
     Log.info(s"Mascot.findBestAsterism: input stars: $ns, total asterisms: $total")
 
-    // Compute strehl for a sets of stars
-    @tailrec
-    def doStars(result: List[Strehl], count: Int, starSets: List[(Star, Option[Star], Option[Star])]):AsterismSearchStage = starSets match {
-      case Nil =>
-        AsterismSearchStage(result, count, continue = true)
-      case s :: Nil =>
-        val strehl = computeStrehl(factor, (StarTriple.apply _).tupled(s))
-        // check if we continue
-        val continue = strehl.map(progress(_, count, total))
-        AsterismSearchStage(strehl.map(_ :: result).getOrElse(result), count, continue.getOrElse(true))
-      case s :: tail =>
-        val strehl = computeStrehl(factor, (StarTriple.apply _).tupled(s))
-        // check if we continue
-        val continue = strehl.map(progress(_, count, total))
-        if (continue === false.some) {
-          AsterismSearchStage(strehl.map(_ :: result).getOrElse(result), count, continue = false)
-        } else {
-          // Continue if the position is skipped or if progress says continue
-          doStars(strehl.map(_ :: result).getOrElse(result), count + 1, tail)
+    // Triples first, then pairs and singles, in the order in which progress is reported
+    val asterisms = numbered(List[List[(Star, Option[Star], Option[Star])]](
+      trips,
+      pairs.map(t => (t._1, t._2, None)),
+      sings.map(t => (t, None, None))
+    ).map(_.map((StarTriple.apply _).tupled)))
+
+    (filteredStarList, sortBestAsterisms(evaluate(asterisms, factor, progress, total)))
+  }
+
+  // Number of asterisms computed by each task.
+  private val BatchSize = 4
+
+  // Computing an asterism takes long enough to keep a pool of its own, rather than blocking the global one.
+  private lazy val AsterismExecutionContext: ExecutionContext =
+    ExecutionContext.fromExecutorService(new ForkJoinPool(Runtime.getRuntime.availableProcessors))
+
+  // Pairs each asterism with its progress count. As in the original sequential search, each group starts
+  // counting at the last count of the previous one.
+  private def numbered[A](groups: List[List[A]]): Vector[(A, Int)] =
+    groups.foldLeft((Vector.empty[(A, Int)], 1)) { case ((acc, count), group) =>
+      val next = if (group.isEmpty) count else count + group.length - 1
+      (acc ++ group.zipWithIndex.map { case (a, i) => (a, count + i) }, next)
+    }._1
+
+  /**
+   * Computes the Strehl of the asterisms in parallel, in batches. The results are collected in order on the
+   * calling thread, which reports each one to `progress` exactly as a sequential search would, and the remaining
+   * batches are abandoned as soon as `progress` returns false or throws.
+   */
+  private def evaluate(asterisms: Vector[(StarTriple, Int)], factor: Double, progress: ProgressFunction, total: Int): List[Strehl] = {
+    val cancelled = new AtomicBoolean(false)
+    val batches   = asterisms.grouped(BatchSize).toList.map { batch =>
+      Future {
+        batch.map { case (st, count) =>
+          (if (cancelled.get) None else computeStrehl(factor, st), count)
         }
+      }(AsterismExecutionContext)
     }
 
-    // Search each possible combination of triples, doubles and singles supporting cancellation
-    def go(): List[Strehl] = {
-      val triples = if (ns >= 3) doStars(Nil, 1, trips) else AsterismSearchStage(Nil, 1, continue = true)
-      val doubles = if (ns >= 2 && triples.continue) doStars(triples.stars, triples.count, pairs.map(t => (t._1, t._2, None))) else triples
-      val singles = if (ns >= 1 && doubles.continue) doStars(doubles.stars, doubles.count, sings.map(t => (t, None, None))) else doubles
-      singles.stars
+    try {
+      var result   = List.empty[Strehl]
+      var continue = true
+      val it       = batches.iterator
+      while (continue && it.hasNext) {
+        val rs = Await.result(it.next(), Duration.Inf).iterator
+        while (continue && rs.hasNext) {
+          val (strehl, count) = rs.next()
+          strehl.foreach { s =>
+            result   = s :: result
+            continue = progress(s, count, total)
+          }
+        }
+      }
+      result
+    } finally {
+      cancelled.set(true)
     }
-
-    (filteredStarList, sortBestAsterisms(go()))
   }
 
   //func select_stars_on_mag(void)
@@ -56,14 +56,21 @@ object MascotUtils {
       //  dmin = min(d(,,max));
       //  if (dmin<=(60-edge_margin)) return 1;
       //  else return 0;
+      // No point is closer than half the largest separation to all three stars, so widely separated
+      // triples can be rejected without computing the distance maps.
+      def sep(a: Star, b: Star) = math.hypot(a.x - b.x, a.y - b.y)
+      val maxSep = math.max(sep(n1, n2), math.max(sep(n1, v3), sep(n2, v3)))
+
       val size = 300
       val r = size / 2
-      val d1 = dist(size, r + n1.y, r + n1.x)
-      val d2 = dist(size, r + n2.y, r + n2.x)
-      val d3 = dist(size, r + v3.y, r + v3.x)
-      val dmin = min(util.YUtils.max(util.YUtils.max(d1, d2), d3))
-
-      dmin < 60 - edge_margin
+      maxSep / 2 < 60 - edge_margin && {
+        val d1 = dist(size, r + n1.y, r + n1.x)
+        val d2 = dist(size, r + n2.y, r + n2.x)
+        val d3 = dist(size, r + v3.y, r + v3.x)
+        val dmin = min(util.YUtils.max(util.YUtils.max(d1, d2), d3))
+
+        dmin < 60 - edge_margin
+      }
     }.getOrElse {
       //      d = slist(1:2,1)-slist(1:2,2);
       //      d = sqrt(sum(d^2.));
@@ -78,7 +78,17 @@ object Strehl {
 
   val nmodes = 5
   val sp = nullModesSpectra()
-  var spv = vibSpectra()
+
+  // Vibration spectra, limited to the sampling frequency for the spline (see getStrehlMap).
+  // Computed once here rather than on each call so that Strehl can be used from several threads.
+  val spv = {
+    val v = vibSpectra()
+    if (max(v(::, 0)) > sampfreq) {
+      val tmp = where(v(::, 0), _ < sampfreq)
+      val w = tmp(tmp.length - 1)
+      v(0 to w, ::)
+    } else v
+  }
   val novibs = false
 
   //  func mascot_compute_strehl(void)
@@ -339,11 +349,6 @@ object Strehl {
     //  rmsvib(2) = sum((*tiltvibrms)^2.);
 
 
-    if (max(spv(::, 0)) > sampfreq) {
-      val tmp = where(spv(::, 0), _ < sampfreq)
-      val w = tmp(tmp.length - 1)
-      spv = spv(0 to w, ::)
-    }
     val freqv = spv(::, 0)
 
     val rmsvib = DenseVector.zeros[Double](2)
@@ -1,7 +1,7 @@
 package edu.gemini.ags.impl
 
 import edu.gemini.ags.api.AgsMagnitude.MagnitudeTable
-import edu.gemini.spModel.core.Coordinates
+import edu.gemini.spModel.core.{Angle, Coordinates}
 import edu.gemini.spModel.core.SiderealTarget
 import edu.gemini.spModel.guide.GuideStarValidation
 import edu.gemini.spModel.obs.context.ObsContext
@@ -21,10 +21,11 @@ import Scalaz._
  */
 protected case class CandidateValidator(params: SingleProbeStrategyParams, mt: MagnitudeTable, candidates: List[SiderealTarget]) {
   /**
-   * Produces a predicate for testing whether a candidate is valid in an
-   * established context. Returns constant `false` if base coordinates are unknown.
+   * Produces a predicate for the checks that don't depend on the position
+   * angle of the context. Returns constant `false` if base coordinates are
+   * unknown.
    */
-  private def isValid(ctx: ObsContext): (SiderealTarget) => Boolean =
+  private def isUsable(ctx: ObsContext): (SiderealTarget) => Boolean =
     ctx.getBaseCoordinates.asScalaOpt.fold((_: SiderealTarget) => false) { base =>
     val magLimits:Option[MagnitudeConstraints] = params.magnitudeCalc(ctx, mt).flatMap(AgsMagnitude.autoSearchConstraints(_, ctx.getConditions))
 
@@ -41,16 +42,50 @@ protected case class CandidateValidator(params: SingleProbeStrategyParams, mt: M
       // Only keep candidates that fall within the magnitude limits.
       def brightnessOk = (magLimits |@| params.referenceMagnitude(st))(_ contains _) | false
 
-      // Only keep those that are in range of the guide probe.
-      def inProbeRange = params.validator(ctx).validate(new SPTarget(st), ctx) == GuideStarValidation.VALID
-
-      farEnough && brightnessOk && inProbeRange
+      farEnough && brightnessOk
     }
   }
 
+  // Only keep those that are in range of the guide probe.
+  private def inProbeRange(ctx: ObsContext)(st: SiderealTarget): Boolean =
+    params.validator(ctx).validate(new SPTarget(st), ctx) == GuideStarValidation.VALID
+
+  /**
+   * Produces a predicate for testing whether a candidate is valid in an
+   * established context. Returns constant `false` if base coordinates are unknown.
+   */
+  private def isValid(ctx: ObsContext): (SiderealTarget) => Boolean = {
+    val usable = isUsable(ctx)
+    (st: SiderealTarget) => usable(st) && inProbeRange(ctx)(st)
+  }
+
   def filter(ctx: ObsContext): List[SiderealTarget]   = candidates.filter(isValid(ctx))
 
   def exists(ctx: ObsContext): Boolean                = candidates.exists(isValid(ctx))
 
   def select(ctx: ObsContext): Option[SiderealTarget] = params.brightest(filter(ctx))(identity)
+
+  /**
+   * Finds the position angles at which any candidate is valid. The checks
+   * that don't depend on the position angle are made once, and when the
+   * probe has a patrol field geometry it is used instead of creating a
+   * context for each angle.
+   */
+  def validAngles(ctx: ObsContext, angles: List[Angle]): List[Angle] = {
+    val usable = candidates.filter(isUsable(ctx))
+    params.patrolFieldGeometry(ctx).fold(angles.filter(a => usable.exists(inProbeRange(ctx.withPositionAngle(a))))) { g =>
+      angles.zip(g.anyReachable(usable, angles)).collect { case (a, true) => a }
+    }
+  }
+
+  /**
+   * Pairs each candidate with a position angle and keeps the candidates that
+   * are valid at their angle.
+   */
+  def filterAtAngles(ctx: ObsContext)(angle: SiderealTarget => Angle): List[(Angle, SiderealTarget)] = {
+    val usable = candidates.filter(isUsable(ctx)).map(st => (angle(st), st))
+    params.patrolFieldGeometry(ctx).fold(usable.filter { case (a, st) => inProbeRange(ctx.withPositionAngle(a))(st) }) { g =>
+      usable.filter { case (a, st) => g.reachable(st, a) }
+    }
+  }
 }
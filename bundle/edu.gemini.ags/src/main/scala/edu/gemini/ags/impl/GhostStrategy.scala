@@ -3,7 +3,7 @@
 
 package edu.gemini.ags.impl
 
-import edu.gemini.ags.api.{AgsAnalysis, AgsMagnitude, AgsStrategy, ProbeCandidates}
+import edu.gemini.ags.api.{AgsAnalysis, AgsMagnitude, AgsStrategy, PatrolFieldGeometry, ProbeCandidates}
 import edu.gemini.catalog.api.CatalogQuery
 import edu.gemini.spModel.ags.AgsStrategyKey
 import edu.gemini.spModel.ags.AgsStrategyKey.{GhostPwfs1Key, GhostPwfs2Key}
@@ -61,6 +61,9 @@ final case class GhostStrategy(key: AgsStrategyKey, delegate: AgsStrategy) exten
   override def select(ctx: ObsContext, mt: AgsMagnitude.MagnitudeTable)(ec: ExecutionContext): Future[Option[AgsStrategy.Selection]] =
     delegate.select(adjContext(ctx), mt)(ec)
 
+  override def patrolFieldGeometry(ctx: ObsContext, guideProbe: GuideProbe): Option[PatrolFieldGeometry] =
+    delegate.patrolFieldGeometry(adjContext(ctx), guideProbe)
+
   override def guideProbes: List[GuideProbe] =
     delegate.guideProbes
 
@@ -86,8 +86,8 @@ final case class SingleProbeStrategy(key: AgsStrategyKey, params: SingleProbeStr
     // If we are unbounded and there are any candidates, we are guaranteed success.
     val pac   = ctx.getPosAngleConstraint(UNBOUNDED)
     val cv    = CandidateValidator(params, mt, candidates)
-    val steps = pac.steps(ctx.getPositionAngle, params.stepSize).toList.asScala
-    val anglesWithResults  = steps.filter { angle => cv.exists(ctx.withPositionAngle(angle)) }
+    val steps = pac.steps(ctx.getPositionAngle, params.stepSize).toList.asScala.toList
+    val anglesWithResults  = cv.validAngles(ctx, steps)
     val successProbability = anglesWithResults.size.toDouble / steps.size.toDouble
     AgsStrategy.Estimate.toEstimate(successProbability)
   }
@@ -211,15 +211,8 @@ final case class SingleProbeStrategy(key: AgsStrategyKey, params: SingleProbeStr
     }
   }
 
-  private def filterUnbounded(ctx: ObsContext, mt: MagnitudeTable, candidates: List[SiderealTarget]): List[(ObsContext, List[SiderealTarget])] = {
-    for {
-      base <- ctx.getBaseCoordinates.asScalaOpt.toList
-      so <- candidates
-      pa = SingleProbeStrategy.calculatePositionAngle(base.toNewModel, so)
-      ctxSo = ctx.withPositionAngle(pa)
-      if CandidateValidator(params, mt, List(so)).exists(ctxSo)
-    } yield (ctxSo, List(so))
-  }
+  private def filterUnbounded(ctx: ObsContext, mt: MagnitudeTable, candidates: List[SiderealTarget]): List[(ObsContext, List[SiderealTarget])] =
+    selectUnbounded(ctx, mt, candidates).map { case (pa, so) => (ctx.withPositionAngle(pa), List(so)) }
 
   // List of candidates and their angles for the case where the pos angle constraint is not unbounded.
   private def selectBounded(alternatives: List[ObsContext], mt: MagnitudeTable, candidates: List[SiderealTarget]): List[(Angle, SiderealTarget)] = {
@@ -230,23 +223,17 @@ final case class SingleProbeStrategy(key: AgsStrategyKey, params: SingleProbeStr
   }
 
   // List of candidates and their angles for the case where the pos angle constraint is unbounded.
-  private def selectUnbounded(ctx: ObsContext, mt: MagnitudeTable, candidates: List[SiderealTarget]): List[(Angle, SiderealTarget)] = {
-
-    val pairs: List[(Angle, SiderealTarget)] =
-      for {
-        base <- ctx.getBaseCoordinates.asScalaOpt.toList
-        so   <- candidates
-      } yield (SingleProbeStrategy.calculatePositionAngle(base.toNewModel, so), so)
-
-    pairs.filter {
-      case (angle, st) => CandidateValidator(params, mt, List(st)).exists(ctx.withPositionAngle(angle))
+  private def selectUnbounded(ctx: ObsContext, mt: MagnitudeTable, candidates: List[SiderealTarget]): List[(Angle, SiderealTarget)] =
+    ctx.getBaseCoordinates.asScalaOpt.toList.flatMap { base =>
+      CandidateValidator(params, mt, candidates).filterAtAngles(ctx)(SingleProbeStrategy.calculatePositionAngle(base.toNewModel, _))
     }
 
-  }
-
   private def ctx180(c: ObsContext): ObsContext =
     c.withPositionAngle(c.getPositionAngle.flip)
 
+  override def patrolFieldGeometry(ctx: ObsContext, guideProbe: GuideProbe): Option[PatrolFieldGeometry] =
+    if (guideProbe == params.guideProbe) params.patrolFieldGeometry(withCorrectedSite(ctx)) else None
+
   override val guideProbes: List[GuideProbe] = List(params.guideProbe)
 
   override val probeBands = params.probeBands
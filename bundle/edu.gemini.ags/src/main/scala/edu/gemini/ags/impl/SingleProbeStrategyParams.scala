@@ -1,6 +1,6 @@
 package edu.gemini.ags.impl
 
-import edu.gemini.ags.api.AgsMagnitude
+import edu.gemini.ags.api.{AgsMagnitude, PatrolFieldGeometry}
 import edu.gemini.ags.api.AgsMagnitude.{MagnitudeCalc, MagnitudeTable}
 import edu.gemini.catalog.api._
 import edu.gemini.catalog.api.CatalogName.{GaiaGemini, UCAC4}
@@ -51,6 +51,10 @@ sealed trait SingleProbeStrategyParams {
 
   def validator(ctx: ObsContext): GuideStarValidator = guideProbe
 
+  // Geometry equivalent to the validator, for checking candidates at many position angles.
+  def patrolFieldGeometry(ctx: ObsContext): Option[PatrolFieldGeometry] =
+    PatrolFieldGeometry.forProbe(ctx, guideProbe)
+
   def probeBands: BandsList = RBandsList
 
   // For a given target return a magnitude value that can be used to select a target
@@ -116,5 +120,8 @@ case class PwfsParams(site: Site, guideProbe: PwfsGuideProbe) extends SingleProb
   // We have a special validator for Pwfs.
   override def validator(ctx: ObsContext): GuideStarValidator =
     vignettingProofPatrolField(ctx).validator(ctx)
+
+  override def patrolFieldGeometry(ctx: ObsContext): Option[PatrolFieldGeometry] =
+    Some(PatrolFieldGeometry.usableArea(ctx, vignettingProofPatrolField(ctx)))
   }
 }
\ No newline at end of file
@@ -0,0 +1,152 @@
+package edu.gemini.ags.api
+
+import java.nio.file.Files
+import java.util.concurrent.atomic.AtomicInteger
+
+import edu.gemini.ags.api.AgsMagnitude.{MagnitudeCalc, MagnitudeTable}
+import edu.gemini.catalog.api.CatalogQuery
+import edu.gemini.shared.util.immutable.{Some => JSome}
+import edu.gemini.spModel.ags.AgsStrategyKey
+import edu.gemini.spModel.core.{BandsList, Magnitude, MagnitudeBand, RBandsList, SiderealTarget, Site}
+import edu.gemini.spModel.gemini.gmos.{GmosOiwfsGuideProbe, InstGmosNorth}
+import edu.gemini.spModel.gemini.obscomp.SPSiteQuality
+import edu.gemini.spModel.guide.{GuideProbe, ValidatableGuideProbe}
+import edu.gemini.spModel.obs.SchedulingBlock
+import edu.gemini.spModel.obs.context.ObsContext
+import edu.gemini.spModel.target.SPTarget
+import edu.gemini.spModel.target.env.{GuideProbeTargets, TargetEnvironment}
+import org.specs2.mutable.Specification
+
+import scala.concurrent.{Await, ExecutionContext, Future}
+import scala.concurrent.ExecutionContext.Implicits.global
+import scala.concurrent.duration._
+
+import scalaz.syntax.id._
+
+class AgsResultCacheSpec extends Specification {
+  import AgsResultCache.Estimate
+
+  // Counts the calculations, returning a fixed estimate and no selection or analysis.
+  class CountingStrategy(p: Double) extends AgsStrategy {
+    val estimates  = new AtomicInteger(0)
+    val selections = new AtomicInteger(0)
+    val analyses   = new AtomicInteger(0)
+
+    override val key: AgsStrategyKey = AgsStrategyKey.GmosNorthOiwfsKey
+
+    override def estimate(ctx: ObsContext, mt: MagnitudeTable)(ec: ExecutionContext): Future[AgsStrategy.Estimate] = {
+      estimates.incrementAndGet()
+      Future.successful(AgsStrategy.Estimate(p))
+    }
+
+    override def select(ctx: ObsContext, mt: MagnitudeTable)(ec: ExecutionContext): Future[Option[AgsStrategy.Selection]] = {
+      selections.incrementAndGet()
+      Future.successful(None)
+    }
+
+    override def analyze(ctx: ObsContext, mt: MagnitudeTable): List[AgsAnalysis] = {
+      analyses.incrementAndGet()
+      Nil
+    }
+
+    override def magnitudes(ctx: ObsContext, mt: MagnitudeTable): List[(GuideProbe, MagnitudeCalc)] = Nil
+    override def analyze(ctx: ObsContext, mt: MagnitudeTable, guideProbe: ValidatableGuideProbe, guideStar: SiderealTarget): Option[AgsAnalysis] = None
+    override def analyzeMagnitude(ctx: ObsContext, mt: MagnitudeTable, guideProbe: ValidatableGuideProbe, guideStar: SiderealTarget): Option[AgsAnalysis] = None
+    override def candidates(ctx: ObsContext, mt: MagnitudeTable)(ec: ExecutionContext): Future[List[ProbeCandidates]] = Future.successful(Nil)
+    override def catalogQueries(ctx: ObsContext, mt: MagnitudeTable): List[CatalogQuery] = Nil
+    override def guideProbes: List[GuideProbe] = Nil
+    override def probeBands: BandsList = RBandsList
+  }
+
+  val mt: MagnitudeTable = new MagnitudeTable {
+    def apply(ctx: ObsContext, gp: GuideProbe): Option[MagnitudeCalc] = None
+  }
+
+  def context(ra: Double, when: Long): ObsContext =
+    ObsContext.create(TargetEnvironment.create(new SPTarget(ra, 20.0)), new InstGmosNorth, new JSome(Site.GN), SPSiteQuality.Conditions.NOMINAL, null, null, new JSome(SchedulingBlock(when)))
+
+  // A context with an OIWFS guide star of the given R magnitude.
+  def guidedContext(r: Double, when: Long): ObsContext = {
+    val gs = new SPTarget(10.01, 20.01) <| (_.putMagnitude(new Magnitude(r, MagnitudeBand.R)))
+    val te = TargetEnvironment.create(new SPTarget(10.0, 20.0)).putPrimaryGuideProbeTargets(GuideProbeTargets.create(GmosOiwfsGuideProbe.instance, gs))
+    ObsContext.create(te, new InstGmosNorth, new JSome(Site.GN), SPSiteQuality.Conditions.NOMINAL, null, null, new JSome(SchedulingBlock(when)))
+  }
+
+  val hour  = 60 * 60 * 1000L
+  val start = 1600000000000L - 1600000000000L % hour
+
+  def await[A](f: Future[A]): A = Await.result(f, 10.seconds)
+
+  "AgsResultCache" should {
+    "reuse estimates within a time bucket" in {
+      val cache = new AgsResultCache(100, hour, None)
+      val s     = new CountingStrategy(0.5)
+
+      await(cache.estimate(context(10.0, start), mt, s)(global)).probability must_== 0.5
+      await(cache.estimate(context(10.0, start + hour / 2), mt, s)(global)).probability must_== 0.5
+      s.estimates.get must_== 1
+      cache.hitCount must_== 1
+      cache.missCount must_== 1
+    }
+    "recalculate for other inputs or time buckets" in {
+      val cache = new AgsResultCache(100, hour, None)
+      val s     = new CountingStrategy(0.5)
+
+      await(cache.estimate(context(10.0, start), mt, s)(global))
+      await(cache.estimate(context(11.0, start), mt, s)(global))
+      await(cache.estimate(context(10.0, start + hour), mt, s)(global))
+      s.estimates.get must_== 3
+    }
+    "keep estimates, selections and analyses apart" in {
+      val cache = new AgsResultCache(100, hour, None)
+      val s     = new CountingStrategy(0.5)
+      val ctx   = context(10.0, start)
+
+      await(cache.estimate(ctx, mt, s)(global))
+      await(cache.select(ctx, mt, s)(global)) must beNone
+      await(cache.select(ctx, mt, s)(global)) must beNone
+      cache.analyze(ctx, mt, s) must_== Nil
+      cache.analyze(ctx, mt, s) must_== Nil
+      (s.estimates.get, s.selections.get, s.analyses.get) must_== ((1, 1, 1))
+    }
+    "reanalyze when a guide star magnitude changes" in {
+      val cache = new AgsResultCache(100, hour, None)
+      val s     = new CountingStrategy(0.5)
+
+      cache.analyze(guidedContext(12.0, start), mt, s)
+      cache.analyze(guidedContext(12.0, start), mt, s)
+      cache.analyze(guidedContext(18.0, start), mt, s)
+      s.analyses.get must_== 2
+    }
+    "key results by a digest of the inputs" in {
+      val cache = new AgsResultCache(100, hour, None)
+      val s     = new CountingStrategy(0.5)
+
+      cache.key(Estimate, context(10.0, start), s) must_== cache.key(Estimate, context(10.0, start), s)
+      cache.key(Estimate, context(10.0, start), s).digest must_!= cache.key(Estimate, context(10.000001, start), s).digest
+    }
+    "drop the least recently used results" in {
+      val cache = new AgsResultCache(2, hour, None)
+      val s     = new CountingStrategy(0.5)
+
+      List(1.0, 2.0, 1.0, 3.0, 1.0, 2.0).foreach { ra =>
+        await(cache.estimate(context(ra, start), mt, s)(global))
+      }
+      cache.size must_== 2
+      s.estimates.get must_== 4
+    }
+    "persist estimates" in {
+      val dir = Files.createTempDirectory("ags-cache")
+      val s   = new CountingStrategy(0.25)
+
+      await(new AgsResultCache(100, hour, Some(dir)).estimate(context(10.0, start), mt, s)(global))
+
+      val cache = new AgsResultCache(100, hour, Some(dir))
+      await(cache.estimate(context(10.0, start), mt, s)(global)).probability must_== 0.25
+      s.estimates.get must_== 1
+
+      cache.clear()
+      new AgsResultCache(100, hour, Some(dir)).size must_== 0
+    }
+  }
+}
@@ -100,6 +100,32 @@ class MascotTest {
 
   }
 
+  @Test def testFindBestAsterismProgress() {
+    val counts = scala.collection.mutable.ListBuffer.empty[Int]
+    val caller = Thread.currentThread
+    val (_, strehlList) = Mascot.findBestAsterism(allStarList, progress = (_: Strehl, count: Int, _: Int) => {
+      assertEquals(caller, Thread.currentThread)
+      counts += count
+      true
+    })
+
+    // every asterism is reported, in order, and the results don't depend on the order in which they were computed
+    assertEquals(strehlList.size, counts.size)
+    assertEquals(counts.toList, counts.toList.sorted)
+    assertEquals(strehlList.map(_.avgstrehl), Mascot.findBestAsterism(allStarList)._2.map(_.avgstrehl))
+  }
+
+  @Test def testFindBestAsterismCancel() {
+    var calls = 0
+    val (_, strehlList) = Mascot.findBestAsterism(allStarList, progress = (_: Strehl, _: Int, _: Int) => {
+      calls += 1
+      calls < 3
+    })
+
+    assertEquals(3, calls)
+    assertEquals(3, strehlList.size)
+  }
+
   @Test def testSelectStarsOnMag() {
     val slist = Mascot.selectStarsOnMag(allStarList)
     assertEquals(7, slist.size)
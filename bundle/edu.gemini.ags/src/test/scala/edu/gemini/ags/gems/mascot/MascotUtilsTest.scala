@@ -105,4 +105,18 @@ class MascotUtilsTest {
     ).t,
     ftcb(1.0, 2.0, 3.0, 4.0, 5), 0.0001)
   }
-}
\ No newline at end of file
+
+  /**
+   * The separation check in doesItFit agrees with the distance maps for triples.
+   */
+  @Test def testDoesItFit() {
+    val rnd = new scala.util.Random(1)
+    def star = MascotTest.star(rnd.nextDouble() * 160 - 80, rnd.nextDouble() * 160 - 80, 0, 0, 12, 0, 0, 0, 0, 0)
+
+    for (_ <- 1 to 200) {
+      val (n1, n2, n3) = (star, star, star)
+      val d = List(n1, n2, n3).map(s => dist(300, 150 + s.y, 150 + s.x)).reduce((a, b) => util.YUtils.max(a, b))
+      assertEquals(min(d) < 60 - edge_margin, doesItFit(n1, n2, Some(n3)))
+    }
+  }
+}
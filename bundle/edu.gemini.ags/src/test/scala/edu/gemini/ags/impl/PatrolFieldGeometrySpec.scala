@@ -0,0 +1,111 @@
+package edu.gemini.ags.impl
+
+import edu.gemini.skycalc.{Angle => SkycalcAngle, Offset => SkycalcOffset}
+import edu.gemini.spModel.ags.AgsStrategyKey._
+import edu.gemini.spModel.core._
+import edu.gemini.shared.util.immutable.{None => JNone, Some => JSome}
+import edu.gemini.spModel.gemini.flamingos2.Flamingos2
+import edu.gemini.spModel.gemini.gmos.{GmosNorthType, InstGmosNorth}
+import edu.gemini.spModel.gemini.niri.InstNIRI
+import edu.gemini.spModel.gemini.obscomp.SPSiteQuality
+import edu.gemini.spModel.guide.GuideStarValidation
+import edu.gemini.spModel.obs.context.ObsContext
+import edu.gemini.spModel.target.SPTarget
+import edu.gemini.spModel.target.env.TargetEnvironment
+import edu.gemini.spModel.target.obsComp.PwfsGuideProbe
+import edu.gemini.spModel.telescope.IssPort
+import org.specs2.mutable.Specification
+
+import scala.collection.JavaConverters._
+import scala.util.Random
+import scalaz._
+import Scalaz._
+
+object PatrolFieldGeometrySpec {
+  val base = new SPTarget(339.7, -32.5)
+
+  def offsets(pqs: (Int, Int)*): java.util.Set[SkycalcOffset] =
+    pqs.map { case (p, q) => new SkycalcOffset(SkycalcAngle.arcsecs(p), SkycalcAngle.arcsecs(q)) }.toSet.asJava
+
+  def context(inst: edu.gemini.spModel.obscomp.SPInstObsComp, site: Site, os: java.util.Set[SkycalcOffset] = null): ObsContext =
+    ObsContext.create(TargetEnvironment.create(base), inst, new JSome(site), SPSiteQuality.Conditions.NOMINAL, os, null, JNone.instance())
+
+  val gmos: ObsContext =
+    context(new InstGmosNorth <| { _.setIssPort(IssPort.SIDE_LOOKING) } <| { _.setFPUnit(GmosNorthType.FPUnitNorth.NS_5) }, Site.GN, offsets((-25, -19), (37, -1), (45, 40)))
+
+  val f2: ObsContext   = context(new Flamingos2, Site.GS)
+
+  val niri: ObsContext = context(new InstNIRI, Site.GN, offsets((0, 0), (60, 0), (0, 60)))
+
+  /** Random candidates within `radius` arcsecs of the base position. */
+  def candidates(n: Int, radius: Double, seed: Long): List[SiderealTarget] = {
+    val r = new Random(seed)
+    List.fill(n) {
+      val dRa  = (r.nextDouble * 2 - 1) * radius / 3600.0
+      val dDec = (r.nextDouble * 2 - 1) * radius / 3600.0
+      val dec  = -32.5 + dDec
+      val ra   = 339.7 + dRa / math.cos(math.toRadians(dec))
+      SiderealTarget.empty.copy(coordinates = Coordinates.fromDegrees(ra, dec).getOrElse(sys.error("invalid coordinates")))
+    }
+  }
+
+  val angles: List[Angle] = (0 until 360 by 15).toList.map(d => Angle.fromDegrees(d.toDouble))
+
+  def valid(params: SingleProbeStrategyParams, ctx: ObsContext, st: SiderealTarget, angle: Angle): Boolean = {
+    val c = ctx.withPositionAngle(angle)
+    params.validator(c).validate(new SPTarget(st), c) == GuideStarValidation.VALID
+  }
+}
+
+class PatrolFieldGeometrySpec extends Specification {
+  import PatrolFieldGeometrySpec._
+
+  private def agree(params: SingleProbeStrategyParams, ctx: ObsContext, radius: Double) = {
+    val cs = candidates(200, radius, 42L)
+    val g  = params.patrolFieldGeometry(ctx).getOrElse(sys.error("no geometry"))
+
+    val expected = for { st <- cs; a <- angles } yield valid(params, ctx, st, a)
+    val actual   = for { st <- cs; a <- angles } yield g.reachable(st, a)
+
+    // Make sure the sample isn't trivial.
+    expected.count(identity) must beGreaterThan(0)
+    expected.count(!_) must beGreaterThan(0)
+    actual must_== expected
+
+    g.anyReachable(cs, angles) must_== angles.map(a => cs.exists(valid(params, ctx, _, a)))
+  }
+
+  "PatrolFieldGeometry" should {
+    "agree with the GMOS OIWFS validator at all position angles" in {
+      agree(SingleProbeStrategyParams.GmosOiwfsParams(Site.GN), gmos, 400)
+    }
+    "agree with the Flamingos2 OIWFS validator at all position angles" in {
+      agree(SingleProbeStrategyParams.Flamingos2OiwfsParams, f2, 300)
+    }
+    "agree with the PWFS validator at all position angles" in {
+      agree(SingleProbeStrategyParams.PwfsParams(Site.GN, PwfsGuideProbe.pwfs2), niri, 600)
+    }
+    "only be provided by a strategy for its own guide probe" in {
+      val strategy = SingleProbeStrategy(GmosNorthOiwfsKey, SingleProbeStrategyParams.GmosOiwfsParams(Site.GN))
+      strategy.patrolFieldGeometry(gmos, PwfsGuideProbe.pwfs2) must beNone
+      strategy.patrolFieldGeometry(f2, strategy.params.guideProbe) must beNone
+      strategy.patrolFieldGeometry(gmos, strategy.params.guideProbe) must beSome
+    }
+    "compare its speed with validating a context per position angle" in {
+      skipped("Used only for performance checks")
+      val params = SingleProbeStrategyParams.GmosOiwfsParams(Site.GN)
+      val cs     = candidates(500, 400, 7L)
+      val all    = (0 until 360).toList.map(d => Angle.fromDegrees(d.toDouble))
+
+      val s0 = System.currentTimeMillis()
+      val expected = for { st <- cs; a <- all } yield valid(params, gmos, st, a)
+      val s1 = System.currentTimeMillis()
+      val g      = params.patrolFieldGeometry(gmos).getOrElse(sys.error("no geometry"))
+      val actual = for { st <- cs; a <- all } yield g.reachable(st, a)
+      val s2 = System.currentTimeMillis()
+
+      println(s"${cs.size} candidates, ${all.size} position angles: contexts ${s1 - s0}ms, geometry ${s2 - s1}ms")
+      actual must_== expected
+    }
+  }
+}
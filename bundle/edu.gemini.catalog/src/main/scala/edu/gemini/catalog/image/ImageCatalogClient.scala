@@ -51,6 +51,43 @@ case class ImageSearchQuery(catalog: ImageCatalog, coordinates: Coordinates, siz
 
   def isNearby(c: Coordinates): Boolean =
     coordinates.angularDistance(c) <= maxDistance
+
+  /**
+    * Tests if the image requested by this query would contain the coordinates considering the catalog overlap
+    */
+  def contains(c: Coordinates): Boolean = contains(c, catalog.adjacentOverlap)
+
+  /**
+    * Tests if the image requested by this query would contain the coordinates parameter
+    */
+  def contains(c: Coordinates, ε: Angle): Boolean = {
+    import ImageInFile.δ
+
+    // Convert everything to radians, calculations in Angle-space don't work due to range overflow
+    // Image size
+    val εφ = (size.halfDec.toRadians - ε.toRadians).max(0)
+    val ελ = (size.halfRa.toRadians  - ε.toRadians).max(0)
+
+    // target coordinates
+    val φ = c.dec.toDegrees.toRadians
+    val λ = c.ra.toAngle.toRadians
+
+    // image coordinates
+    val φ0 = coordinates.dec.toDegrees.toRadians
+    val λ0 = coordinates.ra.toAngle.toRadians
+
+    // In principle dec can be 90 leading to a 0 on θ
+    // In practice it is just very close to zero so it doesn't produce a zero
+    // division but as a result essentially the whole sky matches
+    // TODO: Perhaps the zenith case should be handled in particular
+    val θ = cos(φ0)
+
+    // Distance
+    val Δφ = δ(φ, φ0)
+    val Δλ = δ(λ, λ0)
+
+    Δφ <= εφ && Δλ*θ <= ελ
+  }
 }
 
 object ImageSearchQuery {
@@ -89,34 +126,7 @@ case class ImageInFile(query: ImageSearchQuery, file: Path, fileSize: Long) {
     /**
     * Tests if the image contains the coordinates parameter
     */
-  def contains(c: Coordinates, ε: Angle): Boolean = {
-    import ImageInFile.δ
-
-    // Convert everything to radians, calculations in Angle-space don't work due to range overflow
-    // Image size
-    val εφ = (query.size.halfDec.toRadians - ε.toRadians).max(0)
-    val ελ = (query.size.halfRa.toRadians  - ε.toRadians).max(0)
-
-    // target coordinates
-    val φ = c.dec.toDegrees.toRadians
-    val λ = c.ra.toAngle.toRadians
-
-    // image coordinates
-    val φ0 = query.coordinates.dec.toDegrees.toRadians
-    val λ0 = query.coordinates.ra.toAngle.toRadians
-
-    // In principle dec can be 90 leading to a 0 on θ
-    // In practice it is just very close to zero so it doesn't produce a zero
-    // division but as a result essentially the whole sky matches
-    // TODO: Perhaps the zenith case should be handled in particular
-    val θ = cos(φ0)
-
-    // Distance
-    val Δφ = δ(φ, φ0)
-    val Δλ = δ(λ, λ0)
-
-    Δφ <= εφ && Δλ*θ <= ελ
-  }
+  def contains(c: Coordinates, ε: Angle): Boolean = query.contains(c, ε)
 }
 
 object ImageInFile {
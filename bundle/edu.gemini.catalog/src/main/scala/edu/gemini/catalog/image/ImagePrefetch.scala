@@ -0,0 +1,107 @@
+package edu.gemini.catalog.image
+
+import java.net.URL
+import java.nio.file.Path
+import java.util.concurrent.ExecutorService
+import java.util.logging.Logger
+
+import scala.concurrent.duration._
+
+import scalaz._
+import Scalaz._
+import scalaz.concurrent.Task
+
+/**
+  * Downloads ahead of time the images needed for a set of targets, e.g. those
+  * of the observations planned for the night, so that they are already in the
+  * cache when the TPE asks for them.
+  *
+  * Queries already answered by an image file in the cache, being downloaded
+  * or falling inside the footprint of another image of the same batch are
+  * skipped. The rest are downloaded concurrently on the given pool, starting
+  * no more than one download every `minInterval` milliseconds to go easy on
+  * the image servers. The wait is scheduled rather than slept so that it
+  * doesn't hold a pool thread.
+  */
+object ImagePrefetch {
+  val Log: Logger = Logger.getLogger(this.getClass.getName)
+
+  /** Default minimum time between the start of two downloads */
+  val DefaultInterval: Long = 500
+
+  /**
+    * Outcome of a prefetch
+    */
+  case class Result(downloaded: List[ImageInFile], skipped: Int, failed: List[ImageSearchQuery])
+
+  /**
+    * Spaces out the start of the downloads
+    */
+  private class Throttle(minInterval: Long) {
+    private var next = 0L
+
+    def acquire: Task[Unit] =
+      Task.delay {
+        synchronized {
+          val now   = System.currentTimeMillis
+          val start = next.max(now)
+          next = start + minInterval
+          start - now
+        }
+      }.flatMap { wait =>
+        if (wait > 0) Task.schedule((), wait.millis) else Task.now(())
+      }
+  }
+
+  /**
+    * Queries that need a download, in order, excluding those whose coordinates
+    * are in an image in the cache whose file still exists, or in the image of
+    * an earlier query
+    */
+  def footprints(queries: List[ImageSearchQuery], cache: StoredImages, exists: ImageInFile => Boolean = _.file.toFile.exists): List[ImageSearchQuery] =
+    queries.foldLeft(List.empty[ImageSearchQuery]) { (needed, q) =>
+      if (cache.inside(q).exists(exists) || needed.exists(n => n.catalog === q.catalog && n.contains(q.coordinates))) needed
+      else q :: needed
+    }.reverse
+
+  /**
+    * Downloads the images for the queries into the cache directory, calling
+    * `onStart` as each download starts, and then either `onDownload` once the
+    * new image is in the cache or `onError` if it could not be downloaded
+    */
+  def prefetch(queries: List[ImageSearchQuery], cacheDir: Path, minInterval: Long = DefaultInterval, urls: ImageSearchQuery => NonEmptyList[URL] = _.url, onStart: ImageSearchQuery => Task[Unit] = _ => Task.now(()), onDownload: ImageInFile => Task[Unit] = _ => Task.now(()), onError: ImageSearchQuery => Task[Unit] = _ => Task.now(()))(pool: ExecutorService): Task[Result] = {
+    val throttle = new Throttle(minInterval)
+
+    def download(q: ImageSearchQuery): Task[ImageInFile] =
+      for {
+        _ <- throttle.acquire
+        _ <- onStart(q)
+        f <- TaskHelper.selectFirstToComplete(urls(q).map(ImageCatalogClient.downloadImageToFile(cacheDir, _, q)))(pool)
+        _ <- StoredImagesCache.add(f)
+        _ <- onDownload(f)
+      } yield f
+
+    // None if someone else is already downloading the image
+    def downloadIfNeeded(q: ImageSearchQuery): Task[Throwable \/ Option[ImageInFile]] =
+      KnownImagesSets.inProgress(q).ifM(
+        Task.now(none[ImageInFile]),
+        (KnownImagesSets.start(q) *> download(q)).onFinish {
+          case Some(_) => KnownImagesSets.failed(q) *> onError(q)
+          case None    => KnownImagesSets.completed(q).map(_ => ())
+        }.map(_.some)
+      ).attempt
+
+    for {
+      cache   <- StoredImagesCache.get
+      needed  =  footprints(queries, cache)
+      results <- Task.gatherUnordered(needed.map(q => Task.fork(downloadIfNeeded(q).map((q, _)))(pool)))
+    } yield {
+      val downloaded = results.collect { case (_, \/-(Some(f))) => f }
+      val failed     = results.collect { case (q, -\/(_))       => q }
+      val result     = Result(downloaded, queries.size - downloaded.size - failed.size, failed)
+      Log.info(s"Prefetched ${downloaded.size} images for ${queries.size} requests, ${result.skipped} skipped, ${failed.size} failed")
+      result
+    }
+  }
+
+}
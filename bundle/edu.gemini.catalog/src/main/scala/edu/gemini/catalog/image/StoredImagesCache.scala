@@ -5,23 +5,78 @@ import java.nio.file.attribute.BasicFileAttributes
 import java.nio.file.{FileVisitResult, Files, Path, SimpleFileVisitor}
 import java.time.Instant
 
-import edu.gemini.spModel.core.Angle
+import edu.gemini.spModel.core.{Angle, Coordinates}
 import jsky.util.Preferences
 import squants.information.Information
 
+import scala.collection.immutable.TreeMap
 import scalaz._
 import Scalaz._
 import scalaz.concurrent.Task
 
+/**
+  * Images by catalog and by the declination of their center. Lets lookups
+  * consider only the images in a narrow band of declination around the
+  * requested coordinates instead of all the images in the cache.
+  */
+protected case class StoredImagesIndex(byDec: Map[ImageCatalog, TreeMap[Double, List[ImageInFile]]], maxHalfDec: Map[ImageCatalog, Double]) {
+  import StoredImagesIndex._
+
+  def +(i: ImageInFile): StoredImagesIndex = {
+    val c = i.query.catalog
+    val d = decOf(i.query.coordinates)
+    val m = byDec.getOrElse(c, TreeMap.empty[Double, List[ImageInFile]])
+    StoredImagesIndex(
+      byDec.updated(c, m.updated(d, i :: m.getOrElse(d, Nil))),
+      maxHalfDec.updated(c, maxHalfDec.getOrElse(c, 0.0).max(i.query.size.halfDec.toDegrees)))
+  }
+
+  // The maximum size is not reduced, it is only used to bound the search
+  def -(i: ImageInFile): StoredImagesIndex = {
+    val c = i.query.catalog
+    val d = decOf(i.query.coordinates)
+    byDec.get(c).fold(this) { m =>
+      val rest = m.getOrElse(d, Nil).filterNot(_ === i)
+      copy(byDec = byDec.updated(c, if (rest.isEmpty) m - d else m.updated(d, rest)))
+    }
+  }
+
+  /**
+    * Images of the catalog whose center is within the given distance in
+    * declination, in degrees, of the coordinates
+    */
+  def near(catalog: ImageCatalog, c: Coordinates, distance: Double): List[ImageInFile] = {
+    val d = decOf(c)
+    byDec.get(catalog).fold(List.empty[ImageInFile]) { m =>
+      m.range(d - distance - Margin, d + distance + Margin).values.toList.flatten
+    }
+  }
+
+  /**
+    * Images of the catalog that may contain the coordinates
+    */
+  def mayContain(catalog: ImageCatalog, c: Coordinates): List[ImageInFile] =
+    near(catalog, c, maxHalfDec.getOrElse(catalog, 0.0))
+}
+
+object StoredImagesIndex {
+  val zero = StoredImagesIndex(Map.empty, Map.empty)
+
+  // Guards against rounding in the conversions between degrees and radians
+  private val Margin = 1e-6
+
+  private def decOf(c: Coordinates): Double = c.dec.toDegrees
+}
+
 /**
   * Keeps track of images in the file system and access time
   */
-protected case class StoredImages(entries: List[(Instant, ImageInFile)]) {
+protected case class StoredImages(entries: List[(Instant, ImageInFile)])(index: StoredImagesIndex) {
   def images: List[ImageInFile] = entries.map(_._2)
 
-  def +(i: ImageInFile): StoredImages             = copy((Instant.now, i) :: entries)
-  def +(i: Instant, e: ImageInFile): StoredImages = copy((i, e) :: entries)
-  def -(i: ImageInFile): StoredImages             = copy(entries.filterNot(_._2 === i))
+  def +(i: ImageInFile): StoredImages             = copy((Instant.now, i) :: entries)(index + i)
+  def +(i: Instant, e: ImageInFile): StoredImages = copy((i, e) :: entries)(index + e)
+  def -(i: ImageInFile): StoredImages             = copy(entries.filterNot(_._2 === i))(index - i)
 
   /**
     * Indicates the image was used, update the access time
@@ -29,7 +84,7 @@ protected case class StoredImages(entries: List[(Instant, ImageInFile)]) {
   def touch(i: ImageInFile): StoredImages = copy(entries.map {
     case (_, `i`) => (Instant.now, i)
     case x        => x
-  })
+  })(index)
 
   /**
     * Return images sorted by access time
@@ -46,8 +101,7 @@ protected case class StoredImages(entries: List[(Instant, ImageInFile)]) {
     */
   def closestImage(query: ImageSearchQuery): Option[ImageInFile] = {
     val distances = for {
-        (_, e)   <- entries
-        if e.query.catalog === query.catalog
+        e        <- index.near(query.catalog, query.coordinates, ImageSearchQuery.maxDistance.toDegrees)
         distance = query.coordinates.angularDistance(e.query.coordinates)
         if distance <= ImageSearchQuery.maxDistance
       } yield (distance, e)
@@ -60,8 +114,7 @@ protected case class StoredImages(entries: List[(Instant, ImageInFile)]) {
     */
   def inside(query: ImageSearchQuery): Option[ImageInFile] = {
     val distances = for {
-        (_, e) <- entries
-        if e.query.catalog === query.catalog
+        e <- index.mayContain(query.catalog, query.coordinates)
         if e.contains(query.coordinates)
       } yield (query.coordinates.angularDistance(e.query.coordinates), e)
 
@@ -71,7 +124,7 @@ protected case class StoredImages(entries: List[(Instant, ImageInFile)]) {
 }
 
 object StoredImages {
-  val zero = StoredImages(Nil)
+  val zero = StoredImages(Nil)(StoredImagesIndex.zero)
 
   /** @group Typeclass Instances */
   implicit val equals: Equal[StoredImages] = Equal.equalA[StoredImages]
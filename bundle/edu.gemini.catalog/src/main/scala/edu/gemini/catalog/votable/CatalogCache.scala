@@ -0,0 +1,399 @@
+package edu.gemini.catalog.votable
+
+import java.io._
+import java.nio.file.{Files, Path, Paths, StandardCopyOption}
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import java.util.logging.{Level, Logger}
+import java.util.zip.{GZIPInputStream, GZIPOutputStream}
+
+import edu.gemini.catalog.api.{ConeSearchCatalogQuery, RadiusConstraint}
+import edu.gemini.spModel.core._
+
+import scala.collection.JavaConverters._
+import scala.collection.mutable.ListBuffer
+
+import scalaz._
+import Scalaz._
+
+/**
+ * A persistent cache of catalog rows indexed by position on the sky.
+ *
+ * The sky is split into zones of constant declination which are in turn split in right ascension into cells of
+ * roughly the same size. The rows of a catalog are stored per cell in a compact binary file so that a cone search
+ * is answered locally from the union of the cells that cover it. Only if any of those cells is missing or expired
+ * is the catalog queried, for a cone that contains all of them, and the cells are then stored for later searches.
+ *
+ * Cells older than the time to live are ignored and the least recently used cells are deleted when the cache grows
+ * beyond its maximum size.
+ *
+ * @param dir      directory where the cells are stored, one subdirectory per catalog
+ * @param cellSize approximate size of the cells
+ * @param ttl      time to live of a cell in milliseconds
+ * @param maxBytes maximum size of all cells together
+ */
+final class CatalogCache(val dir: Path, cellSize: Angle, ttl: Long, maxBytes: Long) {
+  import CatalogCache._
+
+  // == Cells ==
+
+  private val zones: Int         = math.ceil(180.0 / cellSize.toDegrees).toInt
+  private val zoneHeight: Double = 180.0 / zones
+
+  private def zoneOf(dec: Double): Int =
+    math.max(0, math.min(zones - 1, ((dec + 90.0) / zoneHeight).toInt))
+
+  private def cellsInZone(zone: Int): Int = {
+    val center = -90.0 + (zone + 0.5) * zoneHeight
+    math.max(1, (360.0 * math.cos(math.toRadians(center)) / zoneHeight).toInt)
+  }
+
+  /** Gets the cell that contains the given position, in degrees. */
+  private[votable] def cellOf(ra: Double, dec: Double): Cell = {
+    val zone = zoneOf(dec)
+    val n    = cellsInZone(zone)
+    Cell(zone, math.min(n - 1, (ra * n / 360.0).toInt))
+  }
+
+  /** Gets the cells that intersect the cone with the given center and radius, in degrees. */
+  private[votable] def cover(ra: Double, dec: Double, radius: Double): List[Cell] = {
+    val decMin = dec - radius
+    val decMax = dec + radius
+    val pole   = decMin <= -90 || decMax >= 90
+
+    val sinDec0 = math.sin(math.toRadians(dec))
+    val cosDec0 = math.cos(math.toRadians(dec))
+    val cosR    = math.cos(math.toRadians(radius))
+
+    // Half width in right ascension of the cone at the given declination.
+    def halfWidthAt(d: Double): Double = {
+      val c = (cosR - math.sin(math.toRadians(d)) * sinDec0) / (math.cos(math.toRadians(d)) * cosDec0)
+      if (c <= -1) 180.0 else if (c >= 1) 0.0 else math.toDegrees(math.acos(c))
+    }
+
+    // Declination at which the cone is widest.
+    lazy val widest = math.toDegrees(math.asin(sinDec0 / cosR))
+
+    (zoneOf(decMin) to zoneOf(decMax)).toList.flatMap { zone =>
+      val n  = cellsInZone(zone)
+      val w  = 360.0 / n
+      val lo = math.max(decMin, -90.0 + zone * zoneHeight)
+      val hi = math.min(decMax, -90.0 + (zone + 1) * zoneHeight)
+      val halfWidth =
+        if (pole) 180.0
+        else if (lo <= widest && widest <= hi) halfWidthAt(widest)
+        else math.max(halfWidthAt(lo), halfWidthAt(hi))
+
+      if (2 * halfWidth + w >= 360) (0 until n).map(Cell(zone, _))
+      else (math.floor((ra - halfWidth) / w).toInt to math.floor((ra + halfWidth) / w).toInt).map(i => Cell(zone, Math.floorMod(i, n)))
+    }
+  }
+
+  /** Gets the center of a cell and the radius of a circle around it that contains the cell, in degrees. */
+  private def circle(c: Cell): (Double, Double, Double) = {
+    val n    = cellsInZone(c.zone)
+    val w    = 360.0 / n
+    val dec1 = -90.0 + c.zone * zoneHeight
+    val dec2 = dec1 + zoneHeight
+    if (n == 1) {
+      // a ring around the pole, use a circle centered on the pole
+      if (dec1 >= 0) (0.0, 90.0, 90.0 - dec1) else (0.0, -90.0, dec2 + 90.0)
+    } else {
+      val ra  = (c.index + 0.5) * w
+      val dec = (dec1 + dec2) / 2
+      val r   = List(dec1, dec2).map(d => distance(ra, dec, ra + w / 2, d)).max
+      (ra, dec, r)
+    }
+  }
+
+  /** Gets the radius of a cone around the given position that contains all the given cells, in degrees. */
+  private[votable] def coveringRadius(ra: Double, dec: Double, cells: List[Cell]): Double =
+    cells.map { c =>
+      val (cra, cdec, r) = circle(c)
+      distance(ra, dec, cra, cdec) + r
+    }.max
+
+  // == Files ==
+
+  // Files of all cells, in the order in which they have been used, with their sizes.
+  private val index  = new java.util.LinkedHashMap[Path, java.lang.Long](16, 0.75f, true)
+  private var bytes  = 0L
+  private var loaded = false
+
+  private val hits   = new AtomicLong()
+  private val misses = new AtomicLong()
+
+  private def file(key: String, c: Cell): Path =
+    dir.resolve(key.replaceAll("[^A-Za-z0-9_.-]", "_")).resolve(s"${c.zone}_${c.index}$Suffix")
+
+  // Registers the cells stored by a previous run, least recently modified first.
+  private def load(): Unit =
+    if (!loaded) {
+      loaded = true
+      if (Files.isDirectory(dir)) {
+        val walk  = Files.walk(dir)
+        val files = try {
+          walk.iterator.asScala.filter(_.getFileName.toString.endsWith(Suffix)).toList
+        } finally {
+          walk.close()
+        }
+        files.map(p => (p, p.toFile.lastModified)).sortBy(_._2).foreach { case (p, _) =>
+          val size = p.toFile.length
+          index.put(p, size)
+          bytes += size
+        }
+      }
+    }
+
+  private def used(p: Path): Unit =
+    index.synchronized {
+      load()
+      index.get(p)
+    }
+
+  private def added(p: Path, size: Long): Unit =
+    index.synchronized {
+      load()
+      Option(index.put(p, size)).foreach(bytes -= _)
+      bytes += size
+
+      // Evict the least recently used cells, but keep the one just added.
+      val it = index.entrySet.iterator
+      while (bytes > maxBytes && index.size > 1 && it.hasNext) {
+        val e = it.next()
+        if (e.getKey != p) {
+          it.remove()
+          bytes -= e.getValue
+          Files.deleteIfExists(e.getKey)
+        }
+      }
+    }
+
+  private def removed(p: Path): Unit =
+    index.synchronized {
+      Option(index.remove(p)).foreach(bytes -= _)
+      Files.deleteIfExists(p)
+    }
+
+  /** Reads the rows of a cell, if it is cached and not expired. */
+  private[votable] def read(key: String, c: Cell): Option[List[SiderealTarget]] = {
+    val p = file(key, c)
+    if (!Files.isRegularFile(p)) None
+    else try {
+      val in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(p))))
+      try {
+        if (in.readInt() != Magic) throw new IOException(s"Not a catalog cell: $p")
+        if (System.currentTimeMillis - in.readLong() > ttl) None
+        else {
+          val rows = List.fill(in.readInt())(readTarget(in))
+          used(p)
+          Some(rows)
+        }
+      } finally {
+        in.close()
+      }
+    } catch {
+      case ex: Exception =>
+        Log.log(Level.WARNING, s"Discarding unreadable catalog cell $p", ex)
+        removed(p)
+        None
+    }
+  }
+
+  /** Writes the rows of a cell, replacing any previous version. */
+  private[votable] def write(key: String, c: Cell, rows: List[SiderealTarget]): Unit = {
+    val p   = file(key, c)
+    Files.createDirectories(p.getParent)
+    val tmp = Files.createTempFile(p.getParent, ".cell", ".tmp")
+    try {
+      val out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(tmp))))
+      try {
+        out.writeInt(Magic)
+        out.writeLong(System.currentTimeMillis)
+        out.writeInt(rows.size)
+        rows.foreach(writeTarget(out, _))
+      } finally {
+        out.close()
+      }
+      Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+      added(p, Files.size(p))
+    } finally {
+      Files.deleteIfExists(tmp)
+    }
+  }
+
+  // == Queries ==
+
+  /**
+   * Answers a cone search from the cache if all the cells covering it are available. Otherwise queries the catalog
+   * with `remote` for a cone that contains all these cells and stores them, provided that `complete` confirms that
+   * the result contains all the rows of the catalog for that cone.
+   *
+   * @param key identifies the catalog and anything else that determines which rows it returns
+   */
+  def query(key: String, q: ConeSearchCatalogQuery)(remote: ConeSearchCatalogQuery => QueryResult, complete: QueryResult => Boolean): QueryResult = {
+    val ra     = q.base.ra.toAngle.toDegrees
+    val dec    = q.base.dec.toDegrees
+    val radius = q.radiusConstraint.maxLimit.toDegrees
+    val cells  = cover(ra, dec, radius)
+
+    cached(key, cells).map { rows =>
+      hits.incrementAndGet()
+      QueryResult(q, CatalogQueryResult(TargetsTable(rows), Nil))
+    }.getOrElse {
+      misses.incrementAndGet()
+      val r = coveringRadius(ra, dec, cells)
+      if (r > radius + MaxExtraCells * cellSize.toDegrees) {
+        // the cells are too large compared to the search, e.g. around the poles
+        remote(q)
+      } else {
+        val fetch  = RadiusConstraint.between(Angle.zero, Angle.fromDegrees(r) + FetchMargin)
+        val result = remote(q.copy(radiusConstraint = fetch))
+        if (complete(result)) store(key, cells, result.result.targets.rows)
+        result
+      }
+    }
+  }
+
+  // Reads the rows of all cells, unless any of them isn't cached.
+  private def cached(key: String, cells: List[Cell]): Option[List[SiderealTarget]] = {
+    val rows = ListBuffer.empty[SiderealTarget]
+    val it   = cells.iterator
+    var ok   = true
+    while (ok && it.hasNext) {
+      read(key, it.next()) match {
+        case Some(rs) => rows ++= rs
+        case None     => ok = false
+      }
+    }
+    ok.option(rows.toList)
+  }
+
+  private def store(key: String, cells: List[Cell], rows: List[SiderealTarget]): Unit =
+    try {
+      val byCell = rows.groupBy(t => cellOf(t.coordinates.ra.toAngle.toDegrees, t.coordinates.dec.toDegrees))
+      cells.foreach(c => write(key, c, byCell.getOrElse(c, Nil)))
+    } catch {
+      case ex: Exception =>
+        Log.log(Level.WARNING, s"Could not store catalog cells in $dir", ex)
+    }
+
+  /** Deletes all cached cells. */
+  def clear(): Unit =
+    index.synchronized {
+      load()
+      index.keySet.asScala.toList.foreach(removed)
+    }
+
+  def size: Int =
+    index.synchronized {
+      load()
+      index.size
+    }
+
+  def sizeBytes: Long =
+    index.synchronized {
+      load()
+      bytes
+    }
+
+  def hitCount: Long  = hits.get
+  def missCount: Long = misses.get
+
+  /** Gets a one line summary of the cache statistics, for logging. */
+  def statistics: String =
+    f"CatalogCache $dir: $size%d cells, ${sizeBytes / 1024}%d KB, $hitCount%d hits, $missCount%d misses"
+
+}
+
+object CatalogCache {
+  private val Log = Logger.getLogger(classOf[CatalogCache].getName)
+
+  /** A cell of the sky, identified by its zone of declination and its index in right ascension in that zone. */
+  private[votable] case class Cell(zone: Int, index: Int)
+
+  private val Suffix        = ".cell"
+  private val Magic         = 0x43454c31 // "CEL1"
+  private val MaxExtraCells = 4
+
+  // Some catalog servers get the position and radius of a search rounded to a few digits.
+  private val FetchMargin   = Angle.fromArcsecs(10)
+
+  val DefaultCellSize: Angle = Angle.fromArcmin(3)
+
+  /**
+   * The cache shared by the remote catalog backends. It is kept in the directory given by the
+   * `edu.gemini.catalog.cache.dir` property, by default `.gemini/catalogs` in the user's home directory, and is
+   * disabled if the property is empty. The time to live and the maximum size are set with the
+   * `edu.gemini.catalog.cache.ttlDays` and `edu.gemini.catalog.cache.maxMb` properties.
+   */
+  lazy val default: Option[CatalogCache] = {
+    val dir = Option(System.getProperty("edu.gemini.catalog.cache.dir"))
+                .getOrElse(Paths.get(System.getProperty("user.home"), ".gemini", "catalogs").toString)
+    val ttl = TimeUnit.DAYS.toMillis(java.lang.Long.getLong("edu.gemini.catalog.cache.ttlDays", 30L))
+    val max = java.lang.Long.getLong("edu.gemini.catalog.cache.maxMb", 512L) * 1024 * 1024
+    dir.nonEmpty.option(new CatalogCache(Paths.get(dir), DefaultCellSize, ttl, max))
+  }
+
+  /** Angular distance in degrees between two positions given in degrees. */
+  private[votable] def distance(ra1: Double, dec1: Double, ra2: Double, dec2: Double): Double = {
+    val sinDec = math.sin(math.toRadians(dec2 - dec1) / 2)
+    val sinRa  = math.sin(math.toRadians(ra2 - ra1) / 2)
+    val a      = sinDec * sinDec + math.cos(math.toRadians(dec1)) * math.cos(math.toRadians(dec2)) * sinRa * sinRa
+    math.toDegrees(2 * math.asin(math.min(1.0, math.sqrt(a))))
+  }
+
+  // == Binary format of the rows ==
+
+  private def writeOption[A](out: DataOutputStream, o: Option[A])(f: A => Unit): Unit = {
+    out.writeBoolean(o.isDefined)
+    o.foreach(f)
+  }
+
+  private def readOption[A](in: DataInputStream)(f: => A): Option[A] =
+    in.readBoolean().option(f)
+
+  private[votable] def writeTarget(out: DataOutputStream, t: SiderealTarget): Unit = {
+    if (t.spectralDistribution.isDefined || t.spatialProfile.isDefined)
+      throw new IOException(s"Cannot store the source profile of ${t.name}")
+
+    out.writeUTF(t.name)
+    out.writeDouble(t.coordinates.ra.toAngle.toDegrees)
+    out.writeDouble(t.coordinates.dec.toAngle.toDegrees)
+    writeOption(out, t.properMotion) { pm =>
+      out.writeDouble(pm.deltaRA.velocity.masPerYear)
+      out.writeDouble(pm.deltaDec.velocity.masPerYear)
+      out.writeDouble(pm.epoch.year)
+    }
+    writeOption(out, t.redshift)(z => out.writeDouble(z.z))
+    writeOption(out, t.parallax)(p => out.writeDouble(p.mas))
+    out.writeInt(t.magnitudes.size)
+    t.magnitudes.foreach { m =>
+      out.writeDouble(m.value)
+      out.writeUTF(m.band.name)
+      writeOption(out, m.error)(out.writeDouble)
+      out.writeUTF(m.system.name)
+    }
+  }
+
+  private[votable] def readTarget(in: DataInputStream): SiderealTarget = {
+    val name = in.readUTF()
+    val ra   = RightAscension.fromAngle(Angle.fromDegrees(in.readDouble()))
+    val dec  = Declination.fromAngle(Angle.fromDegrees(in.readDouble())).getOrElse(throw new IOException("Invalid declination"))
+    val pm   = readOption(in) {
+      val dra  = RightAscensionAngularVelocity(AngularVelocity(in.readDouble()))
+      val ddec = DeclinationAngularVelocity(AngularVelocity(in.readDouble()))
+      ProperMotion(dra, ddec, Epoch(in.readDouble()))
+    }
+    val z    = readOption(in)(Redshift(in.readDouble()))
+    val plx  = readOption(in)(in.readDouble()).flatMap(Parallax.fromMas)
+    val mags = List.fill(in.readInt()) {
+      val value  = in.readDouble()
+      val band   = MagnitudeBand.fromString(in.readUTF()).getOrElse(throw new IOException("Unknown magnitude band"))
+      val error  = readOption(in)(in.readDouble())
+      val system = MagnitudeSystem.fromString(in.readUTF()).getOrElse(throw new IOException("Unknown magnitude system"))
+      Magnitude(value, band, error, system)
+    }
+    SiderealTarget(name, Coordinates(ra, dec), pm, z, plx, mags, None, None)
+  }
+}
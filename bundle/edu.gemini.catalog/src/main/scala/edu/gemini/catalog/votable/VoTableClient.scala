@@ -138,12 +138,33 @@ trait CachedBackend extends VoTableBackend {
     case x => x
   }
 
+  // Persistent cache of catalog rows by position, used for cone searches if defined
+  protected def diskCache: Option[CatalogCache] = None
+
+  // Identifies the rows returned by the backend for a cone search in the disk cache
+  protected def diskCacheKey(q: ConeSearchCatalogQuery): String = q.catalog.id
+
+  // Whether a result contains all rows of the catalog in the searched area, and thus can be stored in the disk cache
+  protected def isComplete(r: QueryResult): Boolean = !r.result.containsError
+
+  // Answer cone searches from the disk cache if possible, it covers the widened query as the memory cache expects
+  private def diskCachedQuery(e: SearchKey): QueryResult =
+    (diskCache, widen(e.query)) match {
+      case (Some(dc), q: ConeSearchCatalogQuery) =>
+        dc.query(diskCacheKey(q), q)(r => fetch(SearchKey(r, e.url)), isComplete)
+      case _                                     =>
+        query(e)
+    }
+
   // Cache the query not the future so that failed queries are executed again
-  protected val cachedQuery = cache(query)
+  protected val cachedQuery = cache(diskCachedQuery)
 
   // Do a query to the appropriate backend
   protected def query(e: SearchKey): QueryResult
 
+  // Do a query to the appropriate backend without widening it
+  protected def fetch(e: SearchKey): QueryResult = query(e)
+
   // Cache the query not the future so that failed queries are executed again
   override protected [votable] def doQuery(query: CatalogQuery, url: URL)(ec: ExecutionContext): Future[QueryResult] = Future {
     Log.fine(s"Starting catalog lookup on ${Thread.currentThread}")
@@ -163,9 +184,14 @@ trait RemoteCallBackend { this: CachedBackend =>
   protected [votable] def queryParams(q: CatalogQuery): Array[(String, String)]
   protected [votable] def queryUrl(e: SearchKey): String
 
-  override protected def query(e: SearchKey): QueryResult = {
-    val widerQuery = widen(e.query)
-    val qs         = queryParams(widerQuery)
+  // Whether responses are validated against the VOTable schema, which needs the whole response in memory
+  protected def validateResponses: Boolean = true
+
+  override protected def query(e: SearchKey): QueryResult =
+    fetch(SearchKey(widen(e.query), e.url))
+
+  override protected def fetch(e: SearchKey): QueryResult = {
+    val qs         = queryParams(e.query)
                        .map { case (n, v) => s"$n=${URLEncoder.encode(v, "UTF-8")}"}
                        .mkString("&")
     val get        = new HttpGet(s"${queryUrl(e)}?$qs")
@@ -177,7 +203,7 @@ trait RemoteCallBackend { this: CachedBackend =>
     get.setConfig(reqConfig)
 
     def problemResult(p: CatalogProblem): QueryResult =
-      QueryResult(widerQuery, CatalogQueryResult(TargetsTable.Zero, List(p)))
+      QueryResult(e.query, CatalogQueryResult(TargetsTable.Zero, List(p)))
 
     def noEntity(response: HttpResponse): QueryResult = {
       val statusLine = response.getStatusLine
@@ -187,9 +213,9 @@ trait RemoteCallBackend { this: CachedBackend =>
     val response = client.execute(get)
     try {
       Option(response.getEntity).fold(noEntity(response)) { ent =>
-        VoTableParser.parse(e.query.catalog, ent.getContent) match {
+        VoTableStreamParser.parse(e.query.catalog, ent.getContent, validateResponses) match {
           case -\/(p) => problemResult(p)
-          case \/-(y) => QueryResult(widerQuery, CatalogQueryResult(y))
+          case \/-(y) => QueryResult(e.query, CatalogQueryResult(y))
         }
       }
     } finally {
@@ -201,6 +227,8 @@ trait RemoteCallBackend { this: CachedBackend =>
 case object ConeSearchBackend extends CachedBackend with RemoteCallBackend with GeminiClient {
   val instance = this
 
+  override protected def diskCache: Option[CatalogCache] = CatalogCache.default
+
   override val catalogUrls: NonEmptyList[URL] =
     NonEmptyList(
       new URL("http://gscatalog.gemini.edu"),
@@ -234,6 +262,19 @@ sealed trait GaiaBackend extends CachedBackend with RemoteCallBackend {
   val LgsFaintLimit: Double       =    18.9   // g GAIA faint limit
   val ProperMotionLimitMasYr: Int =  1000
 
+  override protected def diskCache: Option[CatalogCache] = CatalogCache.default
+
+  // Gaia responses are large, stream them without validation
+  override protected def validateResponses: Boolean = false
+
+  // The faint limit of the query depends on whether it is for LGS
+  override protected def diskCacheKey(q: ConeSearchCatalogQuery): String =
+    if (q.isLgs) s"${q.catalog.id}-lgs" else q.catalog.id
+
+  // Results are limited to MaxResultCount rows
+  override protected def isComplete(r: QueryResult): Boolean =
+    super.isComplete(r) && r.result.targets.rows.size < MaxResultCount
+
   // Override the cache `widen` to widen significantly less for Gaia because it
   // is so deep. Instead of 10', use 0.5' (which is roughly half the AO port size).
   override protected def widen(q: CatalogQuery): CatalogQuery =
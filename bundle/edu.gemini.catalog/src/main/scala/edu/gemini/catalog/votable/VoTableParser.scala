@@ -5,8 +5,11 @@ import edu.gemini.catalog.api.CatalogName
 import edu.gemini.spModel.core._
 
 import java.util.logging.Logger
+import javax.xml.transform.stream.StreamSource
+import javax.xml.validation.{Schema, SchemaFactory}
 
 import scala.collection.immutable
+import scala.collection.concurrent.TrieMap
 import scala.io.Source
 import scala.util.matching.Regex
 import scala.xml.XML
@@ -73,26 +76,42 @@ object VoTableParser extends VoTableParser {
       ValidationError(catalogName)
     }
 
-  private def versionedValidate(catalogName: CatalogName, xmlText: String, version: VersionToken): CatalogProblem \/ Unit =
-    \/.fromTryCatchNonFatal {
-      import javax.xml.transform.stream.StreamSource
-      import javax.xml.validation.SchemaFactory
+  // Compiled schemas are thread safe, unlike their validators.
+  private val schemas = TrieMap.empty[String, Schema]
 
+  private def schema(version: VersionToken): Schema =
+    schemas.getOrElseUpdate(version.format, {
       val xsd        = s"/votable-${version.format}.xsd"
       val schemaLang = "http://www.w3.org/2001/XMLSchema"
       val factory    = SchemaFactory.newInstance(schemaLang)
-      val schema     = factory.newSchema(new StreamSource(getClass.getResourceAsStream(xsd)))
-      val validator  = schema.newValidator()
+      factory.newSchema(new StreamSource(getClass.getResourceAsStream(xsd)))
+    })
 
-      validator.validate(new StreamSource(new ByteArrayInputStream(xmlText.getBytes(java.nio.charset.Charset.forName("UTF-8")))))
+  private[votable] def versionedValidate(catalogName: CatalogName, is: InputStream, version: VersionToken): CatalogProblem \/ Unit =
+    \/.fromTryCatchNonFatal {
+      schema(version).newValidator().validate(new StreamSource(is))
     }.leftMap(_ => ValidationError(catalogName))
 
+  /** Checks the version attribute of a VOTABLE element. */
+  private[votable] def version(catalogName: CatalogName, versionAttribute: Option[String]): CatalogProblem \/ VersionToken =
+    for {
+      t <- versionAttribute \/> {
+             LOG.warning(s"Couldn't find version token in $catalogName catalog output.")
+             ValidationError(catalogName)
+           }
+      v <- VersionToken.parse(t).toRightDisjunction {
+             LOG.warning(s"Couldn't parse version token '$t' in $catalogName catalog output.")
+             ValidationError(catalogName)
+           }
+      _ <- validateVersion(catalogName, v)
+    } yield v
+
   private def validate(catalogName: CatalogName, xmlText: String): CatalogProblem \/ Unit =
     for {
       h <- extractHeader(catalogName, xmlText)
       v <- parseVersion(catalogName, h)
       _ <- validateVersion(catalogName, v)
-      _ <- versionedValidate(catalogName, xmlText, v)
+      _ <- versionedValidate(catalogName, new ByteArrayInputStream(xmlText.getBytes(java.nio.charset.Charset.forName("UTF-8"))), v)
     } yield ()
 
   /**
@@ -0,0 +1,179 @@
+package edu.gemini.catalog.votable
+
+import java.io.{ByteArrayInputStream, InputStream}
+import java.util.logging.{Level, Logger}
+import javax.xml.stream.{XMLInputFactory, XMLStreamConstants, XMLStreamReader}
+
+import edu.gemini.catalog.api.CatalogName
+import edu.gemini.spModel.core._
+
+import scala.collection.mutable.ListBuffer
+
+import scalaz._
+import Scalaz._
+
+/**
+ * Parses VOTables with a StAX reader, converting each `TR` of a `TABLEDATA` element to a target as soon as it has
+ * been read. Neither the text of the document nor its DOM are kept in memory, and as no state is shared between
+ * calls several documents can be parsed concurrently.
+ *
+ * The version of the VOTable is always checked, but validation against the schema is optional as it requires
+ * reading the whole document before parsing it. SIMBAD responses are not fully VOTable compliant and are handed
+ * over to [[VoTableParser]].
+ */
+object VoTableStreamParser extends VoTableParser {
+  private val Log: Logger = Logger.getLogger(this.getClass.getName)
+
+  // Factories are not guaranteed to be thread safe, readers are created per document.
+  private val factory = new ThreadLocal[XMLInputFactory] {
+    override def initialValue: XMLInputFactory = {
+      val f = XMLInputFactory.newInstance
+      f.setProperty(XMLInputFactory.SUPPORT_DTD, false)
+      f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false)
+      f.setProperty(XMLInputFactory.IS_COALESCING, true)
+      f
+    }
+  }
+
+  /**
+   * Parses a VOTable keeping only the targets accepted by `keep`, e.g. those matching the magnitude constraints of
+   * a query. Rows that cannot be converted to a target are always kept as problems.
+   *
+   * @param validate whether to validate the document against the VOTable schema
+   */
+  def parse(catalog: CatalogName, is: InputStream, validate: Boolean, keep: SiderealTarget => Boolean = _ => true): VoTableParser.CatalogResult =
+    catalog match {
+      case CatalogName.SIMBAD =>
+        VoTableParser.parse(catalog, is).map(r => ParsedVoResource(r.tables.map(t => ParsedTable(t.rows.filter(_.forall(keep))))))
+
+      case _ if validate      =>
+        val bytes = readFully(is)
+        for {
+          r <- parseTables(catalog, new ByteArrayInputStream(bytes), keep)
+          v <- VoTableParser.version(catalog, r._1)
+          _ <- VoTableParser.versionedValidate(catalog, new ByteArrayInputStream(bytes), v)
+        } yield r._2
+
+      case _                  =>
+        parseTables(catalog, is, keep).map(_._2)
+    }
+
+  /**
+   * Parses a VOTable passing every row to `f` as soon as it has been read, without keeping any of them.
+   *
+   * @return the number of tables in the document
+   */
+  def foreach(catalog: CatalogName, is: InputStream)(f: CatalogProblem \/ SiderealTarget => Unit): CatalogProblem \/ Int =
+    (CatalogAdapter.forCatalog(catalog) \/> UnknownCatalog).flatMap { adapter =>
+      read(catalog, is) { r =>
+        for {
+          _ <- VoTableParser.version(catalog, votableVersion(r))
+          n <- \/.fromTryCatchNonFatal(readTables(adapter, r)(() => (), f)).leftMap(problem(catalog))
+        } yield n
+      }
+    }
+
+  // Parses without validation, returning the version attribute of the document along with its tables.
+  private def parseTables(catalog: CatalogName, is: InputStream, keep: SiderealTarget => Boolean): CatalogProblem \/ (Option[String], ParsedVoResource) =
+    (CatalogAdapter.forCatalog(catalog) \/> UnknownCatalog).flatMap { adapter =>
+      read(catalog, is) { r =>
+        val version = votableVersion(r)
+        val tables  = ListBuffer.empty[ParsedTable]
+        val rows    = ListBuffer.empty[CatalogProblem \/ SiderealTarget]
+
+        def endTable(): Unit = {
+          tables += ParsedTable(rows.toList)
+          rows.clear()
+        }
+
+        for {
+          _ <- VoTableParser.version(catalog, version)
+          _ <- \/.fromTryCatchNonFatal {
+                 readTables(adapter, r)(endTable, row => if (row.forall(keep)) rows += row)
+               }.leftMap(problem(catalog))
+        } yield (version, ParsedVoResource(tables.toList))
+      }
+    }
+
+  private def read[A](catalog: CatalogName, is: InputStream)(f: XMLStreamReader => CatalogProblem \/ A): CatalogProblem \/ A =
+    \/.fromTryCatchNonFatal(factory.get.createXMLStreamReader(is, "UTF-8")).leftMap(problem(catalog)).flatMap { r =>
+      try f(r) finally r.close()
+    }
+
+  private def problem(catalog: CatalogName)(t: Throwable): CatalogProblem = {
+    Log.log(Level.WARNING, s"Couldn't parse $catalog catalog output.", t)
+    ValidationError(catalog)
+  }
+
+  // Advances to the VOTABLE element and gets its version attribute.
+  private def votableVersion(r: XMLStreamReader): Option[String] = {
+    while (r.hasNext && !r.isStartElement) r.next()
+    (r.isStartElement && r.getLocalName == "VOTABLE").option(r.getAttributeValue(null, "version")).flatten
+  }
+
+  /**
+   * Reads the tables that follow, calling `endTable` at the end of each table and `row` for each of its rows.
+   * Rows whose number of cells doesn't match the number of fields are reported as if they had no cells at all.
+   */
+  private def readTables(adapter: CatalogAdapter, r: XMLStreamReader)(endTable: () => Unit, row: CatalogProblem \/ SiderealTarget => Unit): Int = {
+    var tables      = 0
+    var fields      = List.empty[FieldId]
+    val fieldBuffer = ListBuffer.empty[FieldId]
+    val cells       = ListBuffer.empty[String]
+
+    while (r.hasNext) {
+      r.next() match {
+        case XMLStreamConstants.START_ELEMENT =>
+          r.getLocalName match {
+            case "TABLE" =>
+              fieldBuffer.clear()
+              fields = Nil
+
+            case "FIELD" =>
+              val name = Option(r.getAttributeValue(null, "name"))
+              val id   = Option(r.getAttributeValue(null, "ID")).orElse(name)
+              val ucd  = Option(r.getAttributeValue(null, "ucd"))
+              ^^(id, ucd, name) { (i, u, _) =>
+                fieldBuffer += adapter.postProcessFieldDescriptor(FieldId(i, Ucd(u)))
+                fields = fieldBuffer.toList
+              }
+
+            case "TR"    =>
+              cells.clear()
+
+            case "TD"    =>
+              cells += r.getElementText
+
+            case _       =>
+          }
+
+        case XMLStreamConstants.END_ELEMENT   =>
+          r.getLocalName match {
+            case "TR"    =>
+              val items = if (cells.length == fields.length) fields.zip(cells).map { case (f, d) => TableRowItem(f, d) } else Nil
+              row(tableRow2Target(adapter, fields)(TableRow(items)))
+
+            case "TABLE" =>
+              tables += 1
+              endTable()
+
+            case _       =>
+          }
+
+        case _                                =>
+      }
+    }
+    tables
+  }
+
+  private def readFully(is: InputStream): Array[Byte] = {
+    val out = new java.io.ByteArrayOutputStream
+    val buf = new Array[Byte](64 * 1024)
+    var n   = is.read(buf)
+    while (n != -1) {
+      out.write(buf, 0, n)
+      n = is.read(buf)
+    }
+    out.toByteArray
+  }
+}
@@ -0,0 +1,119 @@
+package edu.gemini.catalog.image
+
+import java.net.{InetSocketAddress, URL}
+import java.nio.file.Files
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+
+import com.sun.net.httpserver.{HttpExchange, HttpHandler, HttpServer}
+import edu.gemini.spModel.core.{Angle, Coordinates, Declination, RightAscension}
+import org.scalatest.{BeforeAndAfterAll, BeforeAndAfterEach, FlatSpec, Matchers}
+
+import scalaz._
+import Scalaz._
+import scalaz.concurrent.Task
+
+class ImagePrefetchSpec extends FlatSpec with Matchers with BeforeAndAfterAll with BeforeAndAfterEach {
+
+  // Local stand-in for the image servers, it returns the same bytes for any request
+  private val requests = new AtomicInteger(0)
+  private val server   = HttpServer.create(new InetSocketAddress("localhost", 0), 0)
+  server.createContext("/", new HttpHandler {
+    override def handle(ex: HttpExchange): Unit = {
+      requests.incrementAndGet()
+      val body = "not really a fits file".getBytes("UTF-8")
+      ex.getResponseHeaders.set("Content-Type", "application/fits")
+      ex.sendResponseHeaders(200, body.length)
+      ex.getResponseBody.write(body)
+      ex.close()
+    }
+  })
+
+  private val pool     = Executors.newFixedThreadPool(4)
+  private val cacheDir = Files.createTempDirectory("imagePrefetch")
+
+  private def url(q: ImageSearchQuery): NonEmptyList[URL] =
+    NonEmptyList(new URL(s"http://localhost:${server.getAddress.getPort}/image?ra=${q.coordinates.ra.toAngle.toDegrees}"))
+
+  private def query(raDeg: Double, decArcmin: Double): ImageSearchQuery = {
+    val dec = Declination.fromAngle(Angle.fromArcmin(decArcmin)).getOrElse(Declination.zero)
+    ImageSearchQuery(DssGemini, Coordinates(RightAscension.fromAngle(Angle.fromDegrees(raDeg)), dec), DssGemini.imageSize, None)
+  }
+
+  // The third one is within the footprint of the first one
+  private val queries = List(query(10, 0), query(20, 0), query(10, 1))
+
+  override def beforeAll(): Unit = server.start()
+
+  override def afterAll(): Unit = {
+    server.stop(0)
+    pool.shutdown()
+    cacheDir.toFile.listFiles.foreach(_.delete())
+    cacheDir.toFile.delete()
+  }
+
+  override def beforeEach(): Unit = {
+    StoredImagesCache.clean.unsafePerformSync
+    requests.set(0)
+  }
+
+  "ImagePrefetch" should
+    "skip queries inside the footprint of another query" in {
+      ImagePrefetch.footprints(queries, StoredImages.zero) shouldBe queries.take(2)
+    }
+    it should "download the images into the cache" in {
+      val result = ImagePrefetch.prefetch(queries, cacheDir, 0, url)(pool).unsafePerformSync
+
+      requests.get shouldBe 2
+      result.downloaded.map(_.query).toSet shouldBe queries.take(2).toSet
+      result.skipped shouldBe 1
+      result.failed shouldBe empty
+      result.downloaded.foreach(_.file.toFile.exists shouldBe true)
+      queries.foreach(q => StoredImagesCache.find(q).unsafePerformSync shouldBe defined)
+    }
+    it should "not download images already in the cache" in {
+      ImagePrefetch.prefetch(queries, cacheDir, 0, url)(pool).unsafePerformSync
+      requests.set(0)
+
+      val result = ImagePrefetch.prefetch(queries, cacheDir, 0, url)(pool).unsafePerformSync
+      requests.get shouldBe 0
+      result.downloaded shouldBe empty
+      result.skipped shouldBe 3
+    }
+    it should "download again images whose file is gone from the cache" in {
+      val first = ImagePrefetch.prefetch(queries, cacheDir, 0, url)(pool).unsafePerformSync
+      first.downloaded.foreach(f => Files.delete(f.file))
+      requests.set(0)
+
+      val result = ImagePrefetch.prefetch(queries, cacheDir, 0, url)(pool).unsafePerformSync
+      requests.get shouldBe 2
+      result.downloaded.map(_.query).toSet shouldBe queries.take(2).toSet
+    }
+    it should "notify the start and end of each download" in {
+      val starts    = new AtomicInteger(0)
+      val completes = new AtomicInteger(0)
+      val errors    = new AtomicInteger(0)
+      val missing   = (q: ImageSearchQuery) => if (q == queries.head) NonEmptyList(new URL(s"http://localhost:${server.getAddress.getPort + 1}/image")) else url(q)
+
+      ImagePrefetch.prefetch(queries, cacheDir, 0, missing,
+        onStart    = _ => Task.delay(starts.incrementAndGet()).void,
+        onDownload = _ => Task.delay(completes.incrementAndGet()).void,
+        onError    = _ => Task.delay(errors.incrementAndGet()).void)(pool).unsafePerformSync
+
+      starts.get shouldBe 2
+      completes.get shouldBe 1
+      errors.get shouldBe 1
+    }
+    it should "report failed downloads" in {
+      val missing = (q: ImageSearchQuery) => NonEmptyList(new URL(s"http://localhost:${server.getAddress.getPort + 1}/image"))
+      val result  = ImagePrefetch.prefetch(queries.take(1), cacheDir, 0, missing)(pool).unsafePerformSync
+
+      result.failed shouldBe queries.take(1)
+      StoredImagesCache.find(queries.head).unsafePerformSync shouldBe None
+    }
+    it should "space out the downloads" in {
+      val start = System.currentTimeMillis
+      ImagePrefetch.prefetch(queries, cacheDir, 200, url)(pool).unsafePerformSync
+      (System.currentTimeMillis - start) should be >= 200L
+    }
+}
@@ -0,0 +1,135 @@
+package edu.gemini.catalog.votable
+
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, DataInputStream, DataOutputStream}
+import java.net.{InetSocketAddress, URL}
+import java.nio.file.{Files, Path}
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import com.sun.net.httpserver.{HttpExchange, HttpHandler, HttpServer}
+import edu.gemini.catalog.api._
+import edu.gemini.spModel.core._
+import org.specs2.mutable.Specification
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+import scala.concurrent.ExecutionContext.Implicits.global
+import scala.util.Random
+
+import scalaz.NonEmptyList
+
+class CatalogCacheSpec extends Specification {
+  sequential
+
+  val noMagnitudeConstraint = MagnitudeConstraints(SingleBand(MagnitudeBand.J), FaintnessConstraint(100), None)
+  val coordinates = Coordinates(RightAscension.fromAngle(Angle.fromDegrees(10)), Declination.fromAngle(Angle.fromDegrees(20)).getOrElse(Declination.zero))
+  val query = CatalogQuery.coneSearch(coordinates, RadiusConstraint.between(Angle.zero, Angle.fromDegrees(0.1)), noMagnitudeConstraint, CatalogName.UCAC4)
+
+  /** Fake VO server that answers every request with the same votable and counts the requests. */
+  class FakeVoServer(file: String) {
+    val requests = new AtomicInteger(0)
+    private val server = HttpServer.create(new InetSocketAddress("localhost", 0), 0)
+    server.createContext("/", new HttpHandler {
+      def handle(ex: HttpExchange): Unit = {
+        requests.incrementAndGet()
+        val in   = classOf[CatalogCacheSpec].getResourceAsStream(file)
+        val body = try Iterator.continually(in.read).takeWhile(_ != -1).map(_.toByte).toArray finally in.close()
+        ex.sendResponseHeaders(200, body.length)
+        ex.getResponseBody.write(body)
+        ex.close()
+      }
+    })
+    server.start()
+
+    val url = new URL(s"http://localhost:${server.getAddress.getPort}")
+    def stop(): Unit = server.stop(0)
+  }
+
+  case class LocalBackend(server: FakeVoServer, cache: CatalogCache) extends CachedBackend with RemoteCallBackend {
+    override val catalogUrls = NonEmptyList(server.url)
+    override protected def diskCache = Some(cache)
+    override protected[votable] def queryParams(q: CatalogQuery) = Array.empty[(String, String)]
+    override protected[votable] def queryUrl(e: SearchKey) = s"${e.url}/conesearch"
+  }
+
+  def withServer[A](f: (FakeVoServer, Path) => A): A = {
+    val server = new FakeVoServer("/votable-ucac4.xml")
+    val dir    = Files.createTempDirectory("catalogs")
+    try f(server, dir) finally {
+      server.stop()
+      new CatalogCache(dir, CatalogCache.DefaultCellSize, Long.MaxValue, Long.MaxValue).clear()
+    }
+  }
+
+  def search(backend: VoTableBackend, q: CatalogQuery = query): QueryResult =
+    Await.result(VoTableClient.catalog(q, Some(backend))(implicitly), 10.seconds)
+
+  def names(r: QueryResult): List[String] =
+    r.result.targets.rows.map(_.name).sorted
+
+  "The catalog cache" should {
+    "answer searches from disk after a restart" in withServer { (server, dir) =>
+      val r1 = search(LocalBackend(server, new CatalogCache(dir, CatalogCache.DefaultCellSize, Long.MaxValue, Long.MaxValue)))
+      val r2 = search(LocalBackend(server, new CatalogCache(dir, CatalogCache.DefaultCellSize, Long.MaxValue, Long.MaxValue)))
+
+      server.requests.get should beEqualTo(1)
+      r1.result.containsError should beFalse
+      names(r2) should beEqualTo(names(r1))
+    }
+    "answer smaller searches within the cached cells" in withServer { (server, dir) =>
+      val cache = new CatalogCache(dir, CatalogCache.DefaultCellSize, Long.MaxValue, Long.MaxValue)
+      val r1    = search(LocalBackend(server, cache))
+      val q2    = CatalogQuery.coneSearch(coordinates, RadiusConstraint.between(Angle.zero, Angle.fromDegrees(0.05)), noMagnitudeConstraint, CatalogName.UCAC4)
+      val r2    = search(LocalBackend(server, new CatalogCache(dir, CatalogCache.DefaultCellSize, Long.MaxValue, Long.MaxValue)), q2)
+
+      server.requests.get should beEqualTo(1)
+      names(r2) should beEqualTo(r1.result.targets.rows.filter(q2.filter).map(_.name).sorted)
+      names(r2).length should beLessThan(names(r1).length)
+    }
+    "query the catalog again once cells expire" in withServer { (server, dir) =>
+      search(LocalBackend(server, new CatalogCache(dir, CatalogCache.DefaultCellSize, 1, Long.MaxValue)))
+      TimeUnit.MILLISECONDS.sleep(10)
+      search(LocalBackend(server, new CatalogCache(dir, CatalogCache.DefaultCellSize, 1, Long.MaxValue)))
+
+      server.requests.get should beEqualTo(2)
+    }
+    "evict the least recently used cells" in withServer { (server, dir) =>
+      val cache = new CatalogCache(dir, CatalogCache.DefaultCellSize, Long.MaxValue, 1)
+      search(LocalBackend(server, cache))
+
+      cache.size should beEqualTo(1)
+    }
+    "cover all positions within a cone" in {
+      val cache = new CatalogCache(Files.createTempDirectory("catalogs"), CatalogCache.DefaultCellSize, Long.MaxValue, Long.MaxValue)
+      val rnd   = new Random(1)
+      (1 to 200).forall { _ =>
+        val ra     = rnd.nextDouble() * 360
+        val dec    = if (rnd.nextBoolean()) rnd.nextDouble() * 180 - 90 else 89.5 + rnd.nextDouble() * 0.5
+        val radius = rnd.nextDouble() * 0.5
+        val cells  = cache.cover(ra, dec, radius).toSet
+        val r      = cache.coveringRadius(ra, dec, cells.toList)
+
+        (1 to 50).forall { _ =>
+          // a random position within the cone, at distance d and bearing b from its center
+          val d    = math.toRadians(rnd.nextDouble() * radius)
+          val b    = rnd.nextDouble() * 2 * math.Pi
+          val dec0 = math.toRadians(dec)
+          val dec1 = math.asin(math.sin(dec0) * math.cos(d) + math.cos(dec0) * math.sin(d) * math.cos(b))
+          val dra  = math.atan2(math.sin(b) * math.sin(d) * math.cos(dec0), math.cos(d) - math.sin(dec0) * math.sin(dec1))
+          val ra1  = ((ra + math.toDegrees(dra)) % 360 + 360) % 360
+          cells.contains(cache.cellOf(ra1, math.toDegrees(dec1))) && CatalogCache.distance(ra, dec, ra1, math.toDegrees(dec1)) <= r
+        }
+      } should beTrue
+    }
+    "store the rows in binary form" in {
+      val rows = VoTableParser.parse(CatalogName.UCAC4, getClass.getResourceAsStream("/votable-ucac4.xml")).toOption.get.tables.flatMap(_.rows.flatMap(_.toList))
+      val out  = new ByteArrayOutputStream()
+      rows.foreach(CatalogCache.writeTarget(new DataOutputStream(out), _))
+      val in   = new DataInputStream(new ByteArrayInputStream(out.toByteArray))
+      val read = rows.map(_ => CatalogCache.readTarget(in))
+
+      read.map(t => (t.name, t.properMotion, t.magnitudes, t.parallax, t.redshift)) should beEqualTo(rows.map(t => (t.name, t.properMotion, t.magnitudes, t.parallax, t.redshift)))
+      read.zip(rows).forall { case (a, b) => Coordinates.difference(a.coordinates, b.coordinates).distance.toArcsecs < 1e-6 } should beTrue
+    }
+  }
+}
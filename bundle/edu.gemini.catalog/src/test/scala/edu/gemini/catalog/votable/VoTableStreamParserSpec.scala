@@ -0,0 +1,88 @@
+package edu.gemini.catalog.votable
+
+import java.io.{ByteArrayInputStream, InputStream}
+import java.nio.file.{Files, Paths}
+import java.util.concurrent.atomic.AtomicInteger
+
+import edu.gemini.catalog.api.CatalogName
+import edu.gemini.spModel.core._
+import org.specs2.mutable.Specification
+
+import scala.concurrent.{Await, Future}
+import scala.concurrent.duration._
+import scala.concurrent.ExecutionContext.Implicits.global
+
+import scalaz._
+import Scalaz._
+
+class VoTableStreamParserSpec extends Specification {
+
+  val files = List(
+    "votable-ucac4.xml"                 -> CatalogName.UCAC4,
+    "votable-ucac4-v1_4.xml"            -> CatalogName.UCAC4,
+    "fmag.xml"                          -> CatalogName.UCAC4,
+    "sloan.xml"                         -> CatalogName.UCAC4,
+    "votable-ppmxl.xml"                 -> CatalogName.PPMXL,
+    "votable-ppmxl-proper-motion.xml"   -> CatalogName.PPMXL,
+    "simbad-vega.xml"                   -> CatalogName.SIMBAD
+  )
+
+  def stream(f: String) = getClass.getResourceAsStream(s"/$f")
+
+  "The streaming VoTable parser" should {
+    "produce the same tables as the DOM parser" in {
+      files.forall { case (f, c) =>
+        VoTableStreamParser.parse(c, stream(f), validate = true) == VoTableParser.parse(c, stream(f))
+      } should beTrue
+    }
+    "validate against the schema only if requested" in {
+      VoTableStreamParser.parse(CatalogName.UCAC4, stream("votable-non-validating.xml"), validate = true) should beEqualTo(-\/(ValidationError(CatalogName.UCAC4)))
+      VoTableStreamParser.parse(CatalogName.UCAC4, stream("votable-non-validating.xml"), validate = false).map(_.tables.forall(!_.containsError)) should beEqualTo(\/.right(true))
+    }
+    "check the version even without validation" in {
+      val xml = """<?xml version="1.0"?><VOTABLE version="1.0"><RESOURCE><TABLE/></RESOURCE></VOTABLE>"""
+      VoTableStreamParser.parse(CatalogName.UCAC4, new java.io.ByteArrayInputStream(xml.getBytes("UTF-8")), validate = false) should beEqualTo(-\/(ValidationError(CatalogName.UCAC4)))
+    }
+    "reject unknown catalogs" in {
+      VoTableStreamParser.parse(CatalogName.GSC234, stream("votable-unknown.xml"), validate = false) should beEqualTo(-\/(UnknownCatalog))
+    }
+    "keep only the accepted targets" in {
+      val bright = (t: SiderealTarget) => t.magnitudeIn(MagnitudeBand.J).exists(_.value < 15)
+      val all    = VoTableParser.parse(CatalogName.UCAC4, stream("votable-ucac4.xml")).map(r => TargetsTable(r.tables.suml).rows)
+      val kept   = VoTableStreamParser.parse(CatalogName.UCAC4, stream("votable-ucac4.xml"), validate = false, bright).map(r => TargetsTable(r.tables.suml).rows)
+
+      kept should beEqualTo(all.map(_.filter(bright)))
+      kept.map(_.length).getOrElse(0) should beLessThan(all.map(_.length).getOrElse(0))
+    }
+    "pass each row to a callback" in {
+      val count = new AtomicInteger(0)
+      val all   = VoTableParser.parse(CatalogName.UCAC4, stream("votable-ucac4.xml")).map(_.tables.map(_.rows.length).sum)
+
+      VoTableStreamParser.foreach(CatalogName.UCAC4, stream("votable-ucac4.xml"))(_ => count.incrementAndGet()) should beEqualTo(\/.right(1))
+      \/.right(count.get) should beEqualTo(all)
+    }
+    "parse documents concurrently" in {
+      val expected = VoTableParser.parse(CatalogName.UCAC4, stream("votable-ucac4.xml"))
+      val parses   = Future.sequence((1 to 32).toList.map(_ => Future(VoTableStreamParser.parse(CatalogName.UCAC4, stream("votable-ucac4.xml"), validate = false))))
+      Await.result(parses, 30.seconds).forall(_ == expected) should beTrue
+    }
+    "compare its speed with the DOM parser" in {
+      skipped("Used only for performance checks")
+      val bytes  = files.map { case (f, c) => (Files.readAllBytes(Paths.get(getClass.getResource(s"/$f").toURI)), c) }
+      val rounds = 20
+
+      def time(parse: (CatalogName, InputStream) => Any): Long = {
+        val s = System.currentTimeMillis()
+        for (_ <- 1 to rounds; (b, c) <- bytes) parse(c, new ByteArrayInputStream(b))
+        System.currentTimeMillis() - s
+      }
+
+      val dom       = time((c, is) => VoTableParser.parse(c, is))
+      val validated = time((c, is) => VoTableStreamParser.parse(c, is, validate = true))
+      val streaming = time((c, is) => VoTableStreamParser.parse(c, is, validate = false))
+      println(s"$rounds rounds: DOM ${dom}ms, streaming validated ${validated}ms, streaming ${streaming}ms")
+
+      streaming must be_>=(0L)
+    }
+  }
+}
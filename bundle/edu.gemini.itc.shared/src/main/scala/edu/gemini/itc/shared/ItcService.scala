@@ -244,6 +244,15 @@ trait ItcService {
    * @param headless pass `true` for headless applications that do not require chart data.
    */
   def calculate(p: ItcParameters, headless: Boolean): Result
+
+  /**
+   * Perform the ITC calculations for a batch of parameters. Duplicate parameters are only calculated once and
+   * distinct parameters are calculated in parallel.
+   * @param ps parameters for the ITC calculations.
+   * @param headless pass `true` for headless applications that do not require chart data.
+   * @return the results in the order of the given parameters
+   */
+  def calculateAll(ps: List[ItcParameters], headless: Boolean): List[Result]
 }
 
 sealed trait ItcMessage
@@ -267,4 +276,10 @@ object ItcService {
       r[ItcService].calculate(inputs, false)
     }
 
+  /** Performs a batch of ITC calls on the given host with a single request. */
+  def calculateAll(peer: Peer, inputs: List[ItcParameters]): Future[List[Result]] =
+    TrpcClient(peer).withoutKeys future { r =>
+      r[ItcService].calculateAll(inputs, false)
+    }
+
 }
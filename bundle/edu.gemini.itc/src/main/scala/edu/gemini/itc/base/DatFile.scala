@@ -1,5 +1,10 @@
 package edu.gemini.itc.base
 
+import java.io.{ByteArrayOutputStream, File}
+import java.net.URL
+import java.nio.{ByteBuffer, ByteOrder}
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
 import java.util.Scanner
 import java.util.logging.{Level, Logger}
 import java.util.regex.Pattern
@@ -12,6 +17,10 @@ import scalaz._
  * Parsing of file is implemented using a scanner. Using parser/combinators turned out to be very slow. Even
  * using the pattern matching parsing in the scanner is extremely inefficient for huge dat files where we
  * know all the numbers are doubles. Using scan.next().toDouble is much more efficient than scan.nextDouble().
+ * Files that contain only numbers are pre-parsed at build time into a binary form which is loaded instead
+ * of the text, see readBinary. The binary files are only memory mapped when running from the file system, from
+ * the deployed bundle they are copied into the heap. Parsed files are kept in caches that are bounded by the estimated size of the
+ * cached data and evict the least recently used files.
  * The contract regarding missing files and parsing errors is that this results in unchecked exceptions which
  * bubble all the way up to the servlet. This isn't better or worse than what we had originally.
  */
@@ -84,46 +93,107 @@ object DatFile {
     scanArray(scan)
   }
 
-  // ===== Cached data file loaders
+  // ===== Binary data files
+
+  // A data file that contains only numbers is converted at build time into
+  // a binary file with the same name plus BinarySuffix.  The format is the
+  // magic number and the count of values as little-endian ints, followed by
+  // the values as little-endian doubles.  See the resource generator in build.sbt.
+  val BinarySuffix = ".bin"
+  val BinaryMagic  = 0x31544144 // "DAT1"
+
+  /** Reads the pre-parsed values for data file f, if there is a binary version of it. */
+  def readBinary(f: String): Option[Array[Double]] =
+    Option(getClass.getResource(f + BinarySuffix)).map { url =>
+      val buf = (if (url.getProtocol == "file") mapFile(new File(url.toURI)) else readFully(url)).order(ByteOrder.LITTLE_ENDIAN)
+      if (buf.getInt() != BinaryMagic) throw new IllegalArgumentException(s"Corrupt binary data file $f")
+      val values = new Array[Double](buf.getInt())
+      buf.asDoubleBuffer().get(values)
+      values
+    }
 
-  val arrays = cache { s =>
-    scanArray(s)
+  // Maps the file when running from the file system (tests, development).
+  private def mapFile(file: File): ByteBuffer = {
+    val ch = FileChannel.open(file.toPath, StandardOpenOption.READ)
+    try ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()) finally ch.close()
   }
 
-  val filters = cache { s =>
-    Filter(s.nextDouble(), scanArray(s))
+  // Otherwise the file is inside the bundle and has to be read.
+  private def readFully(url: URL): ByteBuffer = {
+    val in  = url.openStream()
+    try {
+      val out = new ByteArrayOutputStream()
+      val buf = new Array[Byte](64 * 1024)
+      var n   = in.read(buf)
+      while (n >= 0) {
+        out.write(buf, 0, n)
+        n = in.read(buf)
+      }
+      ByteBuffer.wrap(out.toByteArray)
+    } finally in.close()
   }
 
-  val gratings = cache { s =>
-    val l = mutable.MutableList[Grating]()
-    while (s.hasNext) {
-      val name           = s.next()
-      val blaze          = s.nextInt()
-      val resolvingPower = s.nextInt()
-      val resolution     = s.nextDouble()
-      val tmp     = s.next()
-      var dispersion: Double = 0
-      try {
-        dispersion = tmp.toDouble
-        l +=(Grating(name, resolvingPower, blaze, dispersion, null, resolution))
-      } catch {
-        case e : NumberFormatException => {
-          val dDis = arrays.apply(tmp)
-          l +=(Grating(name, resolvingPower, blaze, -999999, dDis, resolution))
-        }
-        case e : Exception => {
-          Log.log(Level.SEVERE, "The grating configuration is not correct. ", e)
-          throw e
+
+  // ===== Cache
+
+  // Bytes available for the arrays cache, other caches are sized relative to it.
+  private val MaxCacheBytes: Long =
+    Option(System.getProperty("edu.gemini.itc.datFileCacheMb")).flatMap(s => \/.fromTryCatchNonFatal(s.toLong).toOption).getOrElse(256L) * 1024 * 1024
+
+  private val SmallCacheBytes: Long = 4L * 1024 * 1024
+
+  /** A least recently used cache of parsed data files, bounded by the (estimated) size in bytes of the cached values. */
+  final class Cache[T](name: String, maxBytes: Long, weigh: T => Long, load: String => T)
+    extends WeightedLruCache[String, T](name, maxBytes, weigh) with (String => T) {
+
+    def apply(f: String): T = getOrLoad(f)(load(f))
+  }
+
+  // ===== Cached data file loaders
+
+  val arrays = cache[Data]("arrays", MaxCacheBytes, dataBytes)(
+    pairs,
+    s => scanArray(s))
+
+  val filters = cache[Filter]("filters", MaxCacheBytes / 4, f => 32 + dataBytes(f.data))(
+    ds => Filter(ds(0), pairs(ds.drop(1))),
+    s  => Filter(s.nextDouble(), scanArray(s)))
+
+  // Grating and instrument files contain names so they are never converted to binary form.
+  val gratings = textCache[immutable.Map[String, Grating]]("gratings", SmallCacheBytes, m => 64L * m.size)(
+    s => {
+      val l = mutable.MutableList[Grating]()
+      while (s.hasNext) {
+        val name           = s.next()
+        val blaze          = s.nextInt()
+        val resolvingPower = s.nextInt()
+        val resolution     = s.nextDouble()
+        val tmp     = s.next()
+        var dispersion: Double = 0
+        try {
+          dispersion = tmp.toDouble
+          l +=(Grating(name, resolvingPower, blaze, dispersion, null, resolution))
+        } catch {
+          case e : NumberFormatException => {
+            val dDis = arrays.apply(tmp)
+            l +=(Grating(name, resolvingPower, blaze, -999999, dDis, resolution))
+          }
+          case e : Exception => {
+            Log.log(Level.SEVERE, "The grating configuration is not correct. ", e)
+            throw e
+          }
         }
+
       }
+      l.map(l => l.name -> l).toMap
+    })
 
-    }
-    l.map(l => l.name -> l).toMap
-  }
+  val instruments = textCache[Instrument]("instruments", SmallCacheBytes, _ => 128L)(
+    s => Instrument(s.next, s.nextInt, s.nextInt, s.nextDouble, s.next, s.nextDouble, s.nextDouble, s.nextDouble))
 
-  val instruments = cache { s =>
-    Instrument(s.next, s.nextInt, s.nextInt, s.nextDouble, s.next, s.nextDouble, s.nextDouble, s.nextDouble)
-  }
+  /** One line summary of the data file caches, for logging. */
+  def cacheStatistics: String =
+    List(arrays, filters, gratings, instruments).map(_.statistics).mkString("; ")
 
   private def scanArray(s: Scanner): Array[Array[Double]] = {
     val l = mutable.MutableList[(Double, Double)]()
@@ -137,12 +207,35 @@ object DatFile {
     data
   }
 
-  /** Loads a file and parses it using the given scanner unless it is already available in the cache. */
-  // Note: this could be changed to use a weak hash map in case we run into memory issues
-  private def cache[T](load: Scanner => T): String => T = Memo.immutableHashMapMemo[String, T] { f =>
-    Log.fine(s"Caching file $f")
-    load(scanFile(f))
+  // Splits x0 y0 x1 y1 ... into the x and y arrays.
+  private def pairs(ds: Array[Double]): Data = {
+    if (ds.length % 2 != 0) throw new IllegalArgumentException(s"Odd number of values (${ds.length}) in data file")
+    val n    = ds.length / 2
+    val data = Array(new Array[Double](n), new Array[Double](n))
+    var i    = 0
+    while (i < n) {
+      data(0)(i) = ds(2 * i)
+      data(1)(i) = ds(2 * i + 1)
+      i += 1
+    }
+    data
   }
 
-}
+  private def dataBytes(d: Data): Long =
+    16L + d.map(a => 16L + 8L * a.length).sum
 
+  /** Loads a file, from its binary form if available, unless it is already cached. */
+  private def cache[T](name: String, maxBytes: Long, weigh: T => Long)(fromBinary: Array[Double] => T, fromText: Scanner => T): Cache[T] =
+    new Cache[T](name, maxBytes, weigh, { f =>
+      Log.fine(s"Caching file $f")
+      readBinary(f).fold(fromText(scanFile(f)))(fromBinary)
+    })
+
+  /** Loads a file that only exists as text, unless it is already cached. */
+  private def textCache[T](name: String, maxBytes: Long, weigh: T => Long)(fromText: Scanner => T): Cache[T] =
+    new Cache[T](name, maxBytes, weigh, { f =>
+      Log.fine(s"Caching file $f")
+      fromText(scanFile(f))
+    })
+
+}
@@ -0,0 +1,62 @@
+package edu.gemini.itc.base
+
+/**
+ * A thread safe least recently used cache bounded by the total weight of the cached values, for example their
+ * estimated size in bytes, and optionally by their number. Values heavier than `maxWeight` on their own are not
+ * cached at all. Loading is done outside of the lock, so two threads may occasionally load the same value.
+ */
+class WeightedLruCache[K, V](val name: String, val maxWeight: Long, weigh: V => Long, val maxCount: Int = Int.MaxValue) {
+  private val entries   = new java.util.LinkedHashMap[K, (V, Long)](16, 0.75f, true)
+  private var weight    = 0L
+  private var hits      = 0L
+  private var misses    = 0L
+  private var evictions = 0L
+
+  def get(key: K): Option[V] = synchronized {
+    val e = Option(entries.get(key)).map(_._1)
+    if (e.isDefined) hits += 1 else misses += 1
+    e
+  }
+
+  def put(key: K, v: V): Unit = {
+    val w = weigh(v)
+    synchronized {
+      if (w <= maxWeight) {
+        Option(entries.put(key, (v, w))).foreach(old => weight -= old._2)
+        weight += w
+
+        // Drop the least recently used values until within bounds.
+        val it = entries.values.iterator
+        while ((entries.size > maxCount) || (weight > maxWeight)) {
+          weight    -= it.next()._2
+          evictions += 1
+          it.remove()
+        }
+      }
+    }
+  }
+
+  /** Gets the cached value for the key, or loads and caches it. */
+  def getOrLoad(key: K)(load: => V): V =
+    get(key).getOrElse {
+      val v = load
+      put(key, v)
+      v
+    }
+
+  def clear(): Unit = synchronized {
+    entries.clear()
+    weight = 0L
+  }
+
+  def size: Int           = synchronized(entries.size)
+  def totalWeight: Long   = synchronized(weight)
+  def hitCount: Long      = synchronized(hits)
+  def missCount: Long     = synchronized(misses)
+  def evictionCount: Long = synchronized(evictions)
+
+  /** One line summary of the cache, for logging. */
+  def statistics: String = synchronized {
+    s"$name: ${entries.size} entries, weight $weight, $hits hits, $misses misses, $evictions evictions"
+  }
+}
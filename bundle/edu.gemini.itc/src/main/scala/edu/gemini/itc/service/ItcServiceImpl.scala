@@ -14,9 +14,52 @@ import edu.gemini.itc.niri.NiriRecipe
 import edu.gemini.itc.shared._
 import edu.gemini.spModel.core.{AuxFileSpectrum, UserDefinedSpectrum, SpectralDistribution, SPProgramID}
 
+import scala.concurrent.{Await, Future}
+import scala.concurrent.ExecutionContext.Implicits.global
+import scala.concurrent.duration.Duration
+
 import scalaz._
 import Scalaz._
 
+object ItcServiceImpl {
+
+  /** Maximum number of results kept in the result cache. */
+  val MaxCachedResults = 500
+
+  /**
+   * Maximum total weight of the results kept in the result cache, where the weight of a result is roughly the
+   * number of values in it. Results with charts hold thousands of points per series, so a few hundred of them
+   * could otherwise take up a lot of memory.
+   */
+  val MaxCachedWeight = 4000000L
+
+  /** Approximate weight of a result: one, plus the number of values in the series of its charts. */
+  def weight(r: ItcResult): Long = r match {
+    case s: ItcSpectroscopyResult =>
+      1L + s.chartGroups.foldLeft(0L) { (w, g) =>
+        g.charts.foldLeft(w) { (w, c) =>
+          c.series.foldLeft(w) { (w, d) => w + d.data.foldLeft(0L)(_ + _.length) }
+        }
+      }
+    case _                        =>
+      1L
+  }
+
+  /**
+   * Results of successful calculations, shared by all service instances. The key is the (updated) parameters
+   * together with the chart flag; since the parameters are immutable case classes all the way down, equal
+   * parameters always produce the same result.
+   */
+  private val Results = new WeightedLruCache[(ItcParameters, Boolean), ItcResult]("ItcResultCache", MaxCachedWeight, weight, MaxCachedResults)
+
+  /** Discards all cached results. */
+  def clearCache(): Unit = Results.clear()
+
+  /** One line summary of the result cache, for logging. */
+  def cacheStatistics: String = Results.statistics
+
+}
+
 /**
  * The ITC service implementation.
  *
@@ -26,6 +69,14 @@ import Scalaz._
 class ItcServiceImpl extends ItcService {
 
   import ItcService._
+  import ItcServiceImpl.Results
+
+  def calculateAll(ps: List[ItcParameters], excludeCharts: Boolean): List[Result] = {
+    val unique  = ps.distinct
+    val results = Await.result(Future.traverse(unique)(p => Future(calculate(p, excludeCharts))), Duration.Inf)
+    val lookup  = unique.zip(results).toMap
+    ps.map(lookup)
+  }
 
   def calculate(p: ItcParameters, excludeCharts: Boolean): Result = try {
 
@@ -52,12 +103,17 @@ class ItcServiceImpl extends ItcService {
       p.copy(source = updatedSrc(p.source))
     }
 
-    // execute ITC service call with updated parameters
-    updatedParams.observation.calculationMethod match {
-      case _: Imaging if !excludeCharts => ItcResult.forMessage("Charts not implemented for imaging.")
-      case _: Imaging       => calculateImaging(updatedParams)
-      case _: Spectroscopy  => calculateSpectroscopy(updatedParams, excludeCharts)
-    }
+    // execute ITC service call with updated parameters, unless the result is already known
+    val key = (updatedParams, excludeCharts)
+    Results.get(key).fold {
+      val result = updatedParams.observation.calculationMethod match {
+        case _: Imaging if !excludeCharts => ItcResult.forMessage("Charts not implemented for imaging.")
+        case _: Imaging       => calculateImaging(updatedParams)
+        case _: Spectroscopy  => calculateSpectroscopy(updatedParams, excludeCharts)
+      }
+      result.foreach(Results.put(key, _))
+      result
+    }(ItcResult.forResult)
 
   } catch {
     case e: Throwable => ItcResult.forException(e)
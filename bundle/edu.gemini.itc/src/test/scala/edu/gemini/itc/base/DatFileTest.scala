@@ -202,4 +202,32 @@ class DatFileTest {
     assert(data(1).size == 25)
   }
 
+  @Test
+  def binaryMatchesText(): Unit = {
+    val f    = "/acqcam/colfilt_B_G0152.dat"
+    val text = DatFile.fromUserSpectrum(scala.io.Source.fromInputStream(getClass.getResourceAsStream(f)).mkString)
+    val bin  = DatFile.readBinary(f)
+    assert(bin.isDefined)
+    assert(bin.get.length == 70)
+    assert(DatFile.arrays(f)(0).sameElements(text(0)))
+    assert(DatFile.arrays(f)(1).sameElements(text(1)))
+  }
+
+  @Test
+  def cacheEvictsLeastRecentlyUsed(): Unit = {
+    val cache = new DatFile.Cache[Array[Double]]("test", 100, a => 8L * a.length, _ => new Array[Double](5))
+    cache("a")
+    cache("b")
+    cache("a")
+    cache("c")  // evicts "b", the least recently used
+    assert(cache.size == 2)
+    assert(cache.totalWeight == 80)
+    assert(cache.evictionCount == 1)
+
+    cache("a")
+    assert(cache.hitCount == 2)
+    cache("b")
+    assert(cache.missCount == 4)
+  }
+
 }
@@ -0,0 +1,58 @@
+package edu.gemini.itc.base
+
+import org.junit.Test
+import org.junit.Assert._
+
+/**
+ * Tests for the weighted least recently used cache.
+ */
+class WeightedLruCacheTest {
+
+  @Test
+  def boundedByWeight(): Unit = {
+    val cache = new WeightedLruCache[String, Int]("test", 10, _.toLong)
+    cache.put("a", 4)
+    cache.put("b", 4)
+    cache.put("c", 4)
+    assertEquals(None, cache.get("a"))
+    assertEquals(8L, cache.totalWeight)
+
+    // Using b makes c the least recently used.
+    assertEquals(Some(4), cache.get("b"))
+    cache.put("d", 4)
+    assertEquals(None, cache.get("c"))
+    assertEquals(Some(4), cache.get("b"))
+    assertEquals(2L, cache.evictionCount)
+
+    // Too heavy to cache at all.
+    cache.put("e", 11)
+    assertEquals(None, cache.get("e"))
+    assertEquals(2, cache.size)
+  }
+
+  @Test
+  def boundedByCount(): Unit = {
+    val cache = new WeightedLruCache[Int, Int]("test", 100, _ => 1L, 3)
+    (1 to 5).foreach(i => cache.put(i, i))
+    assertEquals(3, cache.size)
+    assertEquals(List(None, None, Some(3), Some(4), Some(5)), (1 to 5).toList.map(cache.get))
+  }
+
+  @Test
+  def loadsMissingValues(): Unit = {
+    val cache = new WeightedLruCache[String, Int]("test", 100, _ => 1L)
+    var loads = 0
+    def load(): Int = { loads += 1; 42 }
+
+    assertEquals(42, cache.getOrLoad("a")(load()))
+    assertEquals(42, cache.getOrLoad("a")(load()))
+    assertEquals(1, loads)
+    assertEquals(1L, cache.hitCount)
+    assertEquals(1L, cache.missCount)
+
+    cache.clear()
+    assertEquals(0, cache.size)
+    assertEquals(0L, cache.totalWeight)
+  }
+
+}
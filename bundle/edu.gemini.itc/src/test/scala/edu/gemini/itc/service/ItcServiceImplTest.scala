@@ -0,0 +1,39 @@
+package edu.gemini.itc.service
+
+import edu.gemini.itc.baseline.BaselineAcqCam
+import edu.gemini.itc.shared.ItcParameters
+import org.junit.Test
+import org.junit.Assert._
+
+/**
+ * Tests caching results and the batch calculation of the ITC service.
+ */
+class ItcServiceImplTest {
+
+  private val params = BaselineAcqCam.Fixtures.take(3).map(f => ItcParameters(f.src, f.odp, f.ocp, f.tep, f.ins))
+
+  @Test
+  def batchMatchesSingleCalculations(): Unit = {
+    ItcServiceImpl.clearCache()
+    val itc     = new ItcServiceImpl
+    val batch   = params ++ params.reverse
+    val results = itc.calculateAll(batch, true)
+
+    assertEquals(batch.size, results.size)
+    assertTrue(results.forall(_.isRight))
+    batch.zip(results).foreach { case (p, r) =>
+      assertEquals(itc.calculate(p, true), r)
+    }
+  }
+
+  @Test
+  def resultsAreCached(): Unit = {
+    ItcServiceImpl.clearCache()
+    val itc = new ItcServiceImpl
+    val r0  = itc.calculate(params.head, true)
+    val r1  = new ItcServiceImpl().calculate(params.head, true)
+    assertTrue(r0.isRight)
+    assertSame(r0.toOption.get, r1.toOption.get)
+  }
+
+}
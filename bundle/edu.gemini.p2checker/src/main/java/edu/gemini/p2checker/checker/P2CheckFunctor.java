@@ -0,0 +1,107 @@
+package edu.gemini.p2checker.checker;
+
+import edu.gemini.ags.api.AgsMagnitude;
+import edu.gemini.p2checker.api.IP2Problems;
+import edu.gemini.pot.sp.ISPNode;
+import edu.gemini.pot.sp.ISPProgram;
+import edu.gemini.pot.sp.SPNodeKey;
+import edu.gemini.pot.spdb.DBAbstractQueryFunctor;
+import edu.gemini.pot.spdb.IDBDatabaseService;
+import edu.gemini.pot.spdb.IDBSplittableQueryFunctor;
+import edu.gemini.spModel.core.SPProgramID;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Headless phase 2 check of every program in the database.  The programs are
+ * checked in parallel, one partial functor per program, and the number of
+ * problems found in each one is collected along with the time spent in each
+ * rule.
+ *
+ * <pre>
+ *   final P2CheckFunctor f = P2CheckFunctor.checkAll(db, mt, user);
+ *   LOG.info(f.getTimings().summary());
+ * </pre>
+ */
+public final class P2CheckFunctor extends DBAbstractQueryFunctor implements IDBSplittableQueryFunctor<P2CheckFunctor> {
+    private static final Logger LOG = Logger.getLogger(P2CheckFunctor.class.getName());
+
+    /** Problems found in a program. */
+    public static final class Result implements java.io.Serializable {
+        public final SPNodeKey key;
+        public final SPProgramID id;
+        public final int errors;
+        public final int warnings;
+        public final long nanos;
+
+        Result(SPNodeKey key, SPProgramID id, int errors, int warnings, long nanos) {
+            this.key      = key;
+            this.id       = id;
+            this.errors   = errors;
+            this.warnings = warnings;
+            this.nanos    = nanos;
+        }
+
+        @Override public String toString() {
+            return String.format("%s: %d errors, %d warnings in %d ms", (id == null) ? key : id, errors, warnings, nanos / 1000000);
+        }
+    }
+
+    private final transient AgsMagnitude.MagnitudeTable _mt;
+    private final List<Result> _results = new ArrayList<>();
+    private final RuleTimings _timings = new RuleTimings();
+
+    public P2CheckFunctor(AgsMagnitude.MagnitudeTable mt) {
+        _mt = mt;
+    }
+
+    /**
+     * Checks all the programs in the database.
+     */
+    public static P2CheckFunctor checkAll(IDBDatabaseService db, AgsMagnitude.MagnitudeTable mt, Set<Principal> user) {
+        return db.getQueryRunner(user).queryPrograms(new P2CheckFunctor(mt));
+    }
+
+    @Override public Priority getPriority() { return Priority.low; }
+
+    public void execute(IDBDatabaseService db, ISPNode node, Set<Principal> principals) {
+        final ISPProgram prog = (ISPProgram) node;
+        final long start = System.nanoTime();
+        try {
+            // Programs are already checked in parallel, so each checks its
+            // own observations serially.
+            final IP2Problems problems = new P2Checker(_timings, false).check(prog, _mt);
+            final int errors   = (problems == null) ? 0 : problems.getErrorCount();
+            final int warnings = (problems == null) ? 0 : problems.getWarningCount();
+            _results.add(new Result(prog.getNodeKey(), prog.getProgramID(), errors, warnings, System.nanoTime() - start));
+        } catch (Exception ex) {
+            LOG.log(Level.WARNING, "Problem checking program " + prog.getProgramID(), ex);
+        }
+    }
+
+    /** Gets the number of problems found in each program, in program order. */
+    public List<Result> getResults() {
+        return Collections.unmodifiableList(_results);
+    }
+
+    /** Gets the time spent in each rule, over all programs. */
+    public RuleTimings getTimings() {
+        return _timings;
+    }
+
+    public P2CheckFunctor split() {
+        return new P2CheckFunctor(_mt);
+    }
+
+    public void merge(P2CheckFunctor partial) {
+        _results.addAll(partial._results);
+        _timings.add(partial._timings);
+        if (partial.getException() != null) setException(partial.getException());
+    }
+}
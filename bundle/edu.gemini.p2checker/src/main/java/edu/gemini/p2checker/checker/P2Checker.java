@@ -51,15 +51,46 @@ import edu.gemini.spModel.util.NodeValueCache$;
 
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
 
 /**
  * The main class used to apply rules on a particular program to get potential problems on it.
+ *
+ * <p>The problems of each observation are cached along with the checksum of the versions of its subtree and
+ * recalculated only once the observation has been modified, or the magnitude table has been replaced.  When
+ * checking a container, the observations that need checking are checked in parallel on a shared background
+ * pool.  Interactive callers can use {@link #checkAsync} to avoid waiting for the check.  The time spent in
+ * each rule is recorded in the checker's {@link RuleTimings}.
  */
 public final class P2Checker {
+
+    // Shared by all checkers so that together they cannot use more than one
+    // thread per core.
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+            Runtime.getRuntime().availableProcessors(),
+            pool -> {
+                final ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                t.setName("P2 Checker " + t.getPoolIndex());
+                t.setDaemon(true);
+                return t;
+            },
+            null, false);
+
+    // Runs the asynchronous checks of this checker one at a time, in order.
+    private ExecutorService _background = null;
+
     private SPNodeKey cacheKey = null;
+    private AgsMagnitude.MagnitudeTable cacheMt = null;
     private NodeValueCache<IP2Problems> cache = NodeValueCache$.MODULE$.empty();
 
     private final Map<SPComponentType, IRule> _ruleMap;
+    private final RuleTimings _timings;
+    private final boolean _parallel;
 
     private class RuleComposite implements IRule {
 
@@ -82,20 +113,41 @@ public final class P2Checker {
             final IP2Problems problems = new P2Problems();
 
             //first check the structure of the observation (missing instrument, missing obs.cond, etc)
-            final IP2Problems structureProblems = StructureRule.INSTANCE.check(node);
+            final IP2Problems structureProblems = _timed(StructureRule.INSTANCE, node);
             //stop checking the rest until the structure is fixed.
             if (structureProblems.getProblemCount() > 0) {
                 return structureProblems;
             }
 
             for (final IRule rule : _compositeRules) {
-                problems.append(rule.check(node));
+                problems.append(_timed(rule, node));
             }
             return problems;
         }
     }
 
+    private IP2Problems _timed(IRule rule, ObservationElements elements) {
+        final long start = System.nanoTime();
+        try {
+            return rule.check(elements);
+        } finally {
+            _timings.record(rule, System.nanoTime() - start);
+        }
+    }
+
     public P2Checker() {
+        this(new RuleTimings(), true);
+    }
+
+    /**
+     * @param timings  where to record the time spent in each rule
+     * @param parallel whether to check the observations of containers in
+     *                 parallel; bulk checks that already check several
+     *                 programs at once don't need to
+     */
+    public P2Checker(RuleTimings timings, boolean parallel) {
+        _timings  = timings;
+        _parallel = parallel;
         _ruleMap = new HashMap<>();
         final IRule gmosRule = new GmosRule();
         //add the GMOS Rule to all the instruments that supports it
@@ -125,40 +177,131 @@ public final class P2Checker {
         return _ruleMap.get(elements.getInstrumentNode().getType());
     }
 
+    public RuleTimings getTimings() {
+        return _timings;
+    }
+
     /**
      * Main entry point for checking a program node.
      *
      * @param node The node to be checked. Could be the whole program or only a subset of it
      * @return the problems found in the given node after applying the rules to it.
      */
-    public IP2Problems check(ISPNode node, AgsMagnitude.MagnitudeTable mt) {
-        //obs/seq component require us to find the observation first
-        if (node instanceof ISPSeqComponent || node instanceof ISPObsComponent) {
-            return check(node.getContextObservation(), mt);
+    public synchronized IP2Problems check(ISPNode node, AgsMagnitude.MagnitudeTable mt) {
+        if (node == null) return null;
+        _useCache(node, mt);
 
-            //observations can be checked immediately
-        } else if (node instanceof ISPObservation) {
-            final SPNodeKey progKey = node.getProgram().getNodeKey();
-            final NodeValueCache<IP2Problems> nvc = (progKey == cacheKey) ? cache : NodeValueCache$.MODULE$.empty();
-
-            final scala.Tuple2<IP2Problems, NodeValueCache<IP2Problems>> tup;
-            tup = nvc.get(node, new scala.runtime.AbstractFunction1<ISPNode, IP2Problems>() {
-                @Override public IP2Problems apply(ISPNode v1) {
-                    return _checkObservation((ISPObservation) v1, mt);
-                }
+        // Check the observations that aren't up to date all at once first.
+        final List<ISPObservation> obsList = new ArrayList<>();
+        _collectObservations(node, obsList);
+        if (obsList.size() > 1) _checkModified(obsList, mt);
+
+        return _check(node, mt);
+    }
+
+    /**
+     * Checks a program node in the background, without waiting for the
+     * result.  Checks requested this way are done one at a time in the order
+     * requested, so their futures complete in that order.
+     *
+     * @return a future that completes with the problems found in the node,
+     * or <code>null</code> if the node is <code>null</code>
+     */
+    public CompletableFuture<IP2Problems> checkAsync(ISPNode node, AgsMagnitude.MagnitudeTable mt) {
+        return CompletableFuture.supplyAsync(() -> check(node, mt), _getBackground());
+    }
+
+    private synchronized ExecutorService _getBackground() {
+        if (_background == null) {
+            _background = Executors.newSingleThreadExecutor(r -> {
+                final Thread t = new Thread(r, "P2 Checker background");
+                t.setDaemon(true);
+                return t;
             });
+        }
+        return _background;
+    }
 
-            cache    = tup._2();
+    // Drops the cached problems if they are for another program or
+    // magnitude table.
+    private void _useCache(ISPNode node, AgsMagnitude.MagnitudeTable mt) {
+        final ISPProgram prog   = node.getProgram();
+        final SPNodeKey progKey = (prog == null) ? null : prog.getNodeKey();
+        if (!Objects.equals(progKey, cacheKey) || (mt != cacheMt)) {
+            cache    = NodeValueCache$.MODULE$.empty();
             cacheKey = progKey;
+            cacheMt  = mt;
+        }
+    }
+
+    // Finds the observations that _check() will visit for the node.
+    private static void _collectObservations(ISPNode node, List<ISPObservation> obsList) {
+        if (node instanceof ISPObservation) {
+            obsList.add((ISPObservation) node);
+        } else if (node instanceof ISPGroup) {
+            obsList.addAll(((ISPGroup) node).getObservations());
+        } else if (node instanceof ISPProgram) {
+            final ISPProgram program = (ISPProgram) node;
+            obsList.addAll(program.getObservations());
+            for (final ISPGroup group : program.getGroups()) _collectObservations(group, obsList);
+            _collectObservations(program.getTemplateFolder(), obsList);
+        } else if (node instanceof ISPTemplateFolder) {
+            for (final ISPTemplateGroup tg : ((ISPTemplateFolder) node).getTemplateGroups()) _collectObservations(tg, obsList);
+        } else if (node instanceof ISPTemplateGroup) {
+            obsList.addAll(((ISPTemplateGroup) node).getAllObservations());
+        }
+    }
+
+    // Checks the observations that were modified since they were last
+    // checked, in parallel if enabled, and caches their problems.
+    private void _checkModified(List<ISPObservation> obsList, AgsMagnitude.MagnitudeTable mt) {
+        final List<ISPObservation> modified = new ArrayList<>();
+        final List<Long> checksums = new ArrayList<>();
+        for (final ISPObservation obs : obsList) {
+            final long cs = NodeValueCache$.MODULE$.checksum(obs);
+            if (cache.lookup(obs.getNodeKey(), cs).isEmpty()) {
+                modified.add(obs);
+                checksums.add(cs);
+            }
+        }
+
+        final List<IP2Problems> problems = new ArrayList<>(modified.size());
+        if (_parallel && modified.size() > 1) {
+            final List<ForkJoinTask<IP2Problems>> tasks = new ArrayList<>(modified.size());
+            for (final ISPObservation obs : modified) tasks.add(POOL.submit(() -> _checkObservation(obs, mt)));
+            for (final ForkJoinTask<IP2Problems> task : tasks) problems.add(task.join());
+        } else {
+            for (final ISPObservation obs : modified) problems.add(_checkObservation(obs, mt));
+        }
+
+        for (int i = 0; i < modified.size(); ++i) {
+            cache = cache.updated(modified.get(i).getNodeKey(), checksums.get(i), problems.get(i));
+        }
+    }
 
-            return tup._1();
+    private IP2Problems _check(ISPNode node, AgsMagnitude.MagnitudeTable mt) {
+        //obs/seq component require us to find the observation first
+        if (node instanceof ISPSeqComponent || node instanceof ISPObsComponent) {
+            final ISPObservation obs = node.getContextObservation();
+            return (obs == null) ? null : _check(obs, mt);
+
+            //observations can be checked immediately, unless already checked
+        } else if (node instanceof ISPObservation) {
+            final SPNodeKey obsKey = node.getNodeKey();
+            final long cs = NodeValueCache$.MODULE$.checksum(node);
+            final scala.Option<IP2Problems> cached = cache.lookup(obsKey, cs);
+            if (cached.isDefined()) return cached.get();
+
+            final IP2Problems problems = _checkObservation((ISPObservation) node, mt);
+            cache = cache.updated(obsKey, cs, problems);
+            return problems;
 
             //groups contain observations, check them individually
         } else if (node instanceof ISPGroup) {
             final ISPGroup group = (ISPGroup) node;
             final IP2Problems problems = new P2Problems();
             for (final ISPObservation obs : group.getObservations()) {
-                problems.append(check(obs, mt));
+                problems.append(_check(obs, mt));
             }
             return problems;
 
@@ -168,16 +311,16 @@ public final class P2Checker {
             final IP2Problems problems = new P2Problems();
 
             for (final ISPObservation obs : program.getObservations()) {
-                problems.append(check(obs, mt));
+                problems.append(_check(obs, mt));
             }
 
             for (final Object o : program.getGroups()) {
                 final ISPGroup group = (ISPGroup) o;
-                problems.append(check(group, mt));
+                problems.append(_check(group, mt));
             }
 
             // Also a template folder
-            problems.append(check(program.getTemplateFolder(), mt));
+            problems.append(_check(program.getTemplateFolder(), mt));
 
             return problems;
 
@@ -187,7 +330,7 @@ public final class P2Checker {
             final IP2Problems problems = new P2Problems();
             final ISPTemplateFolder tf = (ISPTemplateFolder) node;
             for (final ISPTemplateGroup tg : tf.getTemplateGroups())
-                problems.append(check(tg, mt));
+                problems.append(_check(tg, mt));
             return problems;
 
         } else if (node instanceof ISPTemplateGroup) {
@@ -196,7 +339,7 @@ public final class P2Checker {
             final IP2Problems problems = new P2Problems();
             final ISPTemplateGroup tg = (ISPTemplateGroup) node;
             for (final ISPObservation o : tg.getAllObservations())
-                problems.append(check(o, mt));
+                problems.append(_check(o, mt));
             return problems;
         }
 
@@ -206,13 +349,15 @@ public final class P2Checker {
     //Perform the checking of an observation, the small
     //unit that can be checked individually.
     private IP2Problems _checkObservation(ISPObservation node, AgsMagnitude.MagnitudeTable mt) {
+        final long start = System.nanoTime();
         final ObservationElements elements = new ObservationElements(node);
+        _timings.record("ObservationElements", 1, System.nanoTime() - start);
 
         final IRule rule = _getRule(elements);
         if (rule == null) {
             //we don't have rules for this stuff so just check the structure of
             //the observation
-            return StructureRule.INSTANCE.check(elements);
+            return _timed(StructureRule.INSTANCE, elements);
         }
 
         //add the rule
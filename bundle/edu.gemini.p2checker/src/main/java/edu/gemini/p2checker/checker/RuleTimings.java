@@ -0,0 +1,95 @@
+package edu.gemini.p2checker.checker;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accumulates the number of times each rule was applied and the total time
+ * spent in it.  Rules are identified by the simple name of their class.  May
+ * be updated concurrently.
+ */
+public final class RuleTimings implements Serializable {
+
+    /** Statistics of one rule. */
+    public static final class Timing {
+        public final String rule;
+        public final long calls;
+        public final long nanos;
+
+        Timing(String rule, long calls, long nanos) {
+            this.rule  = rule;
+            this.calls = calls;
+            this.nanos = nanos;
+        }
+
+        public double getTotalMillis() {
+            return nanos / 1000000.0;
+        }
+
+        public double getMeanMillis() {
+            return (calls == 0) ? 0.0 : nanos / 1000000.0 / calls;
+        }
+
+        @Override public String toString() {
+            return String.format("%s: %d calls, %.1f ms total, %.3f ms mean", rule, calls, getTotalMillis(), getMeanMillis());
+        }
+    }
+
+    private static final class Counter implements Serializable {
+        final LongAdder calls = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+    }
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    private static String name(Object rule) {
+        final Class<?> c = rule.getClass();
+        final String n   = c.getSimpleName().isEmpty() ? c.getName() : c.getSimpleName();
+        return n.endsWith("$") ? n.substring(0, n.length() - 1) : n; // Scala objects
+    }
+
+    /** Records a single application of a rule. */
+    public void record(Object rule, long nanos) {
+        record(name(rule), 1, nanos);
+    }
+
+    /** Records the time spent on a named step other than a rule. */
+    public void record(String step, long calls, long nanos) {
+        final Counter c = counters.computeIfAbsent(step, k -> new Counter());
+        c.calls.add(calls);
+        c.nanos.add(nanos);
+    }
+
+    /** Adds the statistics of another instance to this one. */
+    public void add(RuleTimings that) {
+        for (Timing t : that.getTimings()) record(t.rule, t.calls, t.nanos);
+    }
+
+    public void reset() {
+        counters.clear();
+    }
+
+    /** Gets the statistics of every rule, most expensive first. */
+    public List<Timing> getTimings() {
+        final List<Timing> res = new ArrayList<>();
+        new TreeMap<>(counters).forEach((rule, c) -> res.add(new Timing(rule, c.calls.sum(), c.nanos.sum())));
+        res.sort(Comparator.comparingLong((Timing t) -> t.nanos).reversed());
+        return res;
+    }
+
+    /** One line per rule, most expensive first, for logging. */
+    public String summary() {
+        final StringBuilder buf = new StringBuilder();
+        for (Timing t : getTimings()) {
+            if (buf.length() > 0) buf.append('\n');
+            buf.append(t);
+        }
+        return buf.toString();
+    }
+}
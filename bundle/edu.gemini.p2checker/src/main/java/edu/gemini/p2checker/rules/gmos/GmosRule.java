@@ -184,8 +184,10 @@ public final class GmosRule implements IRule {
         interface IScienceChecker {
             boolean check(Config config, ObservationElements elems);
 
-            // The error or warning message
-            String getMessage();
+            // The error or warning message for a step that failed the check.
+            // Checkers are shared by concurrent checks so it must not depend
+            // on anything remembered by check().
+            String getMessage(Config config, ObservationElements elems);
 
             // A unique id used to allow the user to ignore selected messages
             String getId();
@@ -207,7 +209,7 @@ public final class GmosRule implements IRule {
 
         public Problem check(Config config, int step, ObservationElements elems, Object state) {
             if (_checker.check(config, elems)) {
-                return new Problem(_type, _checker.getId(), _checker.getMessage(),
+                return new Problem(_type, _checker.getId(), _checker.getMessage(config, elems),
                         SequenceRule.getInstrumentOrSequenceNode(step, elems));
             }
             return null;
@@ -330,7 +332,7 @@ public final class GmosRule implements IRule {
 
                 }
 
-                public String getMessage() {
+                public String getMessage(Config config, ObservationElements elems) {
                     return MESSAGE;
                 }
 
@@ -368,7 +370,7 @@ public final class GmosRule implements IRule {
                     return readMode == AmpReadMode.FAST;
                 }
 
-                public String getMessage() {
+                public String getMessage(Config config, ObservationElements elems) {
                     return MESSAGE;
                 }
 
@@ -606,7 +608,7 @@ public final class GmosRule implements IRule {
                     return false;
                 }
 
-                public String getMessage() {
+                public String getMessage(Config config, ObservationElements elems) {
                     return MESSAGE;
                 }
 
@@ -637,7 +639,7 @@ public final class GmosRule implements IRule {
                             hasAOComp;
                 }
 
-                public String getMessage() {
+                public String getMessage(Config config, ObservationElements elems) {
                     return MESSAGE;
                 }
 
@@ -660,7 +662,7 @@ public final class GmosRule implements IRule {
                     return !getDisperser(config).isMirror() && getFPU(config, elems).isImaging();
                 }
 
-                public String getMessage() {
+                public String getMessage(Config config, ObservationElements elems) {
                     return MESSAGE;
                 }
 
@@ -683,7 +685,7 @@ public final class GmosRule implements IRule {
                     return disperser == DisperserNorth.B600_G5303;
                 }
 
-                public String getMessage() {
+                public String getMessage(Config config, ObservationElements elems) {
                     return MESSAGE;
                 }
 
@@ -706,7 +708,7 @@ public final class GmosRule implements IRule {
                     return disperser != null && isSpecFpuSelected(config, elems) && disperser.isMirror();
                 }
 
-                public String getMessage() {
+                public String getMessage(Config config, ObservationElements elems) {
                     return MESSAGE;
                 }
 
@@ -735,7 +737,7 @@ public final class GmosRule implements IRule {
                     return useNs == UseNS.TRUE && disperser.isMirror() && !isSpecFpuSelected(config, elems);
                 }
 
-                public String getMessage() {
+                public String getMessage(Config config, ObservationElements elems) {
                     return MESSAGE;
                 }
 
@@ -788,7 +790,7 @@ public final class GmosRule implements IRule {
                             fpu == FPUnitSouth.IFU_2;
                 }
 
-                public String getMessage() {
+                public String getMessage(Config config, ObservationElements elems) {
                     return MESSAGE;
                 }
 
@@ -816,7 +818,7 @@ public final class GmosRule implements IRule {
                             fpu == FPUnitSouth.IFU_1;
                 }
 
-                public String getMessage() {
+                public String getMessage(Config config, ObservationElements elems) {
                     return MESSAGE;
                 }
 
@@ -841,7 +843,7 @@ public final class GmosRule implements IRule {
                     return wavelength != null && (wavelength < 450 || wavelength > 900);
                 }
 
-                public String getMessage() {
+                public String getMessage(Config config, ObservationElements elems) {
                     return MESSAGE;
                 }
 
@@ -900,7 +902,7 @@ public final class GmosRule implements IRule {
             return (centralWavelength != null && centralWavelength > limitWavelength);
         }
 
-        public String getMessage() {
+        public String getMessage(Config config, ObservationElements elems) {
             return MESSAGE;
         }
 
@@ -933,20 +935,13 @@ public final class GmosRule implements IRule {
                 private static final String MESSAGE_NORTH = "For Nod and Shuffle, either a Nod and Shuffle slit " +
                         "or a Custom mask must be selected";
 
-                private String _message = MESSAGE_NORTH;
-
                 public boolean check(Config config, ObservationElements elems) {
-                    if (elems.getInstrument() instanceof InstGmosSouth) {
-                        _message = MESSAGE_SOUTH;
-                    } else {
-                        _message = MESSAGE_NORTH;
-                    }
                     final FPUnit fpu = getFPU(config, elems);
                     return !(fpu.isNS() || fpu == FPUnitNorth.CUSTOM_MASK || fpu == FPUnitSouth.CUSTOM_MASK);
                 }
 
-                public String getMessage() {
-                    return _message;
+                public String getMessage(Config config, ObservationElements elems) {
+                    return (elems.getInstrument() instanceof InstGmosSouth) ? MESSAGE_SOUTH : MESSAGE_NORTH;
                 }
 
                 public String getId() {
@@ -992,7 +987,7 @@ public final class GmosRule implements IRule {
                     return false;
                 }
 
-                public String getMessage() {
+                public String getMessage(Config config, ObservationElements elems) {
                     return MESSAGE;
                 }
 
@@ -1031,7 +1026,7 @@ public final class GmosRule implements IRule {
                     return shuffle_distance == 0;
                 }
 
-                public String getMessage() {
+                public String getMessage(Config config, ObservationElements elems) {
                     return MESSAGE;
                 }
 
@@ -1055,7 +1050,7 @@ public final class GmosRule implements IRule {
                     return inst != null && inst.getNsNumCycles() == 0;
                 }
 
-                public String getMessage() {
+                public String getMessage(Config config, ObservationElements elems) {
                     return MESSAGE;
                 }
 
@@ -1094,7 +1089,7 @@ public final class GmosRule implements IRule {
                     return false;
                 }
 
-                public String getMessage() {
+                public String getMessage(Config config, ObservationElements elems) {
                     return MESSAGE;
                 }
 
@@ -1161,7 +1156,7 @@ public final class GmosRule implements IRule {
                     return binningY != null && (shuffle_distance % binningY.getValue() != 0);
                 }
 
-                public String getMessage() {
+                public String getMessage(Config config, ObservationElements elems) {
                     return MESSAGE;
                 }
 
@@ -152,20 +152,20 @@ public class MichelleRule implements IRule {
 
 
     private static class ObsModeRule implements IConfigRule {
-        IConfigMatcher _validator;
-        IChecker _delegate;
-        Problem.Type _type;
+        private final IConfigMatcher _validator;
+        private final IChecker _delegate;
+        private final Problem.Type _type;
 
         /**
          * An IChecker performs a check on a given step (similar as
          * the IConfigRule, but returns true if the given configuration
          * has a problem. The ObsModeRule will issue an Problem.Type with the message gotten from
-         * getMessage()
+         * getMessage(config, elems)
          */
         interface IChecker {
             boolean check(Config config, int steps, ObservationElements elems);
 
-            String getMessage();
+            String getMessage(Config config, ObservationElements elems);
         }
 
         public ObsModeRule(IChecker rule, IConfigMatcher validator) {
@@ -181,7 +181,7 @@ public class MichelleRule implements IRule {
 
         public Problem check(Config config, int step, ObservationElements elems, Object state) {
             if (_delegate.check(config, step, elems)) {
-                return new Problem(_type, PREFIX+"ObsModeRule", _delegate.getMessage(),
+                return new Problem(_type, PREFIX+"ObsModeRule", _delegate.getMessage(config, elems),
                         SequenceRule.getInstrumentOrSequenceNode(step, elems));
             }
             return null;
@@ -206,7 +206,7 @@ public class MichelleRule implements IRule {
                     return mask != MichelleParams.Mask.MASK_IMAGING;
                 }
 
-                public String getMessage() {
+                public String getMessage(Config config, ObservationElements elems) {
                     return MESSAGE;
                 }
             },
@@ -227,7 +227,7 @@ public class MichelleRule implements IRule {
 //                    return disperser != MichelleParams.Disperser.MIRROR;
 //                }
 //
-//                public String getMessage() {
+//                public String getMessage(Config config, ObservationElements elems) {
 //                    return MESSAGE;
 //                }
 //            },
@@ -247,7 +247,7 @@ public class MichelleRule implements IRule {
                     return filter == MichelleParams.Filter.NONE;
                 }
 
-                public String getMessage() {
+                public String getMessage(Config config, ObservationElements elems) {
                     return MESSAGE;
                 }
             },
@@ -267,7 +267,7 @@ public class MichelleRule implements IRule {
                     return posAngle != null && (posAngle < 0 || posAngle > 180);
                 }
 
-                public String getMessage() {
+                public String getMessage(Config config, ObservationElements elems) {
                     return MESSAGE;
                 }
             },
@@ -292,16 +292,15 @@ public class MichelleRule implements IRule {
         private static final String MESSAGE_N = "MICHELLE lowN spectroscopy central wavelength must be 9.5 microns";
         private static final String MESSAGE_Q = "MICHELLE lowQ spectroscopy central wavelength must be 19.8 microns";
 
-        private String _message = MESSAGE_N;
-
         private static DisperserImagingChecker _instance = new DisperserImagingChecker();
 
         public static DisperserImagingChecker getInstance() {
             return _instance;
         }
 
-        public String getMessage() {
-            return _message;
+        public String getMessage(Config config, ObservationElements elems) {
+            final Object disperser = SequenceRule.getInstrumentItem(config, InstMichelle.DISPERSER_PROP);
+            return (disperser == MichelleParams.Disperser.LOW_RES_20) ? MESSAGE_Q : MESSAGE_N;
         }
 
         public boolean check(Config config, int steps, ObservationElements elems) {
@@ -311,10 +310,7 @@ public class MichelleRule implements IRule {
 
             switch (disperser) {
                 case LOW_RES_10:
-                    _message = MESSAGE_N;
-                    break;
                 case LOW_RES_20:
-                    _message = MESSAGE_Q;
                     break;
                 default:
                     return false; //not a problem, disperser is set to something else
@@ -357,7 +353,7 @@ public class MichelleRule implements IRule {
                     return mask == MichelleParams.Mask.MASK_IMAGING;
                 }
 
-                public String getMessage() {
+                public String getMessage(Config config, ObservationElements elems) {
                     return MESSAGE;
                 }
             },
@@ -396,7 +392,7 @@ public class MichelleRule implements IRule {
                     }
                 }
 
-                public String getMessage() {
+                public String getMessage(Config config, ObservationElements elems) {
                     return MESSAGE;
                 }
             },
@@ -463,10 +459,9 @@ public class MichelleRule implements IRule {
             return _instance;
         }
 
-        public String _message = MESSAGE;
-
-        public String getMessage() {
-            return _message;
+        public String getMessage(Config config, ObservationElements elems) {
+            final Object filter = SequenceRule.getInstrumentItem(config, InstMichelle.FILTER_PROP);
+            return (filter == MichelleParams.Filter.NONE) ? NO_FILTER_MESSAGE : MESSAGE;
         }
 
         public boolean check(Config config, int steps, ObservationElements elems) {
@@ -492,12 +487,9 @@ public class MichelleRule implements IRule {
             if (filter == null) return false;
 
             if (filter == MichelleParams.Filter.NONE) {
-                _message = NO_FILTER_MESSAGE;
                 return true;
             }
 
-            _message = MESSAGE;
-
             Limits limits = WAVELENGTH_LIMITS_TABLE.get(filter);
 
             Double wavelength =
@@ -532,7 +524,7 @@ public class MichelleRule implements IRule {
                     return mask == MichelleParams.Mask.MASK_1;
                 }
 
-                public String getMessage() {
+                public String getMessage(Config config, ObservationElements elems) {
                     return MESSAGE;
                 }
             },
@@ -338,7 +338,7 @@ public final class NifsRule implements IRule {
     }
 
     private static class GratingMatcher implements IConfigMatcher {
-        private NIFSParams.Disperser[] _dispersers;
+        private final NIFSParams.Disperser[] _dispersers;
 
         GratingMatcher(NIFSParams.Disperser[] dispersers) {
             _dispersers  = dispersers;
@@ -373,9 +373,9 @@ public final class NifsRule implements IRule {
 
 
     private static class GratingFilterRule implements IConfigRule {
-        private NIFSParams.Filter[] _filters;
-        private IConfigMatcher _matcher;
-        private Double _wavelength;
+        private final NIFSParams.Filter[] _filters;
+        private final IConfigMatcher _matcher;
+        private final Double _wavelength;
 
         private GratingFilterRule(NIFSParams.Filter[] filts, IConfigMatcher matcher) {
             this(filts, null, matcher);
@@ -432,9 +432,9 @@ public final class NifsRule implements IRule {
 
 
     private static class GratingFilterWavelengthRule implements IConfigRule {
-            private NIFSParams.Filter _filter;
-            private IConfigMatcher _matcher;
-            private double _wavelength;
+            private final NIFSParams.Filter _filter;
+            private final IConfigMatcher _matcher;
+            private final double _wavelength;
             private static final String MESSAGE = "Wrong filter. For selected central wavelength should use %s";
 
             private GratingFilterWavelengthRule(NIFSParams.Filter filter, double wavelength, IConfigMatcher matcher) {
@@ -468,9 +468,9 @@ public final class NifsRule implements IRule {
         private static final String MESSAGE = "Central Wavelength setting is outside of the allowed range for the " +
                 "selected grating.";
 
-        private double _minWavelength;
-        private double _maxWavelength;
-        private IConfigMatcher _matcher;
+        private final double _minWavelength;
+        private final double _maxWavelength;
+        private final IConfigMatcher _matcher;
 
         private GratingWavelengthRule(double minwl, double maxwl, IConfigMatcher matcher) {
             _minWavelength = minwl;
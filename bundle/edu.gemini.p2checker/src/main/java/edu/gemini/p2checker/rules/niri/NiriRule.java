@@ -187,10 +187,10 @@ public final class NiriRule implements IRule {
 
     private static class EngineeringRule extends AbstractConfigRule {
 
-        private PropertyDescriptor _deviceProperty;
-        private Enum<?> _expectedValue;
-        private String _message;
-        private Problem.Type _problemType;
+        private final PropertyDescriptor _deviceProperty;
+        private final Enum<?> _expectedValue;
+        private final String _message;
+        private final Problem.Type _problemType;
 
         public EngineeringRule(PropertyDescriptor deviceProp, Enum<?> expectedValue, String message, Problem.Type probType) {
             _deviceProperty = deviceProp;
@@ -773,8 +773,8 @@ public final class NiriRule implements IRule {
                 new HashMap<>();
 
         private static class FilterAndMessage {
-            private Niri.Filter _filter;
-            private String _message;
+            private final Niri.Filter _filter;
+            private final String _message;
 
             public FilterAndMessage(Niri.Filter filter, String message) {
                 _filter = filter;
@@ -0,0 +1,198 @@
+package edu.gemini.p2checker.checker;
+
+import edu.gemini.ags.api.AgsMagnitude;
+import edu.gemini.p2checker.api.IP2Problems;
+import edu.gemini.p2checker.api.Problem;
+import edu.gemini.pot.sp.*;
+import edu.gemini.pot.spdb.DBLocalDatabase;
+import edu.gemini.pot.spdb.IDBDatabaseService;
+import edu.gemini.spModel.core.SPProgramID;
+import edu.gemini.spModel.data.ISPDataObject;
+import edu.gemini.spModel.gemini.gmos.GmosCommonType.UseNS;
+import edu.gemini.spModel.gemini.gmos.GmosNorthType;
+import edu.gemini.spModel.gemini.gmos.GmosSouthType;
+import edu.gemini.spModel.gemini.gmos.InstGmosNorth;
+import edu.gemini.spModel.gemini.gmos.InstGmosSouth;
+import edu.gemini.spModel.guide.GuideProbe;
+import edu.gemini.spModel.obs.context.ObsContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests caching the problems of observations and checking them in parallel.
+ */
+public final class P2CheckerTest {
+    private static final int OBS_COUNT = 6;
+
+    private IDBDatabaseService db;
+    private ISPProgram prog;
+    private final List<ISPObservation> obsList = new ArrayList<>();
+
+    private static AgsMagnitude.MagnitudeTable magnitudeTable() {
+        return new AgsMagnitude.MagnitudeTable() {
+            @Override public scala.Option<AgsMagnitude.MagnitudeCalc> apply(ObsContext ctx, GuideProbe gp) {
+                return scala.Option.empty();
+            }
+        };
+    }
+
+    private final AgsMagnitude.MagnitudeTable mt = magnitudeTable();
+
+    @Before
+    public void setUp() throws Exception {
+        db = DBLocalDatabase.createTransient();
+        final ISPFactory fact = db.getFactory();
+        prog = fact.createProgram(null, SPProgramID.toProgramID("GS-2020A-Q-1"));
+        db.put(prog);
+
+        // Alternate between observations with and without an instrument.
+        for (int i = 0; i < OBS_COUNT; ++i) {
+            final ISPObservation obs = fact.createObservation(prog, Instrument.none, null);
+            if (i % 2 == 0) obs.addObsComponent(fact.createObsComponent(prog, InstGmosNorth.SP_TYPE, null));
+            prog.addObservation(obs);
+            obsList.add(obs);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        db.getDBAdmin().shutdown();
+    }
+
+    // Number of observations checked so far.
+    private static long checked(P2Checker checker) {
+        for (RuleTimings.Timing t : checker.getTimings().getTimings()) {
+            if (t.rule.equals("ObservationElements")) return t.calls;
+        }
+        return 0;
+    }
+
+    private static List<String> describe(IP2Problems probs) {
+        final List<String> res = new ArrayList<>();
+        for (Problem p : probs.getProblems()) {
+            final ISPNode n = p.getAffectedNode();
+            res.add(p.getId() + " " + ((n == null) ? null : n.getNodeKey()) + " " + p.getDescription());
+        }
+        return res;
+    }
+
+    private void edit(ISPObservation obs) {
+        final ISPDataObject dobj = obs.getDataObject();
+        dobj.setTitle("Edited");
+        obs.setDataObject(dobj);
+    }
+
+    @Test
+    public void testUnchangedObservationsAreCached() {
+        final P2Checker checker = new P2Checker();
+        final IP2Problems first = checker.check(prog, mt);
+        assertEquals(OBS_COUNT, checked(checker));
+        assertTrue(first.getProblemCount() > 0);
+
+        final IP2Problems second = checker.check(prog, mt);
+        assertEquals(OBS_COUNT, checked(checker));
+        assertEquals(describe(first), describe(second));
+    }
+
+    @Test
+    public void testOnlyEditedObservationIsRechecked() {
+        final P2Checker checker = new P2Checker();
+        checker.check(prog, mt);
+
+        edit(obsList.get(2));
+        final IP2Problems probs = checker.check(prog, mt);
+        assertEquals(OBS_COUNT + 1, checked(checker));
+        assertEquals(describe(new P2Checker().check(prog, mt)), describe(probs));
+    }
+
+    @Test
+    public void testNewMagnitudeTableInvalidatesCache() {
+        final P2Checker checker = new P2Checker();
+        checker.check(prog, mt);
+        checker.check(prog, magnitudeTable());
+        assertEquals(2 * OBS_COUNT, checked(checker));
+    }
+
+    @Test
+    public void testParallelMatchesSerial() {
+        final P2Checker parallel = new P2Checker(new RuleTimings(), true);
+        final P2Checker serial   = new P2Checker(new RuleTimings(), false);
+        assertEquals(describe(serial.check(prog, mt)), describe(parallel.check(prog, mt)));
+
+        edit(obsList.get(0));
+        edit(obsList.get(3));
+        assertEquals(describe(serial.check(prog, mt)), describe(parallel.check(prog, mt)));
+    }
+
+    // Adds a GMOS N&S longslit observation, which the N&S FPU rule flags with
+    // a message that depends on the site.
+    private static ISPObservation addNodAndShuffle(ISPFactory fact, ISPProgram p, boolean south) throws Exception {
+        final ISPObservation obs = fact.createObservation(p, Instrument.none, null);
+        final ISPObsComponent comp;
+        if (south) {
+            comp = fact.createObsComponent(p, InstGmosSouth.SP_TYPE, null);
+            final InstGmosSouth gs = (InstGmosSouth) comp.getDataObject();
+            gs.setUseNS(UseNS.TRUE);
+            gs.setFPUnit(GmosSouthType.FPUnitSouth.LONGSLIT_1);
+            gs.setDisperser(GmosSouthType.DisperserSouth.R400_G5325);
+            comp.setDataObject(gs);
+        } else {
+            comp = fact.createObsComponent(p, InstGmosNorth.SP_TYPE, null);
+            final InstGmosNorth gn = (InstGmosNorth) comp.getDataObject();
+            gn.setUseNS(UseNS.TRUE);
+            gn.setFPUnit(GmosNorthType.FPUnitNorth.LONGSLIT_1);
+            gn.setDisperser(GmosNorthType.DisperserNorth.R400_G5305);
+            comp.setDataObject(gn);
+        }
+        obs.addObsComponent(comp);
+        p.addObservation(obs);
+        return obs;
+    }
+
+    @Test
+    public void testParallelNodAndShuffleMessagesMatchSite() throws Exception {
+        final ISPFactory fact = db.getFactory();
+        final ISPProgram ns = fact.createProgram(null, SPProgramID.toProgramID("GS-2020A-Q-2"));
+        db.put(ns);
+
+        // Key of the problem nodes of each observation -> whether it is GMOS-S
+        final Map<SPNodeKey, Boolean> south = new HashMap<>();
+        final int count = 4 * OBS_COUNT;
+        for (int i = 0; i < count; ++i) {
+            final boolean s = (i % 2 == 1);
+            final ISPObservation obs = addNodAndShuffle(fact, ns, s);
+            for (ISPObsComponent c : obs.getObsComponents()) south.put(c.getNodeKey(), s);
+            final ISPSeqComponent seq = obs.getSeqComponent();
+            if (seq != null) south.put(seq.getNodeKey(), s);
+        }
+
+        for (int round = 0; round < 10; ++round) {
+            final Map<SPNodeKey, Boolean> found = new HashMap<>();
+            for (Problem p : new P2Checker(new RuleTimings(), true).check(ns, mt).getProblems()) {
+                if (!p.getId().equals("GmosRule_N_S_FPU_SPECTROSCOPIC_RULE")) continue;
+                final Boolean s = south.get(p.getAffectedNode().getNodeKey());
+                assertNotNull(s);
+                assertEquals(p.getDescription(), s, p.getDescription().contains("IFU"));
+                found.put(p.getAffectedNode().getNodeKey(), s);
+            }
+            assertTrue(found.size() >= count);
+        }
+    }
+
+    @Test
+    public void testCheckAsync() throws Exception {
+        final P2Checker checker = new P2Checker();
+        final IP2Problems probs = checker.checkAsync(prog, mt).get(10, TimeUnit.SECONDS);
+        assertEquals(describe(new P2Checker().check(prog, mt)), describe(probs));
+        assertNull(checker.checkAsync(null, mt).get(10, TimeUnit.SECONDS));
+    }
+}
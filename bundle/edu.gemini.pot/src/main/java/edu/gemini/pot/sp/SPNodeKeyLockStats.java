@@ -0,0 +1,151 @@
+package edu.gemini.pot.sp;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Contention statistics for {@link SPNodeKeyLocks}.  Totals are kept for all
+ * keys.  Per-key wait and write hold times are only tracked for keys that
+ * have been contended at least once, since otherwise the statistics would
+ * grow with every program ever locked.  At most {@link #MAX_TRACKED_KEYS}
+ * keys are tracked between resets.
+ */
+public final class SPNodeKeyLockStats implements SPNodeKeyLockStatsMBean {
+
+    /** Maximum number of keys for which per-key statistics are kept. */
+    public static final int MAX_TRACKED_KEYS = 1000;
+
+    /** Number of keys reported by {@link #getHotKeys}. */
+    private static final int HOT_KEY_COUNT = 20;
+
+    /**
+     * Statistics for a single contended key.
+     */
+    public static final class KeyStats {
+        public final SPNodeKey key;
+
+        private final LongAdder contended  = new LongAdder();
+        private final LongAdder waitNanos  = new LongAdder();
+        private final LongAdder writeHolds = new LongAdder();
+        private final LongAdder holdNanos  = new LongAdder();
+
+        KeyStats(SPNodeKey key) {
+            this.key = key;
+        }
+
+        public long getContendedAcquisitionCount() { return contended.sum();  }
+        public long getWaitNanos()                 { return waitNanos.sum();  }
+        public long getWriteHoldCount()            { return writeHolds.sum(); }
+        public long getWriteHoldNanos()            { return holdNanos.sum();  }
+
+        @Override public String toString() {
+            return String.format("%s: %d contended, wait %d ms, %d writes held %d ms", key,
+                    getContendedAcquisitionCount(), TimeUnit.NANOSECONDS.toMillis(getWaitNanos()),
+                    getWriteHoldCount(), TimeUnit.NANOSECONDS.toMillis(getWriteHoldNanos()));
+        }
+    }
+
+    private final IntSupplier activeLocks;
+
+    private final LongAdder acquisitions  = new LongAdder();
+    private final LongAdder contended     = new LongAdder();
+    private final LongAdder waitNanos     = new LongAdder();
+    private final LongAdder holdNanos     = new LongAdder();
+    private final AtomicLong maxHoldNanos = new AtomicLong();
+    private final Map<SPNodeKey, KeyStats> keyStats = new ConcurrentHashMap<>();
+
+    SPNodeKeyLockStats(IntSupplier activeLocks) {
+        this.activeLocks = activeLocks;
+    }
+
+    void recordAcquisition() {
+        acquisitions.increment();
+    }
+
+    void recordContendedAcquisition(SPNodeKey key, long nanos) {
+        acquisitions.increment();
+        contended.increment();
+        waitNanos.add(nanos);
+
+        KeyStats ks = keyStats.get(key);
+        if ((ks == null) && (keyStats.size() < MAX_TRACKED_KEYS)) {
+            ks = keyStats.computeIfAbsent(key, KeyStats::new);
+        }
+        if (ks != null) {
+            ks.contended.increment();
+            ks.waitNanos.add(nanos);
+        }
+    }
+
+    void recordWriteHold(SPNodeKey key, long nanos) {
+        holdNanos.add(nanos);
+        long max;
+        do {
+            max = maxHoldNanos.get();
+        } while ((nanos > max) && !maxHoldNanos.compareAndSet(max, nanos));
+
+        final KeyStats ks = keyStats.get(key);
+        if (ks != null) {
+            ks.writeHolds.increment();
+            ks.holdNanos.add(nanos);
+        }
+    }
+
+    /**
+     * Gets the statistics of the tracked keys, most contended (by total wait
+     * time) first.
+     */
+    public List<KeyStats> getKeyStats() {
+        final List<KeyStats> res = new ArrayList<>(keyStats.values());
+        res.sort(Comparator.comparingLong(KeyStats::getWaitNanos).reversed());
+        return res;
+    }
+
+    @Override public int getActiveLockCount() {
+        return activeLocks.getAsInt();
+    }
+
+    @Override public long getAcquisitionCount() {
+        return acquisitions.sum();
+    }
+
+    @Override public long getContendedAcquisitionCount() {
+        return contended.sum();
+    }
+
+    @Override public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos.sum());
+    }
+
+    @Override public long getTotalWriteHoldMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(holdNanos.sum());
+    }
+
+    @Override public long getMaxWriteHoldMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxHoldNanos.get());
+    }
+
+    @Override public String[] getHotKeys() {
+        final List<KeyStats> all = getKeyStats();
+        final int n = Math.min(HOT_KEY_COUNT, all.size());
+        final String[] res = new String[n];
+        for (int i = 0; i < n; ++i) res[i] = all.get(i).toString();
+        return res;
+    }
+
+    @Override public void reset() {
+        acquisitions.reset();
+        contended.reset();
+        waitNanos.reset();
+        holdNanos.reset();
+        maxHoldNanos.set(0);
+        keyStats.clear();
+    }
+}
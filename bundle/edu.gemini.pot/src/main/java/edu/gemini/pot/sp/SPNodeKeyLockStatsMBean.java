@@ -0,0 +1,34 @@
+package edu.gemini.pot.sp;
+
+/**
+ * JMX management interface for {@link SPNodeKeyLockStats}.
+ */
+public interface SPNodeKeyLockStatsMBean {
+
+    /** Number of program locks currently held or awaited. */
+    int getActiveLockCount();
+
+    /** Total number of lock acquisitions since the last reset. */
+    long getAcquisitionCount();
+
+    /** Number of acquisitions that had to wait for the lock. */
+    long getContendedAcquisitionCount();
+
+    /** Total time spent waiting for locks, in milliseconds. */
+    long getTotalWaitMillis();
+
+    /** Total time write locks were held, in milliseconds. */
+    long getTotalWriteHoldMillis();
+
+    /** Longest single write lock hold, in milliseconds. */
+    long getMaxWriteHoldMillis();
+
+    /**
+     * Per-key statistics for the most contended keys, ordered by total wait
+     * time, one formatted line per key.
+     */
+    String[] getHotKeys();
+
+    /** Clears all statistics. */
+    void reset();
+}
@@ -1,42 +1,150 @@
 package edu.gemini.pot.sp;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Provides a low-level API for getting read/write locks associated with
- * SPNodeKeys.  Locks are created on demand but never removed.
+ * SPNodeKeys.  Locks are created on demand and reference counted: a lock is
+ * pinned while it is held (or being waited for) and removed as soon as it is
+ * idle, so the registry only holds locks for programs that are in use.
+ * Contention statistics are kept in {@link SPNodeKeyLockStats}.
  */
 public enum SPNodeKeyLocks {
     instance;
 
-    private Map<SPNodeKey, ReentrantReadWriteLock> locks = new HashMap<SPNodeKey, ReentrantReadWriteLock>();
+    private static final class Entry {
+        final SPNodeKey key;
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
-    private synchronized ReentrantReadWriteLock getLock(SPNodeKey key) {
-        ReentrantReadWriteLock l = locks.get(key);
-        if (l == null) {
-            l = new ReentrantReadWriteLock();
-            locks.put(key, l);
+        // Number of outstanding holds plus threads waiting to acquire, or -1
+        // once the entry has been retired from the map.
+        final AtomicInteger refs = new AtomicInteger();
+
+        // Only accessed by the write lock holder.
+        long writeStartNanos;
+
+        Entry(SPNodeKey key) {
+            this.key = key;
         }
-        return l;
+
+        boolean pin() {
+            int r;
+            do {
+                r = refs.get();
+                if (r < 0) return false;
+            } while (!refs.compareAndSet(r, r + 1));
+            return true;
+        }
+
+        /** Returns <code>true</code> if this was the last reference. */
+        boolean unpin() {
+            return (refs.decrementAndGet() == 0) && refs.compareAndSet(0, -1);
+        }
+    }
+
+    private final Map<SPNodeKey, Entry> locks = new ConcurrentHashMap<>();
+    private final SPNodeKeyLockStats stats = new SPNodeKeyLockStats(locks::size);
+
+    /**
+     * Gets the contention statistics, which may be registered as an MBean.
+     */
+    public SPNodeKeyLockStats getStats() {
+        return stats;
     }
 
-    private Lock getReadLock(SPNodeKey key)  { return getLock(key).readLock();  }
-    private Lock getWriteLock(SPNodeKey key) { return getLock(key).writeLock(); }
+    private Entry pin(SPNodeKey key) {
+        while (true) {
+            final Entry e = locks.computeIfAbsent(key, Entry::new);
+            if (e.pin()) return e;
 
-    public void readLock(SPNodeKey key)     { getReadLock(key).lock();   }
-    public void readUnlock(SPNodeKey key)   { getReadLock(key).unlock(); }
+            // Lost a race with the last holder retiring the entry, which it
+            // is about to remove.
+            locks.remove(key, e);
+        }
+    }
 
-    public void writeLock(SPNodeKey key)    { getWriteLock(key).lock();   }
-    public void writeUnlock(SPNodeKey key)  { getWriteLock(key).unlock(); }
+    private void unpin(Entry e) {
+        if (e.unpin()) locks.remove(e.key, e);
+    }
+
+    // Unlike tryLock(), a timed tryLock does not barge past queued threads, so
+    // a reader cannot overtake a writer that is waiting for the lock.
+    private static boolean tryLockInTurn(Lock l) {
+        try {
+            return l.tryLock(0, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void lock(Entry e, Lock l) {
+        if (tryLockInTurn(l)) {
+            stats.recordAcquisition();
+        } else {
+            final long start = System.nanoTime();
+            l.lock();
+            stats.recordContendedAcquisition(e.key, System.nanoTime() - start);
+        }
+    }
+
+    public void readLock(SPNodeKey key) {
+        final Entry e = pin(key);
+        try {
+            lock(e, e.lock.readLock());
+        } catch (RuntimeException ex) {
+            unpin(e);
+            throw ex;
+        }
+    }
+
+    public void readUnlock(SPNodeKey key) {
+        final Entry e = locks.get(key);
+        if (e == null) throw new IllegalMonitorStateException("read lock not held for " + key);
+        e.lock.readLock().unlock();
+        unpin(e);
+    }
+
+    public void writeLock(SPNodeKey key) {
+        final Entry e = pin(key);
+        try {
+            lock(e, e.lock.writeLock());
+        } catch (RuntimeException ex) {
+            unpin(e);
+            throw ex;
+        }
+        if (e.lock.getWriteHoldCount() == 1) e.writeStartNanos = System.nanoTime();
+    }
+
+    public void writeUnlock(SPNodeKey key) {
+        final Entry e = locks.get(key);
+        if ((e == null) || !e.lock.isWriteLockedByCurrentThread()) {
+            throw new IllegalMonitorStateException("write lock not held for " + key);
+        }
+        if (e.lock.getWriteHoldCount() == 1) stats.recordWriteHold(key, System.nanoTime() - e.writeStartNanos);
+        e.lock.writeLock().unlock();
+        unpin(e);
+    }
 
     /**
      * Returns <code>true</code> if the current thread has a write lock for the
      * indicated program key.
      */
     public boolean isWriteLockHeld(SPNodeKey key) {
-        return getLock(key).isWriteLockedByCurrentThread();
+        final Entry e = locks.get(key);
+        return (e != null) && e.lock.isWriteLockedByCurrentThread();
+    }
+
+    /**
+     * Returns the number of keys that currently have a lock, which is to say
+     * the number of keys whose lock is held or awaited.
+     */
+    public int size() {
+        return locks.size();
     }
 }
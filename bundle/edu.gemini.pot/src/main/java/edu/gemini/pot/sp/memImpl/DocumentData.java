@@ -71,6 +71,19 @@ public class DocumentData implements Serializable {
         }
     }
 
+    /**
+     * Advances the last modification time to <code>time</code> if it is
+     * later, as when replaying edits recorded in a program journal.
+     */
+    void restoreLastModified(long time) {
+        getProgramWriteLock();
+        try {
+            _lastModified = Math.max(_lastModified, time);
+        } finally {
+            returnProgramWriteLock();
+        }
+    }
+
     void markModified(MemAbstractBase node) {
         getProgramWriteLock();
         try {
@@ -0,0 +1,31 @@
+package edu.gemini.pot.sp.memImpl;
+
+import edu.gemini.pot.sp.SPNodeKey;
+import edu.gemini.pot.sp.version.LifespanId;
+import edu.gemini.shared.util.VersionVector;
+import edu.gemini.spModel.data.ISPDataObject;
+
+import java.io.Serializable;
+
+/**
+ * A single record in a program journal: the new data object and version of
+ * one node, and the program modification time when it was written.  See
+ * {@link MemSerializer#appendJournal}.
+ */
+final class JournalEntry implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final SPNodeKey key;
+    final VersionVector<LifespanId, Integer> version;
+    final ISPDataObject dataObject;
+
+    // Zero in records written before the time was recorded.
+    final long lastModified;
+
+    JournalEntry(SPNodeKey key, VersionVector<LifespanId, Integer> version, ISPDataObject dataObject, long lastModified) {
+        this.key          = key;
+        this.version      = version;
+        this.dataObject   = dataObject;
+        this.lastModified = lastModified;
+    }
+}
@@ -447,6 +447,22 @@ public abstract class MemAbstractBase implements ISPNode, Serializable {
         return putClientDataAndVersion(DATA_OBJECT_KEY, dataObject, newVersion);
     }
 
+    /**
+     * Restores a data object and version read from a program journal.  No
+     * events are fired and the program modification time is not updated since
+     * this is not a new edit; the time recorded in the journal is restored by
+     * the caller.  Used only while reloading the database.
+     */
+    void restoreDataObjectAndVersion(ISPDataObject dataObject, VersionVector<LifespanId, Integer> version) {
+        getProgramWriteLock();
+        try {
+            _clientData.put(DATA_OBJECT_KEY, dataObject);
+            getDocumentData().setVersionVector(_nodeKey, version);
+        } finally {
+            returnProgramWriteLock();
+        }
+    }
+
     synchronized List<Object> getClientData() {
         getProgramReadLock();
         try {
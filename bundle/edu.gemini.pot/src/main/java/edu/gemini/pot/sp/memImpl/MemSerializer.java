@@ -1,8 +1,14 @@
 package edu.gemini.pot.sp.memImpl;
 
+import edu.gemini.pot.sp.ISPContainerNode;
+import edu.gemini.pot.sp.ISPNode;
 import edu.gemini.pot.sp.ISPRootNode;
+import edu.gemini.pot.sp.SPNodeKey;
+import edu.gemini.pot.sp.version.JavaVersionMapOps;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -77,4 +83,159 @@ public final class MemSerializer {
             mab.returnProgramReadLock();
         }
     }
+
+    // ------------------------------------------------------------------------
+    // Program journals.  A journal is a sequence of length-prefixed, serialized
+    // JournalEntry records appended to a file that accompanies the full
+    // program snapshot.  It records data object edits since the snapshot was
+    // written so that storing a small edit does not require rewriting the
+    // entire program.
+    // ------------------------------------------------------------------------
+
+    private static void collectNodes(ISPNode n, Set<SPNodeKey> keys, Map<SPNodeKey, ISPNode> res) {
+        if (keys.contains(n.getNodeKey())) res.put(n.getNodeKey(), n);
+        if (n instanceof ISPContainerNode) {
+            for (ISPNode child : ((ISPContainerNode) n).getChildren()) {
+                collectNodes(child, keys, res);
+            }
+        }
+    }
+
+    /**
+     * Appends the current data object and version of each node in the
+     * program with a key in <code>keys</code> to the given journal file.
+     * Keys that no longer correspond to a node in the program are ignored.
+     *
+     * @return number of bytes appended to the journal
+     */
+    public long appendJournal(ISPRootNode root, Set<SPNodeKey> keys, File journal) throws IOException {
+        // Only hold the lock long enough to copy the edited data objects.
+        final List<JournalEntry> entries = new ArrayList<>();
+        root.getProgramReadLock();
+        try {
+            final Map<SPNodeKey, ISPNode> nodes = new LinkedHashMap<>();
+            collectNodes(root, keys, nodes);
+            final long lastModified = root.lastModified();
+            for (ISPNode n : nodes.values()) {
+                entries.add(new JournalEntry(n.getNodeKey(), n.getVersion(), n.getDataObject(), lastModified));
+            }
+        } finally {
+            root.returnProgramReadLock();
+        }
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final DataOutputStream dos = new DataOutputStream(baos);
+        for (JournalEntry e : entries) {
+            final byte[] rec = serialize(e);
+            dos.writeInt(rec.length);
+            dos.write(rec);
+        }
+        dos.flush();
+
+        // Write all the records at once and, if that fails, cut the file back
+        // to where it was so that later appends don't follow a partial record.
+        final FileOutputStream fos = new FileOutputStream(journal, true);
+        try {
+            final FileChannel ch = fos.getChannel();
+            final long start = ch.size();
+            try {
+                baos.writeTo(fos);
+                fos.getFD().sync();
+            } catch (IOException | RuntimeException ex) {
+                try {
+                    ch.truncate(start);
+                } catch (IOException tex) {
+                    ex.addSuppressed(tex);
+                }
+                throw ex;
+            }
+        } finally {
+            fos.close();
+        }
+        return baos.size();
+    }
+
+    private static byte[] serialize(JournalEntry e) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ObjectOutputStream oos = new ObjectOutputStream(baos);
+        try { oos.writeObject(e); } finally { oos.close(); }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Applies the records in the given journal file, in order, to the
+     * program loaded from the corresponding snapshot.  Records that are not
+     * newer than the node's version in the snapshot (for example left over
+     * after a crash during compaction) are skipped.  Replay stops, with a
+     * warning, at the first truncated or unreadable record since nothing
+     * after it can be trusted.  The program modification time is advanced
+     * to the latest time recorded by an applied record.
+     *
+     * @return number of records applied
+     */
+    public int replayJournal(MemAbstractBase root, File journal) throws IOException {
+        final List<JournalEntry> entries = new ArrayList<>();
+        final long size = journal.length();
+        final DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(journal)));
+        try {
+            long pos = 0;
+            while (true) {
+                final int len;
+                final byte[] rec;
+                try {
+                    len = dis.readInt();
+                    if ((len < 0) || (len > size - pos - 4)) {
+                        LOG.warning(String.format("Ignoring journal %s from byte %d: bad record length %d", journal, pos, len));
+                        break;
+                    }
+                    rec = new byte[len];
+                    dis.readFully(rec);
+                } catch (EOFException ex) {
+                    break;
+                }
+
+                final JournalEntry e;
+                try {
+                    e = readEntry(rec);
+                } catch (IOException | ClassCastException ex) {
+                    LOG.log(Level.WARNING, String.format("Ignoring journal %s from byte %d: unreadable record", journal, pos), ex);
+                    break;
+                }
+                entries.add(e);
+                pos += 4 + len;
+            }
+        } finally {
+            dis.close();
+        }
+
+        final Set<SPNodeKey> keys = new HashSet<>();
+        for (JournalEntry e : entries) keys.add(e.key);
+        final Map<SPNodeKey, ISPNode> nodes = new HashMap<>();
+        collectNodes(root, keys, nodes);
+
+        int applied = 0;
+        long lastModified = 0;
+        for (JournalEntry e : entries) {
+            final MemAbstractBase n = (MemAbstractBase) nodes.get(e.key);
+            if ((n != null) && JavaVersionMapOps.updates(e.version, n.getVersion())) {
+                n.restoreDataObjectAndVersion(e.dataObject, e.version);
+                lastModified = Math.max(lastModified, e.lastModified);
+                ++applied;
+            }
+        }
+        root.getDocumentData().restoreLastModified(lastModified);
+        return applied;
+    }
+
+    private JournalEntry readEntry(byte[] rec) throws IOException {
+        final ObjectInputStream ois = new ClassLoaderObjectInputStream(getLoader(), new ByteArrayInputStream(rec));
+        try {
+            return (JournalEntry) ois.readObject();
+        } catch (ClassNotFoundException ex) {
+            LOG.log(Level.SEVERE, "Couldn't replay journal record", ex);
+            throw new RuntimeException(ex);
+        } finally {
+            ois.close();
+        }
+    }
 }
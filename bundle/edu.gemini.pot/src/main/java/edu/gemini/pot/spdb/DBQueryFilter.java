@@ -0,0 +1,105 @@
+package edu.gemini.pot.spdb;
+
+import edu.gemini.spModel.core.ProgramType;
+import edu.gemini.spModel.obs.ObservationStatus;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * A pre-filter applied by the query runner before programs and observations
+ * are handed to a query functor.  The filter is answered from an in-memory
+ * index of program semester, type and observation status so that functors
+ * need not visit programs that they would discard anyway.  An unset
+ * criterion matches everything.  Filters are immutable.
+ *
+ * <pre>
+ *   DBQueryFilter.ALL.withSemesters("2017A", "2017B")
+ *                    .withProgramTypes(ProgramType$.MODULE$.Q())
+ *                    .withObservationStatuses(ObservationStatus.READY);
+ * </pre>
+ */
+public final class DBQueryFilter implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** A filter that accepts every program and observation. */
+    public static final DBQueryFilter ALL = new DBQueryFilter(null, null, null);
+
+    // null means "any"
+    private final Set<String> _semesters;
+    private final Set<String> _programTypes;   // abbreviations
+    private final Set<ObservationStatus> _obsStatuses;
+
+    private DBQueryFilter(Set<String> semesters, Set<String> programTypes, Set<ObservationStatus> obsStatuses) {
+        _semesters    = semesters;
+        _programTypes = programTypes;
+        _obsStatuses  = obsStatuses;
+    }
+
+    /**
+     * Returns a copy of this filter that only matches programs whose id
+     * identifies one of the given semesters (for example "2017A").
+     */
+    public DBQueryFilter withSemesters(String... semesters) {
+        return new DBQueryFilter(Collections.unmodifiableSet(new HashSet<>(Arrays.asList(semesters))), _programTypes, _obsStatuses);
+    }
+
+    /**
+     * Returns a copy of this filter that only matches programs whose id
+     * identifies one of the given program types.
+     */
+    public DBQueryFilter withProgramTypes(ProgramType... types) {
+        final Set<String> s = new HashSet<>();
+        for (ProgramType t : types) s.add(t.abbreviation());
+        return new DBQueryFilter(_semesters, Collections.unmodifiableSet(s), _obsStatuses);
+    }
+
+    /**
+     * Returns a copy of this filter that only matches observations with one
+     * of the given statuses, and only programs containing at least one such
+     * observation.
+     */
+    public DBQueryFilter withObservationStatuses(ObservationStatus... statuses) {
+        final Set<ObservationStatus> s = EnumSet.noneOf(ObservationStatus.class);
+        s.addAll(Arrays.asList(statuses));
+        return new DBQueryFilter(_semesters, _programTypes, Collections.unmodifiableSet(s));
+    }
+
+    /**
+     * Whether this filter accepts everything, in which case there is no need
+     * to consult the index at all.
+     */
+    public boolean isUnrestricted() {
+        return (_semesters == null) && (_programTypes == null) && (_obsStatuses == null);
+    }
+
+    /**
+     * Whether matching requires the status of observations.
+     */
+    public boolean filtersObservationStatus() {
+        return _obsStatuses != null;
+    }
+
+    /**
+     * Determines whether a program with the given semester and program type
+     * (either of which may be <code>null</code> if the program id doesn't
+     * specify it) passes the program level criteria.
+     */
+    public boolean matchesProgram(String semester, ProgramType type) {
+        if ((_semesters != null) && ((semester == null) || !_semesters.contains(semester))) return false;
+        return (_programTypes == null) || ((type != null) && _programTypes.contains(type.abbreviation()));
+    }
+
+    /**
+     * Determines whether an observation with the given status passes the
+     * observation level criteria.
+     */
+    public boolean matchesObservation(ObservationStatus status) {
+        return (_obsStatuses == null) || _obsStatuses.contains(status);
+    }
+
+    @Override public String toString() {
+        return "DBQueryFilter{semesters=" + _semesters + ", programTypes=" + _programTypes +
+                ", obsStatuses=" + _obsStatuses + "}";
+    }
+}
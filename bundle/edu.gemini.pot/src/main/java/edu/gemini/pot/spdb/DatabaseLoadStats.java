@@ -0,0 +1,57 @@
+package edu.gemini.pot.spdb;
+
+/**
+ * Progress of loading the database at startup.  The database is not made
+ * available to clients until all of its programs and plans are loaded, which
+ * may take a while, so this provides a way to follow along and see how much
+ * longer it will take.
+ */
+public enum DatabaseLoadStats implements DatabaseLoadStatsMBean {
+    instance;
+
+    private volatile ProgramLoader<?> loader;
+
+    void setLoader(ProgramLoader<?> loader) {
+        this.loader = loader;
+    }
+
+    private ProgramLoader.Progress progress() {
+        final ProgramLoader<?> l = loader;
+        return (l == null) ? new ProgramLoader.Progress(0, 0, 0, 0) : l.getProgress();
+    }
+
+    @Override public String getKind() {
+        final ProgramLoader<?> l = loader;
+        return (l == null) ? "" : l.getName();
+    }
+
+    @Override public boolean isDone() {
+        final ProgramLoader<?> l = loader;
+        return (l != null) && l.isFinished();
+    }
+
+    @Override public int getTotalCount() {
+        return progress().total;
+    }
+
+    @Override public int getCompletedCount() {
+        return progress().completed;
+    }
+
+    @Override public int getFailedCount() {
+        return progress().failed;
+    }
+
+    @Override public long getElapsedMillis() {
+        return progress().elapsedMs;
+    }
+
+    @Override public long getEtaMillis() {
+        return progress().etaMs();
+    }
+
+    @Override public String[] getLoadTimeHistogram() {
+        final ProgramLoader<?> l = loader;
+        return (l == null) ? new String[0] : l.formatHistogram().split("\\R");
+    }
+}
@@ -0,0 +1,34 @@
+package edu.gemini.pot.spdb;
+
+/**
+ * JMX management interface for {@link DatabaseLoadStats}.
+ */
+public interface DatabaseLoadStatsMBean {
+
+    /**
+     * Kind of file being loaded ("program" or "plan"), or the last kind
+     * loaded once loading has finished.  Empty before loading starts.
+     */
+    String getKind();
+
+    /** Whether the files of the current kind have all been loaded. */
+    boolean isDone();
+
+    /** Number of files of the current kind. */
+    int getTotalCount();
+
+    /** Number of files of the current kind loaded (or failed) so far. */
+    int getCompletedCount();
+
+    /** Number of files of the current kind that could not be loaded. */
+    int getFailedCount();
+
+    /** Time spent loading files of the current kind, in milliseconds. */
+    long getElapsedMillis();
+
+    /** Estimated time remaining, in milliseconds, or -1 if not yet known. */
+    long getEtaMillis();
+
+    /** Histogram of per-file load times, one formatted line per bucket. */
+    String[] getLoadTimeHistogram();
+}
@@ -11,6 +11,7 @@ import edu.gemini.pot.sp.*;
 import edu.gemini.pot.util.POTUtil;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.UUID;
 
 
@@ -25,6 +26,7 @@ final class DatabaseManager {
     private final ProgramManager<ISPNightlyRecord> _planMan;
     private final StorageManager<ISPProgram> _progStoreMan;
     private final StorageManager<ISPNightlyRecord> _planStoreMan;
+    private final ProgramIndex _progIndex;
 
     //private DBAdmin _admin;
     private final ISPFactory _fact;
@@ -43,16 +45,24 @@ final class DatabaseManager {
         // Create the file manager and load the programs in the database.
         _persister = persister;
 
-        // Give the programs to the program manager.  It will keep track of
-        // them and provide access to them.
-        _progMan = new ProgramManager<ISPProgram>(_persister.reloadPrograms());
-        _planMan = new ProgramManager<ISPNightlyRecord>(_persister.reloadPlans());
+        // Give the programs to the program manager as they are loaded.  It
+        // will keep track of them and provide access to them.  The database
+        // is only published once this constructor returns, so clients never
+        // see a partially loaded database.  Progress can be followed in the
+        // meantime with DatabaseLoadStats.
+        _progMan = new ProgramManager<ISPProgram>(Collections.<ISPProgram>emptyList());
+        _persister.reloadPrograms(_progMan::putLoadedProgram);
+        _planMan = new ProgramManager<ISPNightlyRecord>(Collections.<ISPNightlyRecord>emptyList());
+        _persister.reloadPlans(_planMan::putLoadedProgram);
 
         // Create the storage manager to keep the program files up-to-date
         // as they change and to store/remove programs as necessary.
         _progStoreMan = new StorageManager<ISPProgram>(_progMan, _persister);
         _planStoreMan = new StorageManager<ISPNightlyRecord>(_planMan, _persister);
 
+        // Index of program attributes used to filter queries.
+        _progIndex = new ProgramIndex(_progMan);
+
         _fact = POTUtil.createFactory(uuid);
     }
 
@@ -99,12 +109,20 @@ final class DatabaseManager {
         return _planStoreMan;
     }
 
+    /**
+     * Obtains a reference to the <code>ProgramIndex</code>.
+     */
+    ProgramIndex getProgramIndex() {
+        return _progIndex;
+    }
+
     /**
      * Shuts down the database, storing any outstanding modifications.
      */
     void shutdown() {
         _progStoreMan.shutdown();
         _planStoreMan.shutdown();
+        _progIndex.shutdown();
         _progMan.shutdown();
         _planMan.shutdown();
         functorLogger.cancel();
@@ -9,6 +9,7 @@ package edu.gemini.pot.spdb;
 
 import edu.gemini.pot.sp.ISPNode;
 import edu.gemini.pot.sp.ISPRootNode;
+import edu.gemini.pot.sp.SPNodeKey;
 import edu.gemini.pot.sp.SPUtil;
 
 import java.beans.PropertyChangeEvent;
@@ -27,38 +28,88 @@ import java.util.*;
  */
 @SuppressWarnings("unchecked")
 final class DirtyProgramListener<N extends ISPRootNode> implements PropertyChangeListener {
-    private final Set<N> _progSet;
+
+    /**
+     * The modifications to a dirty program.  If the only changes are to node
+     * data objects, the keys of the nodes that were edited are recorded so
+     * that they can be stored incrementally.  Any other change (to the
+     * structure of the program, conflicts, etc.) requires the full program to
+     * be stored.
+     */
+    static final class Changes<N extends ISPRootNode> {
+        final N program;
+        private boolean _full;
+        private final Set<SPNodeKey> _dataObjectKeys = new HashSet<SPNodeKey>();
+
+        private Changes(N program) {
+            this.program = program;
+        }
+
+        /**
+         * Whether the program must be stored in full.
+         */
+        boolean isFull() {
+            return _full;
+        }
+
+        /**
+         * Keys of the nodes whose data objects were edited, if not
+         * {@link #isFull}.
+         */
+        Set<SPNodeKey> getDataObjectKeys() {
+            return Collections.unmodifiableSet(_dataObjectKeys);
+        }
+    }
+
+    private static final String DATA_OBJECT_PROP = SPUtil.getDataObjectPropertyName();
+
+    private final Map<N, Changes<N>> _progMap;
 
     /**
      * Default constructor declared because superclass default constructor
      * throws <code>RemoteException</code>.
      */
     DirtyProgramListener()  {
-        _progSet = new HashSet<N>();
+        _progMap = new HashMap<N, Changes<N>>();
     }
 
     @Override public void propertyChange(PropertyChangeEvent pce) {
-        if (SPUtil.isTransientClientDataPropertyName(pce.getPropertyName())) return;
+        final String propName = pce.getPropertyName();
+        if (SPUtil.isTransientClientDataPropertyName(propName)) return;
 
         final Object src = pce.getSource();
         if (!(src instanceof ISPNode)) return;
 
-        ISPRootNode root = ((ISPNode) src).getRootAncestor();
+        final ISPNode node  = (ISPNode) src;
+        final ISPRootNode root = node.getRootAncestor();
         if (root != null) {
-            synchronized (this) { _progSet.add((N)root); }
+            synchronized (this) {
+                Changes<N> c = _progMap.get(root);
+                if (c == null) {
+                    c = new Changes<N>((N) root);
+                    _progMap.put((N) root, c);
+                }
+                if (c._full) return;
+                if (DATA_OBJECT_PROP.equals(propName)) {
+                    c._dataObjectKeys.add(node.getNodeKey());
+                } else {
+                    c._full = true;
+                    c._dataObjectKeys.clear();
+                }
+            }
         }
     }
 
     /**
-     * Gets the modified, "dirty", programs and clears the record of their
-     * being dirty.  In other words, immediately after this method is called
-     * no programs are marked dirty.
+     * Gets the modifications to the dirty programs and clears the record of
+     * their being dirty.
      *
-     * @return the modified programs, or <code>null</code> if there are none
+     * @return the modified programs along with a description of what changed,
+     * or an empty list if there are none
      */
-    synchronized List<N> getDirtyPrograms() {
-        final List<N> lst = _progSet.isEmpty() ? Collections.<N>emptyList() : new ArrayList<N>(_progSet);
-        _progSet.clear();
+    synchronized List<Changes<N>> getDirtyChanges() {
+        final List<Changes<N>> lst = _progMap.isEmpty() ? Collections.<Changes<N>>emptyList() : new ArrayList<Changes<N>>(_progMap.values());
+        _progMap.clear();
         return lst;
     }
 
@@ -67,7 +118,7 @@ final class DirtyProgramListener<N extends ISPRootNode> implements PropertyChang
      * programs.  If the program isn't in the collection, then nothing is done.
      */
     synchronized void removeProgram(N prog) {
-        if (_progSet.size() == 0) return;
-        _progSet.remove(prog);
+        if (_progMap.size() == 0) return;
+        _progMap.remove(prog);
     }
 }
@@ -4,8 +4,8 @@ import edu.gemini.pot.sp.ISPNightlyRecord;
 import edu.gemini.pot.sp.ISPProgram;
 import edu.gemini.pot.sp.ISPRootNode;
 import edu.gemini.pot.sp.SPNodeKey;
-import java.util.Collections;
-import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * A persister implemenation that returns nothing and does nothing.  Useful for
@@ -19,18 +19,22 @@ public final class DoNothingPersister implements IDBPersister {
     private DoNothingPersister() {
     }
 
-    @Override public List<ISPProgram> reloadPrograms() {
-        return Collections.emptyList();
+    @Override public void reloadPrograms(Consumer<ISPProgram> sink) {
+        // Nothing to load.
     }
 
-    @Override public List<ISPNightlyRecord> reloadPlans() {
-        return Collections.emptyList();
+    @Override public void reloadPlans(Consumer<ISPNightlyRecord> sink) {
+        // Nothing to load.
     }
 
     @Override public void store(ISPRootNode node) {
         // Do nothing.
     }
 
+    @Override public void storeChanges(ISPRootNode node, Set<SPNodeKey> keys) {
+        // Do nothing.
+    }
+
     @Override public void remove(SPNodeKey key) {
         // Do nothing.
     }
@@ -1,12 +1,14 @@
 package edu.gemini.pot.spdb;
 
 import edu.gemini.pot.sp.*;
+import edu.gemini.pot.sp.memImpl.MemAbstractBase;
 import edu.gemini.pot.sp.memImpl.MemSerializer;
 import edu.gemini.shared.util.GeminiRuntimeException;
 import edu.gemini.spModel.core.SPProgramID;
 
 import java.io.*;
 import java.util.*;
+import java.util.function.Consumer;
 
 
 /**
@@ -24,6 +26,19 @@ final class FileManager implements IDBPersister {
     /** The file suffix which is appended to nightly plans in the database. */
     public static final String PLAN_SUFFIX    = ".pl";
 
+    /**
+     * The suffix appended to a program or plan file name to obtain its
+     * journal of data object edits made since the file was written.
+     */
+    public static final String JOURNAL_SUFFIX = ".journal";
+
+    /**
+     * When the journal grows larger than this fraction of the size of the
+     * program file itself, the next store rewrites the program file in full
+     * and discards the journal.
+     */
+    private static final double MAX_JOURNAL_FRACTION = 0.25;
+
     /**
      * A file filter that separates out potential Science Program files
      * or Nightly Plan files in the database directory based upon whether they
@@ -129,64 +144,110 @@ final class FileManager implements IDBPersister {
         return new File(_dbDir, filePrefix + fileSuffix);
     }
 
-    public List<ISPProgram> reloadPrograms() throws IOException {
-        return reload("program", _progFilter);
+    /**
+     * Gets the journal that accompanies the given program or plan file.
+     */
+    private static File _getJournalFile(File docFile) {
+        return new File(docFile.getPath() + JOURNAL_SUFFIX);
     }
 
-    public List<ISPNightlyRecord> reloadPlans() throws IOException {
-        return reload("plan", _planFilter);
+    private static String _getSuffix(ISPRootNode node) {
+        return (node instanceof ISPNightlyRecord) ? PLAN_SUFFIX : PROGRAM_SUFFIX;
     }
 
-    private <T extends ISPRootNode> List<T> reload(final String name, final FileFilter filter) throws IOException {
-        System.out.println(String.format("Loading the %s database ...", name));
+    public void reloadPrograms(Consumer<ISPProgram> sink) throws IOException {
+        reload("program", _progFilter, sink);
+    }
 
-        final long time1      = System.currentTimeMillis();
-        final File[] fileA    = _dbDir.listFiles(filter);
-        final List<T> retList = new ArrayList<T>(fileA.length);
+    public void reloadPlans(Consumer<ISPNightlyRecord> sink) throws IOException {
+        reload("plan", _planFilter, sink);
+    }
 
-        // Try to load each file.
-        for (final File progFile : fileA) {
+    /**
+     * Loads a single program or plan file, applying its journal if any.
+     */
+    private MemAbstractBase _load(File progFile) throws IOException {
+        final MemAbstractBase mab = _ser.load(progFile);
+        if (mab == null) return null;
+
+        // Apply any edits made since the file was written.
+        final File journal = _getJournalFile(progFile);
+        if (journal.exists()) _ser.replayJournal(mab, journal);
+        return mab;
+    }
 
-            // Load the program file.
-            final T prog;
-            try {
-                prog = (T) _ser.load(progFile);
-                if (prog == null) continue;
-            } catch (Exception ex) {
-                String path = _getPath(progFile);
+    @SuppressWarnings("unchecked")
+    private <T extends ISPRootNode> void reload(final String name, final FileFilter filter, final Consumer<T> sink) throws IOException {
+        System.out.println(String.format("Loading the %s database ...", name));
+
+        // Sort the files so that the outcome when two files contain the same
+        // program is deterministic.
+        final File[] fileA = _dbDir.listFiles(filter);
+        Arrays.sort(fileA);
+
+        final ProgramLoader<T> loader = new ProgramLoader<>(name, fileA, f -> (T) _load(f));
+        DatabaseLoadStats.instance.setLoader(loader);
+        loader.run(
+            (progFile, prog) -> {
+                // If there are two program files with the same program (i.e.,
+                // with the same key), just skip the next one read.
+                final SPNodeKey key = prog.getNodeKey();
+                if (_fileMap.get(key) != null) {
+                    System.out.println("Already loaded: " + key);
+                    return; // already loaded
+                }
+                _fileMap.put(key, progFile);
+                sink.accept(prog);
+            },
+            (progFile, ex) -> {
+                final String path = _getPath(progFile);
                 if (ex.getCause() instanceof InvalidClassException) {
                     System.err.println("Warning: incompatible file: '" + path + "'. Please delete and reimport from XML");
                 } else {
                     System.err.println("Problem reading program file `" + path + "': " + ex);
                 }
-                continue;
             }
+        );
+        loader.logSummary();
 
-            // If there are two program files with the same program (i.e.,
-            // with the same key), just skip the next one read.
-            final SPNodeKey key = prog.getNodeKey();
-            if (_fileMap.get(key) != null) {
-                System.out.println("Already loaded: " + key);
-                continue; // already loaded
-            }
-            _fileMap.put(key, progFile);
+        final String msg = String.format("Finished loading %ss: %s", name, loader.getProgress());
+        System.out.println(msg);
+    }
 
-            retList.add(prog);
-        }
+    public void store(ISPRootNode mab) throws IOException {
+        _storeProgram(mab, _getSuffix(mab));
+    }
 
-        final long time2 = System.currentTimeMillis();
+    /**
+     * Appends the edited data objects to the program's journal, unless the
+     * program file must be (re)written anyway because it doesn't exist yet,
+     * the program has been renamed, or the journal has grown too large.  In
+     * those cases the full program is stored and the journal discarded.
+     */
+    public void storeChanges(ISPRootNode node, Set<SPNodeKey> keys) throws IOException {
+        final String suffix = _getSuffix(node);
+        final File file     = _getDocumentFile(node, suffix);
+        final File journal  = _getJournalFile(file);
 
-        final String msg = String.format("Finished loading: %d ms, %d %ss", time2-time1, fileA.length, name);
-        System.out.println(msg);
-        return retList;
+        final File curFile;
+        synchronized (this) {
+            curFile = _fileMap.get(node.getNodeKey());
+        }
 
-    }
+        final boolean compact = !file.equals(curFile) || !file.exists() ||
+                (journal.length() > file.length() * MAX_JOURNAL_FRACTION);
 
-    public void store(ISPRootNode mab) throws IOException {
-        if (mab instanceof ISPNightlyRecord) {
-            _storeProgram(mab, PLAN_SUFFIX);
+        if (compact) {
+            _storeProgram(node, suffix);
         } else {
-            _storeProgram(mab, PROGRAM_SUFFIX);
+            try {
+                _ser.appendJournal(node, keys, journal);
+            } catch (IOException ex) {
+                // The journal may end in a partial record if it couldn't be
+                // cut back, so store the whole program and discard it.
+                System.err.println("Problem appending to journal `" + _getPath(journal) + "', storing the program: " + ex);
+                _storeProgram(node, suffix);
+            }
         }
     }
 
@@ -202,6 +263,7 @@ final class FileManager implements IDBPersister {
             if ((oldFile != null) && !newFile.equals(oldFile) && oldFile.exists()) {
                 // Cleanup the old file
                 oldFile.delete();
+                _getJournalFile(oldFile).delete();
             }
             _fileMap.put(key, newFile);
         }
@@ -225,6 +287,9 @@ final class FileManager implements IDBPersister {
             // Rename the temp file to the destination file.
             file.delete(); // under win2k, rename fails if file exists
             if (!tmpFile.renameTo(file)) throw new IOException("Couldn't store the program.");
+
+            // The journal is now reflected in the file itself.
+            _getJournalFile(file).delete();
         } finally {
             SPNodeKeyLocks.instance.readUnlock(key);
         }
@@ -232,7 +297,7 @@ final class FileManager implements IDBPersister {
 
     @Override public synchronized long size(SPNodeKey key) {
         final File f = _fileMap.get(key);
-        return (f == null) ? -1 : f.length();
+        return (f == null) ? -1 : f.length() + _getJournalFile(f).length();
     }
 
     /**
@@ -240,7 +305,10 @@ final class FileManager implements IDBPersister {
      */
     public synchronized void remove(SPNodeKey key) {
         final File progFile = _fileMap.remove(key);
-        if (progFile != null) progFile.delete();
+        if (progFile != null) {
+            progFile.delete();
+            _getJournalFile(progFile).delete();
+        }
     }
 
     /**
@@ -273,7 +341,7 @@ final class FileManager implements IDBPersister {
         final File[] fileA    = _dbDir.listFiles(filter);
         long total = 0L;
         for (final File progFile : fileA)
-            total = total + progFile.length();
+            total = total + progFile.length() + _getJournalFile(progFile).length();
         return total;
     }
 
@@ -3,15 +3,32 @@ package edu.gemini.pot.spdb;
 import edu.gemini.pot.sp.*;
 
 import java.io.IOException;
-import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 // A lame interface that closely matches the existing FileManager so as to
 // easily allow one to choice between it and a truly transient database.
 
 interface IDBPersister {
-    List<ISPProgram> reloadPrograms() throws IOException;
-    List<ISPNightlyRecord> reloadPlans() throws IOException;
+    /**
+     * Loads the stored programs, passing each to the sink as it becomes
+     * available.  Returns once all programs have been loaded.
+     */
+    void reloadPrograms(Consumer<ISPProgram> sink) throws IOException;
+
+    /**
+     * Loads the stored nightly plans, passing each to the sink as it becomes
+     * available.  Returns once all plans have been loaded.
+     */
+    void reloadPlans(Consumer<ISPNightlyRecord> sink) throws IOException;
     void store(ISPRootNode node) throws IOException;
+
+    /**
+     * Stores edits to the data objects of the nodes with the given keys,
+     * which may be done incrementally rather than storing the entire program.
+     */
+    void storeChanges(ISPRootNode node, Set<SPNodeKey> keys) throws IOException;
+
     void remove(SPNodeKey key);
 
     /** Gets the size of the program file on disk, or -1 if not known. */
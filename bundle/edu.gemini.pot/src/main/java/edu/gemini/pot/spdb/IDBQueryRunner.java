@@ -27,6 +27,16 @@ public interface IDBQueryRunner {
      */
     <T extends IDBQueryFunctor> T queryObservations(T functor) ;
 
+    /**
+     * Queries the available observations that pass the <code>filter</code>,
+     * applying the given <code>functor</code> on each.  Functors that
+     * implement {@link IDBSplittableQueryFunctor} are run in parallel.
+     *
+     * @return the query functor itself; if called remotely the return
+     * value will (of course) be a distinct copy of the method argument
+     */
+    <T extends IDBQueryFunctor> T queryObservations(T functor, DBQueryFilter filter) ;
+
     /**
      * Queries the available programs, applying the given
      * <code>functor</code> on each.
@@ -36,6 +46,17 @@ public interface IDBQueryRunner {
      */
     <T extends IDBQueryFunctor> T queryPrograms(T functor) ;
 
+    /**
+     * Queries the available programs that could contain anything matching
+     * the <code>filter</code>, applying the given <code>functor</code> on
+     * each.  Functors that implement {@link IDBSplittableQueryFunctor} are run
+     * in parallel.
+     *
+     * @return the query functor itself; if called remotely the return
+     * value will (of course) be a distinct copy of the method argument
+     */
+    <T extends IDBQueryFunctor> T queryPrograms(T functor, DBQueryFilter filter) ;
+
     /**
      * Queries the available nightly plans, applying the given
      * <code>functor</code> on each.
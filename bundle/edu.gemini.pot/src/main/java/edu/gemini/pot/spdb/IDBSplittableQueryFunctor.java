@@ -0,0 +1,42 @@
+package edu.gemini.pot.spdb;
+
+/**
+ * A query functor that may be run in parallel.  Instead of visiting every
+ * node itself, the query runner {@link #split splits} the functor into one
+ * partial functor per program and executes the partials concurrently.  Each
+ * partial sees only the nodes of its own program, in the usual order.  When
+ * they have all finished, the partials are {@link #merge merged} back into
+ * the original functor one at a time, in a deterministic program order, on
+ * the calling thread.
+ *
+ * <p>The lifecycle is therefore:
+ * <ol>
+ *   <li><code>init()</code> on this functor</li>
+ *   <li><code>split()</code> of this functor once per program, on the
+ *   calling thread</li>
+ *   <li>for each partial, concurrently: <code>init()</code>,
+ *   <code>execute()</code> (until <code>isDone()</code>) and
+ *   <code>finished()</code></li>
+ *   <li><code>merge()</code> of each partial into this functor</li>
+ *   <li><code>finished()</code> on this functor</li>
+ * </ol>
+ *
+ * Partials must not share mutable state with the functor that created them
+ * or with each other.  An exception thrown while running a partial is
+ * recorded in the partial with <code>setException()</code>, so
+ * <code>merge()</code> should carry it over along with the results.
+ *
+ * @param <F> the concrete type of the partial functors
+ */
+public interface IDBSplittableQueryFunctor<F extends IDBSplittableQueryFunctor<F>> extends IDBQueryFunctor {
+
+    /**
+     * Creates a new, empty partial functor configured as this one is.
+     */
+    F split();
+
+    /**
+     * Combines the results of an executed partial functor into this one.
+     */
+    void merge(F partial);
+}
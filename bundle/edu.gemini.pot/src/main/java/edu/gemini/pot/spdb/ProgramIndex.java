@@ -0,0 +1,149 @@
+package edu.gemini.pot.spdb;
+
+import edu.gemini.pot.sp.ISPNode;
+import edu.gemini.pot.sp.ISPObservation;
+import edu.gemini.pot.sp.ISPProgram;
+import edu.gemini.pot.sp.ISPRootNode;
+import edu.gemini.pot.sp.SPNodeKey;
+import edu.gemini.pot.sp.SPUtil;
+import edu.gemini.spModel.core.ProgramId;
+import edu.gemini.spModel.core.ProgramId$;
+import edu.gemini.spModel.core.ProgramType;
+import edu.gemini.spModel.core.SPProgramID;
+import edu.gemini.spModel.core.Semester;
+import edu.gemini.spModel.obs.ObservationStatus;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An in-memory secondary index of the attributes used by
+ * {@link DBQueryFilter}: program semester and type, and the status of each
+ * observation.  Entries are computed on demand and discarded whenever the
+ * program is edited, replaced or removed, so the index never holds more than
+ * one entry per program and is cheap to keep for programs that are never
+ * queried with a filter.
+ */
+final class ProgramIndex implements ProgramEventListener<ISPProgram>, PropertyChangeListener {
+
+    /**
+     * Indexed attributes of a single program.
+     */
+    static final class Entry {
+        final String semester;   // null if unknown
+        final ProgramType type;  // null if unknown
+
+        // Observation statuses are the expensive part so they are only
+        // computed for queries that filter on them.
+        private Map<SPNodeKey, ObservationStatus> _obsStatus;
+
+        Entry(String semester, ProgramType type) {
+            this.semester = semester;
+            this.type     = type;
+        }
+
+        synchronized Map<SPNodeKey, ObservationStatus> obsStatus(ISPProgram prog) {
+            if (_obsStatus == null) {
+                final Map<SPNodeKey, ObservationStatus> m = new HashMap<>();
+                for (ISPObservation obs : prog.getAllObservations()) {
+                    m.put(obs.getNodeKey(), ObservationStatus.computeFor(obs));
+                }
+                _obsStatus = m;
+            }
+            return _obsStatus;
+        }
+    }
+
+    private final ProgramManager<ISPProgram> _progMan;
+    private final Map<SPNodeKey, Entry> _entries = new ConcurrentHashMap<>();
+
+    ProgramIndex(ProgramManager<ISPProgram> progMan) {
+        _progMan = progMan;
+        progMan.addListener(this);
+        for (ISPProgram prog : progMan.getPrograms()) prog.addCompositeChangeListener(this);
+    }
+
+    void shutdown() {
+        _progMan.removeListener(this);
+        for (ISPProgram prog : _progMan.getPrograms()) prog.removeCompositeChangeListener(this);
+        _entries.clear();
+    }
+
+    private static Entry compute(ISPProgram prog) {
+        final SPProgramID pid = prog.getProgramID();
+        if (pid == null) return new Entry(null, null);
+
+        final ProgramId id = ProgramId$.MODULE$.parse(pid.stringValue());
+        final Semester sem = id.semester().isDefined() ? id.semester().get() : null;
+        return new Entry((sem == null) ? null : sem.toString(), id.ptype().isDefined() ? id.ptype().get() : null);
+    }
+
+    Entry lookup(ISPProgram prog) {
+        return _entries.computeIfAbsent(prog.getProgramKey(), k -> compute(prog));
+    }
+
+    /**
+     * Determines whether the program can contain anything matched by the
+     * filter.
+     */
+    boolean matchesProgram(ISPProgram prog, DBQueryFilter filter) {
+        final Entry e = lookup(prog);
+        if (!filter.matchesProgram(e.semester, e.type)) return false;
+        if (!filter.filtersObservationStatus()) return true;
+        for (ObservationStatus s : e.obsStatus(prog).values()) {
+            if (filter.matchesObservation(s)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gets the observations of the program matched by the filter, in program
+     * order.
+     */
+    List<ISPObservation> matchingObservations(ISPProgram prog, DBQueryFilter filter) {
+        final List<ISPObservation> all = prog.getAllObservations();
+        final Entry e = lookup(prog);
+        if (!filter.matchesProgram(e.semester, e.type)) return Collections.emptyList();
+        if (!filter.filtersObservationStatus()) return all;
+
+        final Map<SPNodeKey, ObservationStatus> statusMap = e.obsStatus(prog);
+        final List<ISPObservation> res = new ArrayList<>(all.size());
+        for (ISPObservation obs : all) {
+            // An observation added since the entry was computed will have
+            // invalidated it, but be safe in case of a race.
+            ObservationStatus s = statusMap.get(obs.getNodeKey());
+            if (s == null) s = ObservationStatus.computeFor(obs);
+            if (filter.matchesObservation(s)) res.add(obs);
+        }
+        return res;
+    }
+
+    @Override public void propertyChange(PropertyChangeEvent pce) {
+        if (SPUtil.isTransientClientDataPropertyName(pce.getPropertyName())) return;
+
+        final Object src = pce.getSource();
+        if (!(src instanceof ISPNode)) return;
+
+        final ISPRootNode root = ((ISPNode) src).getRootAncestor();
+        if (root != null) _entries.remove(root.getProgramKey());
+    }
+
+    @Override public void programAdded(ProgramEvent<ISPProgram> pme) {
+        final ISPProgram prog = pme.getNewProgram();
+        _entries.remove(prog.getProgramKey());
+        prog.addCompositeChangeListener(this);
+    }
+
+    @Override public void programReplaced(ProgramEvent<ISPProgram> pme) {
+        programRemoved(pme);
+        programAdded(pme);
+    }
+
+    @Override public void programRemoved(ProgramEvent<ISPProgram> pme) {
+        final ISPProgram prog = pme.getOldProgram();
+        prog.removeCompositeChangeListener(this);
+        _entries.remove(prog.getProgramKey());
+    }
+}
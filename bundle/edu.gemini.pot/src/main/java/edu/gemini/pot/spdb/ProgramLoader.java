@@ -0,0 +1,244 @@
+package edu.gemini.pot.spdb;
+
+import edu.gemini.pot.sp.ISPRootNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loads a set of program (or plan) files concurrently on a bounded pool of
+ * worker threads.  Loaded programs are handed to a sink in file order, as
+ * soon as the program and all those before it are available, so that the
+ * outcome (for example which of two files with the same program key wins) is
+ * independent of the order in which the workers finish.  Keeps track of
+ * progress and a histogram of per-file load times, which are published over
+ * JMX by {@link DatabaseLoadStats}.
+ *
+ * <p>Note that although the sink receives programs as they are loaded, the
+ * database itself is only made available to clients once every file has
+ * been loaded.  Until then a store or sync of a program that has not yet been
+ * read could write a second copy of it, or be replaced when the stored copy
+ * is loaded.</p>
+ */
+final class ProgramLoader<T extends ISPRootNode> {
+    private static final Logger LOG = Logger.getLogger(ProgramLoader.class.getName());
+
+    /** How often progress is logged while loading. */
+    private static final long PROGRESS_INTERVAL_MS = 5000;
+
+    /**
+     * Loads a single file, returning <code>null</code> if there is nothing
+     * to load.
+     */
+    interface FileLoader<T> {
+        T load(File f) throws Exception;
+    }
+
+    /**
+     * Loading progress at a moment in time.
+     */
+    static final class Progress {
+        final int total;
+        final int completed;
+        final int failed;
+        final long elapsedMs;
+
+        Progress(int total, int completed, int failed, long elapsedMs) {
+            this.total     = total;
+            this.completed = completed;
+            this.failed    = failed;
+            this.elapsedMs = elapsedMs;
+        }
+
+        /**
+         * Estimated time remaining, in milliseconds, based upon the average
+         * rate so far.  Returns -1 if nothing has completed yet.
+         */
+        long etaMs() {
+            if (completed == 0) return -1;
+            return elapsedMs * (total - completed) / completed;
+        }
+
+        boolean isDone() {
+            return completed == total;
+        }
+
+        @Override public String toString() {
+            final int pct = (total == 0) ? 100 : (100 * completed / total);
+            final long eta = etaMs();
+            return String.format("%d/%d (%d%%) in %d ms, %d failed, eta %s", completed, total, pct, elapsedMs, failed,
+                    (eta < 0) ? "?" : (eta / 1000) + " s");
+        }
+    }
+
+    // Histogram buckets are powers of two milliseconds: [0,1), [1,2), [2,4), ...
+    private static final int BUCKETS = 16;
+
+    private final String name;
+    private final File[] files;
+    private final FileLoader<T> loader;
+    private final int threads;
+
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed    = new AtomicInteger();
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+    private final AtomicLong maxMs = new AtomicLong();
+    private volatile long startMs;
+    private volatile long endMs;
+
+    private static final class Result<T> {
+        final T value;
+        final Exception error;
+
+        Result(T value, Exception error) {
+            this.value = value;
+            this.error = error;
+        }
+    }
+
+    /**
+     * @param name    name of the kind of file being loaded, for logging
+     * @param files   files to load, in the order in which they should be
+     *                delivered
+     * @param loader  loads a single file
+     * @param threads maximum number of worker threads
+     */
+    ProgramLoader(String name, File[] files, FileLoader<T> loader, int threads) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be > 0");
+        this.name    = name;
+        this.files   = files.clone();
+        this.loader  = loader;
+        this.threads = Math.max(1, Math.min(threads, files.length));
+    }
+
+    ProgramLoader(String name, File[] files, FileLoader<T> loader) {
+        this(name, files, loader, Runtime.getRuntime().availableProcessors());
+    }
+
+    private static int bucket(long ms) {
+        int b = 0;
+        while ((ms > 0) && (b < BUCKETS - 1)) {
+            ms >>= 1;
+            ++b;
+        }
+        return b;
+    }
+
+    private Result<T> time(File f) {
+        final long t0 = System.currentTimeMillis();
+        Result<T> res;
+        try {
+            res = new Result<>(loader.load(f), null);
+        } catch (Exception ex) {
+            failed.incrementAndGet();
+            res = new Result<>(null, ex);
+        }
+        final long ms = System.currentTimeMillis() - t0;
+        histogram.incrementAndGet(bucket(ms));
+        long max;
+        do {
+            max = maxMs.get();
+        } while ((ms > max) && !maxMs.compareAndSet(max, ms));
+        completed.incrementAndGet();
+        return res;
+    }
+
+    /**
+     * Loads all the files, passing each successfully loaded program to
+     * <code>sink</code> and each failure to <code>errors</code>, both in file
+     * order.  Returns when all files have been processed.
+     */
+    void run(BiConsumer<File, T> sink, BiConsumer<File, Exception> errors) throws IOException {
+        startMs = System.currentTimeMillis();
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            final Thread t = new Thread(r, "ODB Loader " + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        try {
+            final List<Future<Result<T>>> futures = new ArrayList<>(files.length);
+            for (final File f : files) futures.add(pool.submit(() -> time(f)));
+
+            long lastLog = startMs;
+            for (int i = 0; i < files.length; ++i) {
+                final Result<T> res;
+                try {
+                    res = futures.get(i).get();
+                } catch (InterruptedException ex) {
+                    throw new IOException("Interrupted while loading the " + name + " database", ex);
+                } catch (ExecutionException ex) {
+                    throw new IOException("Unexpected problem loading " + files[i], ex.getCause());
+                }
+
+                if (res.error != null) {
+                    errors.accept(files[i], res.error);
+                } else if (res.value != null) {
+                    sink.accept(files[i], res.value);
+                }
+
+                final long now = System.currentTimeMillis();
+                if (now - lastLog > PROGRESS_INTERVAL_MS) {
+                    LOG.info(String.format("Loading %ss: %s", name, getProgress()));
+                    lastLog = now;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            endMs = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Gets the name of the kind of file being loaded.
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Returns <code>true</code> once {@link #run} has finished.
+     */
+    boolean isFinished() {
+        return endMs != 0;
+    }
+
+    /**
+     * Gets the current loading progress.
+     */
+    Progress getProgress() {
+        final long end = (endMs == 0) ? System.currentTimeMillis() : endMs;
+        return new Progress(files.length, completed.get(), failed.get(), (startMs == 0) ? 0 : end - startMs);
+    }
+
+    /**
+     * Gets a human readable histogram of per-file load times.
+     */
+    String formatHistogram() {
+        final StringBuilder buf = new StringBuilder();
+        buf.append(String.format("%s load times (%d threads, max %d ms):", name, threads, maxMs.get()));
+        for (int b = 0; b < BUCKETS; ++b) {
+            final long count = histogram.get(b);
+            if (count == 0) continue;
+            final long lo = (b == 0) ? 0 : (1L << (b - 1));
+            final String hi = (b == BUCKETS - 1) ? "" : String.valueOf(1L << b);
+            buf.append(String.format("%n  [%6d, %6s) ms: %d", lo, hi, count));
+        }
+        return buf.toString();
+    }
+
+    void logSummary() {
+        if (LOG.isLoggable(Level.INFO)) LOG.info(formatHistogram());
+    }
+}
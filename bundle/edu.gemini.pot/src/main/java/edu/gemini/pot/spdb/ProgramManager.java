@@ -31,11 +31,18 @@ final class ProgramManager<N extends ISPRootNode> {
         _progKeyMap = new TreeMap<>();
         _progIdMap  = new TreeMap<>();
 
-        for (N prog : progCollection) {
-            _progKeyMap.put(prog.getProgramKey(), prog);
-            final SPProgramID progId = prog.getProgramID();
-            if (progId != null) _progIdMap.put(progId, prog);
-        }
+        for (N prog : progCollection) putLoadedProgram(prog);
+    }
+
+    /**
+     * Adds a program read from storage while the database is being loaded.
+     * Unlike {@link #putProgram}, no event is fired since the program is not
+     * new to the database.
+     */
+    synchronized void putLoadedProgram(N prog) {
+        _progKeyMap.put(prog.getProgramKey(), prog);
+        final SPProgramID progId = prog.getProgramID();
+        if (progId != null) _progIdMap.put(progId, prog);
     }
 
     /**
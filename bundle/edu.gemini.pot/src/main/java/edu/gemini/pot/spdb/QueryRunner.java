@@ -3,10 +3,15 @@ package edu.gemini.pot.spdb;
 import edu.gemini.pot.sp.*;
 
 import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -18,6 +23,18 @@ import java.util.logging.Logger;
 final class QueryRunner implements IDBQueryRunner {
     private static final Logger LOG = Logger.getLogger(QueryRunner.class.getName());
 
+    // Shared by all query runners so that concurrent parallel queries
+    // together cannot use more than one thread per core.
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+            Runtime.getRuntime().availableProcessors(),
+            pool -> {
+                final ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                t.setName("ODB Query " + t.getPoolIndex());
+                t.setDaemon(true);
+                return t;
+            },
+            null, false);
+
     private DBLocalDatabase _database;
     private DatabaseManager _dataMan;
     private Set<Principal> _principals;
@@ -35,10 +52,24 @@ final class QueryRunner implements IDBQueryRunner {
      * Runs a query on the available observations.
      */
     public <T extends IDBQueryFunctor> T queryObservations(T queryFunctor) {
-        List<ISPObservation> lst = new LinkedList<>();
-        for (ISPProgram prog : _dataMan.getProgramManager().getPrograms()) {
-            lst.addAll(prog.getAllObservations());
+        return queryObservations(queryFunctor, DBQueryFilter.ALL);
+    }
+
+    /**
+     * Runs a query on the available observations that pass the filter.
+     */
+    public <T extends IDBQueryFunctor> T queryObservations(T queryFunctor, DBQueryFilter filter) {
+        final List<ISPProgram> progs = _dataMan.getProgramManager().getPrograms();
+        final Function<ISPProgram, List<ISPObservation>> obs = filter.isUnrestricted() ?
+                ISPProgram::getAllObservations :
+                p -> _dataMan.getProgramIndex().matchingObservations(p, filter);
+
+        if (queryFunctor instanceof IDBSplittableQueryFunctor) {
+            return _doParallelQuery(progs, obs, queryFunctor);
         }
+
+        final List<ISPObservation> lst = new ArrayList<>();
+        for (ISPProgram prog : progs) lst.addAll(obs.apply(prog));
         return _doQuery(lst, queryFunctor);
     }
 
@@ -46,7 +77,22 @@ final class QueryRunner implements IDBQueryRunner {
      * Runs a query on the available programs.
      */
     public <T extends IDBQueryFunctor> T queryPrograms(T queryFunctor) {
-        List<ISPProgram> lst = _dataMan.getProgramManager().getPrograms();
+        return queryPrograms(queryFunctor, DBQueryFilter.ALL);
+    }
+
+    /**
+     * Runs a query on the available programs that pass the filter.
+     */
+    public <T extends IDBQueryFunctor> T queryPrograms(T queryFunctor, DBQueryFilter filter) {
+        final List<ISPProgram> lst = _dataMan.getProgramManager().getPrograms();
+        if (!filter.isUnrestricted()) {
+            final ProgramIndex index = _dataMan.getProgramIndex();
+            lst.removeIf(p -> !index.matchesProgram(p, filter));
+        }
+
+        if (queryFunctor instanceof IDBSplittableQueryFunctor) {
+            return _doParallelQuery(lst, Collections::singletonList, queryFunctor);
+        }
         return _doQuery(lst, queryFunctor);
     }
 
@@ -85,4 +131,56 @@ final class QueryRunner implements IDBQueryRunner {
         return queryFunctor;
     }
 
+    /**
+     * Runs a splittable query, executing one partial functor per program on
+     * the shared fork-join pool and merging the results in program order.
+     *
+     * @param nodes extracts the nodes of a program that should be visited
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private <T extends IDBQueryFunctor> T _doParallelQuery(final List<ISPProgram> progs,
+                                                           final Function<ISPProgram, ? extends List<? extends ISPNode>> nodes,
+                                                           final T queryFunctor) {
+        final IDBSplittableQueryFunctor master = (IDBSplittableQueryFunctor) queryFunctor;
+        final IDBFunctor.Priority priority = queryFunctor.getPriority();
+
+        WithPriority.exec(priority, () -> {
+            FunctorLogger.Handback hb = _dataMan.functorLogger.logQueryStart(queryFunctor);
+            final List<ForkJoinTask<IDBSplittableQueryFunctor>> tasks = new ArrayList<>(progs.size());
+            try {
+                master.init();
+                if (!master.isDone()) {
+                    for (ISPProgram prog : progs) {
+                        final IDBSplittableQueryFunctor partial = master.split();
+                        tasks.add(POOL.submit(() -> {
+                            WithPriority.exec(priority, () -> _runPartial(partial, nodes.apply(prog)));
+                            return partial;
+                        }));
+                    }
+                    for (ForkJoinTask<IDBSplittableQueryFunctor> task : tasks) master.merge(task.join());
+                }
+                master.finished();
+            } catch (Exception ex) {
+                for (ForkJoinTask<?> task : tasks) task.cancel(false);
+                LOG.log(Level.WARNING, "Problem running functor: " + queryFunctor, ex);
+                queryFunctor.setException(ex);
+            }
+            _dataMan.functorLogger.logQueryEnd(queryFunctor, hb);
+        });
+        return queryFunctor;
+    }
+
+    private void _runPartial(IDBQueryFunctor partial, List<? extends ISPNode> nodeList) {
+        try {
+            partial.init();
+            final Iterator<? extends ISPNode> it = nodeList.iterator();
+            while (!partial.isDone() && it.hasNext()) {
+                partial.execute(_database, it.next(), _principals);
+            }
+            partial.finished();
+        } catch (Exception ex) {
+            LOG.log(Level.WARNING, "Problem running partial functor: " + partial, ex);
+            partial.setException(ex);
+        }
+    }
 }
@@ -201,11 +201,15 @@ final class StorageManager<N extends ISPRootNode> implements ProgramEventListene
      * Stores all the modified programs, if any.
      */
     private void _storeDirtyPrograms() {
-        for (N n : _dirty.getDirtyPrograms()) {
+        for (DirtyProgramListener.Changes<N> c : _dirty.getDirtyChanges()) {
             try {
-                _persister.store(n);
+                if (c.isFull()) {
+                    _persister.store(c.program);
+                } else {
+                    _persister.storeChanges(c.program, c.getDataObjectKeys());
+                }
             } catch (Exception ex) {
-                log(n, ex);
+                log(c.program, ex);
             }
         }
     }
@@ -1,14 +1,19 @@
 package edu.gemini.pot.spdb.osgi;
 
+import edu.gemini.pot.sp.SPNodeKeyLocks;
 import edu.gemini.pot.spdb.DBLocalDatabase;
+import edu.gemini.pot.spdb.DatabaseLoadStats;
 import edu.gemini.pot.spdb.IDBDatabaseService;
 import edu.gemini.pot.spdb.IDBQueryRunner;
 import edu.gemini.util.BundleProperties;
 import edu.gemini.util.osgi.*;
 import org.osgi.framework.*;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.security.Principal;
 import java.util.*;
 import java.util.logging.Level;
@@ -34,6 +39,16 @@ public class Activator implements BundleActivator {
      */
     public static final String BUNDLE_PROP_DIR = "edu.gemini.spdb.dir";
 
+    /**
+     * JMX name under which program lock contention statistics are published.
+     */
+    public static final String LOCK_STATS_MBEAN_NAME = "edu.gemini.pot:type=SPNodeKeyLocks";
+
+    /**
+     * JMX name under which the progress of loading the database is published.
+     */
+    public static final String LOAD_STATS_MBEAN_NAME = "edu.gemini.pot:type=DatabaseLoad";
+
     // Mutable state
     private DatabaseLoader loader;
 
@@ -55,6 +70,7 @@ public class Activator implements BundleActivator {
             loader = new DatabaseLoader(context, dbDir);
         }
 
+        registerStats();
     }
 
     public void stop(BundleContext context) throws Exception {
@@ -62,6 +78,37 @@ public class Activator implements BundleActivator {
             if (loader != null) loader.stop();
         } finally {
             loader = null;
+            unregisterStats();
+        }
+    }
+
+    private static void registerStats() {
+        register(LOCK_STATS_MBEAN_NAME, SPNodeKeyLocks.instance.getStats(), "program lock statistics");
+        register(LOAD_STATS_MBEAN_NAME, DatabaseLoadStats.instance, "database load progress");
+    }
+
+    private static void unregisterStats() {
+        unregister(LOCK_STATS_MBEAN_NAME, "program lock statistics");
+        unregister(LOAD_STATS_MBEAN_NAME, "database load progress");
+    }
+
+    private static void register(String mbeanName, Object mbean, String description) {
+        try {
+            final MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(mbeanName);
+            if (!mbs.isRegistered(name)) mbs.registerMBean(mbean, name);
+        } catch (Exception ex) {
+            LOGGER.log(Level.WARNING, "Could not register " + description + " MBean.", ex);
+        }
+    }
+
+    private static void unregister(String mbeanName, String description) {
+        try {
+            final MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(mbeanName);
+            if (mbs.isRegistered(name)) mbs.unregisterMBean(name);
+        } catch (Exception ex) {
+            LOGGER.log(Level.WARNING, "Could not unregister " + description + " MBean.", ex);
         }
     }
 
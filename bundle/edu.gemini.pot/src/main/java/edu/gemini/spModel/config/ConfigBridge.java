@@ -31,10 +31,10 @@ public final class ConfigBridge {
                 // Some params are more complex and have values that are
                 // actually system confs themselves.
                 final ISysConfig tmp = (ISysConfig) val;
-                final ItemKey newRoot = new ItemKey(rootKey, tmp.getSystemName());
+                final ItemKey newRoot = rootKey.child(tmp.getSystemName());
                 _addItems(newRoot, config, tmp.getParameters());
             } else {
-                config.putItem(new ItemKey(rootKey, paramName), val);
+                config.putItem(rootKey.child(paramName), val);
             }
         }
     }
@@ -44,7 +44,11 @@ public final class ConfigBridge {
     }
 
     public static ConfigSequence extractSequence(ISPObservation obs, Map<String, Object> options, ConfigValMap map, boolean filterMeta) {
-       return mapSequence(calculateSequence(obs, options, filterMeta), map);
+        // The default sequence is shared via the SequenceCache.
+        final ConfigSequence seq = ((options == null) && !filterMeta) ?
+                SequenceCache.lookup(obs) :
+                calculateSequence(obs, options, filterMeta);
+        return mapSequence(seq, map);
     }
 
     private static ConfigSequence mapSequence(ConfigSequence sequence, ConfigValMap map) {
@@ -60,7 +64,7 @@ public final class ConfigBridge {
         }
     }
 
-    private static ConfigSequence calculateSequence(ISPObservation obs, Map<String, Object> options, boolean filterMeta) {
+    static ConfigSequence calculateSequence(ISPObservation obs, Map<String, Object> options, boolean filterMeta) {
         ConfigSequence configSeq = new ConfigSequence();
 
         // make sure that important default options are added (e.g. smartgcal)
@@ -105,7 +109,7 @@ public final class ConfigBridge {
                 if (filterMeta && sysConfig.isMetadata()) continue;
 
                 String sysName = sysConfig.getSystemName();
-                ItemKey sysKey = new ItemKey(sysName);
+                ItemKey sysKey = ItemKey.intern(sysName);
                 _addItems(sysKey, config, sysConfig.getParameters());
             }
             configSeq.addStep(config);
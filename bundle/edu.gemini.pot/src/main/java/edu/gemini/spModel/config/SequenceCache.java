@@ -0,0 +1,176 @@
+package edu.gemini.spModel.config;
+
+import edu.gemini.pot.sp.ISPContainerNode;
+import edu.gemini.pot.sp.ISPNode;
+import edu.gemini.pot.sp.ISPObservation;
+import edu.gemini.pot.sp.ISPRootNode;
+import edu.gemini.pot.sp.SPNodeKey;
+import edu.gemini.shared.util.VersionVector;
+import edu.gemini.spModel.config2.ConfigSequence;
+import edu.gemini.spModel.gemini.calunit.smartgcal.CalibrationProvider;
+import edu.gemini.spModel.gemini.calunit.smartgcal.CalibrationProviderHolder;
+import edu.gemini.spModel.seqcomp.SeqRepeatCbOptions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of observation sequences, so that the step count, the
+ * observation class, the planned time and so on are all derived from a single
+ * run of the sequence builders.  A cached sequence is reused for as long as
+ * the observation is unchanged, which is determined by comparing the version
+ * vectors of every node in the observation subtree, and of the program node,
+ * with those recorded when the sequence was computed.  Since smart
+ * calibration updates install a new calibration provider, the provider in
+ * use is recorded as well.
+ *
+ * <p>Only the default sequence (no options, metadata included) is cached.
+ * The cached sequence itself is never handed out, only copies of it.
+ */
+public final class SequenceCache {
+
+    /** Maximum number of observation sequences kept. */
+    public static final int MAX_ENTRIES = 1000;
+
+    private static final class Entry {
+        final List<Object> fingerprint;
+        final ConfigSequence sequence;
+
+        Entry(List<Object> fingerprint, ConfigSequence sequence) {
+            this.fingerprint = fingerprint;
+            this.sequence    = sequence;
+        }
+    }
+
+    private static final Map<SPNodeKey, Entry> CACHE = new LinkedHashMap<SPNodeKey, Entry>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<SPNodeKey, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private static final LongAdder HITS   = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+
+    private SequenceCache() {
+        // defeat instantiation
+    }
+
+    // Adds the key and version of each node in the subtree to the
+    // fingerprint, returning false if any node is not yet versioned (for
+    // example because the observation hasn't been added to a program) in
+    // which case changes to it cannot be detected.
+    private static boolean addVersions(ISPNode node, List<Object> fingerprint) {
+        final VersionVector<?, ?> vv = node.getVersion();
+        if (vv.isEmpty()) return false;
+        fingerprint.add(node.getNodeKey());
+        fingerprint.add(vv);
+
+        if (node instanceof ISPContainerNode) {
+            for (ISPNode child : ((ISPContainerNode) node).getChildren()) {
+                if (!addVersions(child, fingerprint)) return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<Object> fingerprint(ISPObservation obs, CalibrationProvider provider) {
+        final ISPRootNode root = obs.getRootAncestor();
+        if (root == null) return null;
+
+        final List<Object> fingerprint = new ArrayList<>();
+        fingerprint.add(provider);
+        fingerprint.add(root.getVersion());
+        return addVersions(obs, fingerprint) ? fingerprint : null;
+    }
+
+    // Gets the cached sequence itself, which must not be modified or handed
+    // out.
+    private static ConfigSequence lookupShared(ISPObservation obs) {
+        obs.getProgramReadLock();
+        try {
+            final CalibrationProvider provider = CalibrationProviderHolder.getProvider();
+            final List<Object> fingerprint = fingerprint(obs, provider);
+            final SPNodeKey key = obs.getNodeKey();
+
+            if (fingerprint != null) {
+                final Entry e;
+                synchronized (CACHE) {
+                    e = CACHE.get(key);
+                }
+                if ((e != null) && e.fingerprint.equals(fingerprint)) {
+                    HITS.increment();
+                    return e.sequence;
+                }
+            }
+
+            MISSES.increment();
+            final Map<String, Object> options = new HashMap<>();
+            SeqRepeatCbOptions.setCalibrationProvider(options, provider);
+            final ConfigSequence seq = ConfigBridge.calculateSequence(obs, options, false);
+
+            if (fingerprint != null) {
+                synchronized (CACHE) {
+                    CACHE.put(key, new Entry(fingerprint, seq));
+                }
+            }
+            return seq;
+        } finally {
+            obs.returnProgramReadLock();
+        }
+    }
+
+    /**
+     * Gets the default sequence of the observation, computing it only if the
+     * observation has changed since it was last computed.
+     *
+     * @return a copy of the sequence, which the caller is free to modify
+     */
+    public static ConfigSequence lookup(ISPObservation obs) {
+        return new ConfigSequence(lookupShared(obs));
+    }
+
+    /**
+     * Gets the number of steps in the default sequence of the observation.
+     */
+    public static int stepCount(ISPObservation obs) {
+        return lookupShared(obs).size();
+    }
+
+    /**
+     * Discards all cached sequences.
+     */
+    public static void clear() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    public static long getHitCount() {
+        return HITS.sum();
+    }
+
+    public static long getMissCount() {
+        return MISSES.sum();
+    }
+
+    public static int size() {
+        synchronized (CACHE) {
+            return CACHE.size();
+        }
+    }
+
+    /**
+     * Gets a one line summary of the cache statistics, for logging.
+     */
+    public static String getStatistics() {
+        final long hits   = getHitCount();
+        final long misses = getMissCount();
+        final long total  = hits + misses;
+        return String.format("SequenceCache: %d entries, %d hits, %d misses (%.1f%% hit rate)",
+                size(), hits, misses, (total == 0) ? 0.0 : 100.0 * hits / total);
+    }
+}
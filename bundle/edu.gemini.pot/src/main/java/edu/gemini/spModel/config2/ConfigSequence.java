@@ -1,8 +1,15 @@
 package edu.gemini.spModel.config2;
 
+import edu.gemini.shared.util.immutable.MapOp;
+
 import java.util.*;
-import java.io.Serializable;
+import java.util.function.BiConsumer;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
 
 /**
  * The ConfigSequence is an ordered collection of {@link Config} instances.
@@ -35,43 +42,148 @@ import java.io.IOException;
  * sequence structurally, it <em>must</em> be synchronized externally.
  */
 public class ConfigSequence implements Serializable {
+    // Fixed to the value computed for the class before the columnar store
+    // was introduced, since the serialized form is unchanged.
+    private static final long serialVersionUID = -940889628006001314L;
+
+    // Serialized as the compact list of Configs, as it always has been.
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("_configs",   List.class),
+        new ObjectStreamField("_isCompact", boolean.class),
+    };
 
     public interface Predicate {
         boolean matches(Config config);
     }
 
-    private List<Config> _configs = new ArrayList<>();
-    private boolean _isCompact = true;
+    private static final int INITIAL_COLUMNS = 16;
+    private static final int INITIAL_STEPS   = 8;
 
-    private transient List<Config> _completeConfigs;
+    // The sequence is stored by column, one array of values per item key.
+    // _values[c][s] is the value of the item with key _keys[c] in effect at
+    // step s (so values inherited from previous steps are filled in), or
+    // null if the item hasn't been introduced yet.  _explicit[c] records the
+    // steps whose Config, as added to the sequence, contained the item.
+    //
+    // Values at steps < _size are never modified in place.  Operations other
+    // than adding a step at the end rebuild the store, so the StepConfig views
+    // handed out remain valid (and unchanged) regardless of what happens to
+    // the sequence afterwards.
+    private transient int _size;
+    private transient int _capacity;
+    private transient int _columnCount;
+    private transient ItemKey[] _keys;
+    private transient Object[][] _values;
+    private transient BitSet[] _explicit;
+    private transient Map<ItemKey, Integer> _columnIndex;
+
+    // Set when the arrays are shared with a copy of this sequence, in which
+    // case they must be copied before a step is added.
+    private transient boolean _shared;
 
-    // Iterator class used to make copies of the Config object it generates.
-    private class CopyIterator implements Iterator<Config> {
-        private Iterator<Config> _srcIter;
+    public static final ConfigSequence EMPTY = new ConfigSequence();
 
-        CopyIterator(Iterator<Config> srcIter) {
-            _srcIter = srcIter;
+    /**
+     * A read-only view of a single step of a sequence that behaves as a
+     * mutable copy.  Reads go straight to the column store until the first
+     * modification, at which point the step is copied into a private
+     * {@link DefaultConfig}.
+     */
+    static final class StepConfig implements Config {
+        private final ItemKey[] _keys;
+        private final Object[][] _values;
+        private final Map<ItemKey, Integer> _columnIndex;
+        private final int _columnCount;
+        private final int _step;
+
+        private DefaultConfig _copy;
+
+        StepConfig(ConfigSequence seq, int step) {
+            _keys        = seq._keys;
+            _values      = seq._values;
+            _columnIndex = seq._columnIndex;
+            _columnCount = seq._columnCount;
+            _step        = step;
         }
 
-        public boolean hasNext() {
-            return _srcIter.hasNext();
+        private DefaultConfig copy() {
+            if (_copy == null) _copy = new DefaultConfig(this);
+            return _copy;
         }
 
-        public Config next() {
-            return new DefaultConfig(_srcIter.next());
+        void forEachItem(BiConsumer<ItemKey, Object> f) {
+            if (_copy != null) {
+                _copy.forEachItem(f);
+            } else {
+                for (int c = 0; c < _columnCount; ++c) {
+                    final Object val = _values[c][_step];
+                    if (val != null) f.accept(_keys[c], val);
+                }
+            }
         }
 
-        public void remove() {
-            throw new UnsupportedOperationException();
+        public Object getItemValue(ItemKey key) {
+            if (_copy != null) return _copy.getItemValue(key);
+            final Integer c = _columnIndex.get(key);
+            return ((c == null) || (c >= _columnCount)) ? null : _values[c][_step];
         }
-    }
 
-    public static final ConfigSequence EMPTY = new ConfigSequence();
+        public boolean containsItem(ItemKey key) {
+            return (_copy != null) ? _copy.containsItem(key) : (getItemValue(key) != null);
+        }
+
+        public int size() {
+            if (_copy != null) return _copy.size();
+            int res = 0;
+            for (int c = 0; c < _columnCount; ++c) {
+                if (_values[c][_step] != null) ++res;
+            }
+            return res;
+        }
+
+        public boolean isEmpty() {
+            return size() == 0;
+        }
+
+        public ItemEntry[] itemEntries()                  { return copy().itemEntries();       }
+        public ItemEntry[] itemEntries(ItemKey parent)    { return copy().itemEntries(parent); }
+        public ItemKey[] getKeys()                        { return copy().getKeys();           }
+        public ItemKey[] getKeys(ItemKey parent)          { return copy().getKeys(parent);     }
+        public Config getAll(ItemKey parent)              { return copy().getAll(parent);      }
+        public Config getAll(ItemKey[] parents)           { return copy().getAll(parents);     }
+        public <K> Map<K, ItemEntry[]> groupBy(MapOp<ItemEntry, K> f) { return copy().groupBy(f); }
+        public boolean matches(Config config)             { return copy().matches(config);     }
+
+        public void clear()                               { copy().clear();                    }
+        public Object putItem(ItemKey key, Object item)   { return copy().putItem(key, item);  }
+        public void putAll(Config config)                 { copy().putAll(config);             }
+        public Object remove(ItemKey key)                 { return copy().remove(key);         }
+        public void removeAll(ItemKey parent)             { copy().removeAll(parent);          }
+        public void removeAll(ItemKey[] parents)          { copy().removeAll(parents);         }
+        public void removeAll(Config config)              { copy().removeAll(config);          }
+        public void retainAll(ItemKey parent)             { copy().retainAll(parent);          }
+        public void retainAll(ItemKey[] parents)          { copy().retainAll(parents);         }
+        public void retainAll(Config config)              { copy().retainAll(config);          }
+
+        public boolean equals(Object other) {
+            return copy().equals(other);
+        }
+
+        public int hashCode() {
+            return copy().hashCode();
+        }
+
+        // Serialize just the step, not the whole sequence.
+        private Object writeReplace() throws ObjectStreamException {
+            return new DefaultConfig(this);
+        }
+    }
 
     /**
      * Constructs an empty ConfigSequence.
      */
     public ConfigSequence() {
+        _init();
     }
 
     /**
@@ -81,69 +193,143 @@ public class ConfigSequence implements Serializable {
      * @param configs Config instances initially contained in this sequence
      */
     public ConfigSequence(Config[] configs) {
-        if (configs.length > 1) _isCompact = false;
-        for (Config config : configs) {
-            _configs.add(new DefaultConfig(config));
-        }
+        _init();
+        for (Config config : configs) _append(config);
     }
 
     /**
      * Creates a ConfigSequence that is a copy of the given sequence.
      */
     public ConfigSequence(ConfigSequence copy) {
-        _configs = new ArrayList<>(copy._configs);
+        // Share the store until one or the other adds a step.
+        _size        = copy._size;
+        _capacity    = copy._capacity;
+        _columnCount = copy._columnCount;
+        _keys        = copy._keys;
+        _values      = copy._values;
+        _explicit    = copy._explicit;
+        _columnIndex = copy._columnIndex;
+        _shared      = true;
+        if (!copy._shared) copy._shared = true;
+    }
 
-        for (ListIterator<Config> lit=_configs.listIterator(); lit.hasNext(); ) {
-            lit.set(new DefaultConfig(lit.next()));
+    private void _init() {
+        _size        = 0;
+        _capacity    = INITIAL_STEPS;
+        _columnCount = 0;
+        _keys        = new ItemKey[INITIAL_COLUMNS];
+        _values      = new Object[INITIAL_COLUMNS][];
+        _explicit    = new BitSet[INITIAL_COLUMNS];
+        _columnIndex = new HashMap<>();
+        _shared      = false;
+    }
+
+    // Makes a private copy of the store if it is shared with another sequence.
+    private void _unshare() {
+        if (!_shared) return;
+
+        _keys   = _keys.clone();
+        _values = _values.clone();
+        _explicit = _explicit.clone();
+        for (int c = 0; c < _columnCount; ++c) {
+            _values[c]   = Arrays.copyOf(_values[c], _capacity);
+            _explicit[c] = (BitSet) _explicit[c].clone();
         }
-        _isCompact = copy._isCompact;
+        _columnIndex = new HashMap<>(_columnIndex);
+        _shared = false;
     }
 
-    //
-    // Compacts the representation of the sequence such that each step only
-    // contains items that are different from the previous step.  For example,
-    // if step 0 has instrument:filter J and step 1 also has instrument:filter
-    // J, then instrument:filter is removed from step 1 in the _configs list.
-    //
-    private void _compact() {
-        if (_isCompact) return;
-        if (_configs.size() <= 1) {
-            _isCompact = true;
-            return;
+    // Gets the column for the given key, adding it if necessary.
+    private int _column(ItemKey key) {
+        final Integer i = _columnIndex.get(key);
+        if (i != null) return i;
+
+        final int c = _columnCount;
+        if (c == _keys.length) {
+            final int len = 2 * c;
+            _keys     = Arrays.copyOf(_keys, len);
+            _values   = Arrays.copyOf(_values, len);
+            _explicit = Arrays.copyOf(_explicit, len);
         }
+        _keys[c]     = key;
+        _values[c]   = new Object[_capacity];
+        _explicit[c] = new BitSet();
+        _columnIndex.put(key, c);
+        _columnCount = c + 1;
+        return c;
+    }
 
-        List<Config> res = new ArrayList<>();
-        Config curConfig = new DefaultConfig();
-        for (Config next : _configs) {
+    private static void _forEachItem(Config config, BiConsumer<ItemKey, Object> f) {
+        if (config instanceof DefaultConfig) {
+            ((DefaultConfig) config).forEachItem(f);
+        } else if (config instanceof StepConfig) {
+            ((StepConfig) config).forEachItem(f);
+        } else {
+            for (ItemEntry ie : config.itemEntries()) f.accept(ie.getKey(), ie.getItemValue());
+        }
+    }
 
-            Config tmp = new DefaultConfig(next);
-            tmp.removeAll(curConfig);
-            res.add(tmp);
+    // Adds a step to the end of the sequence, filling in the items that are
+    // inherited from the previous step.
+    private void _append(Config config) {
+        _unshare();
 
-            curConfig.putAll(next);
+        final int s = _size;
+        if (s == _capacity) {
+            _capacity = 2 * _capacity;
+            for (int c = 0; c < _columnCount; ++c) _values[c] = Arrays.copyOf(_values[c], _capacity);
+        }
+        if (s > 0) {
+            for (int c = 0; c < _columnCount; ++c) _values[c][s] = _values[c][s - 1];
         }
-        _configs   = res;
-        _isCompact = true;
+
+        _forEachItem(config, (key, val) -> {
+            final int c = _column(key);
+            _values[c][s] = val;
+            _explicit[c].set(s);
+        });
+        _size = s + 1;
     }
 
-    //
-    // Fills in the transient _completeConfigs list with Config instances in
-    // which every successive Config contains all items that are in effect at
-    // that step.
-    //
-    private void _complete() {
-        if (_completeConfigs != null) return;
+    // Gets the Configs as they were added to the sequence.
+    private List<Config> _addedSteps() {
+        final List<Config> res = new ArrayList<>(_size);
+        for (int s = 0; s < _size; ++s) {
+            final Config config = new DefaultConfig();
+            for (int c = 0; c < _columnCount; ++c) {
+                if (_explicit[c].get(s)) config.putItem(_keys[c], _values[c][s]);
+            }
+            res.add(config);
+        }
+        return res;
+    }
 
-        _completeConfigs = new ArrayList<>();
-        if (_configs.size() == 0) return;
+    // Gets the items that differ from the previous step.
+    private Config _delta(int s) {
+        final Config res = new DefaultConfig();
+        for (int c = 0; c < _columnCount; ++c) {
+            final Object val = _values[c][s];
+            if ((val != null) && ((s == 0) || !val.equals(_values[c][s - 1]))) res.putItem(_keys[c], val);
+        }
+        return res;
+    }
 
-        Config curConfig = new DefaultConfig();
-        for (Config config : _configs) {
-            curConfig.putAll(config);
-            _completeConfigs.add(new DefaultConfig(curConfig));
+    private void _rebuild(List<Config> steps) {
+        _init();
+        for (Config config : steps) _append(config);
+    }
+
+    private void _checkStep(int step) {
+        if ((step < 0) || (step >= _size)) {
+            throw new IndexOutOfBoundsException("Index: " + step + ", Size: " + _size);
         }
     }
 
+    private Object _value(int step, ItemKey key) {
+        final Integer c = _columnIndex.get(key);
+        return (c == null) ? null : _values[c][step];
+    }
+
     /**
      * Gets all of the {@link Config} objects contained in this sequence in the
      * order that they occur.  Each Config object contains all the items that
@@ -155,12 +341,8 @@ public class ConfigSequence implements Serializable {
      * @return all the {@link Config} objects in this sequence
      */
     public Config[] getAllSteps() {
-        _complete();
-
-        Config[] res = _completeConfigs.toArray(DefaultConfig.EMPTY_ARRAY);
-        for (int i=0; i<res.length; ++i) {
-            res[i] = new DefaultConfig(res[i]);
-        }
+        final Config[] res = new Config[_size];
+        for (int s = 0; s < _size; ++s) res[s] = new StepConfig(this, s);
         return res;
     }
 
@@ -174,12 +356,12 @@ public class ConfigSequence implements Serializable {
      * predicate
      */
     public ConfigSequence filter(Predicate p) {
-        _complete();
-        List<Config> res = new ArrayList<>(_completeConfigs.size());
-        for (Config c : _completeConfigs) {
-            if (p.matches(c)) res.add(c);
+        final ConfigSequence res = new ConfigSequence();
+        for (int s = 0; s < _size; ++s) {
+            final StepConfig c = new StepConfig(this, s);
+            if (p.matches(c)) res._append(c);
         }
-        return new ConfigSequence(res.toArray(new Config[res.size()]));
+        return res;
     }
 
     /**
@@ -194,11 +376,8 @@ public class ConfigSequence implements Serializable {
      * Config contains only those items that differ from the previous Config
      */
     public Config[] getCompactView() {
-        _compact();
-        Config[] res = _configs.toArray(DefaultConfig.EMPTY_ARRAY);
-        for (int i=0; i<res.length; ++i) {
-            res[i] = new DefaultConfig(res[i]);
-        }
+        final Config[] res = new Config[_size];
+        for (int s = 0; s < _size; ++s) res[s] = _delta(s);
         return res;
     }
 
@@ -210,8 +389,8 @@ public class ConfigSequence implements Serializable {
      * @return Config at the given <code>step</code>
      */
     public Config getStep(int step) {
-        _complete();
-        return new DefaultConfig(_completeConfigs.get(step));
+        _checkStep(step);
+        return new StepConfig(this, step);
     }
 
     /**
@@ -225,8 +404,8 @@ public class ConfigSequence implements Serializable {
      * <code
      */
     public Object getItemValue(int step, ItemKey key) {
-        Config conf = getStep(step);
-        return conf.getItemValue(key);
+        _checkStep(step);
+        return _value(step, key);
     }
 
     /**
@@ -241,13 +420,8 @@ public class ConfigSequence implements Serializable {
      * associated with <code>key</code>
      */
     public Object[] getItemValueAtEachStep(ItemKey key) {
-        _complete();
-        Object[] res = new Object[_completeConfigs.size()];
-        int i = 0;
-        for (Config completeConfig : _completeConfigs) {
-            res[i++] = completeConfig.getItemValue(key);
-        }
-        return res;
+        final Integer c = _columnIndex.get(key);
+        return (c == null) ? new Object[_size] : Arrays.copyOf(_values[c], _size);
     }
 
     /**
@@ -262,10 +436,13 @@ public class ConfigSequence implements Serializable {
      * <code>key</code> obtains over the lifetime of the ConfigSequence
      */
     public Object[] getDistinctItemValues(ItemKey key) {
-        _complete();
-        Set<Object> s = new HashSet<>();
-        for (Config completeConfig : _completeConfigs) {
-            s.add(completeConfig.getItemValue(key));
+        final Integer c = _columnIndex.get(key);
+        final Set<Object> s = new HashSet<>();
+        if (c == null) {
+            if (_size > 0) s.add(null);
+        } else {
+            final Object[] col = _values[c];
+            for (int i = 0; i < _size; ++i) s.add(col[i]);
         }
         return s.toArray(new Object[s.size()]);
     }
@@ -280,20 +457,15 @@ public class ConfigSequence implements Serializable {
      * of the sequence (in no particular order)
      */
     public ItemKey[] getIteratedKeys() {
-        if (_configs.size() <= 1) return ItemKey.EMPTY_ARRAY;
-
-        Config startConfig = _configs.get(0);
-
-        Set<ItemKey> res = new HashSet<>();
-        for (int i=1; i<_configs.size(); ++i) {
-            Config conf = _configs.get(i);
-            ItemEntry[] itemEntryArray = conf.itemEntries();
-            for (ItemEntry ie : itemEntryArray) {
-                ItemKey key = ie.getKey();
-                Object  val = ie.getItemValue();
-
-                if (!val.equals(startConfig.getItemValue(key))) {
-                    res.add(key);
+        if (_size <= 1) return ItemKey.EMPTY_ARRAY;
+
+        final List<ItemKey> res = new ArrayList<>();
+        for (int c = 0; c < _columnCount; ++c) {
+            final Object[] col = _values[c];
+            for (int s = 1; s < _size; ++s) {
+                if ((col[s] != null) && !col[s].equals(col[0])) {
+                    res.add(_keys[c]);
+                    break;
                 }
             }
         }
@@ -309,26 +481,18 @@ public class ConfigSequence implements Serializable {
      * course of the sequence (in no particular order)
      */
     public ItemKey[] getStaticKeys() {
-        if (_configs.size() <= 0) return ItemKey.EMPTY_ARRAY;
-
-        Config startConfig = _configs.get(0);
-        Set<ItemKey> res = new HashSet<>();
-        Collections.addAll(res, startConfig.getKeys());
-
-        for (int i=1; i<_configs.size(); ++i) {
-            Config conf = _configs.get(i);
-            ItemEntry[] itemEntryArray = conf.itemEntries();
-            for (ItemEntry ie : itemEntryArray) {
-                ItemKey key = ie.getKey();
-                Object  val = ie.getItemValue();
-
-                if (!val.equals(startConfig.getItemValue(key))) {
-                    res.remove(key);
-                }
+        if (_size <= 0) return ItemKey.EMPTY_ARRAY;
+
+        final List<ItemKey> res = new ArrayList<>();
+        columns: for (int c = 0; c < _columnCount; ++c) {
+            final Object[] col = _values[c];
+            if (col[0] == null) continue;
+            for (int s = 1; s < _size; ++s) {
+                if ((col[s] != null) && !col[s].equals(col[0])) continue columns;
             }
+            res.add(_keys[c]);
         }
         return res.toArray(ItemKey.EMPTY_ARRAY);
-
     }
 
     /**
@@ -353,11 +517,25 @@ public class ConfigSequence implements Serializable {
      * any; -1 otherwise
      */
     private int indexMatching(Config template) {
-       _complete();
-        int i=0;
-        for (Config conf : _completeConfigs) {
-            if (conf.matches(template)) return i;
-            ++i;
+        final List<Object[]> cols = new ArrayList<>();
+        final List<Object>   vals = new ArrayList<>();
+        final boolean[] missing = { false };
+        _forEachItem(template, (key, val) -> {
+            final Integer c = _columnIndex.get(key);
+            if (c == null) missing[0] = true;
+            else {
+                cols.add(_values[c]);
+                vals.add(val);
+            }
+        });
+        if (missing[0]) return -1;
+
+        steps: for (int s = 0; s < _size; ++s) {
+            for (int i = 0; i < cols.size(); ++i) {
+                final Object item = cols.get(i)[s];
+                if ((item == null) || !item.equals(vals.get(i))) continue steps;
+            }
+            return s;
         }
         return -1;
     }
@@ -378,21 +556,7 @@ public class ConfigSequence implements Serializable {
      * @param conf the changes that should be added to the end of this sequence
      */
     public void addStep(Config conf) {
-        Config nextConfig = new DefaultConfig(conf);
-
-        if (_isCompact && (_completeConfigs != null)) {
-            Config lastConfig = _completeConfigs.get(_completeConfigs.size() - 1);
-            nextConfig.removeAll(lastConfig);
-            _configs.add(nextConfig);
-
-            lastConfig = new DefaultConfig(lastConfig);
-            lastConfig.putAll(nextConfig);
-            _completeConfigs.add(lastConfig);
-        } else {
-            _isCompact = false;
-            _completeConfigs = null;
-            _configs.add(nextConfig);
-        }
+        _append(conf);
     }
 
     /**
@@ -409,12 +573,12 @@ public class ConfigSequence implements Serializable {
      *
      */
     public void addStep(int step, Config conf) {
-        if (step == _configs.size()) {
+        if (step == _size) {
             addStep(conf);
         } else {
-            _isCompact = false;
-            _completeConfigs = null;
-            _configs.add(step, new DefaultConfig(conf));
+            final List<Config> steps = _addedSteps();
+            steps.add(step, new DefaultConfig(conf));
+            _rebuild(steps);
         }
     }
 
@@ -422,9 +586,7 @@ public class ConfigSequence implements Serializable {
      * Clears sequence of Configs, leaving the sequence empty.
      */
     public void clear() {
-        _configs.clear();
-        if (_completeConfigs != null) _completeConfigs.clear();
-        _isCompact = true;
+        _init();
     }
 
     /**
@@ -432,8 +594,22 @@ public class ConfigSequence implements Serializable {
      * {@link #compactIterator()}.
      */
     public Iterator<Config> iterator() {
-        _complete();
-        return new CopyIterator(_completeConfigs.iterator());
+        return new Iterator<Config>() {
+            private int _step = 0;
+
+            public boolean hasNext() {
+                return _step < _size;
+            }
+
+            public Config next() {
+                if (_step >= _size) throw new NoSuchElementException();
+                return new StepConfig(ConfigSequence.this, _step++);
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
     }
 
     /**
@@ -444,8 +620,7 @@ public class ConfigSequence implements Serializable {
      * in each successive Config.
      */
     public Iterator<Config> compactIterator() {
-        _compact();
-        return new CopyIterator(_configs.iterator());
+        return Arrays.asList(getCompactView()).iterator();
     }
 
     /**
@@ -453,24 +628,19 @@ public class ConfigSequence implements Serializable {
      * <code>false</code> otherwise.
      */
     public boolean isEmpty() {
-        return _configs.isEmpty();
+        return _size == 0;
     }
 
-//    public boolean remove(Config config) {
-//        return _configs.remove(config);
-//    }
-
     /**
      * Removes the {@link Config} at the given <code>step</code>.  Any
      * subsequent steps that inherited item values from this step may be
      * effected by this.
      */
     public void removeStep(int step) {
-        if (step != (_configs.size() - 1)) {
-            _isCompact = false;
-            _completeConfigs = null;
-        }
-        _configs.remove(step);
+        _checkStep(step);
+        final List<Config> steps = _addedSteps();
+        steps.remove(step);
+        _rebuild(steps);
     }
 
     /**
@@ -491,16 +661,17 @@ public class ConfigSequence implements Serializable {
      * ConfigSequence.
      */
     public void setStep(int step, Config conf) {
-        _isCompact = false;
-        _completeConfigs = null;
-        _configs.set(step, new DefaultConfig(conf));
+        _checkStep(step);
+        final List<Config> steps = _addedSteps();
+        steps.set(step, new DefaultConfig(conf));
+        _rebuild(steps);
     }
 
     /**
      * Retrieves the number of {@link Config} steps in the sequence.
      */
     public int size() {
-        return _configs.size();
+        return _size;
     }
 
     /**
@@ -520,20 +691,29 @@ public class ConfigSequence implements Serializable {
      * <code>to</code> index.
      */
     public ConfigSequence subSequence(int from, int to) {
-        _complete();
-        Config[] subconfigs = new Config[to - from];
-        for (int i=from; i<to; ++i) {
-            subconfigs[i-from] = _completeConfigs.get(i);
+        if ((from < 0) || (to > _size) || (from > to)) {
+            throw new IndexOutOfBoundsException("from: " + from + ", to: " + to + ", size: " + _size);
         }
-        return new ConfigSequence(subconfigs);
+        final ConfigSequence res = new ConfigSequence();
+        for (int s = from; s < to; ++s) res._append(new StepConfig(this, s));
+        return res;
     }
 
     //
-    // Converts to to the most compact representation before serializing.
+    // Writes the most compact representation, as a list of Configs.
     //
-    private void writeObject(java.io.ObjectOutputStream out) throws IOException {
-        _compact();
-        out.defaultWriteObject();
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        final ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("_configs", new ArrayList<>(Arrays.asList(getCompactView())));
+        fields.put("_isCompact", true);
+        out.writeFields();
     }
 
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        final ObjectInputStream.GetField fields = in.readFields();
+        final List<Config> configs = (List<Config>) fields.get("_configs", null);
+        _init();
+        if (configs != null) for (Config config : configs) _append(config);
+    }
 }
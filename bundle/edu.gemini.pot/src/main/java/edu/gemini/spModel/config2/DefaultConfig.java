@@ -3,6 +3,7 @@ package edu.gemini.spModel.config2;
 import edu.gemini.shared.util.immutable.MapOp;
 
 import java.util.*;
+import java.util.function.BiConsumer;
 import java.io.Serializable;
 
 /**
@@ -12,6 +13,8 @@ import java.io.Serializable;
  * threads will use the same Config instance.
  */
 public final class DefaultConfig implements Config, Serializable {
+    // Fixed to the value computed for the class before forEachItem was added.
+    private static final long serialVersionUID = 172695141319084457L;
 
     public static final Config[] EMPTY_ARRAY = new DefaultConfig[0];
 
@@ -32,6 +35,8 @@ public final class DefaultConfig implements Config, Serializable {
     public DefaultConfig(Config copy) {
         if (copy instanceof DefaultConfig) {
             _configMap.putAll(((DefaultConfig) copy)._configMap);
+        } else if (copy instanceof ConfigSequence.StepConfig) {
+            ((ConfigSequence.StepConfig) copy).forEachItem(_configMap::put);
         } else {
             ItemEntry[] entries = copy.itemEntries();
             for (ItemEntry ie : entries) {
@@ -151,6 +156,8 @@ public final class DefaultConfig implements Config, Serializable {
     public void putAll(Config config) {
         if (config instanceof DefaultConfig) {
             _configMap.putAll(((DefaultConfig) config)._configMap);
+        } else if (config instanceof ConfigSequence.StepConfig) {
+            ((ConfigSequence.StepConfig) config).forEachItem(_configMap::put);
         } else {
             ItemEntry[] entries = config.itemEntries();
             for (ItemEntry ie : entries) {
@@ -246,6 +253,14 @@ public final class DefaultConfig implements Config, Serializable {
         return _configMap.size();
     }
 
+    /**
+     * Passes each item to <code>f</code>, in key order, without creating
+     * {@link ItemEntry} objects.
+     */
+    void forEachItem(BiConsumer<ItemKey, Object> f) {
+        _configMap.forEach(f);
+    }
+
     public boolean equals(Object other) {
         if (other instanceof DefaultConfig) {
             DefaultConfig that = (DefaultConfig) other;
@@ -4,6 +4,8 @@ import edu.gemini.shared.util.immutable.DefaultImList;
 import edu.gemini.shared.util.immutable.ImList;
 
 import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * The (immutable) ItemKey is used to refer to either a single item, or a
@@ -16,10 +18,20 @@ import java.io.Serializable;
  * may name either a directory, containing other files, or an individual File.
  * In the same way, a ItemKey may refer to a collection of ItemKeys or
  * a particular item.
+ *
+ * <p>Keys used repeatedly, such as those created for each step of a
+ * sequence, should be obtained with {@link #intern} and {@link #child} so
+ * that a single instance is shared per path and the path string is built
+ * only once.
  */
 public final class ItemKey implements Comparable<ItemKey>, Serializable {
+    // Fixed to the value computed for the class before interning was added.
+    private static final long serialVersionUID = -8084885920414954942L;
+
     public static final ItemKey[] EMPTY_ARRAY = new ItemKey[0];
 
+    private static final ConcurrentMap<String, ItemKey> INTERNED = new ConcurrentHashMap<>();
+
     /**
      * The character used to separate config key names, ':'.
      */
@@ -34,6 +46,9 @@ public final class ItemKey implements Comparable<ItemKey>, Serializable {
 
     private final String _path;
 
+    // Children of this key obtained via child(), by name.
+    private transient volatile ConcurrentMap<String, ItemKey> _children;
+
     /**
      * Constructs with the given name or path.  A path is a single string
      * composed of multiple names separated by {@link #SEPARATOR_CHAR}
@@ -62,6 +77,35 @@ public final class ItemKey implements Comparable<ItemKey>, Serializable {
         _path = parent.getPath() + SEPARATOR_CHAR + name;
     }
 
+    /**
+     * Gets the shared ItemKey instance for the given path.
+     */
+    public static ItemKey intern(String path) {
+        final ItemKey key = INTERNED.get(path);
+        return (key == null) ? INTERNED.computeIfAbsent(path, ItemKey::new) : key;
+    }
+
+    /**
+     * Gets the shared ItemKey instance for the given child of this key.
+     * Equivalent to <code>ItemKey.intern(new ItemKey(this, name).getPath())</code>
+     * but the child's path is only built the first time it is requested.
+     */
+    public ItemKey child(String name) {
+        if (name == null) throw new NullPointerException();
+        ConcurrentMap<String, ItemKey> children = _children;
+        if (children == null) {
+            synchronized (this) {
+                children = _children;
+                if (children == null) {
+                    children = new ConcurrentHashMap<>();
+                    _children = children;
+                }
+            }
+        }
+        final ItemKey key = children.get(name);
+        return (key == null) ? children.computeIfAbsent(name, n -> intern(_path + SEPARATOR_CHAR + n)) : key;
+    }
+
     /**
      * Gets the parent of this ItemKey, if any.
      *
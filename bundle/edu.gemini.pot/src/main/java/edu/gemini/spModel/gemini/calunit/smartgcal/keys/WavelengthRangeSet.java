@@ -19,13 +19,17 @@ import java.util.*;
 /**
  * Wavelength range sets store a set of non-overlapping ranges and a list of calibrations for each of these
  * ranges. Before adding a range it is verified that it does not overlap with any of the already existing
- * ranges in order to avoid ambiguities.
+ * ranges in order to avoid ambiguities. The ranges are also kept sorted by their lower boundary, which, since
+ * they are disjoint, makes it possible to check new ranges and look up wavelengths in logarithmic time.
  */
 public final class WavelengthRangeSet implements Serializable {
 
     // set of range/calibration pairs
     private final Map<WavelengthRange, ImList<Calibration>> rangeMap = new HashMap<>();
 
+    // the same ranges, indexed by their lower boundary
+    private final TreeMap<Double, WavelengthRange> rangesByMin = new TreeMap<>();
+
     /**
      * Constructs a new empty wavelength range set.
      */
@@ -42,11 +46,17 @@ public final class WavelengthRangeSet implements Serializable {
      */
     public void add(WavelengthRange range, Calibration c) {
         if (!rangeMap.containsKey(range)) {
-            rangeMap.keySet().forEach(r -> {
-                if (range.overlaps(r)) {
-                    throw new IllegalArgumentException("range " + range + " overlaps with " + r);
+            // The existing ranges are disjoint, so only the ranges right below and above the new one can overlap
+            // with it: the one below has the highest upper boundary of all ranges starting below the new one and
+            // the one above the lowest lower boundary of all others.
+            final Map.Entry<Double, WavelengthRange> below = rangesByMin.floorEntry(range.getMin());
+            final Map.Entry<Double, WavelengthRange> above = rangesByMin.higherEntry(range.getMin());
+            for (Map.Entry<Double, WavelengthRange> e : Arrays.asList(below, above)) {
+                if (e != null && range.overlaps(e.getValue())) {
+                    throw new IllegalArgumentException("range " + range + " overlaps with " + e.getValue());
                 }
-            });
+            }
+            rangesByMin.put(range.getMin(), range);
         }
 
         rangeMap.compute(range, (r, l) -> (l == null) ? ImCollections.singletonList(c) : l.append(c));
@@ -58,7 +68,7 @@ public final class WavelengthRangeSet implements Serializable {
      * @return
      */
     public Option<WavelengthRange> findRange(double value) {
-        return lookup(value).map(t -> t.getKey());
+        return ImOption.apply(lookup(value));
     }
 
     /**
@@ -67,20 +77,19 @@ public final class WavelengthRangeSet implements Serializable {
      * @return
      */
     public List<Calibration> findCalibrations(double value) {
-        return lookup(value).map(t -> t.getValue().toList()).getOrElse(Collections.<Calibration>emptyList());
+        final WavelengthRange range = lookup(value);
+        return (range == null) ? Collections.<Calibration>emptyList() : rangeMap.get(range).toList();
     }
 
     /**
-     * Finds a range calibration pair for a wavelength.
+     * Finds the range containing a wavelength, if any. Since the ranges are disjoint this can only be the one
+     * with the highest lower boundary not above the wavelength.
      * @param value
-     * @return
+     * @return the range or null
      */
-    private Option<Map.Entry<WavelengthRange, ImList<Calibration>>> lookup(double value) {
-        // There seems to be no find method so ...
-        for (Map.Entry<WavelengthRange, ImList<Calibration>> me : rangeMap.entrySet()) {
-            if (me.getKey().contains(value)) return ImOption.apply(me);
-        }
-        return ImOption.apply(null);
+    private WavelengthRange lookup(double value) {
+        final Map.Entry<Double, WavelengthRange> e = rangesByMin.floorEntry(value);
+        return (e != null && e.getValue().contains(value)) ? e.getValue() : null;
     }
 
     public Map<WavelengthRange, ImList<Calibration>> getRangeMap() {
@@ -9,7 +9,9 @@ import edu.gemini.spModel.gemini.calunit.smartgcal.Version;
 import edu.gemini.spModel.gemini.calunit.smartgcal.keys.WavelengthRange;
 import edu.gemini.spModel.gemini.calunit.smartgcal.keys.WavelengthRangeSet;
 
+import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
 
 /**
@@ -21,8 +23,15 @@ public abstract class CentralWavelengthMap extends BaseCalibrationMap {
 
     public static final String WAVELENGTH_RANGE_NAME = "Central Wavelength";
 
+    // maximum number of remembered lookups, the memo is simply cleared when it grows beyond this
+    private static final int MEMO_SIZE = 10000;
+
     protected final Map<ConfigurationKey, WavelengthRangeSet> rangesMap;
 
+    // remembers the calibrations found for a key and wavelength, observations tend to ask for the same
+    // calibrations for many of their steps
+    private final Map<Lookup, List<Calibration>> memo = new ConcurrentHashMap<>();
+
     public CentralWavelengthMap(Version version) {
         this(version, 200);
     }
@@ -59,6 +68,7 @@ public abstract class CentralWavelengthMap extends BaseCalibrationMap {
 
         // add the calibration to the range in the range set
         rangeSet.add(range, calibration);
+        memo.clear();
 
         return calibration;
     }
@@ -75,16 +85,53 @@ public abstract class CentralWavelengthMap extends BaseCalibrationMap {
      * @return
      */
     public List<Calibration> get(ConfigurationKey key, Double wavelength) {
+        if (wavelength == null) return find(key, wavelength);
+
+        final Lookup lookup = new Lookup(key, wavelength);
+        List<Calibration> calibrations = memo.get(lookup);
+        if (calibrations == null) {
+            calibrations = find(key, wavelength);
+            if (memo.size() >= MEMO_SIZE) memo.clear();
+            memo.put(lookup, calibrations);
+        }
+        return calibrations;
+    }
+
+    private List<Calibration> find(ConfigurationKey key, Double wavelength) {
         // get range set for this key
         WavelengthRangeSet rangeSet = rangesMap.get(key);
         if(rangeSet == null) {
             // return empty list if we don't have any calibrations for this key
-            return new ArrayList<Calibration>();
+            return Collections.emptyList();
         }
         // if we have calibrations for this key get the ones for the given wavelength from the set
         return rangeSet.findCalibrations(wavelength);
     }
 
+    // key of the memo
+    private static final class Lookup implements Serializable {
+        private final ConfigurationKey key;
+        private final double wavelength;
+
+        Lookup(ConfigurationKey key, double wavelength) {
+            this.key        = key;
+            this.wavelength = wavelength;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final Lookup that = (Lookup) o;
+            return Double.compare(that.wavelength, wavelength) == 0 && Objects.equals(key, that.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(key) + Double.hashCode(wavelength);
+        }
+    }
+
     private String exportWavelength(double wl) {
         // Wavelength stored as a double is problematic.  In some instruments
         // these are um and in others nm. We will ask each type of
@@ -2,8 +2,7 @@ package edu.gemini.spModel.obs;
 
 import edu.gemini.pot.sp.ISPObsExecLog;
 import edu.gemini.pot.sp.ISPObservation;
-import edu.gemini.spModel.config.ConfigBridge;
-import edu.gemini.spModel.config.map.ConfigValMapInstances;
+import edu.gemini.spModel.config.SequenceCache;
 import edu.gemini.spModel.obslog.ObsExecLog;
 import edu.gemini.spModel.obsrecord.ObsExecStatus;
 import edu.gemini.spModel.type.DescribableSpType;
@@ -101,7 +100,7 @@ public enum ObservationStatus implements DisplayableSpType, DescribableSpType {
 
             Integer stepCount = SPObsCache.getStepCount(obs);
             if (stepCount == null) {
-                stepCount = ConfigBridge.extractSequence(obs, null, ConfigValMapInstances.IDENTITY_MAP).size();
+                stepCount = SequenceCache.stepCount(obs);
                 SPObsCache.setStepCount(obs, stepCount);
             }
             return obj.getRecord().getExecStatus(stepCount);
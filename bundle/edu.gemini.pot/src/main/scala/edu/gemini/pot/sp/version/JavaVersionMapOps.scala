@@ -21,4 +21,11 @@ object JavaVersionMapOps {
       l <- local.get(k)
       r <- remote.get(k)
     } yield l.tryCompareTo(r).forall(_ > 0)).getOrElse(false)
+
+  /**
+   * Returns true if `newer` is strictly newer than, or in conflict with,
+   * `older`.
+   */
+  def updates(newer: NodeVersions, older: NodeVersions): Boolean =
+    newer.updates(older)
 }
@@ -13,12 +13,26 @@ sealed trait NodeValueCache[A] {
     * calculates the value with the provided function and caches it for the
     * next lookup. */
   def get(n: ISPNode)(a: ISPNode => A): (A, NodeValueCache[A])
+
+  /** Gets the value cached for the node with the given key, if it was
+    * calculated when the subtree had the given checksum.  Together with
+    * `updated` this allows values to be calculated elsewhere, for example in
+    * parallel, taking the checksum before the calculation. */
+  def lookup(k: SPNodeKey, checksum: Long): Option[A]
+
+  /** Caches a value calculated for the node with the given key when its
+    * subtree had the given checksum. */
+  def updated(k: SPNodeKey, checksum: Long, a: A): NodeValueCache[A]
 }
 
 object NodeValueCache {
 
   def empty[A]: NodeValueCache[A] = Impl[A](Map.empty[SPNodeKey, (Long, A)])
 
+  /** Checksum of the versions of the subtree rooted at the node, which is
+    * what cached values are checked against. */
+  def checksum(n: ISPNode): Long = nodeChecksum(n)
+
   private final case class Impl[A](m: Map[SPNodeKey, (Long, A)]) extends NodeValueCache[A] {
     def get(n: ISPNode)(a: ISPNode => A): (A, NodeValueCache[A]) = {
       val k  = n.getNodeKey
@@ -33,5 +47,11 @@ object NodeValueCache {
         if (cs == check) (aVal, this) else add
       }
     }
+
+    def lookup(k: SPNodeKey, checksum: Long): Option[A] =
+      m.get(k).collect { case (check, aVal) if check == checksum => aVal }
+
+    def updated(k: SPNodeKey, checksum: Long, a: A): NodeValueCache[A] =
+      Impl(m.updated(k, (checksum, a)))
   }
 }
\ No newline at end of file
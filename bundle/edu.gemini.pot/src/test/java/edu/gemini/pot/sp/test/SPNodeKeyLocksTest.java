@@ -0,0 +1,108 @@
+package edu.gemini.pot.sp.test;
+
+import edu.gemini.pot.sp.SPNodeKey;
+import edu.gemini.pot.sp.SPNodeKeyLockStats;
+import edu.gemini.pot.sp.SPNodeKeyLocks;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests eviction of idle locks, lock ordering and contention statistics.
+ */
+public final class SPNodeKeyLocksTest {
+    private static final SPNodeKeyLocks locks = SPNodeKeyLocks.instance;
+
+    @Test
+    public void testIdleLocksAreEvicted() {
+        final SPNodeKey key = new SPNodeKey();
+        final int size = locks.size();
+
+        locks.readLock(key);
+        locks.readLock(key);
+        assertEquals(size + 1, locks.size());
+        locks.readUnlock(key);
+        assertEquals(size + 1, locks.size());
+        locks.readUnlock(key);
+        assertEquals(size, locks.size());
+
+        locks.writeLock(key);
+        locks.writeLock(key);
+        assertTrue(locks.isWriteLockHeld(key));
+        locks.writeUnlock(key);
+        assertTrue(locks.isWriteLockHeld(key));
+        locks.writeUnlock(key);
+        assertFalse(locks.isWriteLockHeld(key));
+        assertEquals(size, locks.size());
+    }
+
+    @Test(expected = IllegalMonitorStateException.class)
+    public void testUnlockWithoutLock() {
+        locks.writeUnlock(new SPNodeKey());
+    }
+
+    @Test
+    public void testContentionIsRecorded() throws Exception {
+        final SPNodeKey key = new SPNodeKey();
+        final SPNodeKeyLockStats stats = locks.getStats();
+        final long contended = stats.getContendedAcquisitionCount();
+
+        final CountDownLatch waiting = new CountDownLatch(1);
+        final Thread reader = new Thread(() -> {
+            waiting.countDown();
+            locks.readLock(key);
+            locks.readUnlock(key);
+        });
+
+        locks.writeLock(key);
+        try {
+            reader.start();
+            waiting.await();
+            Thread.sleep(50);
+        } finally {
+            locks.writeUnlock(key);
+        }
+        reader.join(TimeUnit.SECONDS.toMillis(10));
+
+        assertEquals(contended + 1, stats.getContendedAcquisitionCount());
+        assertTrue(stats.getKeyStats().stream().anyMatch(ks -> ks.key.equals(key) && (ks.getWaitNanos() > 0)));
+    }
+
+    @Test
+    public void testReaderDoesNotOvertakeQueuedWriter() throws Exception {
+        final SPNodeKey key = new SPNodeKey();
+        final List<String> order = new CopyOnWriteArrayList<>();
+
+        final Thread writer = new Thread(() -> {
+            locks.writeLock(key);
+            order.add("writer");
+            locks.writeUnlock(key);
+        });
+        final Thread reader = new Thread(() -> {
+            locks.readLock(key);
+            order.add("reader");
+            locks.readUnlock(key);
+        });
+
+        locks.readLock(key);
+        try {
+            writer.start();
+            Thread.sleep(50);
+            reader.start();
+            Thread.sleep(50);
+            assertTrue(order.isEmpty());
+        } finally {
+            locks.readUnlock(key);
+        }
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        reader.join(TimeUnit.SECONDS.toMillis(10));
+
+        assertEquals(Arrays.asList("writer", "reader"), order);
+    }
+}
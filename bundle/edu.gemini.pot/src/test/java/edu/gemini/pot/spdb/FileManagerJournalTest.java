@@ -0,0 +1,159 @@
+package edu.gemini.pot.spdb;
+
+import edu.gemini.pot.sp.ISPFactory;
+import edu.gemini.pot.sp.ISPProgram;
+import edu.gemini.pot.sp.SPNodeKey;
+import edu.gemini.pot.sp.memImpl.MemSerializer;
+import edu.gemini.pot.util.POTUtil;
+import edu.gemini.spModel.core.SPProgramID;
+import edu.gemini.spModel.data.ISPDataObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests storing program edits in the program journal.
+ */
+public final class FileManagerJournalTest {
+    private static final String PROG_ID = "GS-2020A-Q-1";
+
+    private File dir;
+    private ISPProgram prog;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("spdb").toFile();
+
+        final ISPFactory fact = POTUtil.createFactory(UUID.randomUUID());
+        prog = fact.createProgram(new SPNodeKey(), SPProgramID.toProgramID(PROG_ID));
+    }
+
+    @After
+    public void tearDown() {
+        final File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+
+    private File journal() {
+        return new File(dir, PROG_ID + FileManager.PROGRAM_SUFFIX + FileManager.JOURNAL_SUFFIX);
+    }
+
+    private void setTitle(String title) {
+        final ISPDataObject dobj = prog.getDataObject();
+        dobj.setTitle(title);
+        prog.setDataObject(dobj);
+    }
+
+    private ISPProgram reload() throws Exception {
+        final List<ISPProgram> progs = new ArrayList<>();
+        new FileManager(dir).reloadPrograms(progs::add);
+        assertEquals(1, progs.size());
+        return progs.get(0);
+    }
+
+    @Test
+    public void testReplayJournal() throws Exception {
+        final FileManager fm = new FileManager(dir);
+        fm.store(prog);
+
+        setTitle("Edited");
+        fm.storeChanges(prog, Collections.singleton(prog.getNodeKey()));
+        assertTrue(journal().exists());
+
+        final ISPProgram copy = reload();
+        assertEquals("Edited", copy.getDataObject().getTitle());
+        assertEquals(prog.getVersion(), copy.getVersion());
+    }
+
+    @Test
+    public void testReplayRestoresLastModified() throws Exception {
+        final FileManager fm = new FileManager(dir);
+        fm.store(prog);
+        final long stored = prog.lastModified();
+
+        Thread.sleep(10);
+        setTitle("Edited");
+        fm.storeChanges(prog, Collections.singleton(prog.getNodeKey()));
+        assertTrue(prog.lastModified() > stored);
+
+        assertEquals(prog.lastModified(), reload().lastModified());
+    }
+
+    // Simulates an append that failed part way through a record and couldn't
+    // be cut back.  Later appends go straight to the journal since a store
+    // through the FileManager could decide to compact instead.
+    private void appendPartialRecord(int len, int bytes) throws Exception {
+        try (DataOutputStream dos = new DataOutputStream(new FileOutputStream(journal(), true))) {
+            dos.writeInt(len);
+            dos.write(new byte[bytes]);
+        }
+    }
+
+    @Test
+    public void testReplayStopsAtPartialRecordFollowedByAppend() throws Exception {
+        final FileManager fm = new FileManager(dir);
+        fm.store(prog);
+
+        setTitle("First");
+        fm.storeChanges(prog, Collections.singleton(prog.getNodeKey()));
+
+        // The length covers the start of the next record.
+        appendPartialRecord(20, 5);
+        setTitle("Second");
+        new MemSerializer().appendJournal(prog, Collections.singleton(prog.getNodeKey()), journal());
+
+        assertEquals("First", reload().getDataObject().getTitle());
+    }
+
+    @Test
+    public void testReplayStopsAtBadRecordLength() throws Exception {
+        final FileManager fm = new FileManager(dir);
+        fm.store(prog);
+
+        setTitle("First");
+        fm.storeChanges(prog, Collections.singleton(prog.getNodeKey()));
+
+        appendPartialRecord(-1, 3);
+        setTitle("Second");
+        new MemSerializer().appendJournal(prog, Collections.singleton(prog.getNodeKey()), journal());
+        appendPartialRecord(Integer.MAX_VALUE, 0);
+
+        assertEquals("First", reload().getDataObject().getTitle());
+    }
+
+    @Test
+    public void testStoreDiscardsJournal() throws Exception {
+        final FileManager fm = new FileManager(dir);
+        fm.store(prog);
+
+        setTitle("Edited");
+        fm.storeChanges(prog, Collections.singleton(prog.getNodeKey()));
+        fm.store(prog);
+        assertFalse(journal().exists());
+
+        assertEquals("Edited", reload().getDataObject().getTitle());
+    }
+
+    @Test
+    public void testRemoveDeletesJournal() throws Exception {
+        final FileManager fm = new FileManager(dir);
+        fm.store(prog);
+
+        setTitle("Edited");
+        fm.storeChanges(prog, Collections.singleton(prog.getNodeKey()));
+        fm.remove(prog.getNodeKey());
+        assertFalse(journal().exists());
+    }
+}
@@ -0,0 +1,138 @@
+package edu.gemini.pot.spdb;
+
+import edu.gemini.pot.sp.ISPFactory;
+import edu.gemini.pot.sp.ISPProgram;
+import edu.gemini.pot.sp.SPNodeKey;
+import edu.gemini.pot.util.POTUtil;
+import edu.gemini.spModel.core.SPProgramID;
+import edu.gemini.spModel.data.ISPDataObject;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests concurrent loading of program files.
+ */
+public final class ProgramLoaderTest {
+    private final ISPFactory fact = POTUtil.createFactory(UUID.randomUUID());
+
+    private static File[] files(int n) {
+        final File[] fs = new File[n];
+        for (int i = 0; i < n; ++i) fs[i] = new File(String.format("p%02d.sp", i));
+        return fs;
+    }
+
+    private ISPProgram program(String id, String title) throws Exception {
+        return program(new SPNodeKey(), id, title);
+    }
+
+    private ISPProgram program(SPNodeKey key, String id, String title) throws Exception {
+        final ISPProgram p = fact.createProgram(key, SPProgramID.toProgramID(id));
+        final ISPDataObject dobj = p.getDataObject();
+        dobj.setTitle(title);
+        p.setDataObject(dobj);
+        return p;
+    }
+
+    @Test
+    public void testDeliversInFileOrder() throws Exception {
+        final File[] fs = files(20);
+
+        // Later files load faster, so they finish first.
+        final ProgramLoader<ISPProgram> loader = new ProgramLoader<>("program", fs, f -> {
+            final int i = Integer.parseInt(f.getName().substring(1, 3));
+            Thread.sleep(2 * (fs.length - i));
+            return program("GS-2020A-Q-" + (i + 1), f.getName());
+        }, 4);
+
+        final List<File> delivered = new ArrayList<>();
+        loader.run((f, p) -> {
+            assertEquals(f.getName(), p.getDataObject().getTitle());
+            delivered.add(f);
+        }, (f, ex) -> fail("Unexpected failure for " + f + ": " + ex));
+
+        assertArrayEquals(fs, delivered.toArray());
+        assertTrue(loader.isFinished());
+        assertTrue(loader.getProgress().isDone());
+        assertEquals(0, loader.getProgress().etaMs());
+    }
+
+    @Test
+    public void testLoadsInParallel() throws Exception {
+        final int threads = 4;
+        final CountDownLatch started = new CountDownLatch(threads);
+        final AtomicInteger active   = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+        final AtomicBoolean together = new AtomicBoolean(true);
+
+        final ProgramLoader<ISPProgram> loader = new ProgramLoader<>("program", files(2 * threads), f -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                // Each of the first batch waits until all of them are running.
+                started.countDown();
+                if (!started.await(10, TimeUnit.SECONDS)) together.set(false);
+                return null;
+            } finally {
+                active.decrementAndGet();
+            }
+        }, threads);
+
+        loader.run((f, p) -> fail("Nothing to load"), (f, ex) -> fail("Unexpected failure for " + f + ": " + ex));
+
+        assertTrue(together.get());
+        assertEquals(threads, maxActive.get());
+        assertEquals(2 * threads, loader.getProgress().completed);
+    }
+
+    @Test
+    public void testReportsFailures() throws Exception {
+        final File[] fs = files(5);
+        final ProgramLoader<ISPProgram> loader = new ProgramLoader<>("program", fs, f -> {
+            if (f.equals(fs[2])) throw new IOException("corrupt");
+            return program(new SPNodeKey(), "GS-2020A-Q-1", f.getName());
+        }, 2);
+
+        final List<File> loaded = new ArrayList<>();
+        final List<File> failed = new ArrayList<>();
+        loader.run((f, p) -> loaded.add(f), (f, ex) -> failed.add(f));
+
+        assertEquals(4, loaded.size());
+        assertEquals(1, failed.size());
+        assertEquals(fs[2], failed.get(0));
+        assertEquals(1, loader.getProgress().failed);
+    }
+
+    @Test
+    public void testFirstFileWinsForDuplicateKeys() throws Exception {
+        final File dir = Files.createTempDirectory("spdb").toFile();
+        try {
+            final SPNodeKey key = new SPNodeKey();
+
+            // Store the second file first, so that file times don't decide.
+            new FileManager(dir).store(program(key, "GS-2020A-Q-2", "Second"));
+            new FileManager(dir).store(program(key, "GS-2020A-Q-1", "First"));
+
+            for (int i = 0; i < 3; ++i) {
+                final List<ISPProgram> progs = new ArrayList<>();
+                new FileManager(dir).reloadPrograms(progs::add);
+                assertEquals(1, progs.size());
+                assertEquals("First", progs.get(0).getDataObject().getTitle());
+            }
+        } finally {
+            final File[] files = dir.listFiles();
+            if (files != null) for (File f : files) f.delete();
+            dir.delete();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package edu.gemini.pot.spdb;
+
+import edu.gemini.pot.sp.*;
+import edu.gemini.spModel.core.ProgramType$;
+import edu.gemini.spModel.core.SPProgramID;
+import edu.gemini.spModel.obs.ObsPhase2Status;
+import edu.gemini.spModel.obs.ObservationStatus;
+import edu.gemini.spModel.obs.SPObservation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests parallel and filtered queries.
+ */
+public final class QueryRunnerTest {
+
+    /**
+     * Collects the keys of the nodes it visits, in order.
+     */
+    private static final class CollectFunctor extends DBAbstractQueryFunctor
+            implements IDBSplittableQueryFunctor<CollectFunctor> {
+        final List<SPNodeKey> keys = new ArrayList<>();
+
+        public void execute(IDBDatabaseService db, ISPNode node, Set<Principal> principals) {
+            keys.add(node.getNodeKey());
+        }
+
+        public CollectFunctor split() {
+            return new CollectFunctor();
+        }
+
+        public void merge(CollectFunctor partial) {
+            keys.addAll(partial.keys);
+            if (partial.getException() != null) setException(partial.getException());
+        }
+    }
+
+    /**
+     * Same as {@link CollectFunctor}, but not splittable.
+     */
+    private static final class SerialCollectFunctor extends DBAbstractQueryFunctor {
+        final List<SPNodeKey> keys = new ArrayList<>();
+
+        public void execute(IDBDatabaseService db, ISPNode node, Set<Principal> principals) {
+            keys.add(node.getNodeKey());
+        }
+    }
+
+    private IDBDatabaseService odb;
+    private ISPProgram q2017A;
+    private ISPProgram c2017B;
+
+    private ISPProgram createProgram(String id, int obsCount) throws Exception {
+        final ISPFactory f = odb.getFactory();
+        final ISPProgram p = f.createProgram(new SPNodeKey(), SPProgramID.toProgramID(id));
+        for (int i = 0; i < obsCount; ++i) p.addObservation(f.createObservation(p, Instrument.none, null));
+        odb.put(p);
+        return p;
+    }
+
+    private static void setStatus(ISPObservation obs, ObsPhase2Status status) {
+        final SPObservation dobj = (SPObservation) obs.getDataObject();
+        dobj.setPhase2Status(status);
+        obs.setDataObject(dobj);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        odb    = DBLocalDatabase.createTransient();
+        q2017A = createProgram("GS-2017A-Q-1", 3);
+        c2017B = createProgram("GN-2017B-C-2", 2);
+        for (int i = 0; i < 10; ++i) createProgram("GS-2017B-Q-" + (i + 10), i % 3);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        odb.getDBAdmin().shutdown();
+    }
+
+    @Test
+    public void testParallelMatchesSerial() {
+        final IDBQueryRunner qr = odb.getQueryRunner();
+
+        final SerialCollectFunctor serialObs = qr.queryObservations(new SerialCollectFunctor());
+        final CollectFunctor parallelObs     = qr.queryObservations(new CollectFunctor());
+        assertNull(parallelObs.getException());
+        assertEquals(serialObs.keys, parallelObs.keys);
+
+        final SerialCollectFunctor serialProgs = qr.queryPrograms(new SerialCollectFunctor());
+        final CollectFunctor parallelProgs     = qr.queryPrograms(new CollectFunctor());
+        assertEquals(12, parallelProgs.keys.size());
+        assertEquals(serialProgs.keys, parallelProgs.keys);
+    }
+
+    @Test
+    public void testProgramFilter() {
+        final IDBQueryRunner qr = odb.getQueryRunner();
+
+        final DBQueryFilter sem = DBQueryFilter.ALL.withSemesters("2017A");
+        final CollectFunctor progs = qr.queryPrograms(new CollectFunctor(), sem);
+        assertEquals(1, progs.keys.size());
+        assertEquals(q2017A.getNodeKey(), progs.keys.get(0));
+
+        final DBQueryFilter type = DBQueryFilter.ALL.withProgramTypes(ProgramType$.MODULE$.C());
+        final SerialCollectFunctor obs = qr.queryObservations(new SerialCollectFunctor(), type);
+        assertEquals(2, obs.keys.size());
+        assertEquals(c2017B.getAllObservations().get(0).getNodeKey(), obs.keys.get(0));
+    }
+
+    @Test
+    public void testObservationStatusFilter() {
+        final IDBQueryRunner qr = odb.getQueryRunner();
+        final DBQueryFilter onHold = DBQueryFilter.ALL.withObservationStatuses(ObservationStatus.ON_HOLD);
+
+        assertTrue(qr.queryObservations(new CollectFunctor(), onHold).keys.isEmpty());
+        assertTrue(qr.queryPrograms(new CollectFunctor(), onHold).keys.isEmpty());
+
+        // Editing the observation must invalidate the indexed status.
+        final ISPObservation obs = q2017A.getAllObservations().get(1);
+        setStatus(obs, ObsPhase2Status.ON_HOLD);
+
+        final CollectFunctor obsRes = qr.queryObservations(new CollectFunctor(), onHold);
+        assertEquals(1, obsRes.keys.size());
+        assertEquals(obs.getNodeKey(), obsRes.keys.get(0));
+
+        final CollectFunctor progRes = qr.queryPrograms(new CollectFunctor(), onHold);
+        assertEquals(1, progRes.keys.size());
+        assertEquals(q2017A.getNodeKey(), progRes.keys.get(0));
+    }
+}
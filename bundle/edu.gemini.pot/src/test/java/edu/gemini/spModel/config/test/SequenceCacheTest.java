@@ -0,0 +1,61 @@
+package edu.gemini.spModel.config.test;
+
+import edu.gemini.pot.sp.ISPObservation;
+import edu.gemini.pot.sp.ISPSeqComponent;
+import edu.gemini.spModel.config.SequenceCache;
+import edu.gemini.spModel.config2.ConfigSequence;
+import edu.gemini.spModel.config2.ItemKey;
+import edu.gemini.spModel.seqcomp.SeqRepeatObserve;
+import edu.gemini.spModel.test.SpModelTestBase;
+
+/**
+ * Tests reuse and invalidation of cached observation sequences.
+ */
+public final class SequenceCacheTest extends SpModelTestBase {
+
+    private ISPSeqComponent observe;
+
+    @Override public void setUp() throws Exception {
+        super.setUp();
+        SequenceCache.clear();
+        observe = addSeqComponent(getObs().getSeqComponent(), SeqRepeatObserve.SP_TYPE);
+    }
+
+    private void setRepeatCount(int count) {
+        final SeqRepeatObserve dobj = (SeqRepeatObserve) observe.getDataObject();
+        dobj.setStepCount(count);
+        observe.setDataObject(dobj);
+    }
+
+    public void testReuse() throws Exception {
+        final ISPObservation obs = getObs();
+        final long misses = SequenceCache.getMissCount();
+        final long hits   = SequenceCache.getHitCount();
+
+        assertEquals(1, SequenceCache.stepCount(obs));
+        assertEquals(1, SequenceCache.lookup(obs).size());
+        assertEquals(misses + 1, SequenceCache.getMissCount());
+        assertEquals(hits + 1, SequenceCache.getHitCount());
+    }
+
+    public void testEditInvalidates() throws Exception {
+        final ISPObservation obs = getObs();
+        assertEquals(1, SequenceCache.stepCount(obs));
+
+        setRepeatCount(3);
+        final long misses = SequenceCache.getMissCount();
+        assertEquals(3, SequenceCache.stepCount(obs));
+        assertEquals(misses + 1, SequenceCache.getMissCount());
+    }
+
+    public void testCopies() throws Exception {
+        final ISPObservation obs = getObs();
+        final ConfigSequence seq0 = SequenceCache.lookup(obs);
+        seq0.getStep(0).putItem(new ItemKey("test:item"), "modified");
+        seq0.addStep(seq0.getStep(0));
+
+        final ConfigSequence seq1 = SequenceCache.lookup(obs);
+        assertEquals(1, seq1.size());
+        assertNull(seq1.getItemValue(0, new ItemKey("test:item")));
+    }
+}
@@ -6,6 +6,10 @@ import edu.gemini.spModel.config2.Config;
 import edu.gemini.spModel.config2.ItemKey;
 import edu.gemini.spModel.config2.DefaultConfig;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Iterator;
 
 public class ConfigSequenceTest extends TestCase {
@@ -620,4 +624,44 @@ public class ConfigSequenceTest extends TestCase {
         seq = _seq.subSequence(0, _seq.size());
         assertEquals(3, seq.size());
     }
+
+    public void testStepsUnaffectedByChanges() {
+        Config step1 = _seq.getStep(1);
+        ConfigSequence copy = new ConfigSequence(_seq);
+
+        // Modify the sequence and the copy, which must not impact one another
+        // or the step already extracted.
+        _seq.setStep(1, _config2);
+        Config conf = new DefaultConfig();
+        conf.putItem(_changeKey, "change3");
+        copy.addStep(conf);
+
+        ConfigTestUtils.assertConfigContains(new String[][] {
+            { _nochangeKey.getPath(), "nochange" },
+            { _changeKey.getPath(),   "change1"  },
+            { _newKey1.getPath(),     "new1"     },
+        }, step1);
+
+        assertEquals(3, _seq.size());
+        assertEquals("change2", _seq.getItemValue(1, _changeKey));
+        assertEquals(4, copy.size());
+        assertEquals("change1", copy.getItemValue(1, _changeKey));
+        assertEquals("change3", copy.getItemValue(3, _changeKey));
+        assertEquals("new2",    copy.getItemValue(3, _newKey2));
+    }
+
+    public void testSerialization() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bos);
+        oos.writeObject(_seq);
+        oos.close();
+
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()));
+        ConfigSequence seq = (ConfigSequence) ois.readObject();
+
+        assertEquals(_seq.size(), seq.size());
+        for (int i=0; i<_seq.size(); ++i) {
+            assertEquals(_seq.getStep(i), seq.getStep(i));
+        }
+    }
 }
@@ -32,4 +32,12 @@ public class ItemKeyTest extends TestCase {
        assertTrue(childKey1.compareTo(childKey2) < 0);
        assertTrue(childKey2.compareTo(new ItemKey("apple:hardware:powermac")) == 0);
    }
+
+   public void testIntern() {
+       ItemKey parentKey = ItemKey.intern("apple");
+       assertSame(parentKey, ItemKey.intern("apple"));
+       assertSame(parentKey.child("hardware"), ItemKey.intern("apple:hardware"));
+       assertSame(parentKey.child("hardware"), parentKey.child("hardware"));
+       assertEquals(new ItemKey(parentKey, "hardware"), parentKey.child("hardware"));
+   }
 }
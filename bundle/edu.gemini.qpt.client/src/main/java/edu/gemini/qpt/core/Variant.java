@@ -27,6 +27,7 @@ import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.function.Function;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 
 /**
@@ -584,6 +585,47 @@ public final class Variant extends BaseMutableBean implements PioSerializable, C
         return check;
     }
 
+    private Union<Interval> solveDarkUnion(Site site, Obs obs) {
+        Function<Long, WorldCoords> coords = obs::getCoords;
+        final double brightest = obs.getConditions().getBrightestMagnitude();
+        SkyBackgroundSolver sbs = new SkyBackgroundSolver(site, coords, brightest);
+        return sbs.solve(owner.getStart(), owner.getEnd());
+    }
+
+    private Union<Interval> solveVisibleUnion(Site site, Obs obs) {
+        ElevationConstraintSolver as = ElevationConstraintSolver.forObs(site, obs);
+        return as.solve(owner.getStart(), owner.getEnd());
+    }
+
+    private Union<Interval> solveTimingUnion(Obs obs) {
+        TimingWindowSolver as = new TimingWindowSolver(obs);
+        return as.solve(owner.getStart(), owner.getEnd());
+    }
+
+    /**
+     * Solves the dark, visible and timing unions of the observations that are
+     * not yet cached. Each observation gets its own solvers, so they can be
+     * solved in parallel; the caches are only updated on this thread.
+     */
+    private void solveConstraintUnions(final Site site, Collection<Obs> all) {
+        final List<Obs> dark = new ArrayList<>(), visible = new ArrayList<>(), timing = new ArrayList<>();
+        for (Obs obs: all) {
+            if (!darkUnionCache.containsKey(obs)) dark.add(obs);
+            if (!visibleUnionCache.containsKey(obs)) visible.add(obs);
+            if (!timingUnionCache.containsKey(obs)) timing.add(obs);
+        }
+        if (dark.isEmpty() && visible.isEmpty() && timing.isEmpty()) return;
+
+        final long start = System.currentTimeMillis();
+        final long evaluations = Solver.getTotalEvaluationCount();
+        darkUnionCache.putAll(dark.parallelStream().collect(Collectors.toMap(o -> o, o -> solveDarkUnion(site, o))));
+        visibleUnionCache.putAll(visible.parallelStream().collect(Collectors.toMap(o -> o, o -> solveVisibleUnion(site, o))));
+        timingUnionCache.putAll(timing.parallelStream().collect(Collectors.toMap(o -> o, this::solveTimingUnion)));
+        LOGGER.fine(String.format("Solved %d dark, %d visible and %d timing unions in %d ms with %d evaluations",
+                dark.size(), visible.size(), timing.size(),
+                System.currentTimeMillis() - start, Solver.getTotalEvaluationCount() - evaluations));
+    }
+
     @SuppressWarnings("unchecked")
     private void updateObsFlags() {
 
@@ -620,6 +662,10 @@ public final class Variant extends BaseMutableBean implements PioSerializable, C
             getMutableFlags(a.getObs()).add(Flag.SCHEDULED);
         }
 
+        // The constraint unions are the most expensive part, so solve the
+        // missing ones in parallel before going through the observations.
+        solveConstraintUnions(site, owner.getMiniModel().getAllObservations());
+
         // Now look at each Obs in the model. For each we want to associate
         // meaningful flags that we can use to annotate the Obs in the UI.
         // This is a very expensive process and we're doing aggressive caching
@@ -752,10 +798,7 @@ public final class Variant extends BaseMutableBean implements PioSerializable, C
             // can not be scheduled at all tonight.
             Union<Interval> darkUnion = darkUnionCache.get(obs);
             if (darkUnion == null) {
-                Function<Long, WorldCoords> coords = obs::getCoords;
-                final double brightest = obs.getConditions().getBrightestMagnitude();
-                SkyBackgroundSolver sbs = new SkyBackgroundSolver(site, coords, brightest);
-                darkUnion = sbs.solve(owner.getStart(), owner.getEnd());
+                darkUnion = solveDarkUnion(site, obs);
                 darkUnionCache.put(obs, darkUnion);
             }
             if (darkUnion.isEmpty()) {
@@ -770,8 +813,7 @@ public final class Variant extends BaseMutableBean implements PioSerializable, C
             // this just means <= airmass 2.
             Union<Interval> visibleUnion = visibleUnionCache.get(obs);
             if (visibleUnion == null) {
-                ElevationConstraintSolver as = ElevationConstraintSolver.forObs(site, obs);
-                visibleUnion = as.solve(owner.getStart(), owner.getEnd());
+                visibleUnion = solveVisibleUnion(site, obs);
                 visibleUnionCache.put(obs, visibleUnion);
             }
             if (visibleUnion.isEmpty()) {
@@ -786,8 +828,7 @@ public final class Variant extends BaseMutableBean implements PioSerializable, C
             // Timing windows
             Union<Interval> timingUnion = timingUnionCache.get(obs);
             if (timingUnion == null) {
-                TimingWindowSolver as = new TimingWindowSolver(obs);
-                timingUnion = as.solve(owner.getStart(), owner.getEnd());
+                timingUnion = solveTimingUnion(obs);
                 timingUnionCache.put(obs, timingUnion);
             }
             if (timingUnion.isEmpty()) {
@@ -1,16 +1,46 @@
 package edu.gemini.qpt.core.util;
 
+import java.util.concurrent.atomic.AtomicLong;
 
-
+/**
+ * Finds the domains on which a predicate f(t) is true. The predicate is sampled
+ * every stepSize and the boundaries are located to within tolerance, so domains
+ * (and gaps between them) shorter than stepSize may be missed. Solvers are not
+ * thread-safe, but different solvers may be used concurrently.
+ */
 public abstract class Solver {
 
+    // Evaluations of f by all solvers, for performance comparisons.
+    private static final AtomicLong totalEvaluations = new AtomicLong();
+
     private final long stepSize, tolerance;
+    private long evaluations;
 
     public Solver(long stepSize, long tolerance) {
         this.stepSize = stepSize;
         this.tolerance = tolerance;
     }
 
+    /**
+     * Returns the number of times this solver has evaluated f.
+     */
+    public long getEvaluationCount() {
+        return evaluations;
+    }
+
+    /**
+     * Returns the number of times any solver has evaluated f.
+     */
+    public static long getTotalEvaluationCount() {
+        return totalEvaluations.get();
+    }
+
+    private boolean eval(long t) {
+        ++evaluations;
+        totalEvaluations.incrementAndGet();
+        return f(t);
+    }
+
     /** 
      * Find the interval (a..b] where f(x) is true for a < t < b if f(t),
      * otherwise t < a < b. That is, find the truth domain containing t, 
@@ -19,7 +49,7 @@ public abstract class Solver {
     public Interval solve(Interval bounds, long t) {
         try {
             long[] ret = new long[2];
-            if (f(t)) {
+            if (eval(t)) {
                 ret[0] = solve(bounds, t, -stepSize, true);
                 ret[1] = solve(bounds, t, stepSize, true);
             } else {
@@ -35,9 +65,53 @@ public abstract class Solver {
 
     
     /**
-     * Find all domains on the specified interval.
+     * Find all domains on the specified interval. f is evaluated once every
+     * stepSize and at the last instant of the interval, and each change of value
+     * between two samples is narrowed down by bisection to within tolerance.
      */
     public Union<Interval> solve(Interval interval) {
+        final Union<Interval> ret = new Union<Interval>();
+        final long last = interval.getEnd() - 1;
+        if (last < interval.getStart()) return ret;
+
+        long prev = interval.getStart();
+        boolean prevValue = eval(prev);
+        long start = prev;
+        while (prev < last) {
+            final long t = Math.min(prev + stepSize, last);
+            final boolean value = eval(t);
+            if (value != prevValue) {
+                final long edge = bisect(prev, t, value);
+                if (value) start = edge;
+                else ret.add(new Interval(start, edge));
+            }
+            prev = t;
+            prevValue = value;
+        }
+        if (prevValue) ret.add(new Interval(start, interval.getEnd()));
+        return ret;
+    }
+
+    /**
+     * Finds the first instant in (lo..hi] where f is the given value, to within
+     * tolerance, given that f(lo) is not and f(hi) is.
+     */
+    private long bisect(long lo, long hi, boolean value) {
+        while (hi - lo > tolerance) {
+            final long mid = lo + (hi - lo) / 2;
+            if (eval(mid) == value) hi = mid;
+            else lo = mid;
+        }
+        return hi;
+    }
+
+    /**
+     * Find all domains on the specified interval by stepping from one domain
+     * boundary to the next. This was the original algorithm behind
+     * {@link #solve(Interval)}, which needs fewer evaluations of f; it is kept
+     * to compare the two.
+     */
+    public Union<Interval> solveByStepping(Interval interval) {
         Union<Interval> ret = new Union<Interval>();
         long t = interval.getStart();
         while (interval.contains(t)) {
@@ -59,7 +133,7 @@ public abstract class Solver {
     
     private long solve(Interval bounds, long t, long stepSize, boolean findFalse) throws NoSolutionException {
 //        System.out.print("Starting at " + t + " and counting by " + stepSize + " until condition is " + !findFalse);
-        while (findFalse ? f(t) : !f(t)) {
+        while (findFalse ? eval(t) : !eval(t)) {
             if (!bounds.contains(t)) {
                 
                 
@@ -8,6 +8,7 @@ import java.util.SortedSet;
 import static java.lang.Math.PI;
 import static java.lang.Math.sin;
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
 
 public class SolverTest {
 
@@ -143,6 +144,22 @@ public class SolverTest {
 
 
     }
+
+    @Test public void testStepping() {
+
+        // Bracketing should find the same domains as stepping, with fewer
+        // evaluations.
+        for (int period = 16; period < 1024; period *= 2) {
+            for (int stepSize: new int[] { period / 4, period / 2, period - 1 }) {
+                Interval interval = new Interval(-period / 3, period * 7);
+                Solver bracketing = new TestSolver(stepSize, 1, period);
+                Solver stepping = new TestSolver(stepSize, 1, period);
+                assertEquals(stepping.solveByStepping(interval).getIntervals(), bracketing.solve(interval).getIntervals());
+                assertTrue(bracketing.getEvaluationCount() < stepping.getEvaluationCount());
+            }
+        }
+
+    }
     
 }
 
@@ -45,6 +45,7 @@ class QvTool(ctx: QvContext) extends Frame {
  */
 object QvTool {
   var defaultsFile: Option[File] = None
+  var constraintsFile: Option[File] = None
   var viewerService: Option[OtViewerService] = None
   var authClient: Option[KeyChain] = None
 
@@ -39,10 +39,7 @@ class XYPlotter(ctx: QvContext, nights: Seq[Night], constraints: ConstraintsSele
 
   def plotCurves(obs: Seq[Obs], options: Set[ChartOption], inRenderer: XYLineAndShapeRenderer, outRenderer: XYLineAndShapeRenderer): Unit = {
 
-    def targetCalcFor(o: Obs): TargetCalculator =
-      XYPlotter.getCalculator(ctx.site, o.getTargetEnvironment.getAsterism, overSampling)
-
-    val tcs = obs.map(o => o -> targetCalcFor(o)).toMap
+    val tcs = obs.zip(XYPlotter.getCalculators(ctx.site, obs.map(_.getTargetEnvironment.getAsterism), overSampling)).toMap
 
     options.foreach {
       case ElevationCurve =>
@@ -243,20 +240,38 @@ object XYPlotter {
   private val calcCache = concurrent.TrieMap[CalcKey, TargetCalculator]()
   private val calcAge = mutable.SortedSet[TimedKey]()
 
+  private def location(asterism: Asterism): Long => Coordinates =
+    (t: Long) => asterism.basePosition(Some(Instant.ofEpochMilli(t))).getOrElse(Coordinates.zero)
+
+  private def cache(key: CalcKey, tc: TargetCalculator): Unit = {
+    if (calcCache.size >= 500) {
+      val oldest = calcAge.head
+      calcAge.remove(oldest)
+      calcCache.remove(oldest.key)
+    }
+    val ts = System.currentTimeMillis()
+    calcAge.add(new TimedKey(ts, key))
+    calcCache.put(key, tc)
+  }
+
   def getCalculator(site: Site, asterism: Asterism, sampling: Vector[Long]): TargetCalculator = {
     val key = CalcKey(site, asterism, sampling)
     calcCache.getOrElseUpdate(key, {
-      if (calcCache.size >= 500) {
-        val oldest = calcAge.head
-        calcAge.remove(oldest)
-        calcCache.remove(oldest.key)
-      }
-      val tc = TargetCalculator(site, (t: Long) => asterism.basePosition(Some(Instant.ofEpochMilli(t))).getOrElse(Coordinates.zero), sampling)
-      val ts = System.currentTimeMillis()
-      calcAge.add(new TimedKey(ts, key))
-      calcCache.put(key, tc)
+      val tc = TargetCalculator(site, location(asterism), sampling)
+      cache(key, tc)
       tc
     })
 
   }
+
+  /**
+   * Gets the calculators for several asterisms; the ones that are not cached yet are calculated together
+   * which is a lot faster than calculating them one by one.
+   */
+  def getCalculators(site: Site, asterisms: Seq[Asterism], sampling: Vector[Long]): Seq[TargetCalculator] = {
+    val missing = asterisms.distinct.filterNot(a => calcCache.contains(CalcKey(site, a, sampling)))
+    val calculated = missing.zip(TargetCalculator.batch(site, missing.map(location), sampling)).toMap
+    calculated.foreach { case (a, tc) => cache(CalcKey(site, a, sampling), tc) }
+    asterisms.map(a => calculated.getOrElse(a, getCalculator(site, a, sampling)))
+  }
 }
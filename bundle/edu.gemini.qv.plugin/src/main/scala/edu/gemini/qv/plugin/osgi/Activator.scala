@@ -21,6 +21,7 @@ class Activator extends BundleActivator {
   def start(ctx: BundleContext): Unit = {
 
     QvTool.defaultsFile = Option(ExternalStorage.getPermanentDataFile(ctx, Version.current.isTest, "userFilters.v1.xml", migrationSteps))
+    QvTool.constraintsFile = Option(ExternalStorage.getExternalDataFile(ctx, "constraints.v1.bin"))
 
     reg = Option(ctx.registerService(classOf[OtActionPlugin], new ShowQvToolAction, new java.util.Hashtable[String, Object]()))
 
@@ -1,6 +1,8 @@
 package edu.gemini.qv.plugin.util
 
 import java.time.Instant
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.logging.Logger
 
 import ConstraintsCache._
 import edu.gemini.qpt.shared.sp.{Conds, Obs}
@@ -28,6 +30,8 @@ import scala.swing.{Publisher, Swing}
 
 object ConstraintsCache {
 
+  private val Log = Logger.getLogger(classOf[ConstraintsCache].getName)
+
   sealed trait CalculationEvent extends Event
   case class ConstraintCalculationStart(constraint: ConstraintType, cnt: Int = 1) extends CalculationEvent
   case class ConstraintCalculationEnd(constraint: ConstraintType, cnt: Int = 1) extends CalculationEvent
@@ -49,7 +53,12 @@ object ConstraintsCache {
 
 }
 
-class ConstraintsCache(allNights: Seq[Night]) extends Publisher {
+/**
+ * Calculates and holds the constraint solutions for all observations and nights. The per night calculations
+ * are looked up in and added to the given persistent store, so that only targets and constraints that changed
+ * since the last time QV was used need to be calculated.
+ */
+class ConstraintsCache(allNights: Seq[Night], store: ConstraintsStore = ConstraintsStore.default) extends Publisher {
 
   sealed trait SolutionKey
   case class ObsKey(ct: ConstraintType, obsId: String) extends SolutionKey
@@ -133,12 +142,16 @@ class ConstraintsCache(allNights: Seq[Night]) extends Publisher {
     // (it will be needed later and slows UI interaction down too much when only initialised when needed)
     nights.map(_.moonCalculator)
 
+    store.load()
+    val hits   = new AtomicInteger()
+    val misses = new AtomicInteger()
+
     // do calculations for each "folded" obs, i.e. for each position
     // this can be done in parallel!
     foldedObs.par.foreach(obs => {                                   // work on observation groups in parallel!
 
       val target = (t: Long) => obs.getTargetEnvironment.getAsterism.basePosition(Some(Instant.ofEpochMilli(t))).getOrElse(Coordinates.zero)
-      calculatePosSemester(nights, target, obs, foldedMap(obs))
+      calculatePosSemester(nights, target, obs, foldedMap(obs), hits, misses)
 
       // update progress, we've calculated all constraints for obs.size observations for all nights in the semester
       Swing.onEDT({
@@ -147,6 +160,11 @@ class ConstraintsCache(allNights: Seq[Night]) extends Publisher {
 
     })
 
+    // only drop the nights that are over, not the ones before the current range, a later refresh may need them
+    store.save(System.currentTimeMillis)
+    val total = hits.get + misses.get
+    Log.info(f"Constraint solutions for $total%d target nights: ${hits.get}%d stored, ${misses.get}%d calculated (${if (total == 0) 0.0 else 100.0 * hits.get / total}%.1f%% hit rate), ${store.size}%d stored in total.")
+
     onEDT(constraints.foreach(c => {
       publish(ConstraintCalculationEnd(c, 0))
     }))
@@ -154,10 +172,22 @@ class ConstraintsCache(allNights: Seq[Night]) extends Publisher {
   }
 
 
-  private def calculatePosSemester(nights: Seq[Night], target: Long => Coordinates, foldedObs: Obs, obs: Set[Obs]): Unit = {
-
-    // calculate all constraints on a per-night basis and then concatenate the results
-    val cc = nights.map(n => calculatePosNight(n, target, foldedObs))
+  private def calculatePosSemester(nights: Seq[Night], target: Long => Coordinates, foldedObs: Obs, obs: Set[Obs], hits: AtomicInteger, misses: AtomicInteger): Unit = {
+
+    // calculate all constraints on a per-night basis (unless already stored) and then concatenate the results
+    val cc = nights.map { n =>
+      val key = storeKey(n, target, foldedObs)
+      store.get(key) match {
+        case Some(e) =>
+          hits.incrementAndGet()
+          (e.aboveHorizon, e.skyBrightness, e.elevation, e.minElevation, e.maxElevation)
+        case None    =>
+          misses.incrementAndGet()
+          val c = calculatePosNight(n, target, foldedObs)
+          store.put(key, ConstraintsStore.Entry(n.scienceTime.end, c._1, c._2, c._3, c._4, c._5))
+          c
+      }
+    }
     val ah = cc.map(_._1).reduce(_ add _)
     val sb = cc.map(_._2).reduce(_ add _)
     val el = cc.map(_._3).reduce(_ add _)
@@ -213,6 +243,28 @@ class ConstraintsCache(allNights: Seq[Night]) extends Publisher {
     )
   }
 
+  /**
+   * Hash of everything the per night calculations for an observation depend on: the night, the position
+   * of the target during the night (sampled at the start, middle and end of the night, which is enough to
+   * tell apart changes of non-sidereal targets) and the constraint parameters.
+   */
+  private def storeKey(night: Night, target: Long => Coordinates, o: Obs): Long = ConstraintsStore.key { out =>
+    val bounds = night.scienceTime
+    out.writeUTF(night.site.name)
+    out.writeLong(bounds.start)
+    out.writeLong(bounds.end)
+    Seq(bounds.start, (bounds.start + bounds.end) / 2, bounds.end).foreach { t =>
+      val c = target(t)
+      out.writeDouble(c.ra.toAngle.toDegrees)
+      out.writeDouble(c.dec.toDegrees)
+    }
+    out.writeDouble(Conds.getBrightestMagnitude(o.getConditions.getSB))
+    out.writeUTF(o.getElevationConstraintType.name)
+    out.writeDouble(o.getElevationConstraintMin)
+    out.writeDouble(o.getElevationConstraintMax)
+    out.writeDouble(minElevationFor(night, o))
+  }
+
   /**
    * Gets the minimal elevation for an observation to be observable depending on LGS or not.
    * NOTE: This should be done by checking for the actual instrument used by the observation from o.instruments
@@ -0,0 +1,152 @@
+package edu.gemini.qv.plugin.util
+
+import java.io._
+import java.nio.ByteBuffer
+import java.nio.file.{Files, StandardCopyOption}
+import java.security.MessageDigest
+import java.util.logging.{Level, Logger}
+import java.util.zip.{GZIPInputStream, GZIPOutputStream}
+
+import edu.gemini.qv.plugin.QvTool
+import edu.gemini.util.skycalc.calc.{Interval, Solution}
+
+import scala.collection.concurrent
+
+/**
+ * Persistent store for the per night constraint solutions and elevation values calculated by the
+ * [[ConstraintsCache]]. Entries are addressed by a hash of all the inputs of the calculation (site, night,
+ * target positions and constraint parameters), so an entry is reused for as long as its inputs don't change
+ * and replaced otherwise; there is no other invalidation. The store is loaded once and written back after
+ * each update, dropping the nights that are over. Any problem reading or writing the file is logged and
+ * otherwise ignored, the store is only a cache.
+ */
+class ConstraintsStore(file: Option[File]) {
+  import ConstraintsStore._
+
+  private val entries: concurrent.Map[Long, Entry] = concurrent.TrieMap()
+  @volatile private var loaded = false
+  @volatile private var dirty = false
+
+  def size: Int = entries.size
+
+  def get(key: Long): Option[Entry] = entries.get(key)
+
+  def put(key: Long, e: Entry): Unit = {
+    entries.put(key, e)
+    dirty = true
+  }
+
+  /** Reads the store from disk, only the first time it is called. */
+  def load(): Unit = synchronized {
+    if (!loaded) {
+      file.filter(_.exists).foreach { f =>
+        try {
+          val in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(f))))
+          try read(in) finally in.close()
+          Log.info(s"Loaded ${entries.size} constraint solutions from ${f.getPath}.")
+        } catch {
+          case e: IOException =>
+            Log.log(Level.WARNING, s"Could not load constraint solutions from ${f.getPath}, starting from scratch.", e)
+            entries.clear()
+        }
+      }
+      loaded = true
+    }
+  }
+
+  /**
+   * Writes the store to disk if it changed, dropping all entries for nights that ended before the given time,
+   * which is normally the current time.
+   */
+  def save(from: Long): Unit = synchronized {
+    val before = entries.size
+    entries.retain((_, e) => e.end >= from)
+    if (entries.size != before) dirty = true
+    if (dirty) file.foreach { f =>
+      val tmp = new File(f.getPath + ".tmp")
+      try {
+        val out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp))))
+        try write(out) finally out.close()
+        Files.move(tmp.toPath, f.toPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+        dirty = false
+      } catch {
+        case e: IOException =>
+          Log.log(Level.WARNING, s"Could not save constraint solutions to ${f.getPath}.", e)
+          tmp.delete()
+      }
+    }
+  }
+
+  private def read(in: DataInputStream): Unit = {
+    if (in.readInt() != Magic || in.readInt() != FormatVersion) throw new IOException("unknown format")
+    val cnt = in.readInt()
+    (0 until cnt).foreach { _ =>
+      val key = in.readLong()
+      val end = in.readLong()
+      val ah  = readSolution(in)
+      val sb  = readSolution(in)
+      val el  = readSolution(in)
+      entries.put(key, Entry(end, ah, sb, el, in.readDouble(), in.readDouble()))
+    }
+  }
+
+  private def write(out: DataOutputStream): Unit = {
+    val es = entries.toList
+    out.writeInt(Magic)
+    out.writeInt(FormatVersion)
+    out.writeInt(es.size)
+    es.foreach { case (key, e) =>
+      out.writeLong(key)
+      out.writeLong(e.end)
+      writeSolution(out, e.aboveHorizon)
+      writeSolution(out, e.skyBrightness)
+      writeSolution(out, e.elevation)
+      out.writeDouble(e.minElevation)
+      out.writeDouble(e.maxElevation)
+    }
+  }
+
+}
+
+object ConstraintsStore {
+
+  private val Log = Logger.getLogger(classOf[ConstraintsStore].getName)
+
+  private val Magic = 0x51564353 // "QVCS"
+
+  /** Must be incremented whenever the calculations or the format change. */
+  val FormatVersion = 1
+
+  /** The store shared by all QV instances. */
+  lazy val default: ConstraintsStore = new ConstraintsStore(QvTool.constraintsFile)
+
+  /**
+   * Solutions and elevation values of one target for one night.
+   * @param end end of the night, used to drop the entry once the night is over
+   */
+  case class Entry(end: Long, aboveHorizon: Solution, skyBrightness: Solution, elevation: Solution, minElevation: Double, maxElevation: Double)
+
+  /** Hash of the inputs of a calculation, which are written to the given stream by `inputs`. */
+  def key(inputs: DataOutputStream => Unit): Long = {
+    val bytes = new ByteArrayOutputStream(128)
+    val out   = new DataOutputStream(bytes)
+    out.writeInt(FormatVersion)
+    inputs(out)
+    out.flush()
+    ByteBuffer.wrap(MessageDigest.getInstance("SHA-1").digest(bytes.toByteArray)).getLong
+  }
+
+  private def readSolution(in: DataInputStream): Solution = {
+    val cnt = in.readInt()
+    Solution((0 until cnt).map(_ => Interval(in.readLong(), in.readLong())).toList)
+  }
+
+  private def writeSolution(out: DataOutputStream, s: Solution): Unit = {
+    out.writeInt(s.intervals.size)
+    s.intervals.foreach { i =>
+      out.writeLong(i.start)
+      out.writeLong(i.end)
+    }
+  }
+
+}
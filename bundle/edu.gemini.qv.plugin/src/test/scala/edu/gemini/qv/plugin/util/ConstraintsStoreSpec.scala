@@ -0,0 +1,78 @@
+package edu.gemini.qv.plugin.util
+
+import java.io.File
+
+import edu.gemini.qv.plugin.util.ConstraintsStore.Entry
+import edu.gemini.util.skycalc.calc.{Interval, Solution}
+import org.specs2.mutable.Specification
+
+class ConstraintsStoreSpec extends Specification {
+
+  private def entry(end: Long) =
+    Entry(end, Solution(List(Interval(10, 20), Interval(30, 40))), Solution.Never, Solution(List(Interval(15, 35))), 12.5, 80.25)
+
+  private def withFile[A](f: File => A): A = {
+    val file = File.createTempFile("constraints", ".bin")
+    file.delete()
+    try f(file) finally file.delete()
+  }
+
+  "ConstraintsStore" should {
+
+    "read back what it saved" in withFile { file =>
+      val s0 = new ConstraintsStore(Some(file))
+      s0.load()
+      s0.put(1L, entry(100))
+      s0.put(2L, entry(200))
+      s0.save(0)
+
+      val s1 = new ConstraintsStore(Some(file))
+      s1.load()
+      s1.size must_== 2
+      s1.get(1L) must beSome(entry(100))
+      s1.get(2L) must beSome(entry(200))
+    }
+
+    "drop the nights that are over when saving" in withFile { file =>
+      val s0 = new ConstraintsStore(Some(file))
+      s0.put(1L, entry(100))
+      s0.put(2L, entry(200))
+      s0.save(150)
+
+      val s1 = new ConstraintsStore(Some(file))
+      s1.load()
+      s1.get(1L) must beNone
+      s1.get(2L) must beSome(entry(200))
+    }
+
+    "write the store if only old nights were dropped" in withFile { file =>
+      val s0 = new ConstraintsStore(Some(file))
+      s0.put(1L, entry(100))
+      s0.put(2L, entry(200))
+      s0.save(0)
+
+      val s1 = new ConstraintsStore(Some(file))
+      s1.load()
+      s1.save(150)
+
+      val s2 = new ConstraintsStore(Some(file))
+      s2.load()
+      s2.size must_== 1
+      s2.get(2L) must beSome(entry(200))
+    }
+
+    "ignore files it can't read" in withFile { file =>
+      java.nio.file.Files.write(file.toPath, "not a store".getBytes)
+      val s = new ConstraintsStore(Some(file))
+      s.load()
+      s.size must_== 0
+    }
+
+    "hash different inputs to different keys" in {
+      val k0 = ConstraintsStore.key(_.writeDouble(1.0))
+      val k1 = ConstraintsStore.key(_.writeDouble(1.0))
+      val k2 = ConstraintsStore.key(_.writeDouble(1.5))
+      (k0 must_== k1) and (k0 must_!= k2)
+    }
+  }
+}
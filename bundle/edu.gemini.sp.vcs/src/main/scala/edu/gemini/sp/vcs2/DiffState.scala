@@ -5,9 +5,27 @@ import edu.gemini.pot.sp.version.VersionMap
 
 /** Groups the information required to calculate a
   * [[edu.gemini.sp.vcs2.ProgramDiff]]. */
-case class DiffState(progKey: SPNodeKey, vm: VersionMap, removed: Set[SPNodeKey])
+case class DiffState(progKey: SPNodeKey, vm: VersionMap, removed: Set[SPNodeKey]) {
+
+  /** Keeps only the version entries in the given
+    * [[edu.gemini.sp.vcs2.VersionDigest]] buckets. */
+  def partial(buckets: Set[Int]): DiffState.Partial =
+    DiffState.Partial(progKey, buckets, VersionDigest.restrict(vm, buckets), removed)
+}
 
 object DiffState {
   def apply(p: ISPProgram): DiffState =
     DiffState(p.getProgramKey, p.getVersions, removedKeys(p))
+
+  /** A `DiffState` with only the version entries in some buckets of the
+    * [[edu.gemini.sp.vcs2.VersionDigest]], sent when the two peers are known
+    * to agree on all the others.
+    */
+  case class Partial(progKey: SPNodeKey, buckets: Set[Int], vm: VersionMap, removed: Set[SPNodeKey]) {
+
+    /** Recovers the complete `DiffState` given the other peer's
+      * `VersionMap`, whose entries outside of `buckets` are the same. */
+    def complete(other: VersionMap): DiffState =
+      DiffState(progKey, VersionDigest.patch(other, buckets, vm), removed)
+  }
 }
@@ -5,6 +5,7 @@ import edu.gemini.pot.sp._
 import edu.gemini.sp.vcs2.MergeNode._
 import edu.gemini.spModel.obs.ObservationStatus
 import edu.gemini.spModel.rich.pot.sp._
+import edu.gemini.util.trpc.common.TrpcStream
 
 import scala.collection.JavaConverters._
 import scalaz._
@@ -169,4 +170,56 @@ object ProgramDiff {
   case class Transport(plan: MergePlan.Transport, obsStatus: List[ObsStatusPair], maxObs: Option[Int]) {
     def decode: ProgramDiff = ProgramDiff(plan.decode, obsStatus, maxObs)
   }
+
+  /** A piece of a `ProgramDiff` sent as a stream: the nodes of the merge plan
+    * tree in pre-order, each with its number of children, followed by the
+    * rest of the diff. */
+  sealed trait Piece extends Serializable
+  final case class NodePiece(mn: MergeNode, children: Int) extends Piece
+  final case class TailPiece(delete: Set[Missing], obsStatus: List[ObsStatusPair], maxObs: Option[Int]) extends Piece
+
+  /** A `ProgramDiff` streamed in chunks of pieces, or the failure to compute
+    * it.  Only the first chunk may be a failure. */
+  type Chunks = TrpcStream[TryVcs[Vector[Piece]]]
+
+  val PiecesPerChunk = 256
+
+  def pieces(pd: ProgramDiff): Iterator[Piece] = {
+    def nodes(t: Tree[MergeNode]): Iterator[Piece] =
+      Iterator.single(NodePiece(t.rootLabel, t.subForest.length): Piece) ++ t.subForest.iterator.flatMap(nodes)
+
+    nodes(pd.plan.update) ++ Iterator.single(TailPiece(pd.plan.delete, pd.obsStatus, pd.maxObsNumber))
+  }
+
+  def fromPieces(ps: Iterator[Piece]): ProgramDiff = {
+    def tree(): Tree[MergeNode] = ps.next() match {
+      case NodePiece(mn, n) => Node(mn, List.fill(n)(tree()).toStream)
+      case p                => throw new IllegalStateException(s"Expected a merge node, not $p")
+    }
+
+    val update = tree()
+    ps.next() match {
+      case TailPiece(delete, os, mo) => ProgramDiff(MergePlan(update, delete), os, mo)
+      case p                         => throw new IllegalStateException(s"Expected the end of the diff, not $p")
+    }
+  }
+
+  /** Streams the diff, or the failure to compute it. */
+  def stream(d: TryVcs[ProgramDiff]): Chunks =
+    TrpcStream.fromIterator(d.fold(
+      f  => Iterator.single(f.left[Vector[Piece]]),
+      pd => pieces(pd).grouped(PiecesPerChunk).map(_.toVector.right[VcsFailure])
+    ))
+
+  /** Reads a streamed diff, closing the stream. */
+  def read(s: Chunks): TryVcs[ProgramDiff] =
+    try {
+      val chunks = s.iterator
+      for {
+        first <- safeGet(chunks.next(), "Empty program diff.").flatMap(c => c)
+        pd    <- safeGet(fromPieces(first.iterator ++ chunks.flatMap(_.getOrElse(Vector.empty))), "Incomplete program diff.")
+      } yield pd
+    } finally {
+      s.close()
+    }
 }
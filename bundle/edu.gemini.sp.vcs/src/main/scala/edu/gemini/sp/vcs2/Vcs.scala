@@ -5,13 +5,14 @@ import edu.gemini.pot.sp.version._
 import edu.gemini.shared.util.VersionComparison.{Conflicting, Same, Newer}
 import edu.gemini.sp.vcs2.ProgramLocation.Remote
 import edu.gemini.sp.vcs2.ProgramLocationSet.{LocalOnly, Neither, RemoteOnly}
-import edu.gemini.sp.vcs2.VcsFailure.{Cancelled, IdClash, NeedsUpdate}
+import edu.gemini.sp.vcs2.VcsFailure.{Cancelled, IdClash, NeedsUpdate, StaleDigest}
 import edu.gemini.sp.vcs.log.VcsEventSet
 import edu.gemini.spModel.core.{Peer, SPProgramID}
 import edu.gemini.spModel.rich.pot.sp._
 import edu.gemini.util.security.auth.keychain.KeyChain
 
 import java.security.{Permission, Principal}
+import java.util.concurrent.{ExecutorService, Executors}
 import java.util.concurrent.atomic.AtomicBoolean
 
 import scala.collection.JavaConverters._
@@ -66,17 +67,31 @@ class Vcs(user: VcsAction[Set[Principal]], server: VcsServer, service: Peer => V
 
   // pull0 is shared by `pull` and `sync`, since the first half of a sync is
   // to merge in changes from the remote peer.  The local merge is only
-  // performed if the remote peer has something new to offer.
-  private def pull0(id: SPProgramID, client: Client, cancelled: AtomicBoolean): VcsAction[MergeEval] = {
+  // performed if the remote peer has something new to offer.  If the two
+  // versions of the program are identical, there is nothing to merge and
+  // only the (common) VersionMap is returned.
+  private def pull0(id: SPProgramID, client: Client, cancelled: AtomicBoolean, remoteDigest: VcsAction[VersionDigest]): VcsAction[VersionMap \/ MergeEval] = {
     def validateProgKey(local: ISPProgram, remote: MergePlan): VcsAction[Unit] = {
       val lKey = local.getProgramKey
       val rKey = remote.update.rootLabel.key
       if (lKey === rKey) VcsAction.unit else VcsAction.fail(IdClash(id, lKey, rKey))
     }
 
-    def evaluate(p: ISPProgram): VcsAction[MergeEval] =
+    // Only the version entries in buckets that differ are sent, unless the
+    // remote program changed elsewhere since its digest was fetched.
+    def fetchDiffs(p: ISPProgram, rd: VersionDigest, buckets: Set[Int]): VcsAction[ProgramDiff] = {
+      val ds = DiffState(p)
+      val pd = ds.partial(buckets)
+      VcsMetrics.record(id, buckets.size, 2 * VersionDigest.Size + VersionDigest.size(pd.vm), 2 * VersionDigest.size(ds.vm))
+      client.fetchPartialDiffs(id, pd, rd).run.flatMap {
+        case -\/(StaleDigest) => client.fetchDiffs(id, ds).run
+        case r                => Task.now(r)
+      }.liftVcs
+    }
+
+    def merge(p: ISPProgram, rd: VersionDigest, buckets: Set[Int]): VcsAction[MergeEval] =
       for {
-        diffs  <- client.fetchDiffs(id, DiffState(p))
+        diffs  <- fetchDiffs(p, rd, buckets)
         _      <- checkCancel(cancelled)
         _      <- validateProgKey(p, diffs.plan)
         mc      = MergeContext(p, diffs)
@@ -84,13 +99,24 @@ class Vcs(user: VcsAction[Set[Principal]], server: VcsServer, service: Peer => V
         plan   <- MergeCorrection(mc)(prelim, hasPermission)
       } yield MergeEval(plan, p, mc.remote.vm)
 
+    def evaluate(p: ISPProgram): VcsAction[VersionMap \/ MergeEval] =
+      for {
+        rd      <- remoteDigest
+        _       <- checkCancel(cancelled)
+        buckets  = server.digest(p).differingBuckets(rd)
+        eval    <- if (buckets.isEmpty) {
+                     VcsMetrics.record(id, 0, 2 * VersionDigest.Size, 2 * VersionDigest.size(p.getVersions))
+                     VcsAction(p.getVersions.left[MergeEval])
+                   } else merge(p, rd, buckets).map(_.right[VersionMap])
+      } yield eval
+
     // Only do the merge if the merge plan has something new to offer.
-    def filter(eval: MergeEval): Boolean = eval.localUpdate
+    def filter(eval: VersionMap \/ MergeEval): Boolean = eval.exists(_.localUpdate)
 
-    def update(f: ISPFactory, p: ISPProgram, eval: MergeEval): VcsAction[Unit] =
-      checkCancel(cancelled) >> eval.plan.merge(f, p)
+    def update(f: ISPFactory, p: ISPProgram, eval: VersionMap \/ MergeEval): VcsAction[Unit] =
+      eval.fold(_ => VcsAction.unit, e => checkCancel(cancelled) >> e.plan.merge(f, p))
 
-    user >>= { u => server.write[MergeEval](id, u, evaluate, filter, update) }
+    user >>= { u => server.write[VersionMap \/ MergeEval](id, u, evaluate, filter, update) }
   }
 
   /** Provides an action that will pull changes from the indicated remote peer
@@ -98,10 +124,13 @@ class Vcs(user: VcsAction[Set[Principal]], server: VcsServer, service: Peer => V
     * a `PullResult` which indicates whether the local program was updated along
     * with the resulting `VersionMap`.
     */
-  def pull(id: SPProgramID, peer: Peer, cancelled: AtomicBoolean): VcsAction[(PullResult, VersionMap)] =
-    pull0(id, Client(peer), cancelled).map { e =>
-      (e.localUpdate.fold(LocalOnly, Neither), e.remoteVm)
+  def pull(id: SPProgramID, peer: Peer, cancelled: AtomicBoolean): VcsAction[(PullResult, VersionMap)] = {
+    val client = Client(peer)
+    pull0(id, client, cancelled, client.versionDigest(id)).map {
+      case -\/(vm) => (Neither, vm)
+      case \/-(e)  => (e.localUpdate.fold(LocalOnly, Neither), e.remoteVm)
     }
+  }
 
   /** Provides an action that pushes local changes to the remote peer, merging
     * them with the remote version of the program if necessary.  When performed,
@@ -117,21 +146,53 @@ class Vcs(user: VcsAction[Set[Principal]], server: VcsServer, service: Peer => V
       if (lKey === rKey) VcsAction.unit else VcsAction.fail(IdClash(id, lKey, rKey))
     }
 
-    case class LocalProg(key: SPNodeKey, diff: ProgramDiff, vm: VersionMap)
+    case class LocalProg(key: SPNodeKey, remote: DiffState, diff: ProgramDiff, vm: VersionMap)
+
+    def localProg(p: ISPProgram, remote: DiffState): LocalProg =
+      LocalProg(p.getProgramKey, remote, ProgramDiff.compare(p, remote), p.getVersions)
+
+    // The remote entries outside of the differing buckets are taken from the
+    // local program, which only works if it hasn't been modified elsewhere
+    // since the buckets were picked.
+    def partialLocalProg(rd: VersionDigest, remote: DiffState.Partial)(p: ISPProgram): Option[LocalProg] =
+      server.digest(p).differingBuckets(rd).subsetOf(remote.buckets).option {
+        localProg(p, remote.complete(p.getVersions))
+      }
+
+    def fullLocalProg(u: Set[Principal]): VcsAction[LocalProg] =
+      for {
+        diffState <- client.diffState(id)
+        _         <- checkCancel(cancelled)
+        lp        <- server.read(id, u)(localProg(_, diffState))
+      } yield lp
+
+    def push0(u: Set[Principal], rd: VersionDigest, buckets: Set[Int]): VcsAction[(PushResult, VersionMap)] =
+      for {
+        partial <- client.partialDiffState(id, buckets)
+        _       <- checkCancel(cancelled)
+        lpOpt   <- server.read(id, u)(partialLocalProg(rd, partial))
+        lp      <- lpOpt.fold(fullLocalProg(u))(VcsAction(_))
+        _       <- validateProgKey(lp.key, lp.remote)
+        _       <- checkCancel(cancelled)
+        _        = VcsMetrics.record(id, buckets.size, 2 * VersionDigest.Size + VersionDigest.size(partial.vm), 2 * VersionDigest.size(lp.vm))
+        res     <- lp.diff.plan.compare(lp.remote.vm) match {
+          case Newer => client.storeDiffs(id, lp.diff.plan).map { updated => (updated.fold(RemoteOnly, Neither), lp.vm) }
+          case Same  => VcsAction((Neither, lp.vm))
+          case _     => VcsAction.fail(NeedsUpdate)
+        }
+      } yield res
 
     val client = Client(peer)
     for {
-      diffState <- client.diffState(id)
-      _         <- checkCancel(cancelled)
-      u         <- user
-      lp        <- server.read(id, u) { p => LocalProg(p.getProgramKey, ProgramDiff.compare(p, diffState), p.getVersions) }
-      _         <- validateProgKey(lp.key, diffState)
-      _         <- checkCancel(cancelled)
-      res       <- lp.diff.plan.compare(diffState.vm) match {
-        case Newer => client.storeDiffs(id, lp.diff.plan).map { updated => (updated.fold(RemoteOnly, Neither), lp.vm) }
-        case Same  => VcsAction((Neither, lp.vm))
-        case _     => VcsAction.fail(NeedsUpdate)
-      }
+      rd      <- client.versionDigest(id)
+      _       <- checkCancel(cancelled)
+      u       <- user
+      local   <- server.read(id, u) { p => (server.digest(p), p.getVersions) }
+      buckets  = local._1.differingBuckets(rd)
+      res     <- if (buckets.isEmpty) {
+                   VcsMetrics.record(id, 0, 2 * VersionDigest.Size, 2 * VersionDigest.size(local._2))
+                   VcsAction((Neither, local._2): (PushResult, VersionMap))
+                 } else push0(u, rd, buckets)
     } yield res
   }
 
@@ -144,33 +205,81 @@ class Vcs(user: VcsAction[Set[Principal]], server: VcsServer, service: Peer => V
    * also returns the resulting `VersionMap` of the remote program. */
   def sync(id: SPProgramID, peer: Peer, cancelled: AtomicBoolean): VcsAction[(ProgramLocationSet, VersionMap)] = {
     val client = Client(peer)
-    for {
-      eval <- pull0(id, client, cancelled)
-      s0    = eval.localUpdate.fold(LocalOnly, Neither)
-      res  <- eval match {
-        case MergeEval(_,     _,   rvm, _, false) =>
-          VcsAction((s0, rvm))
-
-        case MergeEval(diffs, lvm, rvm, _, true)  =>
-          client.storeDiffs(id, diffs).map { updated =>
-            if (updated) (s0 + Remote, eval.plan.vm(rvm)) else (s0, rvm)
-          }
-      }
-    } yield res
+    sync0(id, client, cancelled, client.versionDigest(id))
   }
 
+  private def sync0(id: SPProgramID, client: Client, cancelled: AtomicBoolean, remoteDigest: VcsAction[VersionDigest]): VcsAction[(ProgramLocationSet, VersionMap)] =
+    pull0(id, client, cancelled, remoteDigest).flatMap {
+      case -\/(vm)  =>
+        VcsAction((Neither, vm): (ProgramLocationSet, VersionMap))
+
+      case \/-(eval) =>
+        val s0: ProgramLocationSet = eval.localUpdate.fold(LocalOnly, Neither)
+        eval match {
+          case MergeEval(_,     _,   rvm, _, false) =>
+            VcsAction((s0, rvm))
+
+          case MergeEval(diffs, lvm, rvm, _, true)  =>
+            client.storeDiffs(id, diffs).map { updated =>
+              if (updated) (s0 + Remote, eval.plan.vm(rvm)) else (s0, rvm)
+            }
+        }
+    }
+
   /** Returns a `VcsAction` that will sync the program with the remote peer,
     * retrying if it fails because the program was updated remotely while
     * performing the merge locally.  Retry up to `retryCount` times if
     * necessary. */
-  def retrySync(id: SPProgramID, peer: Peer, cancelled: AtomicBoolean, retryCount: Int): VcsAction[(ProgramLocationSet, VersionMap)] = {
-    def retryIfNeedsUpdate(f: VcsFailure): EitherT[Task, (ProgramLocationSet, VersionMap), VcsFailure] = f match {
+  def retrySync(id: SPProgramID, peer: Peer, cancelled: AtomicBoolean, retryCount: Int): VcsAction[(ProgramLocationSet, VersionMap)] =
+    retryIfNeedsUpdate(sync(id, peer, cancelled), id, peer, cancelled, retryCount)
+
+  private def retryIfNeedsUpdate(action: VcsAction[(ProgramLocationSet, VersionMap)], id: SPProgramID, peer: Peer, cancelled: AtomicBoolean, retryCount: Int): VcsAction[(ProgramLocationSet, VersionMap)] = {
+    def retry(f: VcsFailure): EitherT[Task, (ProgramLocationSet, VersionMap), VcsFailure] = f match {
       case NeedsUpdate  => if (retryCount <= 0) EitherT.right(Task.delay(NeedsUpdate))
                            else retrySync(id, peer, cancelled, retryCount - 1).swap
       case otherFailure => EitherT.right(Task.delay(otherFailure))
     }
 
-    (sync(id, peer, cancelled).swap >>= retryIfNeedsUpdate).swap
+    (action.swap >>= retry).swap
+  }
+
+  /** Returns a `VcsAction` that will sync several programs with the remote
+    * peer, as `retrySync` does for each one.  The programs are synchronized
+    * in waves of `parallelism` programs.  The remote `VersionDigest`s of a
+    * wave are fetched in a single call just before it starts, so that they
+    * are still fresh when compared, and then its programs are synchronized
+    * concurrently.  Programs that haven't changed on either side are done
+    * without further exchanges.  A retry fetches its own digest again.  The
+    * action returns the result of the sync of each program, a failure for
+    * one of them, or for the digests of a wave, doesn't affect the others.
+    * Each result is also passed to `onResult` as soon as it is known. */
+  def syncAll(ids: List[SPProgramID], peer: Peer, cancelled: AtomicBoolean, retryCount: Int, parallelism: Int = Vcs.DefaultParallelism, onResult: (SPProgramID, TryVcs[(ProgramLocationSet, VersionMap)]) => Task[Unit] = (_, _) => Task.now(())): VcsAction[Map[SPProgramID, TryVcs[(ProgramLocationSet, VersionMap)]]] = {
+    type Results = Map[SPProgramID, TryVcs[(ProgramLocationSet, VersionMap)]]
+
+    val client = Client(peer)
+
+    def report(id: SPProgramID, r: TryVcs[(ProgramLocationSet, VersionMap)]): Task[(SPProgramID, TryVcs[(ProgramLocationSet, VersionMap)])] =
+      onResult(id, r).map(_ => id -> r)
+
+    def syncOne(id: SPProgramID, rd: TryVcs[VersionDigest]): Task[(SPProgramID, TryVcs[(ProgramLocationSet, VersionMap)])] =
+      retryIfNeedsUpdate(sync0(id, client, cancelled, rd.liftVcs), id, peer, cancelled, retryCount).run.flatMap(report(id, _))
+
+    def wave(pool: ExecutorService)(wids: List[SPProgramID]): Task[Results] =
+      client.versionDigests(wids).run.flatMap {
+        case -\/(f)   =>
+          Task.gatherUnordered(wids.map(report(_, f.left[(ProgramLocationSet, VersionMap)]))).map(_.toMap)
+        case \/-(rds) =>
+          val syncs = wids.map { id => Task.fork(syncOne(id, rds.getOrElse(id, VcsFailure.notFound(id).left[VersionDigest])))(pool) }
+          Task.gatherUnordered(syncs).map(_.toMap)
+      }
+
+    Task.delay(Executors.newFixedThreadPool(parallelism)).flatMap { pool =>
+      ids.distinct.grouped(parallelism).foldLeft(Task.now(Map.empty: Results)) { (res, wids) =>
+        res.flatMap(rs => wave(pool)(wids).map(rs ++ _))
+      }.map(_.right[VcsFailure]).onFinish { _ =>
+        Task.delay(pool.shutdown())
+      }
+    }.liftVcs
   }
 
   /** Provides access to (a chunk of) the VCS log. */
@@ -185,6 +294,18 @@ class Vcs(user: VcsAction[Set[Principal]], server: VcsServer, service: Peer => V
     def checkout(id: SPProgramID): VcsAction[ISPProgram] = s.checkout(id).liftVcs
     def diffState(id: SPProgramID): VcsAction[DiffState] = s.diffState(id).liftVcs
 
+    def versionDigest(id: SPProgramID): VcsAction[VersionDigest] =
+      s.versionDigest(id).liftVcs
+
+    def versionDigests(ids: List[SPProgramID]): VcsAction[Map[SPProgramID, TryVcs[VersionDigest]]] =
+      s.versionDigests(ids).liftVcs
+
+    def partialDiffState(id: SPProgramID, buckets: Set[Int]): VcsAction[DiffState.Partial] =
+      s.partialDiffState(id, buckets).liftVcs
+
+    def fetchPartialDiffs(id: SPProgramID, ds: DiffState.Partial, against: VersionDigest): VcsAction[ProgramDiff] =
+      ProgramDiff.read(s.fetchPartialDiffs(id, ds, against)).liftVcs
+
     def fetchDiffs(id: SPProgramID, vs: DiffState): VcsAction[ProgramDiff] =
       s.fetchDiffs(id, vs).map(_.decode).liftVcs
 
@@ -201,6 +322,9 @@ object Vcs {
   def apply(kc: KeyChain, server: VcsServer): Vcs =
     new Vcs(VcsAction(kc.subject.getPrincipals.asScala.toSet), server, VcsService.client(_, kc))
 
+  /** Default number of programs synchronized concurrently by `syncAll`. */
+  val DefaultParallelism: Int = 4
+
   /** Evaluation of the merge state, which includes whether local and/or remote
     * updates are needed.  We can skip merging locally or remotely if nothing
     * would be changed anyway. */
@@ -74,6 +74,13 @@ object VcsFailure {
 
   def vcsException(ex: Throwable): VcsFailure = VcsException(ex)
 
+  /** Indicates that the remote program changed after its `VersionDigest` was
+    * fetched, so that it can no longer be compared with a partial
+    * `DiffState`. */
+  case object StaleDigest extends VcsFailure
+
+  val staleDigest: VcsFailure = StaleDigest
+
   /** User cancelled a vcs operation. */
   case object Cancelled extends VcsFailure
 
@@ -127,6 +134,9 @@ object VcsFailure {
         val m = Option(ex.getMessage) | "unknown error"
         s"Internal error. Something went wrong in the database server: $m"
 
+      case StaleDigest                        =>
+        "The program was modified in the database while it was being compared.  Try again."
+
       case Cancelled                          =>
         "The action was cancelled."
     }
@@ -0,0 +1,41 @@
+package edu.gemini.sp.vcs2
+
+import edu.gemini.spModel.core.SPProgramID
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.logging.{Level, Logger}
+
+/** Counts the version information exchanged to find the differences between
+  * the local and remote copies of programs, along with what exchanging the
+  * complete `VersionMap`s would have cost.  Sizes are those of the version
+  * data itself, see `TrpcClient.metrics` for the actual bytes on the wire.
+  */
+object VcsMetrics {
+  private val Log = Logger.getLogger(VcsMetrics.getClass.getName)
+
+  private val comparisons = new AtomicLong
+  private val unchanged   = new AtomicLong
+  private val bytes       = new AtomicLong
+  private val fullBytes   = new AtomicLong
+
+  /** Records a comparison of the local and remote versions of a program.
+    *
+    * @param differing number of `VersionDigest` buckets that differ
+    * @param sent      bytes of version data exchanged, including digests
+    * @param full      bytes of the complete `VersionMap`s
+    */
+  def record(id: SPProgramID, differing: Int, sent: Long, full: Long): Unit = {
+    comparisons.incrementAndGet()
+    if (differing == 0) unchanged.incrementAndGet()
+    bytes.addAndGet(sent)
+    fullBytes.addAndGet(full)
+    if (Log.isLoggable(Level.FINE))
+      Log.fine(s"$id: $differing of ${VersionDigest.BucketCount} version buckets differ, exchanged $sent bytes of version data instead of $full")
+  }
+
+  def summary: String =
+    s"${comparisons.get} program comparisons, ${unchanged.get} unchanged, ${bytes.get / 1024} KB of version data exchanged instead of ${fullBytes.get / 1024} KB"
+
+  def reset(): Unit =
+    List(comparisons, unchanged, bytes, fullBytes).foreach(_.set(0))
+}
@@ -17,6 +17,7 @@ import edu.gemini.util.security.principal.GeminiPrincipal
 import java.util.concurrent.atomic.AtomicLong
 import java.util.logging.Logger
 
+import scala.collection.concurrent.TrieMap
 import scalaz._
 import Scalaz._
 import scalaz.concurrent.Task
@@ -81,6 +82,22 @@ class VcsServer(odb: IDBDatabaseService) { vs =>
       }
     }
 
+  // The last digest calculated for each program, along with the VersionMap
+  // it summarizes.  Programs return the same VersionMap instance for as long
+  // as they are not modified.
+  private val digests = TrieMap.empty[SPNodeKey, (VersionMap, VersionDigest)]
+
+  /** Gets the `VersionDigest` of the program, calculating it only if the
+    * program changed since the last time. */
+  def digest(p: ISPProgram): VersionDigest = {
+    val vm = p.getVersions
+    digests.get(p.getProgramKey).collect { case (v, d) if v eq vm => d } getOrElse {
+      val d = VersionDigest(vm)
+      digests.put(p.getProgramKey, (vm, d))
+      d
+    }
+  }
+
   /** Adds the given program to the database, provided it doesn't share the
     * same key or id with an existing program in the database and the user has
     * appropriate keys.
@@ -138,12 +155,31 @@ class VcsServer(odb: IDBDatabaseService) { vs =>
     override def diffState(id: SPProgramID): TryVcs[DiffState] =
       vs.read(id, user)(DiffState.apply).unsafeRun
 
+    override def versionDigest(id: SPProgramID): TryVcs[VersionDigest] =
+      vs.read(id, user)(vs.digest).unsafeRun
+
+    override def versionDigests(ids: List[SPProgramID]): TryVcs[Map[SPProgramID, TryVcs[VersionDigest]]] =
+      ids.fproduct(versionDigest).toMap.right[VcsFailure]
+
+    override def partialDiffState(id: SPProgramID, buckets: Set[Int]): TryVcs[DiffState.Partial] =
+      vs.read(id, user)(p => DiffState(p).partial(buckets)).unsafeRun
+
     override def fetchDiffs(id: SPProgramID, state: DiffState): TryVcs[ProgramDiff.Transport] =
       vs.read(id, user) { p =>
         vcsLog.log(OpFetch, id, geminiPrincipals)
         ProgramDiff.compare(p, state)
       }.map(_.encode).unsafeRun
 
+    override def fetchPartialDiffs(id: SPProgramID, state: DiffState.Partial, against: VersionDigest): ProgramDiff.Chunks =
+      ProgramDiff.stream(vs.read(id, user) { p =>
+        // The missing entries can only be filled in from this program if it
+        // hasn't changed outside of the state's buckets since `against`.
+        if (vs.digest(p).differingBuckets(against).subsetOf(state.buckets)) {
+          vcsLog.log(OpFetch, id, geminiPrincipals)
+          ProgramDiff.compare(p, state.complete(p.getVersions)).right[VcsFailure]
+        } else staleDigest.left[ProgramDiff]
+      }.unsafeRun.flatMap(d => d))
+
     override def storeDiffs(id: SPProgramID, mpt: MergePlan.Transport): TryVcs[Boolean] = {
       def versionCheck(p: ISPProgram, mp: MergePlan): VcsAction[Boolean] =
         mp.compare(p.getVersions) match {
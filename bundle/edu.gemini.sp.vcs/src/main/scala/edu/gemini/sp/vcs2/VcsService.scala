@@ -30,9 +30,29 @@ trait VcsService {
     * deleted nodes. */
   def diffState(id: SPProgramID): TryVcs[DiffState]
 
+  /** Gets the `VersionDigest` summarizing the `VersionMap`, which is much
+    * smaller and can be compared to tell whether and where the `VersionMap`
+    * differs from another. */
+  def versionDigest(id: SPProgramID): TryVcs[VersionDigest]
+
+  /** Gets the `VersionDigest` of each of the given programs in a single call,
+    * along with the failure for any that cannot be read. */
+  def versionDigests(ids: List[SPProgramID]): TryVcs[Map[SPProgramID, TryVcs[VersionDigest]]]
+
+  /** Gets the `DiffState` with only the version entries in the given buckets
+    * of the `VersionDigest`. */
+  def partialDiffState(id: SPProgramID, buckets: Set[Int]): TryVcs[DiffState.Partial]
+
   /** Obtains remote differences based on the provided local diff state. */
   def fetchDiffs(id: SPProgramID, ds: DiffState): TryVcs[ProgramDiff.Transport]
 
+  /** Obtains remote differences based on the provided local diff state, whose
+    * missing version entries are those of the remote program when it had the
+    * `against` digest.  Fails with `StaleDigest` if the remote program has
+    * since changed outside of the buckets in the diff state.  The differences
+    * are streamed so that neither side needs to hold all of them serialized. */
+  def fetchPartialDiffs(id: SPProgramID, ds: DiffState.Partial, against: VersionDigest): ProgramDiff.Chunks
+
   /** Applies the given `MergePlan` to the remote program, returning `true`
     * if the program is actually updated; `false` otherwise. */
   def storeDiffs(id: SPProgramID, mp: MergePlan.Transport): TryVcs[Boolean]
@@ -51,6 +71,20 @@ object VcsService {
     override def fetchDiffs(id: SPProgramID, ds: DiffState) =
       call(_.fetchDiffs(id, ds))
 
+    override def fetchPartialDiffs(id: SPProgramID, ds: DiffState.Partial, against: VersionDigest) =
+      trpc { remote => remote[VcsService].fetchPartialDiffs(id, ds, against) }.valueOr { ex =>
+        ProgramDiff.stream(VcsFailure.vcsException(ex).left[ProgramDiff])
+      }
+
+    override def versionDigest(id: SPProgramID) =
+      call(_.versionDigest(id))
+
+    override def versionDigests(ids: List[SPProgramID]) =
+      call(_.versionDigests(ids))
+
+    override def partialDiffState(id: SPProgramID, buckets: Set[Int]) =
+      call(_.partialDiffState(id, buckets))
+
     override def log(p: SPProgramID, offset: Int, length: Int) =
       call(_.log(p, offset, length))
 
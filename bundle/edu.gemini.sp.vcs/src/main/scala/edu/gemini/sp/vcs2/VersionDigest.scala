@@ -0,0 +1,93 @@
+package edu.gemini.sp.vcs2
+
+import edu.gemini.pot.sp.SPNodeKey
+import edu.gemini.pot.sp.version._
+
+import java.nio.ByteBuffer
+import java.security.MessageDigest
+import java.util.UUID
+
+import scalaz._
+import Scalaz._
+
+/** A two level hash summary of a `VersionMap`.  Node keys are spread over
+  * `BucketCount` buckets, the digest of each bucket hashes the version
+  * information of all the nodes in the bucket and the root digest hashes the
+  * bucket digests.
+  *
+  * Two peers with the same root digest have the same `VersionMap` and nothing
+  * to exchange.  Otherwise comparing the bucket digests tells which buckets
+  * differ so that only their version entries need be sent.
+  */
+final case class VersionDigest(root: VersionDigest.Digest, buckets: Vector[VersionDigest.Digest]) {
+  import VersionDigest._
+
+  /** Buckets in which this digest and `that` differ. */
+  def differingBuckets(that: VersionDigest): Set[Int] =
+    if (root === that.root) Set.empty
+    else buckets.indices.filter(i => buckets(i) =/= that.buckets(i)).toSet
+}
+
+object VersionDigest {
+
+  /** 128 bits of a SHA-1 hash. */
+  final case class Digest(hi: Long, lo: Long)
+
+  implicit val EqualDigest: Equal[Digest] = Equal.equalA
+
+  val BucketCount = 256
+
+  // Random UUIDs are uniformly distributed in the low bits.
+  def bucket(k: SPNodeKey): Int =
+    (k.uuid.getLeastSignificantBits & (BucketCount - 1)).toInt
+
+  /** Bytes used by the version information of a node. */
+  def entrySize(nv: NodeVersions): Int = 16 + 20 * nv.clocks.size
+
+  /** Bytes used by a `VersionDigest`. */
+  val Size: Int = 16 * (BucketCount + 1)
+
+  private def digest(bytes: Array[Byte]): Digest = {
+    val buf = ByteBuffer.wrap(MessageDigest.getInstance("SHA-1").digest(bytes))
+    Digest(buf.getLong, buf.getLong)
+  }
+
+  private def putUuid(buf: ByteBuffer, u: UUID): Unit = {
+    buf.putLong(u.getMostSignificantBits)
+    buf.putLong(u.getLeastSignificantBits)
+  }
+
+  // The entries are sorted so that the digest doesn't depend on map order.
+  private def bucketDigest(entries: List[(SPNodeKey, NodeVersions)]): Digest = {
+    val buf = ByteBuffer.allocate(entries.map(e => entrySize(e._2)).sum)
+    entries.sortBy(_._1.uuid).foreach { case (k, nv) =>
+      putUuid(buf, k.uuid)
+      nv.clocks.toList.sortBy(_._1.uuid).foreach { case (id, v) =>
+        putUuid(buf, id.uuid)
+        buf.putInt(v)
+      }
+    }
+    digest(buf.array)
+  }
+
+  def apply(vm: VersionMap): VersionDigest = {
+    val byBucket = vm.toList.groupBy(e => bucket(e._1))
+    val buckets  = Vector.tabulate(BucketCount) { i => bucketDigest(byBucket.getOrElse(i, Nil)) }
+
+    val buf = ByteBuffer.allocate(16 * BucketCount)
+    buckets.foreach { d => buf.putLong(d.hi).putLong(d.lo) }
+    VersionDigest(digest(buf.array), buckets)
+  }
+
+  /** The entries of the `VersionMap` in the given buckets. */
+  def restrict(vm: VersionMap, buckets: Set[Int]): VersionMap =
+    vm.filter { case (k, _) => buckets.contains(bucket(k)) }
+
+  /** Replaces the entries of `vm` in the given buckets with `entries`. */
+  def patch(vm: VersionMap, buckets: Set[Int], entries: VersionMap): VersionMap =
+    vm.filterNot { case (k, _) => buckets.contains(bucket(k)) } ++ entries
+
+  /** Bytes used by the version information of all the nodes in the map. */
+  def size(vm: VersionMap): Long =
+    vm.values.foldLeft(0L)(_ + entrySize(_))
+}
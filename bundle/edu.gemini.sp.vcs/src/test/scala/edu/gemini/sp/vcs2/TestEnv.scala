@@ -175,6 +175,21 @@ object TestEnv {
   val StaffUserPrincipal = UserPrincipal(StaffEmail)
 }
 
+/** Forwards all calls to another service, so that tests can intercept some. */
+class ForwardingVcsService(s: VcsService) extends VcsService {
+  override def version(id: SPProgramID) = s.version(id)
+  override def add(p: ISPProgram) = s.add(p)
+  override def checkout(id: SPProgramID) = s.checkout(id)
+  override def diffState(id: SPProgramID) = s.diffState(id)
+  override def versionDigest(id: SPProgramID) = s.versionDigest(id)
+  override def versionDigests(ids: List[SPProgramID]) = s.versionDigests(ids)
+  override def partialDiffState(id: SPProgramID, buckets: Set[Int]) = s.partialDiffState(id, buckets)
+  override def fetchDiffs(id: SPProgramID, ds: DiffState) = s.fetchDiffs(id, ds)
+  override def fetchPartialDiffs(id: SPProgramID, ds: DiffState.Partial, against: VersionDigest) = s.fetchPartialDiffs(id, ds, against)
+  override def storeDiffs(id: SPProgramID, mp: MergePlan.Transport) = s.storeDiffs(id, mp)
+  override def log(id: SPProgramID, offset: Int, length: Int) = s.log(id, offset, length)
+}
+
 object MockVcsLog extends VcsLog {
   override def log(op: VcsOp, pid: SPProgramID, principals: Set[GeminiPrincipal]): VcsEvent =
     VcsEvent(0, op, 0, pid, principals)
@@ -4,14 +4,17 @@ import edu.gemini.pot.sp.SPNodeKey
 import edu.gemini.pot.sp.version.VersionMap
 import edu.gemini.sp.vcs2.ProgramLocationSet.{Both, LocalOnly, Neither, RemoteOnly}
 import edu.gemini.sp.vcs2.VcsAction._
-import edu.gemini.sp.vcs2.VcsFailure.NeedsUpdate
+import edu.gemini.sp.vcs2.VcsFailure.{NeedsUpdate, NotFound}
 import edu.gemini.spModel.core.SPProgramID
 import edu.gemini.spModel.obscomp.SPNote
-import edu.gemini.util.security.principal.ProgramPrincipal
-import java.util.concurrent.atomic.AtomicBoolean
+import edu.gemini.util.security.principal.{ProgramPrincipal, StaffPrincipal}
+import java.util.concurrent.atomic.{AtomicBoolean, AtomicInteger}
+import java.util.function.IntBinaryOperator
 
 import org.specs2.specification.core.Fragments
 
+import scala.collection.JavaConverters._
+
 import scalaz._
 
 class VcsSpec extends VcsSpecification {
@@ -155,6 +158,29 @@ class VcsSpec extends VcsSpecification {
       env.local.superStaffVcs.pull(Q1, DummyPeer, cancelled).unsafeRun
       env.local.progTitle must_== "The Stranger"
     }
+
+    "merge remote updates made after the digests were compared" in withVcs { env =>
+      env.remote.progTitle = "The Myth of Sisyphus"
+
+      // A note in another bucket than the program node's, added to the remote
+      // program right after its digest is fetched.
+      val noteKey = Iterator.continually(new SPNodeKey).find(k => VersionDigest.bucket(k) != VersionDigest.bucket(Key)).get
+      val service = env.local.service(StaffPrincipal.Gemini)
+      val racing  = new ForwardingVcsService(service) {
+        override def versionDigest(id: SPProgramID) = {
+          val d    = service.versionDigest(id)
+          val note = env.remote.odb.getFactory.createObsComponent(env.remote.prog, SPNote.SP_TYPE, noteKey)
+          env.remote.prog.addObsComponent(note)
+          d
+        }
+      }
+      val vcs = new Vcs(VcsAction(Set(StaffPrincipal.Gemini)), env.local.server, _ => racing)
+
+      expect(vcs.pull(Q1, DummyPeer, notCancelled)) {
+        case \/-((LocalOnly, vm)) => vm must_== env.remote.prog.getVersions
+      } and (env.local.progTitle must_== "The Myth of Sisyphus") and
+        (env.local.prog.getObsComponents.asScala.map(_.getNodeKey) must contain(noteKey))
+    }
   }
 
   "push" should {
@@ -273,6 +299,87 @@ class VcsSpec extends VcsSpecification {
 
   syncFragments("sync", (vcs, pid) => vcs.sync(pid, DummyPeer, notCancelled))
   syncFragments("retrySync", (vcs, pid) => vcs.retrySync(pid, DummyPeer, notCancelled, 10))
+  syncFragments("syncAll", (vcs, pid) => vcs.syncAll(List(pid), DummyPeer, notCancelled, 10).flatMap(_(pid).liftVcs))
+
+  "syncAll" should {
+    // Adds the same new program to both databases.
+    def addShared(env: TestEnv, id: SPProgramID): Unit = {
+      val p = env.remote.addNewProgram(id)
+      env.local.addProgram(env.local.odb.getFactory.copyWithNewLifespanId(p))
+    }
+
+    def ids(n: Int): List[SPProgramID] =
+      (1 to n).toList.map(i => SPProgramID.toProgramID(s"GS-2015B-Q-$i"))
+
+    // Edits the local copy of the program so that it must be pushed.
+    def editLocal(env: TestEnv, id: SPProgramID): Unit = {
+      val p   = env.local.odb.lookupProgramByID(id)
+      val dob = p.getDataObject
+      dob.setTitle(s"Edited $id")
+      p.setDataObject(dob)
+    }
+
+    "only compare digests for programs that haven't changed" in withVcs { env =>
+      ids(3).tail.foreach(addShared(env, _))
+
+      val service   = env.local.service(StaffPrincipal.Gemini)
+      val exchanges = new AtomicInteger(0)
+      val single    = new AtomicInteger(0)
+      val batches   = new AtomicInteger(0)
+      val counting  = new ForwardingVcsService(service) {
+        override def versionDigest(id: SPProgramID) = { single.incrementAndGet(); service.versionDigest(id) }
+        override def versionDigests(ids: List[SPProgramID]) = { batches.incrementAndGet(); service.versionDigests(ids) }
+        override def diffState(id: SPProgramID) = { exchanges.incrementAndGet(); service.diffState(id) }
+        override def partialDiffState(id: SPProgramID, buckets: Set[Int]) = { exchanges.incrementAndGet(); service.partialDiffState(id, buckets) }
+        override def fetchDiffs(id: SPProgramID, ds: DiffState) = { exchanges.incrementAndGet(); service.fetchDiffs(id, ds) }
+        override def fetchPartialDiffs(id: SPProgramID, ds: DiffState.Partial, against: VersionDigest) = { exchanges.incrementAndGet(); service.fetchPartialDiffs(id, ds, against) }
+        override def storeDiffs(id: SPProgramID, mp: MergePlan.Transport) = { exchanges.incrementAndGet(); service.storeDiffs(id, mp) }
+      }
+      val vcs = new Vcs(VcsAction(Set(StaffPrincipal.Gemini)), env.local.server, _ => counting)
+
+      expect(vcs.syncAll(ids(3), DummyPeer, notCancelled, 10)) {
+        case \/-(rs) => (rs.keySet must_== ids(3).toSet) and (rs.values.forall(_.map(_._1) == \/-(Neither)) must beTrue)
+      } and (exchanges.get must_== 0) and (single.get must_== 0) and (batches.get must_== 1)
+    }
+
+    "report the result of each program separately" in withVcs { env =>
+      env.remote.progTitle = "The Myth of Sisyphus"
+
+      expect(env.local.superStaffVcs.syncAll(List(Q1, Q3), DummyPeer, notCancelled, 10)) {
+        case \/-(rs) => (rs(Q1).map(_._1) must_== \/-(LocalOnly)) and (rs(Q3) must_== -\/(NotFound(Q3)))
+      } and (env.local.progTitle must_== "The Myth of Sisyphus")
+    }
+
+    "sync at most parallelism programs at a time" in withVcs { env =>
+      ids(6).tail.foreach(addShared(env, _))
+      ids(6).foreach(editLocal(env, _))
+
+      val service = env.local.service(StaffPrincipal.Gemini)
+      val active  = new AtomicInteger(0)
+      val maxSeen = new AtomicInteger(0)
+      val waves   = new java.util.concurrent.ConcurrentLinkedQueue[Int]()
+      val slow    = new ForwardingVcsService(service) {
+        override def versionDigests(ids: List[SPProgramID]) = {
+          waves.add(ids.size)
+          service.versionDigests(ids)
+        }
+        override def fetchPartialDiffs(id: SPProgramID, ds: DiffState.Partial, against: VersionDigest) = {
+          maxSeen.accumulateAndGet(active.incrementAndGet(), new IntBinaryOperator {
+            def applyAsInt(a: Int, b: Int): Int = a max b
+          })
+          try {
+            Thread.sleep(100)
+            service.fetchPartialDiffs(id, ds, against)
+          } finally active.decrementAndGet()
+        }
+      }
+      val vcs = new Vcs(VcsAction(Set(StaffPrincipal.Gemini)), env.local.server, _ => slow)
+
+      expect(vcs.syncAll(ids(6), DummyPeer, notCancelled, 10, parallelism = 2)) {
+        case \/-(rs) => rs.values.forall(_.map(_._1) == \/-(RemoteOnly)) must beTrue
+      } and (maxSeen.get must be_<=(2)) and (waves.asScala.toList must_== List(2, 2, 2))
+    }
+  }
 
   "cancelled sync" should {
     "do nothing" in withVcs { env =>
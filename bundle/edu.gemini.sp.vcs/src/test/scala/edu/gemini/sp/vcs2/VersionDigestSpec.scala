@@ -0,0 +1,44 @@
+package edu.gemini.sp.vcs2
+
+import edu.gemini.pot.sp.SPNodeKey
+import edu.gemini.pot.sp.version._
+import edu.gemini.shared.util.VersionVector
+
+import org.specs2.mutable.Specification
+
+object VersionDigestSpec extends Specification {
+  val id1     = LifespanId.random
+  val id2     = LifespanId.random
+  val emptyVv = VersionVector.javaInt[LifespanId]()
+
+  val vm: VersionMap = (1 to 1000).map { i =>
+    new SPNodeKey() -> emptyVv.updated(id1 -> i)
+  }.toMap
+
+  val (key, vv) = vm.head
+  val changed   = vm.updated(key, vv.updated(id2 -> 1))
+
+  "VersionDigest" should {
+    "not depend on the order of the entries" in {
+      VersionDigest(vm) must_== VersionDigest(vm.toList.reverse.toMap)
+    }
+
+    "find no differing buckets for equal maps" in {
+      VersionDigest(vm).differingBuckets(VersionDigest(vm)) must beEmpty
+    }
+
+    "find the bucket of a changed entry" in {
+      VersionDigest(vm).differingBuckets(VersionDigest(changed)) must_== Set(VersionDigest.bucket(key))
+    }
+
+    "find the bucket of a new entry" in {
+      val newKey = new SPNodeKey()
+      VersionDigest(vm).differingBuckets(VersionDigest(vm.updated(newKey, vv))) must_== Set(VersionDigest.bucket(newKey))
+    }
+
+    "recover a map from the entries of the differing buckets" in {
+      val buckets = VersionDigest(vm).differingBuckets(VersionDigest(changed))
+      VersionDigest.patch(vm, buckets, VersionDigest.restrict(changed, buckets)) must_== changed
+    }
+  }
+}
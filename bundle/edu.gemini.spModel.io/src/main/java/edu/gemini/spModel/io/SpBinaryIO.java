@@ -0,0 +1,67 @@
+package edu.gemini.spModel.io;
+
+import edu.gemini.pot.sp.ISPFactory;
+import edu.gemini.pot.sp.ISPRootNode;
+import edu.gemini.spModel.io.impl.PioSpXmlParser;
+import edu.gemini.spModel.pio.Document;
+import edu.gemini.spModel.pio.binary.PioBinaryCodec;
+import edu.gemini.spModel.pio.xml.PioXmlFactory;
+
+import java.io.*;
+
+/**
+ * Reads and writes programs and plans in the compact binary PIO format.  The
+ * content is the same PIO document used for XML export and import, so the
+ * usual migrations are applied when reading a document written by an older
+ * version of the model.
+ */
+public final class SpBinaryIO {
+
+    private SpBinaryIO() {
+        // defeat instantiation
+    }
+
+    public static void write(ISPRootNode root, OutputStream os, boolean compress) throws IOException {
+        final Document doc;
+        root.getProgramReadLock();
+        try {
+            doc = PioDocumentBuilder.instance.toDocument(root);
+        } finally {
+            root.returnProgramReadLock();
+        }
+        PioBinaryCodec.write(doc, os, compress);
+    }
+
+    public static byte[] toBytes(ISPRootNode root, boolean compress) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        write(root, baos, compress);
+        return baos.toByteArray();
+    }
+
+    public static void write(ISPRootNode root, File file, boolean compress) throws IOException {
+        final OutputStream os = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            write(root, os, compress);
+        } finally {
+            os.close();
+        }
+    }
+
+    public static ISPRootNode read(ISPFactory factory, InputStream is) throws Exception {
+        final Document doc = PioBinaryCodec.read(new PioXmlFactory(), is);
+        return new PioSpXmlParser(factory).parseDocument(doc);
+    }
+
+    public static ISPRootNode fromBytes(ISPFactory factory, byte[] bytes) throws Exception {
+        return read(factory, new ByteArrayInputStream(bytes));
+    }
+
+    public static ISPRootNode read(ISPFactory factory, File file) throws Exception {
+        final InputStream is = new BufferedInputStream(new FileInputStream(file));
+        try {
+            return read(factory, is);
+        } finally {
+            is.close();
+        }
+    }
+}
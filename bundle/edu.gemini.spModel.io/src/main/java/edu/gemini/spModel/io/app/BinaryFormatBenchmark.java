@@ -0,0 +1,100 @@
+package edu.gemini.spModel.io.app;
+
+import edu.gemini.pot.sp.ISPFactory;
+import edu.gemini.pot.sp.ISPRootNode;
+import edu.gemini.pot.sp.memImpl.MemSerializer;
+import edu.gemini.pot.util.POTUtil;
+import edu.gemini.spModel.io.SpBinaryIO;
+
+import java.io.File;
+import java.util.UUID;
+
+/**
+ * Compares the size and the load / store time of the Java serialization used
+ * by the ODB with the binary PIO format, on a directory of ODB program files.
+ *
+ * <pre>
+ *   BinaryFormatBenchmark &lt;odb directory&gt; [repetitions]
+ * </pre>
+ */
+public final class BinaryFormatBenchmark {
+
+    private static final class Totals {
+        long bytes;
+        long storeNs;
+        long loadNs;
+
+        void add(long bytes, long storeNs, long loadNs) {
+            this.bytes   += bytes;
+            this.storeNs += storeNs;
+            this.loadNs  += loadNs;
+        }
+
+        String format(String name, int reps) {
+            return String.format("%-24s %12d bytes  store %8d ms  load %8d ms",
+                    name, bytes, storeNs / reps / 1000000, loadNs / reps / 1000000);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("usage: BinaryFormatBenchmark <odb directory> [repetitions]");
+            System.exit(1);
+        }
+
+        final File dir = new File(args[0]);
+        final int reps = (args.length > 1) ? Integer.parseInt(args[1]) : 3;
+        final File[] files = dir.listFiles((d, name) -> name.endsWith(".sp"));
+        if (files == null) {
+            System.err.println("Not a directory: " + dir);
+            System.exit(1);
+        }
+
+        final MemSerializer ser = new MemSerializer();
+        final ISPFactory fact   = POTUtil.createFactory(UUID.randomUUID());
+
+        final Totals javaSer = new Totals();
+        final Totals binary  = new Totals();
+        final Totals deflate = new Totals();
+
+        int count = 0;
+        for (File f : files) {
+            final ISPRootNode root;
+            try {
+                root = (ISPRootNode) ser.load(f);
+            } catch (Exception ex) {
+                System.err.println("Skipping " + f.getName() + ": " + ex);
+                continue;
+            }
+            ++count;
+
+            for (int i = 0; i < reps; ++i) {
+                long t0 = System.nanoTime();
+                final byte[] javaBytes = ser.store(root);
+                long t1 = System.nanoTime();
+                ser.load(javaBytes);
+                long t2 = System.nanoTime();
+                javaSer.add((i == 0) ? javaBytes.length : 0, t1 - t0, t2 - t1);
+
+                t0 = System.nanoTime();
+                final byte[] binBytes = SpBinaryIO.toBytes(root, false);
+                t1 = System.nanoTime();
+                SpBinaryIO.fromBytes(fact, binBytes);
+                t2 = System.nanoTime();
+                binary.add((i == 0) ? binBytes.length : 0, t1 - t0, t2 - t1);
+
+                t0 = System.nanoTime();
+                final byte[] defBytes = SpBinaryIO.toBytes(root, true);
+                t1 = System.nanoTime();
+                SpBinaryIO.fromBytes(fact, defBytes);
+                t2 = System.nanoTime();
+                deflate.add((i == 0) ? defBytes.length : 0, t1 - t0, t2 - t1);
+            }
+        }
+
+        System.out.println(String.format("%d programs, %d repetitions", count, reps));
+        System.out.println(javaSer.format("java serialization", reps));
+        System.out.println(binary.format("binary pio", reps));
+        System.out.println(deflate.format("binary pio (deflate)", reps));
+    }
+}
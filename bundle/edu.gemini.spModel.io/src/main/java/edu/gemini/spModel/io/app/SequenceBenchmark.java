@@ -0,0 +1,140 @@
+package edu.gemini.spModel.io.app;
+
+import edu.gemini.pot.sp.ISPObservation;
+import edu.gemini.pot.sp.ISPProgram;
+import edu.gemini.pot.sp.memImpl.MemSerializer;
+import edu.gemini.spModel.config.ConfigBridge;
+import edu.gemini.spModel.config.map.ConfigValMapInstances;
+import edu.gemini.spModel.config2.Config;
+import edu.gemini.spModel.config2.ConfigSequence;
+import edu.gemini.spModel.config2.ItemKey;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Measures the time and the memory allocated building observation sequences
+ * and running typical queries against them (copying, reading every step,
+ * extracting item columns, compacting), on a directory of ODB program files.
+ * Run before and after a change to the sequence model to compare.
+ *
+ * <pre>
+ *   SequenceBenchmark &lt;odb directory&gt; [repetitions]
+ * </pre>
+ */
+public final class SequenceBenchmark {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final class Totals {
+        long nanos;
+        long bytes;
+        long count;
+
+        String format(String name, int reps) {
+            return String.format("%-24s %10d ms  %12d KB allocated  (%d)",
+                    name, nanos / reps / 1000000, bytes / reps / 1024, count / reps);
+        }
+    }
+
+    private interface Task {
+        long run();
+    }
+
+    private static void time(Totals totals, Task task) {
+        final long tid = Thread.currentThread().getId();
+        final long b0  = THREADS.getThreadAllocatedBytes(tid);
+        final long t0  = System.nanoTime();
+        totals.count  += task.run();
+        totals.nanos  += System.nanoTime() - t0;
+        totals.bytes  += THREADS.getThreadAllocatedBytes(tid) - b0;
+    }
+
+    private static ConfigSequence build(ISPObservation obs) {
+        // Non-null options so that the sequence is calculated and not
+        // retrieved from the sequence cache.
+        return ConfigBridge.extractSequence(obs, new HashMap<>(), ConfigValMapInstances.IDENTITY_MAP);
+    }
+
+    private static long readSteps(ConfigSequence seq) {
+        long res = 0;
+        for (Config c : seq.getAllSteps()) {
+            for (ItemKey k : c.getKeys()) {
+                if (c.getItemValue(k) != null) ++res;
+            }
+        }
+        return res;
+    }
+
+    private static long readColumns(ConfigSequence seq) {
+        long res = 0;
+        for (ItemKey k : seq.getIteratedKeys()) {
+            res += seq.getItemValueAtEachStep(k).length;
+            res += seq.getDistinctItemValues(k).length;
+        }
+        return res + seq.getStaticKeys().length;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("usage: SequenceBenchmark <odb directory> [repetitions]");
+            System.exit(1);
+        }
+
+        final File dir = new File(args[0]);
+        final int reps = (args.length > 1) ? Integer.parseInt(args[1]) : 3;
+        final File[] files = dir.listFiles((d, name) -> name.endsWith(".sp"));
+        if (files == null) {
+            System.err.println("Not a directory: " + dir);
+            System.exit(1);
+        }
+
+        final MemSerializer ser = new MemSerializer();
+        final List<ISPObservation> obsList = new ArrayList<>();
+        for (File f : files) {
+            try {
+                final Object root = ser.load(f);
+                if (root instanceof ISPProgram) obsList.addAll(((ISPProgram) root).getAllObservations());
+            } catch (Exception ex) {
+                System.err.println("Skipping " + f.getName() + ": " + ex);
+            }
+        }
+
+        final Totals build   = new Totals();
+        final Totals copy    = new Totals();
+        final Totals steps   = new Totals();
+        final Totals columns = new Totals();
+        final Totals compact = new Totals();
+
+        int stepCount = 0;
+        for (ISPObservation obs : obsList) {
+            final ConfigSequence seq;
+            try {
+                seq = build(obs);
+            } catch (Exception ex) {
+                System.err.println("Skipping " + obs.getObservationID() + ": " + ex);
+                continue;
+            }
+            stepCount += seq.size();
+
+            for (int i = 0; i < reps; ++i) {
+                time(build,   () -> build(obs).size());
+                time(copy,    () -> new ConfigSequence(seq).size());
+                time(steps,   () -> readSteps(seq));
+                time(columns, () -> readColumns(seq));
+                time(compact, () -> seq.getCompactView().length);
+            }
+        }
+
+        System.out.println(String.format("%d observations, %d steps, %d repetitions", obsList.size(), stepCount, reps));
+        System.out.println(build.format("build", reps));
+        System.out.println(copy.format("copy", reps));
+        System.out.println(steps.format("read all steps", reps));
+        System.out.println(columns.format("item columns", reps));
+        System.out.println(compact.format("compact view", reps));
+    }
+}
@@ -0,0 +1,363 @@
+package edu.gemini.spModel.pio.binary;
+
+import edu.gemini.spModel.pio.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A compact binary encoding of PIO {@link Document}s.  Unlike Java
+ * serialization of the model classes, the encoding only depends upon the PIO
+ * structure (containers, param sets and params, with their kind, type and
+ * version attributes) so documents written by one version of the model can
+ * be read and migrated by another, exactly as with the XML format.  Unlike
+ * the XML format, each distinct string is written only once and subsequently
+ * referenced by index, and the body may be deflate compressed.
+ *
+ * <pre>
+ *   header: magic "PIOB", format version (byte), flags (byte)
+ *   body:   document node, deflated if flags has COMPRESSED set
+ * </pre>
+ *
+ * Strings are encoded inline as a varint: 0 for <code>null</code>, 1
+ * followed by the UTF-8 bytes of a string seen for the first time (which is
+ * assigned the next index), or index + 2 for a string already seen.
+ */
+public final class PioBinaryCodec {
+
+    private static final byte[] MAGIC = { 'P', 'I', 'O', 'B' };
+
+    /** Current version of the binary format. */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int COMPRESSED = 0x01;
+
+    private static final int TAG_CONTAINER = 1;
+    private static final int TAG_PARAM_SET = 2;
+    private static final int TAG_PARAM     = 3;
+
+    private PioBinaryCodec() {
+        // defeat instantiation
+    }
+
+    /**
+     * Determines whether the given bytes start with the binary PIO header.
+     */
+    public static boolean isPioBinary(byte[] header) {
+        if (header.length < MAGIC.length) return false;
+        for (int i = 0; i < MAGIC.length; ++i) {
+            if (header[i] != MAGIC[i]) return false;
+        }
+        return true;
+    }
+
+    // ------------------------------------------------------------------------
+    // Writing
+    // ------------------------------------------------------------------------
+
+    /**
+     * Writes the document to the given stream, which is not closed.
+     *
+     * @param compress whether to deflate the body of the document
+     */
+    public static void write(Document doc, OutputStream os, boolean compress) throws IOException {
+        os.write(MAGIC);
+        os.write(FORMAT_VERSION);
+        os.write(compress ? COMPRESSED : 0);
+
+        if (compress) {
+            final DeflaterOutputStream dos = new DeflaterOutputStream(os, new Deflater(Deflater.BEST_SPEED), 8192);
+            new Encoder(dos).writeChildren(doc);
+            dos.finish();
+        } else {
+            final BufferedOutputStream bos = new BufferedOutputStream(os);
+            new Encoder(bos).writeChildren(doc);
+            bos.flush();
+        }
+    }
+
+    public static byte[] toBytes(Document doc, boolean compress) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        write(doc, baos, compress);
+        return baos.toByteArray();
+    }
+
+    private static final class Encoder {
+        private final DataOutputStream out;
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        Encoder(OutputStream os) {
+            this.out = new DataOutputStream(os);
+        }
+
+        void writeVarInt(int i) throws IOException {
+            while ((i & ~0x7F) != 0) {
+                out.writeByte((i & 0x7F) | 0x80);
+                i >>>= 7;
+            }
+            out.writeByte(i);
+        }
+
+        // Zig-zag encoding so that small negative numbers (-1 is commonly
+        // used to mean "unset") stay small.
+        void writeSignedVarInt(int i) throws IOException {
+            writeVarInt((i << 1) ^ (i >> 31));
+        }
+
+        void writeString(String s) throws IOException {
+            if (s == null) {
+                writeVarInt(0);
+                return;
+            }
+
+            final Integer index = strings.get(s);
+            if (index == null) {
+                strings.put(s, strings.size());
+                final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(1);
+                writeVarInt(bytes.length);
+                out.write(bytes);
+            } else {
+                writeVarInt(index + 2);
+            }
+        }
+
+        void writeChildren(PioNodeParent parent) throws IOException {
+            final List<PioNode> children = parent.getChildren();
+            writeVarInt(children.size());
+            for (PioNode child : children) writeNode(child);
+        }
+
+        void writeNode(PioNode node) throws IOException {
+            if (node instanceof Container) {
+                writeContainer((Container) node);
+            } else if (node instanceof ParamSet) {
+                writeParamSet((ParamSet) node);
+            } else if (node instanceof Param) {
+                writeParam((Param) node);
+            } else {
+                throw new IOException("Unexpected PIO node: " + node.getClass().getName());
+            }
+        }
+
+        void writeContainer(Container c) throws IOException {
+            out.writeByte(TAG_CONTAINER);
+            writeString(c.getKind());
+            writeString(c.getType());
+            writeString(c.getSubtype());
+            writeString(c.getName());
+            final Version v = c.getVersion();
+            writeString((v == null) ? null : v.toString());
+            writeString(c.getKey());
+            writeSignedVarInt(c.getSequence());
+            writeChildren(c);
+        }
+
+        void writeParamSet(ParamSet ps) throws IOException {
+            out.writeByte(TAG_PARAM_SET);
+            writeString(ps.getName());
+            writeString(ps.getKind());
+            writeString(ps.getId());
+            final String ref = ps.getReferenceId();
+            writeString(ref);
+            out.writeByte((ps.isEditable() ? 1 : 0) | (ps.isPublicAccess() ? 2 : 0));
+            writeSignedVarInt(ps.getSequence());
+
+            // A reference shares the children of its referent, so they are
+            // written only once with the referent itself.
+            if (ref == null) {
+                writeChildren(ps);
+            } else {
+                writeVarInt(0);
+            }
+        }
+
+        void writeParam(Param p) throws IOException {
+            out.writeByte(TAG_PARAM);
+            writeString(p.getName());
+            writeString(p.getUnits());
+            final List<String> values = p.getValues();
+            writeVarInt(values.size());
+            for (String value : values) writeString(value);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Reading
+    // ------------------------------------------------------------------------
+
+    /**
+     * Reads a document from the given stream, creating its nodes with the
+     * given factory.
+     */
+    public static Document read(PioFactory factory, InputStream is) throws IOException {
+        final DataInputStream header = new DataInputStream(is);
+        final byte[] magic = new byte[MAGIC.length];
+        header.readFully(magic);
+        if (!isPioBinary(magic)) throw new IOException("Not a binary PIO document");
+
+        final int version = header.readUnsignedByte();
+        if (version > FORMAT_VERSION) {
+            throw new IOException("Unsupported binary PIO format version: " + version);
+        }
+
+        final int flags = header.readUnsignedByte();
+        final InputStream body = ((flags & COMPRESSED) != 0) ?
+                new InflaterInputStream(is, new Inflater(), 8192) :
+                new BufferedInputStream(is);
+
+        final Document doc = factory.createDocument();
+        final Decoder r = new Decoder(factory, body);
+        final int count = r.readVarInt();
+        for (int i = 0; i < count; ++i) {
+            final PioNode n = r.readNode();
+            if (!(n instanceof Container)) throw new IOException("Documents may only contain containers");
+            doc.addContainer((Container) n);
+        }
+        return doc;
+    }
+
+    public static Document fromBytes(PioFactory factory, byte[] bytes) throws IOException {
+        return read(factory, new ByteArrayInputStream(bytes));
+    }
+
+    private static final class Decoder {
+        private final PioFactory factory;
+        private final DataInputStream in;
+        private final List<String> strings = new ArrayList<>();
+
+        Decoder(PioFactory factory, InputStream is) {
+            this.factory = factory;
+            this.in      = new DataInputStream(is);
+        }
+
+        int readVarInt() throws IOException {
+            int res   = 0;
+            int shift = 0;
+            while (true) {
+                final int b = in.readUnsignedByte();
+                res |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return res;
+                shift += 7;
+                if (shift > 28) throw new IOException("Malformed varint");
+            }
+        }
+
+        int readSignedVarInt() throws IOException {
+            final int i = readVarInt();
+            return (i >>> 1) ^ -(i & 1);
+        }
+
+        String readString() throws IOException {
+            final int code = readVarInt();
+            switch (code) {
+                case 0:
+                    return null;
+                case 1:
+                    final byte[] bytes = new byte[readVarInt()];
+                    in.readFully(bytes);
+                    final String s = new String(bytes, StandardCharsets.UTF_8);
+                    strings.add(s);
+                    return s;
+                default:
+                    final int index = code - 2;
+                    if (index >= strings.size()) throw new IOException("Bad string reference: " + index);
+                    return strings.get(index);
+            }
+        }
+
+        PioNode readNode() throws IOException {
+            final int tag = in.readUnsignedByte();
+            switch (tag) {
+                case TAG_CONTAINER: return readContainer();
+                case TAG_PARAM_SET: return readParamSet();
+                case TAG_PARAM:     return readParam();
+                default:
+                    throw new IOException("Unexpected binary PIO tag: " + tag);
+            }
+        }
+
+        private static String orEmpty(String s) {
+            return (s == null) ? "" : s;
+        }
+
+        Container readContainer() throws IOException {
+            final String kind    = readString();
+            final String type    = readString();
+            final String subtype = readString();
+            final String name    = readString();
+            final String version = readString();
+            final String key     = readString();
+            final int sequence   = readSignedVarInt();
+
+            final Container c = factory.createContainer(orEmpty(kind), orEmpty(type), orEmpty(version));
+            if (subtype != null) c.setSubtype(subtype);
+            if (name != null) c.setName(name);
+            if (key != null) c.setKey(key);
+            if (sequence >= 0) c.setSequence(sequence);
+
+            final int count = readVarInt();
+            for (int i = 0; i < count; ++i) {
+                final PioNode n = readNode();
+                if (n instanceof Container) {
+                    c.addContainer((Container) n);
+                } else if (n instanceof ParamSet) {
+                    c.addParamSet((ParamSet) n);
+                } else {
+                    throw new IOException("Containers may not contain params");
+                }
+            }
+            return c;
+        }
+
+        ParamSet readParamSet() throws IOException {
+            final String name  = readString();
+            final String kind  = readString();
+            final String id    = readString();
+            final String ref   = readString();
+            final int access   = in.readUnsignedByte();
+            final int sequence = readSignedVarInt();
+
+            final ParamSet ps = factory.createParamSet(name);
+            if (kind != null) ps.setKind(kind);
+            if (id != null) ps.setId(id);
+            if (ref != null) ps.setReferenceId(ref);
+            ps.setEditable((access & 1) != 0);
+            ps.setPublicAccess((access & 2) != 0);
+            if (sequence >= 0) ps.setSequence(sequence);
+
+            final int count = readVarInt();
+            for (int i = 0; i < count; ++i) {
+                final PioNode n = readNode();
+                if (n instanceof ParamSet) {
+                    ps.addParamSet((ParamSet) n);
+                } else if (n instanceof Param) {
+                    ps.addParam((Param) n);
+                } else {
+                    throw new IOException("Param sets may not contain containers");
+                }
+            }
+            return ps;
+        }
+
+        Param readParam() throws IOException {
+            final Param p = factory.createParam(readString());
+            final String units = readString();
+            if (units != null) p.setUnits(units);
+
+            final int count = readVarInt();
+            final List<String> values = new ArrayList<>(count);
+            for (int i = 0; i < count; ++i) values.add(readString());
+            p.setValues(values);
+            return p;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package edu.gemini.spModel.pio.binary.test;
+
+import edu.gemini.spModel.pio.*;
+import edu.gemini.spModel.pio.binary.PioBinaryCodec;
+import edu.gemini.spModel.pio.xml.PioXmlFactory;
+import edu.gemini.spModel.pio.xml.PioXmlUtil;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+
+/**
+ * Test cases for the {@link PioBinaryCodec}.
+ */
+public class PioBinaryCodecTest extends TestCase {
+
+    private PioFactory _fact;
+    private Document _doc;
+
+    public void setUp() {
+        _fact = new PioXmlFactory();
+        _doc  = _fact.createDocument();
+
+        final Container prog = _fact.createContainer("program", "Program", "2009A-1");
+        prog.setName("Test Program");
+        prog.setKey("7d2b7f0e-e4a2-4a8a-b9b4-0b3c3f2e5b1a");
+        _doc.addContainer(prog);
+
+        final ParamSet ps = _fact.createParamSet("Program");
+        ps.setKind("dataObj");
+        Pio.addParam(_fact, ps, "title", "Test Program");
+        Pio.addParam(_fact, ps, "multi", "line one\nline two");
+        final Param p = _fact.createParam("values");
+        p.setValues(Arrays.asList("a", "b", "a"));
+        ps.addParam(p);
+        final Param u = _fact.createParam("wavelength");
+        u.setUnits("um");
+        u.setValue("1.65");
+        ps.addParam(u);
+        prog.addParamSet(ps);
+
+        final ParamSet shared = _fact.createParamSet("shared");
+        shared.setId("ps1");
+        shared.setEditable(false);
+        Pio.addParam(_fact, shared, "title", "Shared");
+        ps.addParamSet(shared);
+
+        final ParamSet ref = _fact.createParamSet("shared");
+        ref.setReferenceId("ps1");
+        ref.setSequence(1);
+        ps.addParamSet(ref);
+
+        final Container obs = _fact.createContainer("observation", "Observation", "2009A-1");
+        obs.setSequence(3);
+        prog.addContainer(obs);
+    }
+
+    private void assertRoundTrip(boolean compress) throws Exception {
+        final byte[] bytes = PioBinaryCodec.toBytes(_doc, compress);
+        assertTrue(PioBinaryCodec.isPioBinary(bytes));
+
+        final Document copy = PioBinaryCodec.fromBytes(_fact, bytes);
+        assertEquals(PioXmlUtil.toXmlString(_doc), PioXmlUtil.toXmlString(copy));
+    }
+
+    public void testRoundTrip() throws Exception {
+        assertRoundTrip(false);
+    }
+
+    public void testCompressedRoundTrip() throws Exception {
+        assertRoundTrip(true);
+    }
+
+    public void testReference() throws Exception {
+        final Document copy = PioBinaryCodec.fromBytes(_fact, PioBinaryCodec.toBytes(_doc, false));
+        final ParamSet ps = copy.getContainer("Test Program").getParamSet("Program");
+        final ParamSet ref = (ParamSet) ps.getParamSets("shared").get(1);
+        assertEquals("Shared", Pio.getValue(ref, "title"));
+    }
+
+    public void testNotBinary() throws Exception {
+        final byte[] xml = PioXmlUtil.toXmlString(_doc).getBytes("UTF-8");
+        assertFalse(PioBinaryCodec.isPioBinary(xml));
+        try {
+            PioBinaryCodec.fromBytes(_fact, xml);
+            fail("read xml as binary");
+        } catch (java.io.IOException ex) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package edu.gemini.spModel.gemini.calunit.smartgcal.maps;
+
+import edu.gemini.shared.util.immutable.ImList;
+import edu.gemini.spModel.gemini.calunit.smartgcal.Calibration;
+import edu.gemini.spModel.gemini.calunit.smartgcal.CalibrationMap;
+import edu.gemini.spModel.gemini.calunit.smartgcal.ConfigurationKey;
+import edu.gemini.spModel.gemini.calunit.smartgcal.SmartGcalService;
+import edu.gemini.spModel.gemini.calunit.smartgcal.keys.WavelengthRange;
+import edu.gemini.spModel.gemini.calunit.smartgcal.keys.WavelengthRangeSet;
+import edu.gemini.spModel.smartgcal.CalibrationMapFactory;
+import edu.gemini.spModel.smartgcal.repository.CalibrationResourceRepository;
+
+import java.util.*;
+
+/**
+ * Replays lookups of the central wavelengths covered by the calibration tables that come with the bundle,
+ * comparing the sorted lookup of the wavelength range sets and the memo of the maps with a linear scan of the
+ * ranges. This is for performance trimming purposes, not an actual test case.
+ *
+ * <pre>
+ *   CentralWavelengthMapBenchmark [lookups]
+ * </pre>
+ */
+public final class CentralWavelengthMapBenchmark {
+
+    private static final int ROUNDS = 10;
+
+    private static final class Lookup {
+        final ConfigurationKey key;
+        final double wavelength;
+
+        Lookup(ConfigurationKey key, double wavelength) {
+            this.key        = key;
+            this.wavelength = wavelength;
+        }
+    }
+
+    private interface Replay {
+        int run(List<Lookup> lookups);
+    }
+
+    private static void time(String name, List<Lookup> lookups, Replay r) {
+        r.run(lookups); // warm up
+        final long start = System.nanoTime();
+        int found = 0;
+        for (int i = 0; i < ROUNDS; ++i) found += r.run(lookups);
+        System.out.println(String.format("%-40s %8d ms %10d calibrations", name, (System.nanoTime() - start) / ROUNDS / 1000000, found / ROUNDS));
+    }
+
+    // the lookup before wavelength range sets were sorted
+    private static List<Calibration> scan(WavelengthRangeSet rs, double wavelength) {
+        for (Map.Entry<WavelengthRange, ImList<Calibration>> me : rs.getRangeMap().entrySet()) {
+            if (me.getKey().contains(wavelength)) return me.getValue().toList();
+        }
+        return Collections.emptyList();
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int n = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+        final CalibrationResourceRepository repository = new CalibrationResourceRepository();
+        final Random random = new Random(42);
+
+        for (String instrument : SmartGcalService.getInstrumentNames()) {
+            for (Calibration.Type type : SmartGcalService.getAvailableTypes(instrument)) {
+                final CalibrationMap m = CalibrationMapFactory.createFromData(instrument, repository.getCalibrationFile(type, instrument));
+                if (!(m instanceof CentralWavelengthMap)) continue;
+                final CentralWavelengthMap map = (CentralWavelengthMap) m;
+
+                // The wavelengths of the ranges in the table, like the ones of the sequence steps that end up in
+                // these ranges, then drawn at random. Sequences repeat a handful of configurations many times.
+                final List<Lookup> distinct = new ArrayList<>();
+                map.rangesMap.forEach((key, rs) -> rs.getRangeMap().keySet().forEach(r -> {
+                    distinct.add(new Lookup(key, r.getMin()));
+                    distinct.add(new Lookup(key, Math.min(r.getMin() + 100.0, r.getMin() / 2 + r.getMax() / 2)));
+                }));
+                if (distinct.isEmpty()) continue;
+                Collections.shuffle(distinct, random);
+                final List<Lookup> lookups = new ArrayList<>(n);
+                for (int i = 0; i < n; ++i) {
+                    lookups.add(distinct.get(random.nextInt(Math.min(distinct.size(), 1000))));
+                }
+
+                System.out.println(String.format("%s %s: %d keys, %d lookups", instrument, type, map.rangesMap.size(), n));
+                time("linear scan", lookups, ls -> {
+                    int found = 0;
+                    for (Lookup l : ls) found += scan(map.rangesMap.get(l.key), l.wavelength).size();
+                    return found;
+                });
+                time("sorted ranges", lookups, ls -> {
+                    int found = 0;
+                    for (Lookup l : ls) found += map.rangesMap.get(l.key).findCalibrations(l.wavelength).size();
+                    return found;
+                });
+                time("map with memo", lookups, ls -> {
+                    int found = 0;
+                    for (Lookup l : ls) found += map.get(l.key, l.wavelength).size();
+                    return found;
+                });
+            }
+        }
+    }
+}
@@ -94,4 +94,25 @@ public class CalibrationKeyTest {
         }
     }
 
+    @Test
+    public void canFindRangesAddedInAnyOrder() {
+        WavelengthRangeSet rangeSet = new WavelengthRangeSet();
+        WavelengthRange[] ranges = {
+            new WavelengthRange(50.0d, 60.0d),
+            new WavelengthRange(10.0d, 20.0d),
+            new WavelengthRange(20.0d, 30.0d),
+            new WavelengthRange(30.0d, 40.0d)
+        };
+        for (WavelengthRange range : ranges) {
+            rangeSet.add(range, null);
+        }
+
+        Assert.assertEquals(ranges[1], rangeSet.findRange(19.9d).getValue());
+        Assert.assertEquals(ranges[2], rangeSet.findRange(20.0d).getValue());
+        Assert.assertEquals(ranges[3], rangeSet.findRange(30.0d).getValue());
+        Assert.assertEquals(ranges[0], rangeSet.findRange(59.9d).getValue());
+        Assert.assertTrue(rangeSet.findRange(45.0d).isEmpty());
+        Assert.assertTrue(rangeSet.findCalibrations(45.0d).isEmpty());
+    }
+
 }
@@ -0,0 +1,86 @@
+package edu.gemini.spdb.reports.impl;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import edu.gemini.pot.sp.ISPNode;
+import edu.gemini.pot.sp.ISPObservation;
+import edu.gemini.pot.sp.ISPProgram;
+import edu.gemini.pot.spdb.DBAbstractQueryFunctor;
+import edu.gemini.pot.spdb.IDBDatabaseService;
+import edu.gemini.pot.spdb.IDBSplittableQueryFunctor;
+import edu.gemini.spdb.reports.ITable.Domain;
+
+/**
+ * SPDB functor that executes several queries in a single pass over the
+ * programs. Each program is handed to the functors of program queries and
+ * each of its observations to the functors of observation queries. Queries
+ * on the NULL domain don't visit the database and can't be batched.
+ * Internal to the implementation.
+ */
+class BatchQueryFunctor extends DBAbstractQueryFunctor implements IDBSplittableQueryFunctor<BatchQueryFunctor> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final List<QueryFunctor> functors;
+
+	BatchQueryFunctor(List<QueryFunctor> functors) {
+		for (QueryFunctor f: functors) {
+			if (f.getQuery().getTable().getDomain() == Domain.NULL)
+				throw new IllegalArgumentException("Can't batch queries on the NULL domain.");
+		}
+		this.functors = functors;
+	}
+
+	List<QueryFunctor> getFunctors() {
+		return functors;
+	}
+
+	/**
+	 * Same priority as the individual queries.
+	 */
+	@Override public Priority getPriority() { return Priority.low; }
+
+	@Override
+	public void init() {
+		for (QueryFunctor f: functors) f.init();
+	}
+
+	public void execute(IDBDatabaseService db, ISPNode node, Set<Principal> principals) {
+		final ISPProgram prog = (ISPProgram) node;
+		List<ISPObservation> obs = null;
+		for (QueryFunctor f: functors) {
+			switch (f.getQuery().getTable().getDomain()) {
+			case PROGRAM:
+				f.execute(db, prog, principals);
+				break;
+			case OBSERVATION:
+				if (obs == null) obs = prog.getAllObservations();
+				for (ISPObservation o: obs) f.execute(db, o, principals);
+				break;
+			default:
+				throw new Error("Impossible");
+			}
+		}
+	}
+
+	@Override
+	public void finished() {
+		for (QueryFunctor f: functors) f.finished();
+	}
+
+	public BatchQueryFunctor split() {
+		final List<QueryFunctor> partials = new ArrayList<>(functors.size());
+		for (QueryFunctor f: functors) partials.add(f.split());
+		return new BatchQueryFunctor(partials);
+	}
+
+	public void merge(BatchQueryFunctor partial) {
+		for (int i = 0; i < functors.size(); i++)
+			functors.get(i).merge(partial.functors.get(i));
+		if (partial.getException() != null) setException(partial.getException());
+	}
+
+}
@@ -6,16 +6,22 @@ import edu.gemini.pot.spdb.IDBDatabaseService;
 import edu.gemini.spdb.cron.CronJob;
 import edu.gemini.spdb.cron.CronStorage;
 import edu.gemini.spdb.reports.IQuery;
-import edu.gemini.spdb.reports.IReport;
 import edu.gemini.spdb.reports.IRow;
 import edu.gemini.spdb.reports.ITable;
 
 import java.io.*;
 import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import edu.gemini.spdb.cron.util.Props;
@@ -24,7 +30,12 @@ import scala.util.Try;
 import scala.util.Failure;
 import scala.runtime.BoxedUnit;
 
-/** Task to generate batch reports. This task is invoked by the cron bundle. */
+/**
+ * Task to generate batch reports. This task is invoked by the cron bundle.
+ * The rows of all reports are collected in a single pass over the database,
+ * after which the reports are written concurrently and the public ones are
+ * uploaded while the others are still being written.
+ */
 public class BatchReportsTask implements CronJob {
 
     private final File rootDir;
@@ -33,6 +44,28 @@ public class BatchReportsTask implements CronJob {
         this.rootDir = rootDir;
     }
 
+    /** A report of the batch and its progress. */
+    private static final class Job {
+        final ReportManager.ReportRegistration reg;
+        final IQuery query;
+        final Map<IDBDatabaseService, List<IRow>> results = new HashMap<>();
+        int rows;
+        long queryNanos, writeNanos;
+        final AtomicLong uploadNanos = new AtomicLong();
+
+        Job(final ReportManager.ReportRegistration reg, final IQuery query) {
+            this.reg = reg;
+            this.query = query;
+        }
+
+        ReportManager.Timings timings() {
+            return new ReportManager.Timings(rows,
+                    TimeUnit.NANOSECONDS.toMillis(queryNanos),
+                    TimeUnit.NANOSECONDS.toMillis(writeNanos),
+                    TimeUnit.NANOSECONDS.toMillis(uploadNanos.get()));
+        }
+    }
+
     public void run(final CronStorage store, final Logger log, final Map<String, String> env, Set<Principal> user) {
 
         // Get our config
@@ -47,71 +80,103 @@ public class BatchReportsTask implements CronJob {
         clear(rootDir);
         log.info("Done cleaning batch root.");
 
+        // Create and configure the queries.
+        final List<Job> jobs = new ArrayList<>();
         for (final ReportManager.ReportRegistration reg : ReportManager.getInstance()) {
             final ITable t = TableManager.getInstance().get(reg.tableId);
             if (t != null) {
-
-                // The report
-                final IReport rep = reg.report;
-
-                // Create and configure the query.
                 final IQuery q = new QueryManager(user).createQuery(t);
-                rep.configureQuery(q);
-
-                // Run it once for each database we know about, collecting results.
-                final IDBDatabaseService db = SPDB.get();
-                final Map<IDBDatabaseService, List<IRow>> results = new HashMap<>();
-                if (db != null) {
-                    // Run the query, collecting the reports.
-                    final ClassLoader loader = Thread.currentThread().getContextClassLoader();
-                    try {
-                        log.info("Executing " + reg.id);
-                        Thread.currentThread().setContextClassLoader(QueryManager.class.getClassLoader());
-                        final List<IRow> rows = new QueryManager(user).runQuery(q, db);
-                        results.put(db, rows);
-                    } catch (Exception e) {
-                        log.log(Level.SEVERE, "Trouble creating report.", e);
-                    } finally {
-                        Thread.currentThread().setContextClassLoader(loader);
-                    }
-                }
+                reg.report.configureQuery(q);
+                jobs.add(new Job(reg, q));
+            } else {
+                log.warning("Could not find table " + reg.tableId);
+            }
+        }
 
-                try {
+        // Run them all together, in a single pass over the database.
+        final IDBDatabaseService db = SPDB.get();
+        if (db != null && !jobs.isEmpty()) {
+            final List<IQuery> queries = new ArrayList<>(jobs.size());
+            for (final Job job : jobs) queries.add(job.query);
 
-                    // And write out the files.
-                    final List<File> files = rep.execute(q, results, rootDir);
+            final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            try {
+                log.info("Executing " + jobs.size() + " reports");
+                Thread.currentThread().setContextClassLoader(QueryManager.class.getClassLoader());
+                final long start = System.currentTimeMillis();
+                final List<QueryFunctor> funcs = new QueryManager(user).runBatch(queries, db);
+                log.info(String.format("Executed reports in %d ms", System.currentTimeMillis() - start));
+                for (int i = 0; i < jobs.size(); i++) {
+                    final Job job = jobs.get(i);
+                    final QueryFunctor func = funcs.get(i);
+                    job.results.put(db, func.getResults());
+                    job.rows = func.getResults().size();
+                    job.queryNanos = func.getNanos();
+                }
+            } catch (Exception e) {
+                log.log(Level.SEVERE, "Trouble creating reports.", e);
+            } finally {
+                Thread.currentThread().setContextClassLoader(loader);
+            }
+        }
 
-                    // Now try to FTP the public ones to the public server
-                    if (rep.isPublic()) {
+        // Write out the files concurrently, uploading the public ones as soon
+        // as they are written. Uploads are done one at a time.
+        final ExecutorService writers = Executors.newFixedThreadPool(Math.max(1, Math.min(jobs.size(), Runtime.getRuntime().availableProcessors())));
+        final ExecutorService uploader = Executors.newSingleThreadExecutor();
+        try {
+            final List<CompletableFuture<Void>> done = new ArrayList<>(jobs.size());
+            for (final Job job : jobs) {
+                done.add(CompletableFuture.supplyAsync(() -> write(log, job), writers).thenCompose(files -> {
+                    final List<CompletableFuture<Void>> uploads = new ArrayList<>();
+                    if (job.reg.report.isPublic()) {
                         for (final File f : files) {
-                            log.info("Public report: " + f.getName() + " => " + remoteHost);
-                            try {
-                                sftp(log, f, username, password, remoteHost, remoteDirectory);
-                            } catch (Exception ioe) {
-                                log.log(Level.SEVERE, "Trouble ftp'ing public report: " + f.getName(), ioe);
-                            }
+                            uploads.add(CompletableFuture.runAsync(() -> {
+                                log.info("Public report: " + f.getName() + " => " + remoteHost);
+                                final long start = System.nanoTime();
+                                try {
+                                    sftp(log, f, username, password, remoteHost, remoteDirectory);
+                                } catch (Exception ioe) {
+                                    log.log(Level.SEVERE, "Trouble ftp'ing public report: " + f.getName(), ioe);
+                                }
+                                job.uploadNanos.addAndGet(System.nanoTime() - start);
+                            }, uploader));
                         }
                     } else {
                         for (final File f : files)
                             log.info("Private report: " + f.getName());
                     }
-
-                    reg.setFiles(files);
-
-                } catch (IOException ioe) {
-                    log.log(Level.SEVERE, "Trouble writing report(s).", ioe);
-                }
-
-
-            } else {
-                log.warning("Could not find table " + reg.tableId);
+                    return CompletableFuture.allOf(uploads.toArray(new CompletableFuture<?>[uploads.size()]));
+                }).thenRun(() -> {
+                    final ReportManager.Timings timings = job.timings();
+                    job.reg.setTimings(timings);
+                    log.info(job.reg.id + ": " + timings);
+                }));
             }
-
+            CompletableFuture.allOf(done.toArray(new CompletableFuture<?>[done.size()])).join();
+        } finally {
+            writers.shutdown();
+            uploader.shutdown();
         }
 
         log.info("Done with batch reports.");
     }
 
+    /** Writes the files of a report, returning them or an empty list on failure. */
+    private List<File> write(final Logger log, final Job job) {
+        final long start = System.nanoTime();
+        try {
+            final List<File> files = job.reg.report.execute(job.query, job.results, rootDir);
+            job.reg.setFiles(files);
+            return files;
+        } catch (Exception ioe) {
+            log.log(Level.SEVERE, "Trouble writing report(s) for " + job.reg.id, ioe);
+            return Collections.emptyList();
+        } finally {
+            job.writeNanos = System.nanoTime() - start;
+        }
+    }
+
     /** rm -r */
     private static void clear(final File dir) {
         final File[] files = dir.listFiles();
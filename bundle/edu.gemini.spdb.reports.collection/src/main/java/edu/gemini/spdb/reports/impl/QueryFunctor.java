@@ -8,6 +8,7 @@ import java.util.logging.Logger;
 import edu.gemini.pot.sp.ISPNode;
 import edu.gemini.pot.spdb.DBAbstractQueryFunctor;
 import edu.gemini.pot.spdb.IDBDatabaseService;
+import edu.gemini.pot.spdb.IDBSplittableQueryFunctor;
 import edu.gemini.spdb.reports.IColumn;
 import edu.gemini.spdb.reports.IFilter;
 import edu.gemini.spdb.reports.IQuery;
@@ -17,10 +18,12 @@ import edu.gemini.spdb.reports.ITable;
 
 /**
  * SPDB functor that can execute IQuery definitions and return results.
- * Internal to the implementation.
+ * Internal to the implementation. The functor is splittable so that the
+ * rows of each program can be collected in parallel; partial functors only
+ * collect raw rows, which are grouped and sorted once they are all merged.
  * @author rnorris
  */
-class QueryFunctor extends DBAbstractQueryFunctor {
+class QueryFunctor extends DBAbstractQueryFunctor implements IDBSplittableQueryFunctor<QueryFunctor> {
 
 	static final Logger LOGGER = Logger.getLogger(QueryFunctor.class.getName());
 	private static final long serialVersionUID = 1L;
@@ -28,6 +31,12 @@ class QueryFunctor extends DBAbstractQueryFunctor {
 	/** The query we're going to execute. */
 	private final IQuery query;
 
+	/** Whether this is a partial functor, which leaves its rows raw. */
+	private final boolean partial;
+
+	/** Time spent collecting rows, for statistics. */
+	private long nanos;
+
 	/**
 	 * Storage for raw rows that we accumulate during execute() and collate
 	 * in finished(). The collection is cleared before the functor returns,
@@ -46,7 +55,33 @@ class QueryFunctor extends DBAbstractQueryFunctor {
 	 * @param query
 	 */
 	QueryFunctor(IQuery query) {
+		this(query, false);
+	}
+
+	private QueryFunctor(IQuery query, boolean partial) {
 		this.query = query;
+		this.partial = partial;
+	}
+
+	IQuery getQuery() {
+		return query;
+	}
+
+	/**
+	 * Returns the time spent collecting rows, in all partial functors.
+	 */
+	long getNanos() {
+		return nanos;
+	}
+
+	public QueryFunctor split() {
+		return new QueryFunctor(query, true);
+	}
+
+	public void merge(QueryFunctor partial) {
+		rows.addAll(partial.rows);
+		nanos += partial.nanos;
+		if (partial.getException() != null) setException(partial.getException());
 	}
 
     /**
@@ -68,6 +103,7 @@ class QueryFunctor extends DBAbstractQueryFunctor {
 	 */
 	@SuppressWarnings("unchecked")
 	public void execute(IDBDatabaseService db, ISPNode node, Set<Principal> principals) {
+		final long start = System.nanoTime();
 		try {
 			ITable table = query.getTable();
 			for (Map<IColumn, ?> row: table.getRows(node)) {
@@ -79,6 +115,7 @@ class QueryFunctor extends DBAbstractQueryFunctor {
 		} catch (Throwable t) {
 			LOGGER.log(Level.SEVERE, "Problem executing functor.", t);
 		}
+		nanos += System.nanoTime() - start;
 	}
 
 	/**
@@ -87,6 +124,7 @@ class QueryFunctor extends DBAbstractQueryFunctor {
 	@SuppressWarnings("unchecked")
 	@Override
 	public void finished() {
+		if (partial) return;
 		try {
 
 			// Group and sort the rows.
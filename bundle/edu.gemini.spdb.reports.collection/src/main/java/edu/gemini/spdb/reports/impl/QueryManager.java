@@ -1,6 +1,7 @@
 package edu.gemini.spdb.reports.impl;
 
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Collections;
 import java.security.Principal;
@@ -61,4 +62,39 @@ public class QueryManager implements IQueryManager {
         return func.getResults();
 	}
 
+	/**
+	 * Runs the specified queries, returning the results in the same order.
+	 * All queries on programs and observations are run together in a single
+	 * pass over the programs, rather than one pass per query.
+	 */
+	public List<List<IRow>> runQueries(List<IQuery> queries, IDBDatabaseService dbs) {
+        final List<List<IRow>> results = new ArrayList<>(queries.size());
+        for (QueryFunctor func: runBatch(queries, dbs)) results.add(func.getResults());
+        return results;
+	}
+
+	/**
+	 * Implementation of runQueries() that returns the executed functors, one
+	 * per query, so that their statistics are available too.
+	 */
+	List<QueryFunctor> runBatch(List<IQuery> queries, IDBDatabaseService dbs) {
+        final List<QueryFunctor> funcs = new ArrayList<>(queries.size());
+        final List<QueryFunctor> batched = new ArrayList<>();
+        for (IQuery q: queries) {
+            final QueryFunctor func = new QueryFunctor(q);
+            if (q.getTable().getDomain() == Domain.NULL) {
+                func.init();
+                func.execute(null, null, Collections.<Principal>emptySet());
+                func.finished();
+            } else {
+                batched.add(func);
+            }
+            funcs.add(func);
+        }
+        if (!batched.isEmpty()) {
+            dbs.getQueryRunner(user).queryPrograms(new BatchQueryFunctor(batched));
+        }
+        return funcs;
+	}
+
 }
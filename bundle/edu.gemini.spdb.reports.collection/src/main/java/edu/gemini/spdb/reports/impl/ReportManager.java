@@ -52,7 +52,8 @@ public class ReportManager implements Iterable<ReportManager.ReportRegistration>
 		public final String id;
 		public final String tableId;
 		public final IReport report;
-		private List<File> files = Collections.emptyList();
+		private volatile List<File> files = Collections.emptyList();
+		private volatile Timings timings;
 		
 		public List<File> getFiles() {
 			return files;
@@ -62,6 +63,17 @@ public class ReportManager implements Iterable<ReportManager.ReportRegistration>
 			this.files = files;
 		}
 
+		/**
+		 * Timings of the last batch run of the report, or null.
+		 */
+		public Timings getTimings() {
+			return timings;
+		}
+
+		public void setTimings(Timings timings) {
+			this.timings = timings;
+		}
+
 		protected ReportRegistration(String id, String tableId, IReport report) {
 			this.id = id;
 			this.tableId = tableId;
@@ -92,6 +104,32 @@ public class ReportManager implements Iterable<ReportManager.ReportRegistration>
 		
 	}
 
+	/**
+	 * Time spent on the steps of a batch report, in milliseconds. Rows are
+	 * collected in parallel, together with the rows of other reports, so the
+	 * query time is the total time spent on this report's rows in all threads.
+	 */
+	public static final class Timings {
+
+		public final int rows;
+		public final long queryMillis;
+		public final long writeMillis;
+		public final long uploadMillis;
+
+		public Timings(int rows, long queryMillis, long writeMillis, long uploadMillis) {
+			this.rows = rows;
+			this.queryMillis = queryMillis;
+			this.writeMillis = writeMillis;
+			this.uploadMillis = uploadMillis;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d rows, query %d ms, write %d ms, upload %d ms", rows, queryMillis, writeMillis, uploadMillis);
+		}
+
+	}
+
 	public Iterator<ReportRegistration> iterator() {
 		return map.values().iterator();
 	}
@@ -0,0 +1,183 @@
+package edu.gemini.spdb.reports.impl;
+
+import edu.gemini.pot.sp.ISPFactory;
+import edu.gemini.pot.sp.ISPObservation;
+import edu.gemini.pot.sp.ISPProgram;
+import edu.gemini.pot.sp.Instrument;
+import edu.gemini.pot.spdb.DBLocalDatabase;
+import edu.gemini.pot.spdb.IDBDatabaseService;
+import edu.gemini.spModel.core.SPProgramID;
+import edu.gemini.spdb.reports.IColumn;
+import edu.gemini.spdb.reports.IFilter;
+import edu.gemini.spdb.reports.IQuery;
+import edu.gemini.spdb.reports.IRow;
+import edu.gemini.spdb.reports.ISort.Order;
+import edu.gemini.spdb.reports.util.AbstractTable;
+import edu.gemini.spdb.reports.util.SimpleSort;
+import edu.gemini.util.security.principal.StaffPrincipal;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.Principal;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that running queries together in one batch gives the same results
+ * as running each of them on its own.
+ */
+public final class QueryManagerTest {
+
+    private static final int PROG_COUNT = 4;
+
+    private IDBDatabaseService db;
+    private QueryManager qm;
+
+    @Before
+    public void setUp() throws Exception {
+        db = DBLocalDatabase.createTransient();
+        qm = new QueryManager(Collections.<Principal>singleton(StaffPrincipal.Gemini()));
+
+        final ISPFactory fact = db.getFactory();
+        for (int i = 0; i < PROG_COUNT; ++i) {
+            final ISPProgram p = fact.createProgram(null, SPProgramID.toProgramID("GS-2020A-Q-" + (i + 1)));
+            db.put(p);
+            for (int j = 0; j < i + 2; ++j) {
+                p.addObservation(fact.createObservation(p, Instrument.none, null));
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        db.getDBAdmin().shutdown();
+    }
+
+    @Test
+    public void testBatchMatchesSingleQueries() {
+        // Observations grouped by program, latest first.
+        final IQuery obsByProg = qm.createQuery(new ObsTable());
+        obsByProg.setGroups(new SimpleSort(ObsColumns.PROGRAM));
+        obsByProg.setSorts(new SimpleSort(ObsColumns.NUMBER, Order.DESC));
+        obsByProg.setOutputColumns(ObsColumns.PROGRAM, ObsColumns.NUMBER);
+
+        // Even numbered observations, grouped by parity then program.
+        final IQuery evenObs = qm.createQuery(new ObsTable());
+        evenObs.setFilter(new IFilter() {
+            public boolean accept(Map<IColumn, ?> row) {
+                return Integer.valueOf(0).equals(row.get(ObsColumns.PARITY));
+            }
+        });
+        evenObs.setGroups(new SimpleSort(ObsColumns.PARITY), new SimpleSort(ObsColumns.PROGRAM));
+        evenObs.setSorts(new SimpleSort(ObsColumns.NUMBER));
+        evenObs.setOutputColumns(ObsColumns.NUMBER);
+
+        // Programs with the most observations first.
+        final IQuery progs = qm.createQuery(new ProgTable());
+        progs.setSorts(new SimpleSort(ProgColumns.OBS_COUNT, Order.DESC), new SimpleSort(ProgColumns.PROGRAM));
+        progs.setOutputColumns(ProgColumns.PROGRAM, ProgColumns.OBS_COUNT);
+
+        // The same program table again, sorted the other way around.
+        final IQuery progsAsc = qm.createQuery(new ProgTable());
+        progsAsc.setSorts(new SimpleSort(ProgColumns.PROGRAM));
+        progsAsc.setOutputColumns(ProgColumns.OBS_COUNT);
+
+        final IQuery constants = qm.createQuery(new ConstTable());
+        constants.setSorts(new SimpleSort(ConstColumns.VALUE, Order.DESC));
+        constants.setOutputColumns(ConstColumns.VALUE);
+
+        final List<IQuery> queries = Arrays.asList(obsByProg, progs, constants, evenObs, progsAsc);
+        final List<List<IRow>> batch = qm.runQueries(queries, db);
+
+        assertEquals(queries.size(), batch.size());
+        for (int i = 0; i < queries.size(); ++i) {
+            assertEquals("query " + i, describe(qm.runQuery(queries.get(i), db)), describe(batch.get(i)));
+        }
+
+        // Make sure the queries actually found something.
+        int obsCount = 0;
+        for (int i = 0; i < PROG_COUNT; ++i) obsCount += i + 2;
+        assertEquals(obsCount, batch.get(0).size());
+        assertEquals(PROG_COUNT, batch.get(1).size());
+        assertEquals(3, batch.get(2).size());
+        assertEquals(PROG_COUNT, batch.get(4).size());
+    }
+
+    private static List<List<Object>> describe(List<IRow> rows) {
+        final List<List<Object>> res = new ArrayList<>();
+        for (IRow r : rows) {
+            final List<Object> row = new ArrayList<>();
+            row.add(Arrays.asList(r.getValues()));
+            row.add(Arrays.asList(r.getGroupValues()));
+            row.add(r.getGroupIndex());
+            res.add(row);
+        }
+        return res;
+    }
+
+    private enum ObsColumns implements IColumn<Object> {
+        PROGRAM, NUMBER, PARITY;
+
+        public String getCaption() { return name(); }
+        public String format(Object value) { return String.valueOf(value); }
+    }
+
+    private static final class ObsTable extends AbstractTable {
+        ObsTable() {
+            super(Domain.OBSERVATION, ObsColumns.values(), "Observations", "One row per observation.");
+        }
+
+        public List<Map<IColumn, Object>> getRows(Object node) {
+            final ISPObservation obs = (ISPObservation) node;
+            final Map<IColumn, Object> row = new HashMap<>();
+            row.put(ObsColumns.PROGRAM, obs.getProgramID().stringValue());
+            row.put(ObsColumns.NUMBER, obs.getObservationNumber());
+            row.put(ObsColumns.PARITY, obs.getObservationNumber() % 2);
+            return Collections.singletonList(row);
+        }
+    }
+
+    private enum ProgColumns implements IColumn<Object> {
+        PROGRAM, OBS_COUNT;
+
+        public String getCaption() { return name(); }
+        public String format(Object value) { return String.valueOf(value); }
+    }
+
+    private static final class ProgTable extends AbstractTable {
+        ProgTable() {
+            super(Domain.PROGRAM, ProgColumns.values(), "Programs", "One row per program.");
+        }
+
+        public List<Map<IColumn, Object>> getRows(Object node) {
+            final ISPProgram prog = (ISPProgram) node;
+            final Map<IColumn, Object> row = new HashMap<>();
+            row.put(ProgColumns.PROGRAM, prog.getProgramID().stringValue());
+            row.put(ProgColumns.OBS_COUNT, prog.getAllObservations().size());
+            return Collections.singletonList(row);
+        }
+    }
+
+    private enum ConstColumns implements IColumn<Object> {
+        VALUE;
+
+        public String getCaption() { return name(); }
+        public String format(Object value) { return String.valueOf(value); }
+    }
+
+    private static final class ConstTable extends AbstractTable {
+        ConstTable() {
+            super(Domain.NULL, ConstColumns.values(), "Constants", "A few constant rows.");
+        }
+
+        public List<Map<IColumn, Object>> getRows(Object node) {
+            final List<Map<IColumn, Object>> rows = new ArrayList<>();
+            for (int i = 0; i < 3; ++i) {
+                rows.add(Collections.<IColumn, Object>singletonMap(ConstColumns.VALUE, i));
+            }
+            return rows;
+        }
+    }
+}
@@ -60,6 +60,53 @@ public final class ImprovedSkyCalc extends ImprovedSkyCalcMethods {
     	cachedDate = date;
     	cachedCalculateMoon = calculateMoon;
 
+        getCircumstances(obj.getRaDeg(), obj.getDecDeg(), ephemeris(date, calculateMoon));
+    }
+
+    /**
+     * The target independent part of a calculation for a given time: the
+     * sidereal time and, if requested, the positions of the sun and the moon.
+     * Calculating it once per time allows any number of targets to be
+     * calculated for that time without repeating the solar and lunar
+     * ephemerides, which are the expensive part of the calculation.
+     */
+    public static final class Ephemeris {
+        private final boolean moon;
+
+        private final double jdut;
+        private final double sid;
+        private final double curepoch;
+
+        // sun and moon, only calculated if moon is true
+        private double rasun;
+        private double decsun;
+        private double toporasun;
+        private double topodecsun;
+        private double ramoon;
+        private double decmoon;
+        private double distmoon;
+        private double sunAltitude;
+        private double lunarElevation;
+        private double lunarPhaseAngle;
+        private float  lunarIlluminatedFraction;
+
+        private Ephemeris(final boolean moon, final double jdut, final double sid, final double curepoch) {
+            this.moon     = moon;
+            this.jdut     = jdut;
+            this.sid      = sid;
+            this.curepoch = curepoch;
+        }
+
+        public boolean includesMoon() {
+            return moon;
+        }
+    }
+
+    /**
+     * Calculates the target independent part of a calculation for the given
+     * time at this site, see {@link #calculate(double, double, Ephemeris)}.
+     */
+    public Ephemeris ephemeris(final Date date, final boolean calculateMoon) {
         final DateTime dateTime = new DateTime(date);
         final DoubleRef jdut = new DoubleRef();
         final DoubleRef sid = new DoubleRef();
@@ -67,15 +114,63 @@ public final class ImprovedSkyCalc extends ImprovedSkyCalcMethods {
 
         setup_time_place(dateTime, hoursLongitude, jdut, sid, curepoch);
 
-        final double objra = obj.getRaDeg()/15;
-        final double objdec = obj.getDecDeg();
-        final double objepoch = 2000.;
+        final Ephemeris e = new Ephemeris(calculateMoon, jdut.d, sid.d, curepoch.d);
+        if (calculateMoon) {
+            final DoubleRef az = new DoubleRef();
+            final DoubleRef ramoon = new DoubleRef();
+            final DoubleRef decmoon= new DoubleRef();
+            final DoubleRef distmoon = new DoubleRef();
+            final DoubleRef georamoon = new DoubleRef();
+            final DoubleRef geodecmoon = new DoubleRef();
+            final DoubleRef geodistmoon = new DoubleRef();
+            final DoubleRef rasun = new DoubleRef();
+            final DoubleRef decsun = new DoubleRef();
+            final DoubleRef distsun = new DoubleRef();
+            final DoubleRef x = new DoubleRef();
+            final DoubleRef y = new DoubleRef();
+            final DoubleRef z = new DoubleRef();
+            final DoubleRef toporasun = new DoubleRef();
+            final DoubleRef topodecsun = new DoubleRef();
+            final double elevsea = siteAltitude;
+
+            accusun(e.jdut,e.sid,degreesLatitude,rasun,decsun,distsun, toporasun,topodecsun,x,y,z);
+            e.sunAltitude=altit(topodecsun.d,(e.sid-toporasun.d),degreesLatitude,az, new DoubleRef() /* [out] parang, ignored */);
+
+            accumoon(e.jdut,degreesLatitude,e.sid,elevsea,georamoon,geodecmoon,geodistmoon, ramoon,decmoon,distmoon);
+            e.lunarElevation=altit(decmoon.d,(e.sid-ramoon.d),degreesLatitude,az, new DoubleRef()  /* [out] parang, ignored */);
+
+            e.rasun      = rasun.d;
+            e.decsun     = decsun.d;
+            e.toporasun  = toporasun.d;
+            e.topodecsun = topodecsun.d;
+            e.ramoon     = ramoon.d;
+            e.decmoon    = decmoon.d;
+            e.distmoon   = distmoon.d;
+            e.lunarPhaseAngle = DEG_IN_RADIAN * subtend(ramoon.d,decmoon.d,toporasun.d,topodecsun.d);
+            e.lunarIlluminatedFraction=(float) (0.5*(1.-cos(subtend(ramoon.d,decmoon.d,rasun.d,decsun.d))));
+        }
+        return e;
+    }
 
-        getCircumstances(objra, objdec, objepoch, curepoch.d, sid.d, degreesLatitude, jdut, calculateMoon);
+    /**
+     * Calculates the values for a target at the time of the given ephemeris,
+     * which must have been obtained from this instance.  Moon related values
+     * are only calculated if the ephemeris includes the moon.
+     *
+     * @param raDeg right ascension (J2000) of the target in degrees
+     * @param decDeg declination (J2000) of the target in degrees
+     */
+    public void calculate(final double raDeg, final double decDeg, final Ephemeris e) {
+        // Forget the last inputs of calculate(WorldCoords, ...) since they no
+        // longer correspond to the calculated values.
+        cachedCoordinates = null;
+        getCircumstances(raDeg, decDeg, e);
     }
 
-    private void getCircumstances(double objra, double objdec, double objepoch,
-                                  double curep, double sid, double lat, DoubleRef jdut, boolean calculateMoon) {
+    private void getCircumstances(final double raDeg, final double decDeg, final Ephemeris e) {
+        final double objra = raDeg/15;
+        final double objdec = decDeg;
+        final double objepoch = 2000.;
 
         final double ha, alt;
         final DoubleRef az = new DoubleRef();
@@ -83,10 +178,10 @@ public final class ImprovedSkyCalc extends ImprovedSkyCalcMethods {
         final DoubleRef curra = new DoubleRef();
         final DoubleRef curdec = new DoubleRef();
 
-        cooxform(objra, objdec, objepoch, curep, curra, curdec, XFORM_JUSTPRE, XFORM_FROMSTD);
+        cooxform(objra, objdec, objepoch, e.curepoch, curra, curdec, XFORM_JUSTPRE, XFORM_FROMSTD);
 
-        ha = adj_time(sid - curra.d);
-        alt = altit(curdec.d, ha, lat, az, par);
+        ha = adj_time(e.sid - curra.d);
+        alt = altit(curdec.d, ha, degreesLatitude, az, par);
 
         airmass = getAirmass(alt);
         altitude = alt;
@@ -94,45 +189,24 @@ public final class ImprovedSkyCalc extends ImprovedSkyCalcMethods {
         parallacticAngle = par.d;
         hourAngle = ha;
 
-		if (calculateMoon) {
-
-			final DoubleRef ramoon = new DoubleRef();
-			final DoubleRef decmoon= new DoubleRef();
-			final DoubleRef distmoon = new DoubleRef();
-			final DoubleRef georamoon = new DoubleRef();
-			final DoubleRef geodecmoon = new DoubleRef();
-			final DoubleRef geodistmoon = new DoubleRef();
-			final DoubleRef rasun = new DoubleRef();
-			final DoubleRef decsun = new DoubleRef();
-			final DoubleRef distsun = new DoubleRef();
-			final DoubleRef x = new DoubleRef();
-			final DoubleRef y = new DoubleRef();
-			final DoubleRef z = new DoubleRef();
-			final DoubleRef toporasun = new DoubleRef();
-			final DoubleRef topodecsun = new DoubleRef();
-			final double elevsea = siteAltitude;
-
-			accusun(jdut.d,sid,degreesLatitude,rasun,decsun,distsun, toporasun,topodecsun,x,y,z);
-			sunAltitude=altit(topodecsun.d,(sid-toporasun.d),degreesLatitude,az, new DoubleRef() /* [out] parang, ignored */);
-
-			accumoon(jdut.d,degreesLatitude,sid,elevsea,georamoon,geodecmoon,geodistmoon, ramoon,decmoon,distmoon);
-			lunarElevation=altit(decmoon.d,(sid-ramoon.d),degreesLatitude,az, new DoubleRef()  /* [out] parang, ignored */);
-
-			// Sky brightness
-			lunarSkyBrightness = null;
-			lunarDistance = DEG_IN_RADIAN * subtend(ramoon.d,decmoon.d,objra,objdec);
-			lunarPhaseAngle = DEG_IN_RADIAN * subtend(ramoon.d,decmoon.d,toporasun.d,topodecsun.d);
-			if(lunarElevation > -2.) {
-				if((lunarElevation > 0.) && (altitude > 0.5) && (sunAltitude < -9.)) {
-				  lunarSkyBrightness =
-				     lunskybright(lunarPhaseAngle,lunarDistance,KZEN,lunarElevation,
-						altitude,distmoon.d);
-				}
-			}
-			totalSkyBrightness = sb(180. - lunarPhaseAngle, lunarDistance, 90 - lunarElevation, 90 - altitude, 90 - sunAltitude);
-			lunarIlluminatedFraction=(float) (0.5*(1.-cos(subtend(ramoon.d,decmoon.d,rasun.d,decsun.d))));
-
-		}
+        if (e.moon) {
+            sunAltitude = e.sunAltitude;
+            lunarElevation = e.lunarElevation;
+            lunarPhaseAngle = e.lunarPhaseAngle;
+            lunarIlluminatedFraction = e.lunarIlluminatedFraction;
+
+            // Sky brightness
+            lunarSkyBrightness = null;
+            lunarDistance = DEG_IN_RADIAN * subtend(e.ramoon,e.decmoon,objra,objdec);
+            if(lunarElevation > -2.) {
+                if((lunarElevation > 0.) && (altitude > 0.5) && (sunAltitude < -9.)) {
+                  lunarSkyBrightness =
+                     lunskybright(lunarPhaseAngle,lunarDistance,KZEN,lunarElevation,
+                        altitude,e.distmoon);
+                }
+            }
+            totalSkyBrightness = sb(180. - lunarPhaseAngle, lunarDistance, 90 - lunarElevation, 90 - altitude, 90 - sunAltitude);
+        }
     }
 
     /**
@@ -4,26 +4,46 @@ package edu.gemini.util.skycalc.calc
  * Base trait for all calculators.
  * A calculator basically holds a matrix of values which are sampled at defined points in time over a given interval.
  * For each sampling point in time a vector with an arbitrary number of values can be stored.
+ * Internally the times and the values are kept in primitive arrays, one column of samples per value.
  */
 trait Calculator {
 
   val times: Vector[Long]
   def toIndex(t: Long): Int
-  val values: Vector[Vector[Double]]
 
-  lazy val start = times.head
-  lazy val end = times.last
-  lazy val samples = times.size
+  /** The calculated values, one array of samples per field; must not be modified. */
+  protected val columns: Array[Array[Double]]
+
+  /** The sampling times as a primitive array; must not be modified. */
+  protected lazy val timeArray: Array[Long] = times.toArray
+
+  lazy val values: Vector[Vector[Double]] = columns.map(c => Vector(c:_*)).toVector
+
+  lazy val start = timeArray(0)
+  lazy val end = timeArray(timeArray.length - 1)
+  lazy val samples = timeArray.length
 
   /** True if the values for the given time are covered by this target. */
   def isDefinedAt(t: Long) = t >= start && t <= end
-  def value(field: Int, ix: Int) = values(field)(ix)
-  def valueAt(field: Int, t: Long) = values(field)(toIndex(t))
-  def timedValues(field: Int) = times.zip(values(field))
-
-  def min(field: Int): Double = values(field).min
-  def max(field: Int): Double = values(field).max
-  def mean(field: Int): Double = values(field).sum / samples
+  def value(field: Int, ix: Int) = columns(field)(ix)
+  def valueAt(field: Int, t: Long) = columns(field)(toIndex(t))
+  def timedValues(field: Int) = times.zip(columns(field))
+
+  def min(field: Int): Double = fold(field)(Math.min)
+  def max(field: Int): Double = fold(field)(Math.max)
+  def mean(field: Int): Double = fold(field)(_ + _) / samples
+
+  // folds over the samples of a field without boxing them
+  private def fold(field: Int)(op: (Double, Double) => Double): Double = {
+    val c = columns(field)
+    var r = c(0)
+    var ix = 1
+    while (ix < c.length) {
+      r = op(r, c(ix))
+      ix += 1
+    }
+    r
+  }
 
 }
 
@@ -69,8 +89,8 @@ trait FixedRateCalculator extends Calculator {
     require(t >= start)
     require(t <= end)
     val ix = Math.floor((t - start) / preciseRate).toInt   // always round down; the sample at this index gives a value <= t
-    require(times(ix) <= t)
-    require(ix == samples-1 || times(ix+1) > t)
+    require(timeArray(ix) <= t)
+    require(ix == samples-1 || timeArray(ix+1) > t)
     ix
   }
 
@@ -78,7 +98,7 @@ trait FixedRateCalculator extends Calculator {
 
 /**
  * Sampling at irregular intervals e.g middle dark time etc.
- * Define a vector with sampling times to make this work.
+ * Define a vector with sampling times in ascending order to make this work.
  */
 trait IrregularIntervalCalculator extends Calculator {
   require(times.size > 0)
@@ -90,7 +110,14 @@ trait IrregularIntervalCalculator extends Calculator {
   def toIndex(t: Long) = {
     require(t >= start)
     require(t <= end)
-    val ix = times.zipWithIndex.reverse.dropWhile(_._1 > t).head._2
+    val ix = java.util.Arrays.binarySearch(timeArray, t) match {
+      case i if i < 0 =>
+        -i - 2                    // the insertion point is to the right of t
+      case i          =>
+        var j = i                 // in case of duplicates use the last one
+        while (j < samples-1 && timeArray(j+1) == t) j += 1
+        j
+    }
     // postconditions: useful for debugging / documentation
     // require(ix >= 0 && ix < samples)
     // require(times(ix) <= t && (ix == samples-1 || times(ix+1) > t))
@@ -110,13 +137,13 @@ trait LinearInterpolatingCalculator extends Calculator {
    */
   override def valueAt(field: Int, t: Long): Double = {
     val ix = toIndex(t)
-    val t0 = times(ix)
-    val v0 = values(field)(ix)
+    val t0 = timeArray(ix)
+    val v0 = columns(field)(ix)
     if (t0 == t || ix == samples-1) v0
     else {
-      val t1 = times(ix+1)
+      val t1 = timeArray(ix+1)
       // require(t0 <= t && t < t1)
-      val v1 = values(field)(ix+1)
+      val v1 = columns(field)(ix+1)
       val v = v0 + (t - t0).toDouble/(t1 - t0) * (v1 - v0)
       // require((v0 >= v1 && v0 >= v && v >= v1) || (v0 < v1 && v0 <= v && v <= v1))
       v
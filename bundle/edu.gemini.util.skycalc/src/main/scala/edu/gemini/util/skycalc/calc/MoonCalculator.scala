@@ -3,7 +3,6 @@ package edu.gemini.util.skycalc.calc
 import edu.gemini.skycalc.{MoonCalc, TimeUtils, ImprovedSkyCalc}
 import java.util.Date
 import edu.gemini.spModel.core.Site
-import jsky.coords.WorldCoords
 import edu.gemini.util.skycalc.calc.MoonCalculator.Fields
 import javax.swing.Icon
 import java.awt.geom.Arc2D
@@ -17,7 +16,7 @@ trait MoonCalculator extends Calculator {
 
   val site: Site
 
-  val values: Vector[Vector[Double]] = calculate()
+  protected val columns: Array[Array[Double]] = calculate()
 
   import Fields._
 
@@ -45,38 +44,21 @@ trait MoonCalculator extends Calculator {
   lazy val fullMoons: Seq[Long] = MoonCalculator.calculatePhases(site, Interval(start, end), MoonCalc.Phase.FULL)
   lazy val lastQuarterMoons: Seq[Long] = MoonCalculator.calculatePhases(site, Interval(start, end), MoonCalc.Phase.LAST_QUARTER)
 
-  protected def calculate() = {
+  protected def calculate(): Array[Array[Double]] = {
     val skycalc = new ImprovedSkyCalc(site)
-    val dummy = new WorldCoords(0, 0)
-
-    // prepare temporary data structure
-    val values = Array (
-      new Array[Double](samples),
-      new Array[Double](samples),
-      new Array[Double](samples),
-      new Array[Double](samples),
-      new Array[Double](samples),
-      new Array[Double](samples),
-      new Array[Double](samples)
-    )
-    // fill temporary data structure with calculated values
-    for (ix <- 0 to samples-1) {
-      val t = times(ix)
-      skycalc.calculate(dummy, new Date(t), true)
+
+    // IMPORTANT: Make sure the order reflects the id values of the field enums!
+    val values = Array.fill(Fields.maxId, samples)(0.0)
+    for (ix <- 0 until samples) {
+      val t = timeArray(ix)
+      // the sky brightness is calculated for a dummy target at (0, 0)
+      skycalc.calculate(0, 0, skycalc.ephemeris(new Date(t), true))
       values(Elevation.id)(ix) = skycalc.getLunarElevation
       values(PhaseAngle.id)(ix) = skycalc.getLunarPhaseAngle
       values(IlluminatedFraction.id)(ix) = skycalc.getLunarIlluminatedFraction
       values(SkyBrightness.id)(ix) = if (skycalc.getLunarSkyBrightness == null) 0.0 else skycalc.getLunarSkyBrightness.toDouble
     }
-
-    // turn into immutable data structure
-    Vector(
-      // IMPORTANT: Make sure the order reflects the id values of the field enums!
-      Vector(values(Elevation.id):_*),
-      Vector(values(PhaseAngle.id):_*),
-      Vector(values(IlluminatedFraction.id):_*),
-      Vector(values(SkyBrightness.id):_*)
-    )
+    values
   }
 }
 
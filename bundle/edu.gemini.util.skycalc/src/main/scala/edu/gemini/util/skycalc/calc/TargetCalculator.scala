@@ -23,7 +23,7 @@ trait TargetCalculator extends Calculator {
   val site: Site
   val targetLocation: Long => Coordinates
 
-  val values: Vector[Vector[Double]] = calculate()
+  protected val columns: Array[Array[Double]] = calculate()
 
   import Fields._
 
@@ -69,30 +69,37 @@ trait TargetCalculator extends Calculator {
   // If the target is visible during the scheduled time, return the weighted mean parallactic angle as Some(angle in degrees).
   // Otherwise, the target is not visible, so return None.
   lazy val weightedMeanParallacticAngle: Option[Double] = {
-    val (weightedAngles, weights) = values(ParallacticAngle.id).zip(times).zip(values(Airmass.id)).map {
-      case ((angle, t), airmass) =>
-        // Wrap negative angles as per Andy's comment in OCSADV-16.
-        val normalizedAngle = {
-          if (angle < 0) {
-            val normalizingFactor = {
-              val dec = targetLocation(t).dec.toDegrees
-              if (dec - site.latitude < -10) 0
-              else if (dec - site.latitude < 10) 180
-              else 360
-            }
-            angle + normalizingFactor
+    val angles    = columns(ParallacticAngle.id)
+    val airmasses = columns(Airmass.id)
+
+    var weightedAngles = 0.0
+    var weights        = 0.0
+    for (ix <- 0 until samples) {
+      val angle   = angles(ix)
+      val airmass = airmasses(ix)
+
+      // Wrap negative angles as per Andy's comment in OCSADV-16.
+      val normalizedAngle = {
+        if (angle < 0) {
+          val normalizingFactor = {
+            val dec = targetLocation(timeArray(ix)).dec.toDegrees
+            if (dec - site.latitude < -10) 0
+            else if (dec - site.latitude < 10) 180
+            else 360
           }
-          else angle
+          angle + normalizingFactor
         }
+        else angle
+      }
 
-        //val weight = if (airmass <= 1.0) 0.0 else 1.6 * math.pow(airmass - 1.0, 0.6)
-        val weight = if (airmass <= 1.0) 0.0 else math.pow(airmass - 1.0, 1.3)
-        (normalizedAngle * weight, weight)
-    }.unzip
+      //val weight = if (airmass <= 1.0) 0.0 else 1.6 * math.pow(airmass - 1.0, 0.6)
+      val weight = if (airmass <= 1.0) 0.0 else math.pow(airmass - 1.0, 1.3)
+      weightedAngles += normalizedAngle * weight
+      weights        += weight
+    }
 
-    val weightedSum = weights.sum
-    if (weightedSum == 0) None
-    else Some(weightedAngles.sum / weightedSum)
+    if (weights == 0) None
+    else Some(weightedAngles / weights)
   }
 
   def hourAngleAt(t: Long): Double = valueAt(HourAngle.id, t)
@@ -109,45 +116,8 @@ trait TargetCalculator extends Calculator {
    * Calculates all values for the given times.
    * @return
    */
-  protected def calculate(): Vector[Vector[Double]] = {
-    val skycalc = new ImprovedSkyCalc(site)
-
-    // prepare temporary data structure
-    val values = Array (
-      new Array[Double](samples),
-      new Array[Double](samples),
-      new Array[Double](samples),
-      new Array[Double](samples),
-      new Array[Double](samples),
-      new Array[Double](samples),
-      new Array[Double](samples)
-    )
-    // fill temporary data structure with calculated values
-    for (ix <- 0 until samples) {
-      val t = times(ix)
-      skycalc.calculate(targetLocation(t), new Date(t), true)
-      values(Elevation.id)(ix) = skycalc.getAltitude
-      values(Azimuth.id)(ix) = skycalc.getAzimuth
-      values(Airmass.id)(ix) = skycalc.getAirmass
-      values(LunarDistance.id)(ix) = skycalc.getLunarDistance
-      values(ParallacticAngle.id)(ix) = skycalc.getParallacticAngle
-      values(HourAngle.id)(ix) = skycalc.getHourAngle
-      values(SkyBrightness.id)(ix) = skycalc.getTotalSkyBrightness.doubleValue
-    }
-
-    // turn into immutable data structure
-    Vector(
-      // IMPORTANT: Make sure the order reflects the id values of the field enums!
-      Vector(values(Elevation.id):_*),
-      Vector(values(Azimuth.id):_*),
-      Vector(values(Airmass.id):_*),
-      Vector(values(LunarDistance.id):_*),
-      Vector(values(ParallacticAngle.id):_*),
-      Vector(values(HourAngle.id):_*),
-      Vector(values(SkyBrightness.id):_*)
-    )
-
-  }
+  protected def calculate(): Array[Array[Double]] =
+    TargetCalculator.calculate(site, Array(targetLocation), timeArray)(0)
 }
 
 case class IntervalTargetCalculator(site: Site, targetLocation: Long => Coordinates, defined: Interval, rate: Long) extends FixedRateCalculator with LinearInterpolatingCalculator with TargetCalculator
@@ -156,6 +126,11 @@ case class SampleTargetCalculator(site: Site, targetLocation: Long => Coordinate
 
 case class SingleValueTargetCalculator(site: Site, targetLocation: Long => Coordinates, time: Long) extends SingleValueCalculator with TargetCalculator
 
+/** Target calculator for values that have already been calculated, see `TargetCalculator.batch`. */
+private final class BatchTargetCalculator(val site: Site, val targetLocation: Long => Coordinates, val times: Vector[Long], precalculated: Array[Array[Double]]) extends IrregularIntervalCalculator with LinearInterpolatingCalculator with TargetCalculator {
+  override protected def calculate(): Array[Array[Double]] = precalculated
+}
+
 object TargetCalculator {
 
   /** Enumeration that defines the different fields for this calculator for indexed access in sequence. */
@@ -172,5 +147,47 @@ object TargetCalculator {
 
   def apply(site: Site, targetLocation: Long => Coordinates, times: Vector[Long]): TargetCalculator =
     SampleTargetCalculator(site, targetLocation, times)
+
+  /**
+   * Creates calculators for any number of targets sampled at the same times. The positions of the sun and the
+   * moon are calculated once per sample and shared by all targets, which makes this a lot faster than creating
+   * the calculators one by one.
+   */
+  def batch(site: Site, targetLocations: Seq[Long => Coordinates], times: Vector[Long]): Seq[TargetCalculator] = {
+    val locations = targetLocations.toArray
+    val columns   = calculate(site, locations, times.toArray)
+    locations.indices.map { i =>
+      new BatchTargetCalculator(site, locations(i), times, columns(i))
+    }
+  }
+
+  /** Calculates the values of all targets for the given times, returns the columns for each target. */
+  private def calculate(site: Site, targetLocations: Array[Long => Coordinates], times: Array[Long]): Array[Array[Array[Double]]] = {
+    import Fields._
+
+    val skycalc = new ImprovedSkyCalc(site)
+    val columns = Array.fill(targetLocations.length, Fields.maxId, times.length)(0.0)
+
+    for (ix <- times.indices) {
+      val t         = times(ix)
+      val ephemeris = skycalc.ephemeris(new Date(t), true)
+      for (i <- targetLocations.indices) {
+        val c = targetLocations(i)(t)
+        skycalc.calculate(c.ra.toDegrees, c.dec.toDegrees, ephemeris)
+
+        // IMPORTANT: Make sure the order reflects the id values of the field enums!
+        val values = columns(i)
+        values(Elevation.id)(ix) = skycalc.getAltitude
+        values(Azimuth.id)(ix) = skycalc.getAzimuth
+        values(Airmass.id)(ix) = skycalc.getAirmass
+        values(LunarDistance.id)(ix) = skycalc.getLunarDistance
+        values(ParallacticAngle.id)(ix) = skycalc.getParallacticAngle
+        values(HourAngle.id)(ix) = skycalc.getHourAngle
+        values(SkyBrightness.id)(ix) = skycalc.getTotalSkyBrightness.doubleValue
+      }
+    }
+
+    columns
+  }
 }
 
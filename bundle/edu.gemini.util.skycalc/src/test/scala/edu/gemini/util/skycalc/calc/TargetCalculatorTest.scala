@@ -46,6 +46,35 @@ class TargetCalculatorTest {
     assertEquals(37, target.minElevation, 1)
   }
 
+  @Test def calculatesTargetsInBatch(): Unit = {
+    val t0 = TimeUtils.time(2014, 3, 1, 20, 0, Site.GN.timezone)
+    val times = Vector.tabulate(50)(i => t0 + i * TimeUtils.minutes(5))
+    val cs = Seq((150.0, 20.0), (10.0, -30.0), (300.0, 60.0)).map { case (ra, dec) =>
+      (_: Long) => Coordinates.fromDegrees(ra, dec).get
+    }
+    val batch = TargetCalculator.batch(Site.GN, cs, times)
+
+    assertEquals(cs.size, batch.size)
+    cs.zip(batch).foreach { case (c, b) =>
+      val single = TargetCalculator(Site.GN, c, times)
+      assertEquals(single.values, b.values)
+      assertEquals(single.weightedMeanParallacticAngle, b.weightedMeanParallacticAngle)
+      assertEquals(single.elevationAt(t0 + TimeUtils.minutes(7)), b.elevationAt(t0 + TimeUtils.minutes(7)), 0)
+    }
+  }
+
+  @Test def findsIndexForIrregularTimes(): Unit = {
+    val t = TimeUtils.time(2014, 3, 1, 20, 0, Site.GN.timezone)
+    val c = (_: Long) => Coordinates.fromDegrees(150, 20).get
+    val target = TargetCalculator(Site.GN, c, Vector(t, t + 10, t + 10, t + 30))
+
+    assertEquals(0, target.toIndex(t))
+    assertEquals(0, target.toIndex(t + 9))
+    assertEquals(2, target.toIndex(t + 10))
+    assertEquals(2, target.toIndex(t + 29))
+    assertEquals(3, target.toIndex(t + 30))
+  }
+
   // === this is for performance trimming purposes, not an actual test case
 
   @Ignore
@@ -65,4 +94,26 @@ class TargetCalculatorTest {
 
     println(s"time: ${System.currentTimeMillis() - t}ms" )
   }
+
+  @Ignore
+  @Test def batchTimingTest(): Unit = {
+
+    val rnd = new scala.util.Random(42)
+    val t0 = TimeUtils.time(2014, 3, 1, 14, 0, Site.GN.timezone)
+    val times = Vector.tabulate(144)(i => t0 + i * TimeUtils.minutes(10))  // one night
+    val cs = Seq.fill(500) {
+      val c = Coordinates.fromDegrees(rnd.nextDouble() * 360, rnd.nextDouble() * 180 - 90).get
+      (_: Long) => c
+    }
+
+    val t = System.currentTimeMillis()
+    cs.map(c => TargetCalculator(Site.GN, c, times))
+    val t1 = System.currentTimeMillis()
+    val tcs = TargetCalculator.batch(Site.GN, cs, times)
+    val t2 = System.currentTimeMillis()
+    val lookups = (1 to 100000).foldLeft(0.0)((s, i) => s + tcs.head.valueAt(0, t0 + (i * 5000L) % (times.last - t0)))
+    val t3 = System.currentTimeMillis()
+
+    println(s"one by one: ${t1 - t}ms, batch: ${t2 - t1}ms, lookups: ${t3 - t2}ms (sum $lookups)")
+  }
 }
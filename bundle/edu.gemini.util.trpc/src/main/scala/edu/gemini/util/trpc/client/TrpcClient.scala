@@ -8,7 +8,7 @@ import edu.gemini.util.trpc.common._
 
 import java.io.IOException
 import java.lang.reflect.{UndeclaredThrowableException, Proxy, Method, InvocationHandler}
-import java.net.URL
+import java.net.{HttpURLConnection, URL}
 import java.util.logging.{Level, Logger=>JLogger}
 import javax.net.ssl.{SSLSession, HostnameVerifier, HttpsURLConnection}
 import javax.servlet.http.HttpServletResponse
@@ -30,10 +30,23 @@ object TrpcClient {
      def verify(s: String, sslSession: SSLSession) = true
   }
 
-  class ClientBuilder(host: String, port: Int, connectTimeout: Int, readTimeout: Int) {
+  /** Statistics of the calls made by all clients, per service method. */
+  val metrics: TrpcMetrics = new TrpcMetrics
+
+  // Peers known to accept gzipped requests. Until a peer has answered once, requests to it are sent uncompressed.
+  private val gzipPeers = java.util.concurrent.ConcurrentHashMap.newKeySet[(String, Int)]()
+
+  private def acceptsGzip(host: String, port: Int): Boolean =
+    compressing && gzipPeers.contains((host, port))
+
+  class ClientBuilder(host: String, port: Int, connectTimeout: Int, readTimeout: Int, ssl: Boolean = true) {
 
     def withKeys(keys: Set[Key]): TrpcClient = 
-      new TrpcClient(host, port, connectTimeout, readTimeout, keys)
+      new TrpcClient(host, port, connectTimeout, readTimeout, keys, ssl)
+
+    /** Talks plain HTTP rather than HTTPS, for tests. */
+    private[trpc] def withoutSsl: ClientBuilder =
+      new ClientBuilder(host, port, connectTimeout, readTimeout, ssl = false)
 
     def withoutKeys: TrpcClient = 
       withKeys(Set())
@@ -63,7 +76,7 @@ object TrpcClient {
 
 }
 
-class TrpcClient private (host: String, port: Int, connectTimeout: Int, readTimeout: Int, keys: Set[Key]) {
+class TrpcClient private (host: String, port: Int, connectTimeout: Int, readTimeout: Int, keys: Set[Key], ssl: Boolean) {
   import TrpcClient._
 
   /**
@@ -121,14 +134,22 @@ class TrpcClient private (host: String, port: Int, connectTimeout: Int, readTime
     val handler = new InvocationHandler {
 
       def invoke(proxy: Any, method: Method, args: Array[AnyRef]): AnyRef = {
-        val start = currentTimeMillis
+        val start    = currentTimeMillis
+        val nanos    = System.nanoTime
+        val name     = "%s.%s".format(m.erasure.getName, method.getName)
+        var sent     = 0L
+        var received = 0L
+        var failed   = true
         try {
-          val url = "https://%s:%d/trpc/%s/%s".format(host, port, m.erasure.getName, method.getName)
-          val conn = new URL(url).openConnection.asInstanceOf[HttpsURLConnection]
-          conn.setSSLSocketFactory(GemSslSocketFactory.get)
-          conn.setHostnameVerifier(hostnameVerifier)
+          val url = "%s://%s:%d/trpc/%s/%s".format(if (ssl) "https" else "http", host, port, m.erasure.getName, method.getName)
+          val conn = new URL(url).openConnection.asInstanceOf[HttpURLConnection]
+          conn match {
+            case https: HttpsURLConnection =>
+              https.setSSLSocketFactory(GemSslSocketFactory.get)
+              https.setHostnameVerifier(hostnameVerifier)
+            case _                         =>
+          }
           conn.setConnectTimeout(connectTimeout)
-          conn.setChunkedStreamingMode(1024 * 16) // 16k blocks (?)
           conn.setDoOutput(true)
           conn.setDoInput(true)
           conn.setReadTimeout(readTimeout)
@@ -136,19 +157,57 @@ class TrpcClient private (host: String, port: Int, connectTimeout: Int, readTime
           if (Log.isLoggable(Level.FINE))
             Log.fine("Sending %d principals:".format(keys.size) + keys.map(p => "\n\t" + p))
 
-          closing(conn.getOutputStream)(_.writeRaw(Version.current, (args, keys))) // note that args may be null
+          // Small requests are serialized up front so that their length is known, which along with reading
+          // responses to the end lets the connection be kept alive and reused for the next call to the same peer.
+          // Larger ones are streamed to the server as they are serialized, compressed if the server accepts it.
+          if (compressing) conn.setRequestProperty("Accept-Encoding", Gzip)
+          var counter = Option.empty[CountingOutputStream]
+          val request = new SpillingOutputStream(StreamingThreshold, () => {
+            val gzipped = acceptsGzip(host, port)
+            conn.setChunkedStreamingMode(BufSize)
+            if (gzipped) conn.setRequestProperty("Content-Encoding", Gzip)
+            val c = new CountingOutputStream(conn.getOutputStream)
+            counter = Some(c)
+            if (gzipped) gzipping(c) else c
+          })
+          request.writeRaw(Version.current, (args, keys)) // note that args may be null
+          sent = counter.fold {
+            val body = request.buffered
+            conn.setFixedLengthStreamingMode(body.length)
+            closing(conn.getOutputStream)(_.write(body))
+            body.length.toLong
+          }(_.count)
+
           conn.getResponseCode match {
-            case HttpServletResponse.SC_OK => closing(conn.getInputStream)(_.readRaw.next[Try[AnyRef]]) match {
-              case \/-(a) => a
-              case -\/(e) =>
-                val localFrames = new Exception().getStackTrace.drop(2) // throw away the proxy frames (?)
-                val markerFrame = new StackTraceElement("***** EXCEPTION THROW FROM SERVER", "", "<none>", 0)
-                e.setStackTrace(localFrames ++ Array(markerFrame) ++ e.getStackTrace)
-                throw e
-            }
-            case code => throw new IOException("%d %s: %s".format(code, conn.getResponseMessage, url)) // can we do better?
+            case HttpServletResponse.SC_OK =>
+              if (isGzip(conn.getHeaderField(AcceptRequestEncodingHeader))) gzipPeers.add((host, port))
+              val in = new CountingInputStream(conn.getInputStream)
+              if (conn.getHeaderField(TrpcStream.StreamHeader) != null) {
+                failed = false
+                return new RemoteStream(name, conn, in)
+              }
+              val result = try {
+                decompressing(in, conn.getContentEncoding).readRaw.next[Try[AnyRef]]
+              } finally {
+                closing(in)(drain)
+                received = in.count
+              }
+              result match {
+                case \/-(a) =>
+                  failed = false
+                  a
+                case -\/(e) =>
+                  val localFrames = new Exception().getStackTrace.drop(2) // throw away the proxy frames (?)
+                  val markerFrame = new StackTraceElement("***** EXCEPTION THROW FROM SERVER", "", "<none>", 0)
+                  e.setStackTrace(localFrames ++ Array(markerFrame) ++ e.getStackTrace)
+                  throw e
+              }
+            case code =>
+              Option(conn.getErrorStream).foreach(closing(_)(drain))
+              throw new IOException("%d %s: %s".format(code, conn.getResponseMessage, url)) // can we do better?
           }
         } finally {
+          metrics.record(name, System.nanoTime - nanos, sent, received, failed)
           val elapsed = currentTimeMillis - start
           val level = if (elapsed > Warn) Level.WARNING else Level.FINE
           if (Log.isLoggable(level))
@@ -161,4 +220,74 @@ class TrpcClient private (host: String, port: Int, connectTimeout: Int, readTime
     Proxy.newProxyInstance(getClass.getClassLoader, Array(m.erasure), handler).asInstanceOf[A]
   }
 
+  /**
+   * Consumes a stream returned by a remote call, passing each chunk to `k` as it arrives, until the stream ends or
+   * `k` returns false, which cancels the call. Chunks are only requested from the server as fast as `k` handles
+   * them. The result is the number of chunks consumed.
+   * <code>
+   * client.stream(_[IFoo].allTheThings())(thing => { ...; true })
+   * </code>
+   */
+  def stream[A](f: Remote => TrpcStream[A])(k: A => Boolean)(implicit ec: ExecutionContext): Future[Int] =
+    Future {
+      val s = apply(f).get
+      try {
+        var n  = 0
+        var go = true
+        while (go && s.hasNext) {
+          n += 1
+          go = k(s.next())
+        }
+        n
+      } finally {
+        s.close()
+      }
+    }
+
+  // Client side of a stream, reading each frame only when asked for the next chunk.
+  private final class RemoteStream(name: String, conn: HttpURLConnection, in: CountingInputStream) extends TrpcStream[AnyRef] {
+    import TrpcStream._
+
+    private val start  = System.nanoTime
+    private val ois    = decompressing(in, conn.getContentEncoding).readRaw
+    private var frame  = Option.empty[Frame]
+    private var closed = false
+
+    private def peek: Frame =
+      frame.getOrElse {
+        val f = ois.next[Frame]
+        frame = Some(f)
+        f
+      }
+
+    def hasNext: Boolean =
+      !closed && (peek match {
+        case Chunk(_)  => true
+        case End       => false
+        case Failed(e) => throw e
+      })
+
+    def next(): AnyRef =
+      if (!hasNext) throw new NoSuchElementException
+      else {
+        val Chunk(a) = peek
+        frame = None
+        a
+      }
+
+    def close(): Unit =
+      if (!closed) {
+        closed = true
+        frame match {
+          case Some(End) | Some(Failed(_)) =>
+            // The whole response has been read, the connection can be reused.
+            closing(in)(drain)
+          case _                           =>
+            // Drop the connection to stop the server.
+            conn.disconnect()
+        }
+        metrics.record(name + " (stream)", System.nanoTime - start, 0, in.count, frame.exists(_.isInstanceOf[Failed]))
+      }
+  }
+
 }
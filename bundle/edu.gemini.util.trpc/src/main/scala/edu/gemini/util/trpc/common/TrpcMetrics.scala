@@ -0,0 +1,65 @@
+package edu.gemini.util.trpc.common
+
+import java.util.concurrent.ConcurrentHashMap
+
+import scala.collection.JavaConverters._
+
+/**
+ * Per-method call statistics of one side of TRPC: number of calls and failures, latency and payload sizes as sent
+ * over the wire (i.e., after compression).
+ */
+final class TrpcMetrics {
+  import TrpcMetrics._
+
+  private val stats = new ConcurrentHashMap[String, Stats]
+
+  private def statsFor(method: String): Stats = {
+    val s = stats.get(method)
+    if (s != null) s
+    else {
+      val n = new Stats
+      Option(stats.putIfAbsent(method, n)).getOrElse(n)
+    }
+  }
+
+  def record(method: String, nanos: Long, bytesSent: Long, bytesReceived: Long, failed: Boolean): Unit =
+    statsFor(method).record(nanos, bytesSent, bytesReceived, failed)
+
+  def snapshot: Map[String, Snapshot] =
+    stats.asScala.map { case (m, st) => m -> st.snapshot }.toMap
+
+  def reset(): Unit =
+    stats.clear()
+
+  /** One line per method, busiest first, for logging. */
+  def summary: String =
+    snapshot.toList.sortBy(-_._2.totalNanos).map { case (m, s) =>
+      f"$m: ${s.calls}%d calls, ${s.failures}%d failed, ${s.meanMillis}%.1f ms mean, ${s.maxNanos / 1000000.0}%.1f ms max, ${s.bytesSent / 1024}%d KB sent, ${s.bytesReceived / 1024}%d KB received"
+    }.mkString("\n")
+}
+
+object TrpcMetrics {
+
+  final case class Snapshot(calls: Long, failures: Long, totalNanos: Long, maxNanos: Long, bytesSent: Long, bytesReceived: Long) {
+    def meanMillis: Double =
+      if (calls == 0) 0.0 else totalNanos / 1000000.0 / calls
+  }
+
+  private final class Stats {
+    private var s = Snapshot(0, 0, 0, 0, 0, 0)
+
+    def record(nanos: Long, sent: Long, received: Long, failed: Boolean): Unit =
+      synchronized {
+        s = Snapshot(
+          s.calls + 1,
+          if (failed) s.failures + 1 else s.failures,
+          s.totalNanos + nanos,
+          math.max(s.maxNanos, nanos),
+          s.bytesSent + sent,
+          s.bytesReceived + received)
+      }
+
+    def snapshot: Snapshot =
+      synchronized(s)
+  }
+}
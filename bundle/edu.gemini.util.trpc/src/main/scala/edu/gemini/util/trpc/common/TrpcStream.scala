@@ -0,0 +1,55 @@
+package edu.gemini.util.trpc.common
+
+import java.io.Closeable
+
+import scala.collection.JavaConverters._
+
+/**
+ * A result that is sent to the client in chunks as they are produced, rather than serialized as a whole. Service
+ * methods declare it as their return type; the server writes and flushes each chunk as soon as `next` returns it,
+ * and the client reads each one only when asked for it, so neither side holds the complete result.
+ *
+ * The server is held back by the network when the client consumes slower than chunks are produced. Closing the
+ * stream on the client before the end cancels the call: the connection is dropped and the server closes its side
+ * of the stream when it next tries to write.
+ *
+ * Chunks must be serializable. Exceptions thrown by the server while producing chunks are thrown by the client's
+ * `hasNext`.
+ */
+trait TrpcStream[A] extends Closeable {
+  def hasNext: Boolean
+  def next(): A
+}
+
+object TrpcStream {
+
+  /** A stream of the elements of an iterator, calling `onClose` when done. */
+  def fromIterator[A](it: Iterator[A], onClose: => Unit = ()): TrpcStream[A] =
+    new TrpcStream[A] {
+      def hasNext: Boolean = it.hasNext
+      def next(): A        = it.next()
+      def close(): Unit    = onClose
+    }
+
+  /** A stream of the elements of an iterator, in chunks of up to `size` elements. */
+  def grouped[A](it: Iterator[A], size: Int, onClose: => Unit = ()): TrpcStream[java.util.List[A]] =
+    fromIterator(it.grouped(size).map(g => new java.util.ArrayList[A](g.asJava): java.util.List[A]), onClose)
+
+  implicit class TrpcStreamOps[A](s: TrpcStream[A]) {
+    /** A Scala iterator over the remaining chunks. It doesn't close the stream. */
+    def iterator: Iterator[A] =
+      new Iterator[A] {
+        def hasNext: Boolean = s.hasNext
+        def next(): A        = s.next()
+      }
+  }
+
+  // The stream is sent as a sequence of frames, ending with End or Failed.
+  private[trpc] sealed trait Frame extends Serializable
+  private[trpc] final case class Chunk(a: AnyRef) extends Frame
+  private[trpc] case object End extends Frame
+  private[trpc] final case class Failed(e: Exception) extends Frame
+
+  // Set on responses that carry a stream rather than a single result.
+  private[trpc] val StreamHeader = "X-Trpc-Stream"
+}
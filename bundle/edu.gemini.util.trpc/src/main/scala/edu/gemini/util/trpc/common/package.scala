@@ -3,11 +3,134 @@ package edu.gemini.util.trpc
 import scalaz._
 import Scalaz._
 import java.io._
+import java.util.zip.{Deflater, GZIPInputStream, GZIPOutputStream}
 
 package object common {
 
   val BufSize = 1024 * 16 // ok?
 
+  // Payloads of at least this many bytes are sent gzipped if the other side accepts it, negative to never compress.
+  val CompressionThreshold: Int = Integer.getInteger("edu.gemini.util.trpc.compressionThreshold", 16 * 1024)
+
+  val Gzip = "gzip"
+
+  // Sent by servers that accept gzipped requests, so that clients know they can compress.
+  val AcceptRequestEncodingHeader = "X-Trpc-Accept-Encoding"
+
+  def compressing: Boolean = CompressionThreshold >= 0
+
+  // Requests of at least this many bytes are streamed to the server rather than buffered to find their length.
+  val StreamingThreshold: Int = if (compressing) CompressionThreshold else 16 * 1024
+
+  def isGzip(encoding: String): Boolean =
+    Option(encoding).exists(_.split(",").exists(_.trim.equalsIgnoreCase(Gzip)))
+
+  /** Serializes the values to a byte array, as `writeRaw` would write them. */
+  def serialize(as: Any*): Array[Byte] = {
+    val bos = new ByteArrayOutputStream(BufSize)
+    bos.writeRaw(as: _*)
+    bos.toByteArray
+  }
+
+  /** Compresses the payload if it is large enough, returning whether it did so. */
+  def compress(bytes: Array[Byte]): (Array[Byte], Boolean) =
+    if (!compressing || bytes.length < CompressionThreshold) (bytes, false)
+    else {
+      val bos = new ByteArrayOutputStream(bytes.length / 4)
+      closing(gzipping(bos))(_.write(bytes))
+      (bos.toByteArray, true)
+    }
+
+  def gzipping(os: OutputStream): OutputStream =
+    new GZIPOutputStream(os, BufSize) { `def`.setLevel(Deflater.BEST_SPEED) }
+
+  def decompressing(is: InputStream, encoding: String): InputStream =
+    if (isGzip(encoding)) new GZIPInputStream(is, BufSize) else is
+
+  /** Reads what is left of the stream, so that the underlying connection can be reused. */
+  def drain(is: InputStream): Unit = {
+    val buf = new Array[Byte](BufSize)
+    while (is.read(buf) >= 0) {}
+  }
+
+  /**
+   * Buffers what is written until there are `threshold` bytes, and from then on passes the buffered bytes and
+   * everything written afterwards to the stream returned by `open`, which is only called if the threshold is reached.
+   * If it never is, `buffered` has everything written once the stream is closed.
+   */
+  final class SpillingOutputStream(threshold: Int, open: () => OutputStream) extends OutputStream {
+    private val buf = new ByteArrayOutputStream(math.min(math.max(threshold, 32), BufSize))
+    private var out = Option.empty[OutputStream]
+
+    def spilled: Boolean = out.isDefined
+
+    def buffered: Array[Byte] = buf.toByteArray
+
+    override def write(b: Int): Unit =
+      write(Array(b.toByte), 0, 1)
+
+    override def write(b: Array[Byte], off: Int, len: Int): Unit =
+      out match {
+        case Some(os) => os.write(b, off, len)
+        case None     =>
+          buf.write(b, off, len)
+          if (buf.size >= threshold) {
+            val os = open()
+            buf.writeTo(os)
+            buf.reset()
+            out = Some(os)
+          }
+      }
+
+    override def flush(): Unit =
+      out.foreach(_.flush())
+
+    override def close(): Unit =
+      out.foreach(_.close())
+  }
+
+  /** Counts the bytes written through it. */
+  class CountingOutputStream(os: OutputStream) extends FilterOutputStream(os) {
+    private var n = 0L
+
+    def count: Long = n
+
+    override def write(b: Int): Unit = {
+      os.write(b)
+      n += 1
+    }
+
+    override def write(b: Array[Byte], off: Int, len: Int): Unit = {
+      os.write(b, off, len)
+      n += len
+    }
+  }
+
+  /** Counts the bytes read through it. */
+  class CountingInputStream(is: InputStream) extends FilterInputStream(is) {
+    private var n = 0L
+
+    def count: Long = n
+
+    override def read(): Int = {
+      val b = super.read()
+      if (b >= 0) n += 1
+      b
+    }
+
+    override def read(b: Array[Byte], off: Int, len: Int): Int = {
+      val r = super.read(b, off, len)
+      if (r > 0) n += r
+      r
+    }
+
+    override def skip(len: Long): Long = {
+      val r = super.skip(len)
+      n += r
+      r
+    }
+  }
+
   type Try[A] = Exception \/ A
 
   def lift[A](a: => A):Try[A] = catching(a.right[Exception])
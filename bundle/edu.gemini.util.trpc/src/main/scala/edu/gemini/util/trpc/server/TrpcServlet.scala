@@ -2,7 +2,9 @@ package edu.gemini.util.trpc.server
 
 import javax.servlet.http.{HttpServletResponse, HttpServletRequest, HttpServlet}
 import edu.gemini.util.trpc.common._
+import java.io.{BufferedOutputStream, IOException, ObjectOutputStream}
 import java.lang.reflect.InvocationTargetException
+import java.util.zip.GZIPOutputStream
 import edu.gemini.util.security.auth.keychain._
 import edu.gemini.util.security.auth.keychain.Action._
 import java.security.{PrivilegedActionException, PrivilegedAction, Principal}
@@ -14,6 +16,7 @@ import java.util.logging.{Level, Logger}
 import scala.util.DynamicVariable
 
 abstract class TrpcServlet(auth: KeyService) extends HttpServlet {
+  import TrpcServlet.Streamed
   val Log = Logger.getLogger(this.getClass.getName)
 
   // TODO: we can replace the try/catch stuff with Validation.fromTryCatchThrowable in Scalaz 7.1
@@ -22,6 +25,8 @@ abstract class TrpcServlet(auth: KeyService) extends HttpServlet {
   // POST goes to http://server:host/trpc/class/method, where local path /class/method
   // Request payload is an Array[AnyRef] serialized as a raw bytestream
   override def service(req: HttpServletRequest, res: HttpServletResponse) {
+    val start = System.nanoTime
+    val name  = "%s.%s".format(req.path(0).getOrElse(""), req.path(1).getOrElse(""))
 
     try {
 
@@ -34,29 +39,99 @@ abstract class TrpcServlet(auth: KeyService) extends HttpServlet {
             a  <- req.payload // our argument array
             ps <- subject(a._2)
             a <- withService(c, ps) { t => t.getClass.getCompatibleMethod(n, a._1).map { m =>
-                try {
-                  m.setAccessible(true) // public stuff isn't visible if the class isn't public
-                  m.invoke(t, a._1: _*)
+                val r = try {
+                  m.invoke(t, a._1: _*) // made accessible when resolved, as public stuff isn't visible if the class isn't public
                 } catch {
                   case ite:InvocationTargetException => throw ite.getCause // unwrap the exception
                 }
+
+                // Streams are produced and sent while we still hold the service, in the caller's context
+                r match {
+                  case s: TrpcStream[_] => stream(s, req, res)
+                  case _                => r
+                }
               }
             }
           } yield a
         }
       } yield r
 
-      // Either way, send it back.
-      closing(res.getOutputStream)(_.writeRaw(result))
+      result match {
+        case \/-(Streamed(sent, failed)) =>
+          TrpcServlet.metrics.record(name, System.nanoTime - start, sent, math.max(0, req.getContentLength), failed)
+
+        case _                      =>
+          // Either way, send it back. The length is set so that the client can keep the connection alive.
+          val response = serialize(result)
+          val (body, gzipped) = if (isGzip(req.getHeader("Accept-Encoding"))) compress(response) else (response, false)
+          if (compressing) res.setHeader(AcceptRequestEncodingHeader, Gzip)
+          if (gzipped) res.setHeader("Content-Encoding", Gzip)
+          res.setContentLength(body.length)
+          closing(res.getOutputStream)(_.write(body))
+
+          TrpcServlet.metrics.record(name, System.nanoTime - start, body.length, math.max(0, req.getContentLength), result.isLeft)
+      }
 
     } catch {
       case t: Exception =>
+        TrpcServlet.metrics.record(name, System.nanoTime - start, 0, math.max(0, req.getContentLength), failed = true)
         Log.log(Level.INFO, s"Problem writing response to ${req.getRemoteAddr} for request: class=${req.path(0).getOrElse("")} method=${req.path(1).getOrElse("")}", t)
         throw t
     }
 
   }
 
+  /**
+   * Sends the chunks of a stream as they are produced, flushing each one, and closes it. Returns the number of
+   * bytes sent and whether producing the chunks failed. Writing fails if the client has gone away, which ends the
+   * stream early. Must be called from within `withService`, since producing the chunks may use the service.
+   */
+  private def stream(s: TrpcStream[_], req: HttpServletRequest, res: HttpServletResponse): Streamed = {
+    import TrpcStream._
+
+    val gzipped = compressing && isGzip(req.getHeader("Accept-Encoding"))
+    res.setHeader(StreamHeader, "1")
+    if (compressing) res.setHeader(AcceptRequestEncodingHeader, Gzip)
+    if (gzipped) res.setHeader("Content-Encoding", Gzip)
+
+    val counter = new CountingOutputStream(res.getOutputStream)
+    val os      = if (gzipped) new GZIPOutputStream(counter, BufSize, true) else counter
+    var failed  = false
+    try {
+      closing(new ObjectOutputStream(new BufferedOutputStream(os, BufSize))) { oos =>
+        def send(f: Frame): Unit = {
+          oos.writeObject(f)
+          oos.reset() // don't keep references to the chunks already sent
+          oos.flush()
+        }
+
+        // Chunks are produced outside of the try so that a failure to write one isn't sent as a Failed frame.
+        def produce(): Option[Frame] =
+          try {
+            if (s.hasNext) Some(Chunk(s.next().asInstanceOf[AnyRef])) else None
+          } catch {
+            case e: Exception =>
+              failed = true
+              Some(Failed(e))
+          }
+
+        var frame = produce()
+        while (frame.isDefined) {
+          send(frame.get)
+          frame = if (failed) None else produce()
+        }
+        if (!failed) send(End)
+      }
+    } catch {
+      case e: IOException =>
+        Log.log(Level.FINE, s"Stream to ${req.getRemoteAddr} cancelled.", e)
+        failed = true
+    } finally {
+      s.close()
+    }
+    Streamed(counter.count, failed)
+  }
+
   def subject(ps:Set[Key]): Try[Set[Principal]] = try {
     ps.collect { case a if auth.validateKey(a).isRight => a.get._1 : Principal } .toSet.right
   } catch {
@@ -70,3 +145,13 @@ abstract class TrpcServlet(auth: KeyService) extends HttpServlet {
   protected def withService[B](clazz: String, ps: Set[Principal])(f: Any => B): B
 
 }
+
+object TrpcServlet {
+
+  /** Statistics of the calls served, per service method. */
+  val metrics: TrpcMetrics = new TrpcMetrics
+
+  // Result of a call whose stream has already been sent.
+  private final case class Streamed(bytes: Long, failed: Boolean)
+
+}
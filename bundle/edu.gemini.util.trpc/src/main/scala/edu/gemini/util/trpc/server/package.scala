@@ -6,12 +6,20 @@ import Scalaz._
 import javax.servlet.http.{HttpServletResponse, HttpServletRequest}
 import java.{lang => jl}
 import java.lang.reflect.Method
+import java.util.concurrent.ConcurrentHashMap
 import java.io.{InvalidClassException, ByteArrayOutputStream, ByteArrayInputStream, ObjectInputStream}
 import edu.gemini.spModel.core.{VersionException, Version}
 import edu.gemini.util.security.auth.keychain._
 
 package object server {
 
+  // Methods resolved by getCompatibleMethod, per class and then per method name and argument types. These are kept
+  // with the class so that they go away with it.
+  private val resolvedMethods = new ClassValue[ConcurrentHashMap[(String, List[Class[_]]), Option[Method]]] {
+    override def computeValue(c: Class[_]): ConcurrentHashMap[(String, List[Class[_]]), Option[Method]] =
+      new ConcurrentHashMap[(String, List[Class[_]]), Option[Method]]
+  }
+
   implicit class RichHttpServletRequest(req: HttpServletRequest) {
 
     lazy val pathElems = req.getPathInfo.split("/").drop(1)
@@ -23,7 +31,7 @@ package object server {
       lift {
 
         // Get our object stream
-        val ios = req.getInputStream.readRaw
+        val ios = decompressing(req.getInputStream, req.getHeader("Content-Encoding")).readRaw
 
         // Check serial compatibility
         try {
@@ -76,7 +84,13 @@ package object server {
           a <- ~Option(args).map(_.toList)
         } yield Option(a).map(_.getClass).orNull
 
-      val om = getCompatibleMethod0(c, name, argTypes)
+      val om = resolvedMethods.get(c).computeIfAbsent((name, argTypes), new java.util.function.Function[(String, List[Class[_]]), Option[Method]] {
+        def apply(k: (String, List[Class[_]])): Option[Method] =
+          getCompatibleMethod0(c, name, argTypes).map { m =>
+            m.setAccessible(true) // public stuff isn't visible if the class isn't public
+            m
+          }
+      })
       om.\/>(new NoSuchMethodException("%s.%s(%s)".format(c.getName, name, argTypes.mkString(", "))))
     }
 
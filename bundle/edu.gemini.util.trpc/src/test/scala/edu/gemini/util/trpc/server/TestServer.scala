@@ -0,0 +1,69 @@
+package edu.gemini.util.trpc.server
+
+import edu.gemini.util.trpc.client.TrpcClient
+import edu.gemini.util.trpc.common.AcceptRequestEncodingHeader
+
+import java.security.Principal
+import java.util.NoSuchElementException
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicBoolean
+import javax.servlet.http.{HttpServletRequest, HttpServletResponse, HttpServletResponseWrapper}
+
+import org.mortbay.jetty.Server
+import org.mortbay.jetty.servlet.{Context, ServletHolder}
+
+import scala.collection.JavaConverters._
+
+/**
+ * Serves the given services, keyed by interface name, over plain HTTP on a free port so that tests can make real
+ * TRPC calls. `held` tells whether a call is using a service, i.e. whether we are within `withService`. A server
+ * made with `negotiating = false` behaves like one from before request compression, never telling clients that it
+ * accepts gzipped requests.
+ */
+final class TestServer(services: Map[String, AnyRef], negotiating: Boolean = true) {
+  import TestServer.Request
+
+  val held = new AtomicBoolean(false)
+
+  private val received = new ConcurrentLinkedQueue[Request]()
+
+  // No keys are sent by the test clients, so the key service is never asked
+  private val servlet = new TrpcServlet(null) {
+    override def service(req: HttpServletRequest, res: HttpServletResponse): Unit = {
+      received.add(Request(Option(req.getHeader("Content-Encoding")), req.getContentLength))
+      super.service(req, if (negotiating) res else new HttpServletResponseWrapper(res) {
+        override def setHeader(name: String, value: String): Unit =
+          if (name != AcceptRequestEncodingHeader) super.setHeader(name, value)
+      })
+    }
+
+    protected def withService[B](clazz: String, ps: Set[Principal])(f: Any => B): B = {
+      val s = services.getOrElse(clazz, throw new NoSuchElementException("No service of type %s available.".format(clazz)))
+      held.set(true)
+      try f(s) finally held.set(false)
+    }
+  }
+
+  private val jetty = new Server(0)
+  new Context(jetty, "/trpc").addServlet(new ServletHolder(servlet), "/*")
+  jetty.start()
+
+  val port: Int = jetty.getConnectors()(0).getLocalPort
+
+  def client: TrpcClient =
+    TrpcClient("localhost", port).withoutSsl.withoutKeys
+
+  /** The requests received so far, oldest first. */
+  def requests: List[Request] =
+    received.asScala.toList
+
+  def stop(): Unit =
+    jetty.stop()
+}
+
+object TestServer {
+
+  /** How a request arrived: its content encoding, and its length or -1 if it was streamed. */
+  final case class Request(encoding: Option[String], length: Int)
+
+}
@@ -0,0 +1,97 @@
+package edu.gemini.util.trpc.server
+
+import edu.gemini.spModel.core.Version
+import edu.gemini.util.security.auth.keychain.Key
+import edu.gemini.util.trpc.common._
+
+import java.net.{HttpURLConnection, URL}
+
+import org.specs2.mutable.Specification
+import org.specs2.specification.AfterAll
+
+import scalaz._
+
+trait Echo {
+  def echo(bytes: Array[Byte]): Array[Byte]
+  def echo(s: String): String
+  def echo(n: Int): Int
+}
+
+object TrpcRoundTripSpec extends Specification with AfterAll {
+  sequential
+
+  class EchoImpl extends Echo {
+    def echo(bytes: Array[Byte]): Array[Byte] = bytes
+    def echo(s: String): String = s
+    def echo(n: Int): Int = n
+  }
+
+  def echoServer(negotiating: Boolean): TestServer =
+    new TestServer(Map(classOf[Echo].getName -> new EchoImpl), negotiating)
+
+  lazy val server    = echoServer(negotiating = true)
+  lazy val oldServer = echoServer(negotiating = false)
+
+  override def afterAll(): Unit = {
+    server.stop()
+    oldServer.stop()
+  }
+
+  // Compressible, and large enough to be streamed and compressed.
+  val large: Array[Byte] = Array.tabulate(4 * StreamingThreshold)(i => (i % 7).toByte)
+
+  def echo(s: TestServer, bytes: Array[Byte]): Array[Byte] =
+    s.client(_[Echo].echo(bytes)).get
+
+  "TrpcClient" should {
+    "stream large requests and compress them once the server has said it accepts gzip" in {
+      val first  = echo(server, large)
+      val small  = server.client(_[Echo].echo("small")).get
+      val second = echo(server, large)
+
+      (first.toList must_== large.toList) and (small must_== "small") and (second.toList must_== large.toList) and
+        (server.requests.map(r => (r.encoding, r.length >= 0)) must_== List((None, false), (None, true), (Some(Gzip), false)))
+    }
+
+    "never compress requests to a server that doesn't say it accepts gzip" in {
+      val rs = List.fill(3)(echo(oldServer, large))
+      (rs.forall(_.toList == large.toList) must beTrue) and
+        (oldServer.requests.map(_.encoding) must_== List(None, None, None))
+    }
+
+    "resolve overloaded methods by the types of the arguments" in {
+      val c = server.client
+      val results = List(
+        c(_[Echo].echo("a")).get,
+        c(_[Echo].echo(1)).get,
+        c(_[Echo].echo(Array[Byte](1, 2))).get.toList,
+        c(_[Echo].echo("b")).get,
+        c(_[Echo].echo(2)).get
+      )
+      results must_== List("a", 1, List[Byte](1, 2), "b", 2)
+    }
+
+    "cache the methods resolved for each argument type" in {
+      val s1 = classOf[EchoImpl].getCompatibleMethod("echo", Seq("x"))
+      val s2 = classOf[EchoImpl].getCompatibleMethod("echo", Seq("y"))
+      val i  = classOf[EchoImpl].getCompatibleMethod("echo", Seq(Integer.valueOf(1)))
+      (s1.toOption.map(_.getParameterTypes.toList) must beSome(List(classOf[String]))) and
+        (s1.toOption.get must beTheSameAs(s2.toOption.get)) and
+        (i.toOption.map(_.getParameterTypes.toList) must beSome(List[Class[_]](java.lang.Integer.TYPE)))
+    }
+  }
+
+  "TrpcServlet" should {
+    "answer a client that doesn't negotiate compression uncompressed" in {
+      val conn = new URL(s"http://localhost:${server.port}/trpc/${classOf[Echo].getName}/echo").openConnection.asInstanceOf[HttpURLConnection]
+      conn.setDoOutput(true)
+      closing(conn.getOutputStream)(_.write(serialize(Version.current, (Array[AnyRef](large), Set.empty[Key]))))
+
+      val encoding = Option(conn.getContentEncoding)
+      val result   = closing(conn.getInputStream)(_.readRaw.next[Try[AnyRef]])
+      (encoding must beNone) and
+        (conn.getHeaderField(AcceptRequestEncodingHeader) must_== Gzip) and
+        (result.map(_.asInstanceOf[Array[Byte]].toList) must_== \/-(large.toList))
+    }
+  }
+}
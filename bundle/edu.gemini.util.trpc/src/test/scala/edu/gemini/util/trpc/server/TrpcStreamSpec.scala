@@ -0,0 +1,69 @@
+package edu.gemini.util.trpc.server
+
+import edu.gemini.util.trpc.common.TrpcStream
+
+import java.util.concurrent.{CountDownLatch, TimeUnit}
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.specs2.mutable.Specification
+import org.specs2.specification.AfterAll
+
+import scala.collection.mutable.ListBuffer
+import scala.concurrent.Await
+import scala.concurrent.ExecutionContext.Implicits.global
+import scala.concurrent.duration._
+
+trait Counter {
+  /** Streams 0 until n, failing when it gets to `failAt`. */
+  def count(n: Int, failAt: Int): TrpcStream[Integer]
+
+  /** Streams 1 KB chunks until the client stops reading. */
+  def forever(): TrpcStream[Array[Byte]]
+}
+
+object TrpcStreamSpec extends Specification with AfterAll {
+  sequential
+
+  val closed = new CountDownLatch(1)
+
+  lazy val server: TestServer = new TestServer(Map(classOf[Counter].getName -> new Counter {
+    // Chunks must be produced while the servlet still holds the service
+    private def checkHeld(): Unit =
+      if (!server.held.get) throw new IllegalStateException("Service used after it was released.")
+
+    def count(n: Int, failAt: Int): TrpcStream[Integer] =
+      TrpcStream.fromIterator(Iterator.range(0, n).map { i =>
+        checkHeld()
+        if (i == failAt) throw new RuntimeException(s"Failed at $i")
+        Integer.valueOf(i)
+      })
+
+    def forever(): TrpcStream[Array[Byte]] =
+      TrpcStream.fromIterator(Iterator.continually { checkHeld(); new Array[Byte](1024) }, closed.countDown())
+  }))
+
+  override def afterAll(): Unit =
+    server.stop()
+
+  "TrpcStream" should {
+    "deliver all the chunks, in order, while the service is held" in {
+      val chunks = ListBuffer.empty[Int]
+      val n      = Await.result(server.client.stream(_[Counter].count(1000, -1)) { i => chunks += i; true }, 30.seconds)
+      (n must_== 1000) and (chunks.toList must_== (0 until 1000).toList)
+    }
+
+    "stop the server when the client cancels" in {
+      val read = new AtomicInteger(0)
+      val n    = Await.result(server.client.stream(_[Counter].forever()) { _ => read.incrementAndGet() < 3 }, 30.seconds)
+      (n must_== 3) and (closed.await(30, TimeUnit.SECONDS) must beTrue)
+    }
+
+    "deliver the chunks before a failure and then the failure" in {
+      val chunks = ListBuffer.empty[Int]
+      val f      = server.client.stream(_[Counter].count(10, 5)) { i => chunks += i; true }
+      Await.ready(f, 30.seconds)
+      (chunks.toList must_== (0 until 5).toList) and
+        (f.value.flatMap(_.failed.toOption).map(_.getMessage) must beSome("Failed at 5"))
+    }
+  }
+}
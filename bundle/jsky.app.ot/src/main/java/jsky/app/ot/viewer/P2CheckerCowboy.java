@@ -12,13 +12,16 @@ import edu.gemini.p2checker.checker.P2Checker;
 import edu.gemini.p2checker.util.P2CheckerUtil;
 import edu.gemini.pot.sp.*;
 
+import javax.swing.SwingUtilities;
 import javax.swing.tree.DefaultMutableTreeNode;
 
 import java.util.Enumeration;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- *
+ * Checks program nodes for problems in the background and shows the results
+ * in the program tree once they are available.
  */
 final class P2CheckerCowboy {
     private static final Logger LOG = Logger.getLogger(P2CheckerCowboy.class.getName());
@@ -26,8 +29,26 @@ final class P2CheckerCowboy {
     private final P2Checker _checker = new P2Checker();
 
     void check(ISPNode node, SPTree tree, AgsMagnitude.MagnitudeTable mt)  {
-        final IP2Problems probs = _checker.check(node, mt);
-        if (probs == null) return;
+        check(node, tree, mt, () -> {});
+    }
+
+    /**
+     * Checks the node without blocking the caller.  The problems are shown in
+     * the tree on the event dispatch thread, after which <code>onUpdate</code>
+     * is run there.
+     */
+    void check(ISPNode node, SPTree tree, AgsMagnitude.MagnitudeTable mt, Runnable onUpdate)  {
+        _checker.checkAsync(node, mt).whenComplete((probs, ex) -> SwingUtilities.invokeLater(() -> {
+            if (ex != null) {
+                LOG.log(Level.WARNING, "Problem checking " + node, ex);
+            } else if (probs != null) {
+                show(node, probs, tree);
+                onUpdate.run();
+            }
+        }));
+    }
+
+    private void show(ISPNode node, IP2Problems probs, SPTree tree) {
 
         // if an observation or greater, clear everything below this node
         // if an obs comp, find the obs (if any) and clear it
@@ -545,7 +545,7 @@ public final class SPViewer extends SPViewerGUI implements PropertyChangeListene
                     if (OTOptions.isCheckingEngineEnabled() && (treeNode != null) && (node instanceof ISPProgramNode)) {
                         final NodeData viewable = (NodeData) treeNode.getUserObject();
                         if ((viewable != null) && !viewable.isCheckedForProblems()) {
-                            _checker.check(node, getTree(), OT.getMagnitudeTable());
+                            _checker.check(node, getTree(), OT.getMagnitudeTable(), getTree()::repaint);
                         }
                     }
 
@@ -631,10 +631,8 @@ public final class SPViewer extends SPViewerGUI implements PropertyChangeListene
             if (dataObj instanceof ObsExecLog) return;
             if (dataObj instanceof SPNote) return;
 
-            _checker.check(nodeChanged, getTree(), OT.getMagnitudeTable()); // REL-337
-
-            //update the problem viewer window
-            _problemViewer.update();
+            //update the problem viewer window once checked
+            _checker.check(nodeChanged, getTree(), OT.getMagnitudeTable(), _problemViewer::update); // REL-337
         }
     }
 
@@ -711,7 +709,7 @@ public final class SPViewer extends SPViewerGUI implements PropertyChangeListene
                 root.addPropertyChangeListener(ISPProgram.DATA_OBJECT_KEY, authListener);
 
                 if (getRoot() != null && OTOptions.isCheckingEngineEnabled()) {
-                    _checker.check(getRoot(), getTree(), OT.getMagnitudeTable());
+                    _checker.check(getRoot(), getTree(), OT.getMagnitudeTable(), getTree()::repaint);
                 }
                 BagsManager.watch(getRoot());
                 BackgroundImageLoader.watch(getRoot());
@@ -1025,10 +1023,11 @@ public final class SPViewer extends SPViewerGUI implements PropertyChangeListene
     /** Checks the entire program looking for potential problems. */
     public void checkCurrentProgram() {
         if (getRoot() != null) {
-            _checker.check(getRoot(), getTree(), OT.getMagnitudeTable());
-            getTree().repaint();
-            //set the problem viewer to watch the current selected node
-            _problemViewer.setNodeData(getTree().getViewable());
+            _checker.check(getRoot(), getTree(), OT.getMagnitudeTable(), () -> {
+                getTree().repaint();
+                //set the problem viewer to watch the current selected node
+                _problemViewer.setNodeData(getTree().getViewable());
+            });
         }
     }
 
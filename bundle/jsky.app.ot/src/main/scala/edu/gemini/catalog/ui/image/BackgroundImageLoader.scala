@@ -92,10 +92,34 @@ object BackgroundImageLoader {
         i      <- requestedImage(tpeCtx)
       } yield i
 
-    // remove duplicates and request images
-    val tasks = targets.distinct.map(requestImageDownload(lowPriorityEC))
     // Run as low priority
-    runAsync(tasks)(logError)(lowPriorityEC)
+    runAsync(prefetchTask(targets))(logError)(lowPriorityEC)
+  }
+
+  /**
+    * Downloads in the background the images for the given observations, e.g.
+    * those planned for tonight, so that they are ready when the TPE is opened
+    */
+  def prefetch(obs: List[ISPObservation]): Unit =
+    runAsync(prefetchTask(obs.flatMap(o => requestedImage(TpeContext(o)))))(logError)(lowPriorityEC)
+
+  private def prefetchTask(targets: List[TargetImageRequest]): Task[Unit] = {
+    def imageQuery(t: TargetImageRequest): Task[ImageSearchQuery] =
+      ObservationCatalogOverrides.catalogFor(t.key, t.obsWavelength).map(c => ImageSearchQuery(c, t.coordinates, c.imageSize, t.site))
+
+    // Keep the catalog panel's progress and error state in step with the downloads, as for a TPE request
+    val listener = ImageCatalogPanel.resetListener
+
+    // The TPE may be showing one of the observations by the time its image arrives
+    def downloaded(e: ImageInFile): Task[Unit] =
+      listener.downloadCompletes *> Task.delay(updateTpeImage(e))
+
+    for {
+      prefs   <- ImageCatalogPreferences.preferences()
+      queries <- targets.distinct.traverseU(imageQuery)
+      _       <- ImagePrefetch.prefetch(queries.distinct, prefs.cacheDir, onStart = _ => listener.downloadStarts, onDownload = downloaded, onError = _ => listener.downloadError)(lowPriorityEC)
+      _       <- ImageCacheOnDisk.pruneCache(prefs.imageCacheSize)
+    } yield ()
   }
 
   /** Called when a program is removed to clear the cache */
@@ -194,11 +218,8 @@ object BackgroundImageLoader {
     } yield TargetImageRequest(key, coords, ObsWavelengthExtractor.extractObsWavelength(tpe), site)
 
   /**
-    * Utility methods to run the tasks on separate threads of the pool
+    * Utility method to run the task on a separate thread of the pool
     */
-  private def runAsync[A](tasks: List[Task[A]])(f: Throwable \/ List[A] => Unit)(pool: ExecutorService) =
-    Task.gatherUnordered(tasks.map(t => Task.fork(t)(pool))).unsafePerformAsync(f)
-
   private def runAsync[A](task: Task[A])(f: Throwable \/ A => Unit)(pool: ExecutorService) =
     Task.fork(task).unsafePerformAsync(f)
 
@@ -10,7 +10,7 @@ import java.util.concurrent.TimeoutException
 import java.util.concurrent._
 import java.util.logging.Logger
 import javax.swing.SwingUtilities
-import edu.gemini.ags.api.{AgsHash, AgsRegistrar, AgsStrategy}
+import edu.gemini.ags.api.{AgsHash, AgsRegistrar, AgsResultCache, AgsStrategy}
 import edu.gemini.catalog.votable.{CatalogException, GenericError}
 import edu.gemini.pot.sp._
 import edu.gemini.spModel.guide.GuideProbe
@@ -528,7 +528,7 @@ object BagsManager {
   }
 
   private[ags] def triggerAgsAction(k: ObsKey, ctx: ObsContext, ags: AgsStrategy): IO[Unit] = IO {
-    ags.select(ctx, OT.getMagnitudeTable)(blockingExecutionContext).onComplete {
+    AgsResultCache.instance.select(ctx, OT.getMagnitudeTable, ags)(blockingExecutionContext).onComplete {
       case Success(opt) =>
         Log.info(s"Successful BAGS lookup for observation=${k.oid.getOrElse("?")}; applying on ${Thread.currentThread}")
         BagsManager.success(k, opt)
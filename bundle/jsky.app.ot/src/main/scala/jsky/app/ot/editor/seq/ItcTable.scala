@@ -140,16 +140,17 @@ trait ItcTable extends Table with TableColumnsAdjuster {
 
     } yield ItcParameters(src, ObservationDetails(method(srcFrac), analysis), cond, tele, ins)
 
-  protected def doServiceCall(peer: Peer, inputs: String \/ ItcParameters): Future[ItcService.Result] = inputs match {
-
-    case -\/(err) =>
-      Future.successful(ItcError(err).left).andThen { case _ => updateResults() }
-
-    case \/-(inp) =>
-      // Do the service call
-      ItcService.calculate(peer, inp).andThen       { case _ => updateResults() }
-
+  // Sends all valid inputs to the service in a single batch call, which calculates identical inputs only once.
+  protected def doServiceCalls(peer: Peer, inputs: List[String \/ ItcParameters]): List[Future[ItcService.Result]] = {
+    val batch = ItcService.calculateAll(peer, inputs.flatMap(_.toList)).andThen { case _ => updateResults() }
+
+    // index of each valid input in the batch
+    val indices = inputs.scanLeft(0)((i, in) => if (in.isRight) i + 1 else i)
+    inputs.zip(indices).map {
+      case (-\/(err), _) => Future.successful(ItcError(err).left[ItcResult]).andThen { case _ => updateResults() }
+      case (\/-(_),   i) => batch.map(_(i))
     }
+  }
 
   // whenever service call is finished notify table to update its contents
   protected def updateResults(): Unit = Swing.onEDT {
@@ -263,7 +264,7 @@ class ItcImagingTable(val parameters: ItcParametersProvider) extends ItcTable {
     } yield {
       val uniqueConfigs = ItcUniqueConfig.imagingConfigs(seq)
       val inputs        = uniqueConfigs.map(uc => extractInputs(instrument, parameters.schedulingBlockStart, uc, frac => ImagingS2N(uc.count, uc.coadds, uc.singleExposureTime, frac, 0.0)))
-      val results       = uniqueConfigs.zip(inputs).map { case (uc, i) => doServiceCall(peer, i) }
+      val results       = doServiceCalls(peer, inputs)
 
       instrument.getType match {
         case INSTRUMENT_GMOS | INSTRUMENT_GMOSSOUTH =>
@@ -299,7 +300,7 @@ class ItcSpectroscopyTable(val parameters: ItcParametersProvider) extends ItcTab
     } yield {
       val uniqueConfigs = ItcUniqueConfig.spectroscopyConfigs(seq)
       val inputs        = uniqueConfigs.map(uc => extractInputs(instrument, parameters.schedulingBlockStart, uc, frac => SpectroscopyS2N(uc.count, uc.coadds, uc.singleExposureTime, frac, 0.0, None)))
-      val results       = uniqueConfigs.zip(inputs).map { case (uc, i) => doServiceCall(peer, i) }
+      val results       = doServiceCalls(peer, inputs)
 
       instrument.getType match {
         case INSTRUMENT_GNIRS                                     =>
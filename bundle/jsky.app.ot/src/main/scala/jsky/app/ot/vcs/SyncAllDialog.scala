@@ -130,19 +130,12 @@ class SyncAllDialog private(mode: SyncMode, selectedPeer: Peer, programs: Vector
   updateStatus()
 
   val SyncAction = Action("Sync All") {
-    def doSync(p: ISPProgram): Unit = {
-      val pid = p.getProgramID
-
-      val handleResult: TryVcs[(ProgramLocationSet, VersionMap)] => Unit = {
-        case \/-(a)           => updateModel(_.markSuccess(pid))
-        case -\/(HasConflict) => updateModel(_.markSyncConflict(pid))
-        case -\/(failure)     => updateModel(_.markSyncFailed(pid, some(failure)))
-      }
-
-      VcsOtClient.ref.foreach { c =>
-        c.sync(pid, cancelled).forkAsync(r => Swing.onEDT(handleResult(r)))
+    def handleResult(pid: SPProgramID, r: TryVcs[(ProgramLocationSet, VersionMap)]): Unit =
+      r match {
+        case \/-(a)           => updateModelOnCurrentThread(_.markSuccess(pid))
+        case -\/(HasConflict) => updateModelOnCurrentThread(_.markSyncConflict(pid))
+        case -\/(failure)     => updateModelOnCurrentThread(_.markSyncFailed(pid, some(failure)))
       }
-    }
 
     updateModelOnCurrentThread(_.markSyncInProgress)
     val syncList = model.programs.filter { ps =>
@@ -150,8 +143,17 @@ class SyncAllDialog private(mode: SyncMode, selectedPeer: Peer, programs: Vector
         case SyncAllModel.State.SyncInProgress(_) => true
         case _                                    => false
       }
-    }.map(_.program)
-    syncList.foreach(doSync)
+    }.map(_.pid)
+
+    // The programs are synchronized a few at a time, rather than all at once,
+    // with their remote digests fetched together.  If the whole action fails
+    // none of the programs were handled.
+    VcsOtClient.ref.foreach { c =>
+      c.syncAll(syncList.toList, selectedPeer, cancelled)(handleResult).forkAsync {
+        case -\/(failure) => Swing.onEDT(syncList.foreach(pid => handleResult(pid, -\/(failure))))
+        case \/-(_)       => // already handled
+      }
+    }
   }
 
   private def quit(closeProgram: Boolean): Unit = {
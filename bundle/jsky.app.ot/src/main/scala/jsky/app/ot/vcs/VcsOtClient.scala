@@ -12,6 +12,8 @@ import java.util.concurrent.atomic.AtomicBoolean
 
 import scala.swing.Swing
 
+import scalaz.concurrent.Task
+
 object VcsOtClient {
   private var client: Option[VcsOtClient] = None
 
@@ -74,6 +76,16 @@ case class VcsOtClient(vcs: Vcs, reg: VcsRegistrar) {
   def sync(id: SPProgramID, cancelled: AtomicBoolean): VcsAction[(ProgramLocationSet, VersionMap)] =
     recording(id)(_.retrySync(id, _, cancelled, 10))(_._2)
 
+  /** Syncs several programs registered with the given peer, a few at a time,
+    * passing the result of each one to `onResult` on the EDT as it arrives. */
+  def syncAll(ids: List[SPProgramID], peer: Peer, cancelled: AtomicBoolean)(onResult: (SPProgramID, TryVcs[(ProgramLocationSet, VersionMap)]) => Unit): VcsAction[Map[SPProgramID, TryVcs[(ProgramLocationSet, VersionMap)]]] =
+    vcs.syncAll(ids, peer, cancelled, 10, onResult = (id, r) => Task.delay {
+      Swing.onEDT {
+        r.foreach(a => VmStore.update(id, a._2, force = false))
+        onResult(id, r)
+      }
+    })
+
   def log(id: SPProgramID, offset: Int, length: Int): VcsAction[(List[VcsEventSet], Boolean)] =
     lookupAndThen(id)(_.log(id, _, offset, length))
 